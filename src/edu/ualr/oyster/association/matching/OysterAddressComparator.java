@@ -21,10 +21,9 @@
 package edu.ualr.oyster.association.matching;
 
 import edu.ualr.oyster.ErrorFormatter;
-import edu.ualr.oyster.utilities.OysterEditDistance;
+import edu.ualr.oyster.utilities.BoundedEditDistance;
 import edu.ualr.oyster.utilities.OysterUtilityTranspose;
 import edu.ualr.oyster.utilities.QGramTetrahedralRatio;
-import edu.ualr.oyster.utilities.Soundex;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -46,18 +45,15 @@ public class OysterAddressComparator extends OysterComparator{
     static private Map<String, String> thoroughfares = new LinkedHashMap<String, String>();
     static private Map<String, String> unitDesignators = new LinkedHashMap<String, String>();
     
+    /** Whether the tables have been loaded, guarded by the class */
+    static private boolean loaded = false;
+    
     /** Single Character Transpose Utility */
     private OysterUtilityTranspose transpose;
     
-    /** Levenshtein Edit Distance */
-    private OysterEditDistance editDist;
-    
     /** */
     private QGramTetrahedralRatio qGram;
     
-    /** Standard Soundex utility */
-    private Soundex soundex;
-    
     /**
      * Creates a new instance of OysterAddressComparator
      */
@@ -70,13 +66,18 @@ public class OysterAddressComparator extends OysterComparator{
         matchCodes.add("~SIMILAR");
         
         transpose = new OysterUtilityTranspose();
-        editDist = new OysterEditDistance();
         qGram = new QGramTetrahedralRatio();
-        soundex = new Soundex();
         
-        load("data/Directional.dat", 0);
-        load("data/Thoroughfare.dat", 1);
-        load("data/Unit Designators.dat", 2);
+        // the tables are only read once loaded, so comparators on other
+        // threads can parse addresses while another one is created
+        synchronized (OysterAddressComparator.class) {
+            if (!loaded) {
+                load("data/Directional.dat", 0);
+                load("data/Thoroughfare.dat", 1);
+                load("data/Unit Designators.dat", 2);
+                loaded = true;
+            }
+        }
     }
     
     @Override
@@ -99,8 +100,8 @@ public class OysterAddressComparator extends OysterComparator{
             not = true;
         }
         
-        USAddress sAddress = parse(s);
-        USAddress tAddress = parse(t);
+        USAddress sAddress = OysterFeatures.of(s).getAddress();
+        USAddress tAddress = OysterFeatures.of(t).getAddress();
 
         if (sAddress.primaryNumber != null && tAddress.primaryNumber != null) {
             if (sAddress.primaryNumber.equalsIgnoreCase(tAddress.primaryNumber)) {
@@ -135,17 +136,15 @@ public class OysterAddressComparator extends OysterComparator{
         }
 
         if (sAddress.primaryName != null && tAddress.primaryName != null) {
-            editDist.computeDistance(sAddress.primaryName, tAddress.primaryName);
-
             if (sAddress.primaryName.equalsIgnoreCase(tAddress.primaryName)) {
                 total++;
             } else if (transpose.differByTranspose(sAddress.primaryName, tAddress.primaryName)) {
                 total += .5;
-            } else if (soundex.compareSoundex(sAddress.primaryName, tAddress.primaryName)) {
+            } else if (sameSoundex(sAddress.primaryName, tAddress.primaryName)) {
                 total += .5;
             } else if (qGram.qTR(sAddress.primaryName, tAddress.primaryName) >= qTRThreshold) {
                 total += .5;
-            } else if (editDist.computeNormalizedScore() >= ledThreshold) {
+            } else if (BoundedEditDistance.matches(sAddress.primaryName, tAddress.primaryName, ledThreshold)) {
                 total += .5;
             } else {
                 total--;
@@ -222,17 +221,15 @@ public class OysterAddressComparator extends OysterComparator{
         }
 
         if (sAddress.city != null && tAddress.city != null) {
-            editDist.computeDistance(sAddress.city, tAddress.city);
-
             if (sAddress.city.equalsIgnoreCase(tAddress.city)) {
                 total++;
             } else if (transpose.differByTranspose(sAddress.city, tAddress.city)) {
                 total += .5;
-            } else if (soundex.compareSoundex(sAddress.city, tAddress.city)) {
+            } else if (sameSoundex(sAddress.city, tAddress.city)) {
                 total += .5;
             } else if (qGram.qTR(sAddress.city, tAddress.city) >= qTRThreshold) {
                 total += .5;
-            } else if (editDist.computeNormalizedScore() >= ledThreshold) {
+            } else if (BoundedEditDistance.matches(sAddress.city, tAddress.city, ledThreshold)) {
                 total += .5;
             } else {
                 total--;
@@ -247,17 +244,15 @@ public class OysterAddressComparator extends OysterComparator{
         }
 
         if (sAddress.state != null && tAddress.state != null) {
-            editDist.computeDistance(sAddress.state, tAddress.state);
-
             if (sAddress.state.equalsIgnoreCase(tAddress.state)) {
                 total++;
             } else if (transpose.differByTranspose(sAddress.state, tAddress.state)) {
                 total += .5;
-            } else if (soundex.compareSoundex(sAddress.state, tAddress.state)) {
+            } else if (sameSoundex(sAddress.state, tAddress.state)) {
                 total += .5;
             } else if (qGram.qTR(sAddress.state, tAddress.state) >= qTRThreshold) {
                 total += .5;
-            } else if (editDist.computeNormalizedScore() >= ledThreshold) {
+            } else if (BoundedEditDistance.matches(sAddress.state, tAddress.state, ledThreshold)) {
                 total += .5;
             } else {
                 total--;
@@ -330,7 +325,27 @@ public class OysterAddressComparator extends OysterComparator{
         return result;
     }
     
-    private USAddress parse(String addressLine) {
+    /**
+     * Returns whether two parts of an address have the same Soundex code, the
+     * same as <code>Soundex.compareSoundex</code>.
+     * @param s the source part.
+     * @param t the target part.
+     * @return true if the codes are the same, otherwise false.
+     */
+    private boolean sameSoundex(String s, String t) {
+        String sSoundex = OysterFeatures.of(s).getSoundex();
+        String tSoundex = OysterFeatures.of(t).getSoundex();
+        
+        return sSoundex != null && tSoundex != null && sSoundex.equals(tSoundex);
+    }
+    
+    /**
+     * Parses an address line into its parts. The comparisons read the parts
+     * through <code>OysterFeatures</code> so a line is parsed once.
+     * @param addressLine the address line.
+     * @return the <code>USAddress</code>.
+     */
+    static USAddress parse(String addressLine) {
         USAddress address = new USAddress();
         String[] temp = addressLine.split("[ ]");
 
@@ -469,7 +484,7 @@ public class OysterAddressComparator extends OysterComparator{
         return address;
     }
 
-    private String[] reorderAddress(String[] temp) {
+    private static String[] reorderAddress(String[] temp) {
         String[] result = new String[temp.length];
 
         for (int i = 0; i < temp.length; i++) {
@@ -483,7 +498,7 @@ public class OysterAddressComparator extends OysterComparator{
         return result;
     }
 
-    private boolean isDirectional(String s) {
+    private static boolean isDirectional(String s) {
         boolean flag = false;
         if (directionals.containsKey(s.toUpperCase(Locale.US))) {
             flag = true;
@@ -493,7 +508,7 @@ public class OysterAddressComparator extends OysterComparator{
         return flag;
     }
 
-    private boolean isSuffix(String s) {
+    private static boolean isSuffix(String s) {
         boolean flag = false;
         if (thoroughfares.containsKey(s.toUpperCase(Locale.US))) {
             flag = true;
@@ -503,7 +518,7 @@ public class OysterAddressComparator extends OysterComparator{
         return flag;
     }
 
-    private boolean isUnitDesignator(String s) {
+    private static boolean isUnitDesignator(String s) {
         boolean flag = false;
         if (unitDesignators.containsKey(s.toUpperCase(Locale.US))) {
             flag = true;
@@ -551,7 +566,7 @@ public class OysterAddressComparator extends OysterComparator{
         }
     }
     
-    class USAddress{
+    static class USAddress{
         String primaryNumber = null;
         String preDirectional = null;
         String primaryName = null;
@@ -22,6 +22,8 @@ package edu.ualr.oyster.association.matching;
 
 import java.util.ArrayList;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This is the base comparator class from which all other comparator class should
@@ -44,6 +46,9 @@ public class OysterComparator {
     /** Holds the matchCodes for the comparator */
     protected ArrayList<String> matchCodes;
     
+    /** The compiled match types of this comparator */
+    private ConcurrentMap<String, OysterMatchPredicate> predicates = new ConcurrentHashMap<String, OysterMatchPredicate>();
+    
     // <editor-fold defaultstate="collapsed" desc=" UML Marker ">
     // #[regen=yes,id=DCE.0A6BA72D-D143-E774-D41A-F5F28477E67F]
     // </editor-fold>
@@ -148,6 +153,91 @@ public class OysterComparator {
         return result.toUpperCase();
     }
     
+    /**
+     * Returns the compiled predicate for the match type. The match type is 
+     * compiled the first time it is asked for and the predicate is kept. A
+     * comparator and its predicates can be shared between threads, two threads
+     * asking for a new match type at once may both compile it but the same
+     * predicate is returned to both.
+     * @param matchType the type of match to preform.
+     * @return the <code>OysterMatchPredicate</code>.
+     */
+    public OysterMatchPredicate getPredicate(String matchType) {
+        OysterMatchPredicate predicate = predicates.get(matchType);
+        
+        if (predicate == null) {
+            predicate = compile(matchType);
+            OysterMatchPredicate previous = predicates.putIfAbsent(matchType, predicate);
+            if (previous != null) {
+                predicate = previous;
+            }
+        }
+        return predicate;
+    }
+    
+    /**
+     * Compiles the match type into a predicate that gives the same result as
+     * <code>compare</code>. EXACT, EXACT_IGNORE_CASE and MISSING are handled 
+     * here, anything else or a failed test goes on to <code>compileMatchCode
+     * </code>.
+     * @param matchType the type of match to preform.
+     * @return the <code>OysterMatchPredicate</code>.
+     */
+    protected OysterMatchPredicate compile(String matchType) {
+        OysterMatchPredicate result = compileMatchCode(matchType);
+        String type = matchType;
+        boolean not = false;
+        
+        // Check for NOT operator
+        if (type.toUpperCase(Locale.US).startsWith("~")){
+            type = type.substring(1);
+            not = true;
+        }
+        
+        if (type.equalsIgnoreCase("Missing")) {
+            result = new BasePredicate(BasePredicate.MISSING, not, result);
+        } else if (type.equalsIgnoreCase("Exact")) {
+            result = new BasePredicate(BasePredicate.EXACT, not, result);
+        } else if (type.equalsIgnoreCase("Exact_Ignore_Case")) {
+            result = new BasePredicate(BasePredicate.EXACT_IGNORE_CASE, not, result);
+        }
+        return result;
+    }
+    
+    /**
+     * Compiles the match type into a predicate that gives the same result as
+     * <code>getMatchCode</code>. Comparators that parse arguments in <code>
+     * getMatchCode</code> should override this so the arguments are parsed 
+     * once, by default <code>getMatchCode</code> is called for each pair.
+     * @param matchType the type of match to preform.
+     * @return the <code>OysterMatchPredicate</code>.
+     */
+    protected OysterMatchPredicate compileMatchCode(final String matchType) {
+        return new OysterMatchPredicate() {
+            @Override
+            public boolean matches(String s, String t) {
+                return matchType.equalsIgnoreCase(getMatchCode(s, t, matchType));
+            }
+        };
+    }
+    
+    /**
+     * Returns whether the String is null or only white space, the same as
+     * <code>s == null || s.trim().isEmpty()</code> without the trimmed copy.
+     * @param s the String to be checked.
+     * @return true if blank, otherwise false.
+     */
+    protected static boolean isBlank(String s) {
+        boolean flag = true;
+        
+        if (s != null) {
+            for (int i = 0; i < s.length() && flag; i++) {
+                flag = s.charAt(i) <= ' ';
+            }
+        }
+        return flag;
+    }
+    
     // <editor-fold defaultstate="collapsed" desc=" UML Marker ">
     // #[regen=yes,id=DCE.A95127E9-089A-E66D-2D1B-14EF3F4B8185]
     // </editor-fold>
@@ -180,5 +270,63 @@ public class OysterComparator {
         
         return sb.toString();
     }
+    
+    /**
+     * The compiled EXACT, EXACT_IGNORE_CASE and MISSING match types.
+     */
+    private static class BasePredicate implements OysterMatchPredicate {
+        /** MISSING */
+        private static final int MISSING = 0;
+        
+        /** EXACT */
+        private static final int EXACT = 1;
+        
+        /** EXACT_IGNORE_CASE */
+        private static final int EXACT_IGNORE_CASE = 2;
+        
+        /** The match type */
+        private final int type;
+        
+        /** Whether the NOT operator was given */
+        private final boolean not;
+        
+        /** The predicate used when this one fails */
+        private final OysterMatchPredicate next;
+        
+        /**
+         * Creates a new instance of <code>BasePredicate</code>.
+         * @param type the match type.
+         * @param not whether the NOT operator was given.
+         * @param next the predicate used when this one fails.
+         */
+        private BasePredicate(int type, boolean not, OysterMatchPredicate next) {
+            this.type = type;
+            this.not = not;
+            this.next = next;
+        }
+        
+        @Override
+        public boolean matches(String s, String t) {
+            boolean flag;
+            
+            switch (type) {
+                case MISSING:
+                    // the NOT operator does not change MISSING
+                    flag = !isBlank(s) || !isBlank(t);
+                    break;
+                case EXACT:
+                    flag = s.equals(t) && !isBlank(s) && !isBlank(t);
+                    flag = not ? !flag : flag;
+                    break;
+                default:
+                    flag = s.equalsIgnoreCase(t) && !isBlank(s) && !isBlank(t);
+                    flag = not ? !flag : flag;
+            }
+            
+            if (!flag) {
+                flag = next.matches(s, t);
+            }
+            return flag;
+        }
+    }
 }
-
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.association.matching;
+
+import edu.ualr.oyster.ErrorFormatter;
+import edu.ualr.oyster.utilities.OysterEditDistance;
+import edu.ualr.oyster.utilities.SmithWaterman;
+import edu.ualr.oyster.utilities.TverskyIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class checks that the comparators can be shared between threads. A
+ * set of comparisons over every comparator is drawn from sample values, run
+ * once on a single thread with comparators of its own and then run again by
+ * several threads at the same time on one shared set of comparators, each
+ * thread in its own random order. Every result must match the single thread
+ * result. The scores that the comparators take by value from <code>
+ * SmithWaterman</code>, <code>TverskyIndex</code> and <code>
+ * OysterEditDistance</code> are also checked against the stateful scores.
+ * <ul>
+ * <li>threads [comparisons] [runs] runs the comparisons on that many threads,
+ * each thread running every comparison runs times</li>
+ * </ul>
+ * The nickname and address tables are read from the data directory of the
+ * working directory, as they are in a run.
+ * @author Eric D. Nelson
+ */
+public class OysterComparatorStress {
+    /** The sample names */
+    private static final String [] NAMES = {
+        "Smith", "Smyth", "Schmidt", "Nelson", "Neilsen", "Johnson", "Jonson",
+        "Thompson", "Tomson", "Lee", "Leigh", "Catherine", "Kathryn", "Mary",
+        "Marie", "Robert", "Bob", "Rupert", "OBrien", "McDonald", "MacDonald",
+        "Washington", "Wong", "Wang", "Garcia", "Garsia", "Christopher",
+        "Kristofer", "Elizabeth", "Beth"
+    };
+
+    /** The sample phone numbers */
+    private static final String [] PHONES = {
+        "555-TAXI", "(501) 555-1234", "501.555.1243", "5015551234", "5558294"
+    };
+
+    /** The sample SSNs */
+    private static final String [] SSNS = {
+        "012345678", "123456780", "123456789", "213456789", "987654321"
+    };
+
+    /** The sample addresses */
+    private static final String [] ADDRESSES = {
+        "123 North Main Street", "123 N Main St", "APT 4 123 Main St",
+        "123 Main St Apt 4", "PO Box 12", "124 Maine Street West", "12 Oak Lane",
+        "12 Oak Ln Suite 100", "Unit 7 12 Oak Ln"
+    };
+
+    /** The match types of each comparator, in the order of <code>comparators</code> */
+    private static final String [][] MATCH_TYPES = {
+        {"Soundex", "DMSoundex", "IBMAlphaCode", "MatchRating", "NYSIIS",
+         "Caverphone", "Caverphone2", "Metaphone", "Metaphone2", "LED(0.7)",
+         "QTR(0.4)", "Jaccard(0.6)", "Sorensen(0.6)", "Tanimoto(0.5)",
+         "Tversky(0.5,0.3,0.7)", "Tversky(0.5)", "SmithWaterman(2,-1,-1,0.6)",
+         "NickName", "Transpose", "~Soundex", "SubStrLeft(3)", "Initial",
+         "Exact_Ignore_Case"},
+        {"Initial", "NickName", "Transpose", "Led80", "~Led80"},
+        {"WithinDays(yyyyMMdd,30)", "~WithinYears(yyyyMMdd,1)",
+         "DateDiff(yyyyMMdd,60,1)", "QTR(0.5)"},
+        {"PhoneMatch", "LED(0.8)", "~Transpose"},
+        {"Transpose", "LeadingZero", "PSubStr(7)"},
+        {"Similar", "~Similar"}
+    };
+
+    /** The comparisons */
+    private List<Comparison> comparisons = new ArrayList<Comparison>();
+
+    /** The random number generator of the comparisons */
+    private Random random;
+
+    /**
+     * Creates a new instance of <code>OysterComparatorStress</code>.
+     * @param count the number of comparisons.
+     * @param seed the seed of the comparisons.
+     */
+    public OysterComparatorStress(int count, long seed) {
+        random = new Random(seed);
+
+        for (int i = 0; i < count; i++) {
+            int c = random.nextInt(MATCH_TYPES.length);
+            String matchType = pick(MATCH_TYPES[c]);
+            String s, t;
+
+            switch (c) {
+                case 2:
+                    s = date();
+                    t = date();
+                    break;
+                case 3:
+                    s = pick(PHONES);
+                    t = pick(PHONES);
+                    break;
+                case 4:
+                    s = pick(SSNS);
+                    t = pick(SSNS);
+                    break;
+                case 5:
+                    s = pick(ADDRESSES);
+                    t = pick(ADDRESSES);
+                    break;
+                default:
+                    s = pick(NAMES);
+                    t = pick(NAMES);
+            }
+            comparisons.add(new Comparison(c, matchType, s, t));
+        }
+    }
+
+    /**
+     * Runs the comparisons on a single thread and then on several threads
+     * sharing one set of comparators, and reports the time of each and
+     * whether every result is the same.
+     * @param threads the number of threads.
+     * @param runs the number of times each thread runs every comparison.
+     * @return true if every result is the same.
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public boolean stress(int threads, final int runs) throws InterruptedException, ExecutionException {
+        final int n = comparisons.size();
+
+        // the single thread results
+        OysterComparator [] single = comparators();
+        final String [] expected = new String[n];
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            expected[i] = comparisons.get(i).run(single);
+        }
+        long serial = System.nanoTime() - start;
+
+        // the same comparisons on shared comparators
+        final OysterComparator [] shared = comparators();
+        final CountDownLatch go = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int k = 0; k < threads; k++) {
+            final long seed = k;
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    Random order = new Random(seed);
+                    int mismatches = 0;
+
+                    go.await();
+                    for (int r = 0; r < runs; r++) {
+                        for (int j = 0; j < n; j++) {
+                            int i = order.nextInt(n);
+                            if (!expected[i].equals(comparisons.get(i).run(shared))) {
+                                mismatches++;
+                            }
+                        }
+                    }
+                    return mismatches;
+                }
+            }));
+        }
+
+        start = System.nanoTime();
+        go.countDown();
+        int mismatches = 0;
+        for (int k = 0; k < futures.size(); k++) {
+            mismatches += futures.get(k).get();
+        }
+        long parallel = System.nanoTime() - start;
+        executor.shutdown();
+
+        int scores = checkScores(n);
+
+        System.out.println();
+        System.out.format("Comparisons            : %1$,12d%n", n);
+        System.out.format("Threads                : %1$,12d%n", threads);
+        System.out.format("Shared Comparisons     : %1$,12d%n", (long) threads * runs * n);
+        System.out.format("Single Thread          : %1$,12d ms%n", serial / 1000000);
+        System.out.format("Shared                 : %1$,12d ms%n", parallel / 1000000);
+        System.out.format("Mismatched Results     : %1$,12d%n", mismatches);
+        System.out.format("Mismatched Scores      : %1$,12d%n", scores);
+        System.out.println("Identical Results      : " + (mismatches == 0 && scores == 0));
+        return mismatches == 0 && scores == 0;
+    }
+
+    /**
+     * Compares the scores taken by value with the stateful scores of the same
+     * values and weights, bit for bit.
+     * @param count the number of values compared.
+     * @return the number of scores that differ.
+     */
+    private int checkScores(int count) {
+        int result = 0;
+
+        for (int i = 0; i < count; i++) {
+            String s = random.nextInt(50) == 0 ? null : pick(NAMES), t = pick(NAMES);
+            float match = random.nextInt(3) + 1, mismatch = -random.nextInt(3), gap = -random.nextInt(3);
+            float alpha = random.nextFloat(), beta = random.nextFloat();
+
+            SmithWaterman sw = new SmithWaterman();
+            sw.computeSmithWaterman(s, t, match, mismatch, gap);
+            if (!same(sw.computeNormalizedScore(), new SmithWaterman().computeNormalizedScore(s, t, match, mismatch, gap))) {
+                result++;
+            }
+
+            TverskyIndex tversky = new TverskyIndex();
+            tversky.setAlpha(alpha);
+            tversky.setBeta(beta);
+            if (!same(tversky.computeDistance(s, t), new TverskyIndex().computeDistance(s, t, alpha, beta))) {
+                result++;
+            }
+
+            OysterEditDistance ed = new OysterEditDistance();
+            ed.computeDistance(s, t);
+            if (!same(ed.computeNormalizedScore(), new OysterEditDistance().computeNormalizedScore(s, t))) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether two scores have the same bits.
+     * @param a the first score.
+     * @param b the second score.
+     * @return true if the bits are the same.
+     */
+    private static boolean same(float a, float b) {
+        return Float.floatToIntBits(a) == Float.floatToIntBits(b);
+    }
+
+    /**
+     * Returns a new set of the comparators, in the order of <code>MATCH_TYPES</code>.
+     * @return the comparators.
+     */
+    private static OysterComparator [] comparators() {
+        return new OysterComparator [] {
+            new OysterCompareDefault(), new OysterNameComparator(),
+            new OysterCompareDate(), new OysterComparePhone(),
+            new OysterCompareSSN(), new OysterAddressComparator()
+        };
+    }
+
+    /**
+     * Returns a random element of the values.
+     * @param values the values.
+     * @return the element.
+     */
+    private String pick(String [] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Returns a random date in yyyyMMdd form.
+     * @return the date.
+     */
+    private String date() {
+        return String.format("%04d%02d%02d", 1900 + random.nextInt(120), 1 + random.nextInt(12), 1 + random.nextInt(28));
+    }
+
+    /**
+     * A comparison of two values by one match type of a comparator.
+     */
+    private static class Comparison {
+        /** The comparator, an index into the comparators */
+        private int comparator;
+
+        /** The match type */
+        private String matchType;
+
+        /** The values */
+        private String s, t;
+
+        /**
+         * Creates a new instance of <code>Comparison</code>.
+         * @param comparator the index of the comparator.
+         * @param matchType the match type.
+         * @param s the source value.
+         * @param t the target value.
+         */
+        private Comparison(int comparator, String matchType, String s, String t) {
+            this.comparator = comparator;
+            this.matchType = matchType;
+            this.s = s;
+            this.t = t;
+        }
+
+        /**
+         * Runs the comparison.
+         * @param comparators the comparators.
+         * @return T or F, or the name of the exception thrown.
+         */
+        private String run(OysterComparator [] comparators) {
+            try {
+                return comparators[comparator].getPredicate(matchType).matches(s, t) ? "T" : "F";
+            } catch (RuntimeException ex) {
+                return ex.getClass().getName();
+            }
+        }
+    }
+
+    /**
+     * The main entry point of the stress test.
+     * @param args threads [comparisons] [runs].
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.out.println("Usage: OysterComparatorStress threads [comparisons] [runs]");
+            return;
+        }
+
+        int threads = Integer.parseInt(args[0]);
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        try {
+            OysterComparatorStress stress = new OysterComparatorStress(count, 5);
+            if (!stress.stress(threads, runs)) {
+                System.exit(1);
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(OysterComparatorStress.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        } catch (ExecutionException ex) {
+            Logger.getLogger(OysterComparatorStress.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+    }
+}
@@ -25,9 +25,12 @@ import edu.ualr.oyster.utilities.CharacterSubstringMatches;
 import edu.ualr.oyster.utilities.OysterUtilityTranspose;
 import edu.ualr.oyster.utilities.QGramTetrahedralRatio;
 import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -47,6 +50,17 @@ public class OysterCompareDate extends OysterComparator{
     /** Substring operator */
     private CharacterSubstringMatches substr;
     
+    /**
+     * The parsed dates of each thread. <code>SimpleDateFormat</code> is not
+     * thread-safe so each thread keeps its own formats as well.
+     */
+    private static final ThreadLocal<DateCache> CACHE = new ThreadLocal<DateCache>() {
+        @Override
+        protected DateCache initialValue() {
+            return new DateCache();
+        }
+    };
+    
     /**
      * Creates a new instance of <code>OysterCompareDate</code>.
      */
@@ -73,131 +87,24 @@ public class OysterCompareDate extends OysterComparator{
      */
     @Override
     public String getMatchCode (String s, String t, String matchType) {
-        String result, tempMatchType = matchType;
-        int length = 0, start = 0;
-        float qTRThreshold = 0.25f;
-        String pattern = "";
-        boolean not = false;
-        
-        // Check for NOT operator
-        if (matchType.toUpperCase(Locale.US).startsWith("~")){
-            matchType = matchType.substring(1);
-            not = true;
-        }
-        
-        //======================================================================
-        //  Get Funtionized arguments from Utilities
-        //======================================================================
-        if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRLEFT(")){
-            matchType = matchType.trim().substring(11, matchType.length()-1);
-            
-            length = Integer.parseInt(matchType);
-            matchType = "SubStrLeft";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRRIGHT(")){
-            matchType = matchType.trim().substring(12, matchType.length()-1);
-            
-            length = Integer.parseInt(matchType);
-            matchType = "SubStrRight";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRMID(")){
-            matchType = matchType.trim().substring(10, matchType.length()-1);
-            String temp[] = matchType.split("[,]");
-            
-            start = Integer.parseInt(temp[0].trim());
-            length = Integer.parseInt(temp[1].trim());
-            
-            matchType = "SubStrMid";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("QTR(")){
-            matchType = matchType.trim().substring(4, matchType.length()-1);
-            
-            qTRThreshold = Float.parseFloat(matchType);
-            matchType = "qTR";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("WITHINDAYS(")){
-            matchType = matchType.trim().substring(11, matchType.length()-1);
-            String temp[] = matchType.split("[,]");
-            
-            pattern = temp[0];
-            length = Integer.parseInt(temp[1].trim());
-            
-            matchType = "WithinDays";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("WITHINMONTHS(")){
-            matchType = matchType.trim().substring(13, matchType.length()-1);
-            String temp[] = matchType.split("[,]");
-            
-            pattern = temp[0];
-            length = Integer.parseInt(temp[1].trim());
-            
-            matchType = "WithinMonths";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("WITHINYEARS(")){
-            matchType = matchType.trim().substring(12, matchType.length()-1);
-            String temp[] = matchType.split("[,]");
-            
-            pattern = temp[0];
-            length = Integer.parseInt(temp[1].trim());
-            
-            matchType = "WithinYears";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("DATEDIFF(")){
-            matchType = matchType.trim().substring(9, matchType.length()-1);
-            String temp[] = matchType.split("[,]");
-            
-            pattern = temp[0];
-            length = Integer.parseInt(temp[1].trim());
-            if (temp.length > 2) {
-                start = Integer.parseInt(temp[2].trim());
-            }
-        
-            matchType = "DateDiff";
-        }
-        
-        //======================================================================
-        //======================================================================
-        if (!not) {
-            if (matchType.equalsIgnoreCase("Transpose") && transpose.differByTranspose(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("qTR") && qGram.qTR(s, t) >= qTRThreshold) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SubStrLeft") && substr.left(s, t, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SubStrRight") && substr.right(s, t, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SubStrMid") && substr.mid(s, t, start, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("WithinDays") && withinDays(s, t, pattern, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("WithinMonths") && withinMonths(s, t, pattern, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("WithinYears") && withinYears(s, t, pattern, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("DateDiff") && datediff(s, t, pattern, length, start)) {
-                result = tempMatchType;
-            } else {
-                result = "X";
-            } 
-        } else {
-            if (matchType.equalsIgnoreCase("Transpose") && !transpose.differByTranspose(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("qTR") && !(qGram.qTR(s, t) >= qTRThreshold)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SubStrLeft") && !substr.left(s, t, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SubStrRight") && !substr.right(s, t, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SubStrMid") && !substr.mid(s, t, start, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("WithinDays") && !withinDays(s, t, pattern, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("WithinMonths") && !withinMonths(s, t, pattern, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("WithinYears") && !withinYears(s, t, pattern, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("DateDiff") && !(datediff(s, t, pattern, length, start))) {
-                result = tempMatchType;
-            } else {
-                result = "X";
-            }
+        String result = "X";
+
+        if (compileMatchCode(matchType).matches(s, t)) {
+            result = matchType;
         }
         return result.toUpperCase();
     }
 
+    /**
+     * Compiles the match type and its arguments into a predicate.
+     * @param matchType the type of match to preform.
+     * @return the <code>OysterMatchPredicate</code>.
+     */
+    @Override
+    protected OysterMatchPredicate compileMatchCode(String matchType) {
+        return new MatchCodePredicate(matchType);
+    }
+
     /**
      * This method returns whether the number of days between date s and date t
      * is of length days.
@@ -210,27 +117,15 @@ public class OysterCompareDate extends OysterComparator{
      */
     private boolean withinDays(String s, String t, String pattern, int days) {
         boolean flag = false;
+        ParsedDate ds = parse(s, pattern);
+        ParsedDate dt = parse(t, pattern);
 
-        try {
-            Calendar cs = Calendar.getInstance();
-            cs.setTime(stringToDate(s, pattern));
-
-            Calendar ct = Calendar.getInstance();
-            ct.setTime(stringToDate(t, pattern));
-
-            int min = Math.min(cs.get(Calendar.YEAR), ct.get(Calendar.YEAR));
-            int ds = daysSinceMinYear(cs, min);
-            int dt = daysSinceMinYear(ct, min);
-
-            if (Math.abs(ds - dt) <= days) {
-                flag = true;
-            }
-        } catch (RuntimeException ex) {
-            Logger.getLogger(OysterCompareDate.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        if (ds != null && dt != null && Math.abs(ds.day - dt.day) <= days) {
+            flag = true;
         }
         return flag;
     }
-    
+
     /**
      * This method returns whether the number of months between date s and date t
      * is of length l.
@@ -243,26 +138,15 @@ public class OysterCompareDate extends OysterComparator{
      */
     private boolean withinMonths(String s, String t, String pattern, int months) {
         boolean flag = false;
-        try {
-            Calendar cs = Calendar.getInstance();
-            cs.setTime(stringToDate(s, pattern));
-
-            Calendar ct = Calendar.getInstance();
-            ct.setTime(stringToDate(t, pattern));
-
-            int min = Math.min(cs.get(Calendar.YEAR), ct.get(Calendar.YEAR));
-            int ds = monthsSinceMinYear(cs, min);
-            int dt = monthsSinceMinYear(ct, min);
+        ParsedDate ds = parse(s, pattern);
+        ParsedDate dt = parse(t, pattern);
 
-            if (Math.abs(ds - dt) <= months) {
-                flag = true;
-            }
-        } catch (RuntimeException ex) {
-            Logger.getLogger(OysterCompareDate.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        if (ds != null && dt != null && Math.abs(ds.month - dt.month) <= months) {
+            flag = true;
         }
         return flag;
     }
-    
+
     /**
      * This method returns whether the number of years between date s and date t
      * is of length l.
@@ -275,35 +159,35 @@ public class OysterCompareDate extends OysterComparator{
      */
     private boolean withinYears(String s, String t, String pattern, int years) {
         boolean flag = false;
-        try {
-            Calendar cs = Calendar.getInstance();
-            cs.setTime(stringToDate(s, pattern));
-
-            Calendar ct = Calendar.getInstance();
-            ct.setTime(stringToDate(t, pattern));
+        ParsedDate ds = parse(s, pattern);
+        ParsedDate dt = parse(t, pattern);
 
-            if (Math.abs(cs.get(Calendar.YEAR) - ct.get(Calendar.YEAR)) <= years) {
-                flag = true;
-            }
-        } catch (RuntimeException ex) {
-            Logger.getLogger(OysterCompareDate.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        if (ds != null && dt != null && Math.abs(ds.year - dt.year) <= years) {
+            flag = true;
         }
         return flag;
     }
-    
+
+    /**
+     * This method returns whether the time between date s and date t, in whole
+     * days, months of 30 days or years of 365 days, is of length l.
+     * @param s the first date to compare.
+     * @param t the second date to compare.
+     * @param pattern the pattern that the string representation is using.
+     * @param length the number of units to be validated against
+     * @param mode 0 for days, 1 for months and 2 for years.
+     * @return true if the two dates are less than or equal to the length,
+     * otherwise false.
+     */
     private boolean datediff(String s, String t, String pattern, int length, int mode) {
         boolean flag = false;
         long diff;
+        ParsedDate ds = parse(s, pattern);
+        ParsedDate dt = parse(t, pattern);
 
-        try {
-            Calendar cs = Calendar.getInstance();
-            cs.setTime(stringToDate(s, pattern));
-
-            Calendar ct = Calendar.getInstance();
-            ct.setTime(stringToDate(t, pattern));
+        if (ds != null && dt != null) {
+            long millsec = Math.abs(ds.millis - dt.millis);
 
-            long millsec = Math.abs(cs.getTimeInMillis() - ct.getTimeInMillis());
-            
             switch (mode){
                 case 0: // days
                     diff = millsec / 1000  / 60 / 60 /24;
@@ -316,122 +200,271 @@ public class OysterCompareDate extends OysterComparator{
                     break;
                 default: diff = millsec / 1000  / 60 / 60 /24;
             }
-            
+
             if (diff <= length) {
                 flag = true;
             }
-        } catch (RuntimeException ex) {
-            Logger.getLogger(OysterCompareDate.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
         }
         return flag;
     }
-    
+
     /**
-     * This method returns the number of days since the calendar date.
-     * @param cal the date to be checked
-     * @param min the day to start counting
-     * @return the number of minimum days.
+     * This method returns the parsed form of the input string and pattern. A
+     * date is parsed once per thread and kept in a bounded cache, so a date of
+     * birth compared against every candidate is only parsed the first time.
+     * @param date the String representation of the date
+     * @param pattern the pattern the string date is in
+     * @return the <code>ParsedDate</code>, null if the date can not be parsed
      */
-    private int daysSinceMinYear(Calendar cal, int min) {
-        int days = -1;
-        
-        if (cal != null){
-            days = 0;
-            
-            // get the number of days for each year
-            for (int i = min; i < cal.get(Calendar.YEAR); i++){
-                if (isLeapYear(i)) {
-                    days += 366;
-                } else {
-                    days += 365;
-                }
-            }
-            
-            /*
-            // get the number of days for each month
-            for (int i = 0; i < cal.get(Calendar.YEAR); i++){
-                switch(i){
-                    case 0: days += cal.getMaximum(Calendar.JANUARY); break;
-                    case 1: if (isLeapYear(cal.get(Calendar.YEAR)))
-                                days += 29;
-                            else days += 28;
-                            break;
-                    case 2: days += cal.getMaximum(Calendar.MARCH); break;
-                    case 3: days += cal.getMaximum(Calendar.APRIL); break;
-                    case 4: days += cal.getMaximum(Calendar.MAY); break;
-                    case 5: days += cal.getMaximum(Calendar.JUNE); break;
-                    case 6: days += cal.getMaximum(Calendar.JULY); break;
-                    case 7: days += cal.getMaximum(Calendar.AUGUST); break;
-                    case 8: days += cal.getMaximum(Calendar.SEPTEMBER); break;
-                    case 9: days += cal.getMaximum(Calendar.OCTOBER); break;
-                    case 10: days += cal.getMaximum(Calendar.NOVEMBER); break;
-                    case 11: days += cal.getMaximum(Calendar.DECEMBER); break;
-                }
+    private static ParsedDate parse(String date, String pattern) {
+        ParsedDate result = null;
+
+        if (date != null) {
+            DateCache cache = CACHE.get();
+            String key = pattern + '\u0000' + date;
+
+            if (cache.containsKey(key)) {
+                result = cache.get(key);
+            } else {
+                result = stringToDate(date, pattern, cache.formats);
+                cache.put(key, result);
             }
-            
-            // get the days in this month
-            cal.
-            */
-            
-            days += cal.get(Calendar.DAY_OF_YEAR);
         }
-        
-        return days;
+        return result;
     }
-    
-    /**
-     * This method returns the number of months since the calendar date.
-     * @param cal the date to be checked
-     * @param min the month to start counting
-     * @return the number of minimum months.
-     */
-    private int monthsSinceMinYear(Calendar cal, int min) {
-        int months = -1;
-        
-        if (cal != null){
-            months = 0;
-            
-            // get the number of days for each year
-            for (int i = min; i < cal.get(Calendar.YEAR); i++){
-                months += 12;
-            }
-        
-        // months are zero based so must add a one, i.e. January = 0.
-        months += cal.get(Calendar.MONTH) + 1;
-        }
 
-        return months;
-    }
-    
     /**
-     * This method returns that Date object for the input string and pattern.
+     * This method returns the parsed form of the input string and pattern.
      * @param date the String representation of the date
      * @param pattern the pattern the string date is in
-     * @return the Date for the input string
+     * @param formats the formats of the thread, by pattern
+     * @return the <code>ParsedDate</code>, null if the date can not be parsed
      */
-    private Date stringToDate(String date, String pattern){
-        java.util.Date result = null;
+    private static ParsedDate stringToDate(String date, String pattern, Map<String, SimpleDateFormat> formats){
+        ParsedDate result = null;
         try {
-            java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat(pattern);
-            sdf.setTimeZone(TimeZone.getDefault());
-            
-            result = sdf.parse(date);
+            SimpleDateFormat sdf = formats.get(pattern);
+            if (sdf == null) {
+                sdf = new SimpleDateFormat(pattern);
+                sdf.setTimeZone(TimeZone.getDefault());
+                formats.put(pattern, sdf);
+            }
+
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(sdf.parse(date));
+            result = new ParsedDate(cal);
         } catch (ParseException ex) {
             Logger.getLogger(OysterCompareDate.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        } catch (RuntimeException ex) {
+            Logger.getLogger(OysterCompareDate.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
         }
         return result;
     }
-    
+
     /**
-     * This method determines if a year is a leap year.
-     * @param year the year
-     * @return true if the input year is a leap year, otherwise false.
+     * The most recently used dates of a thread, by pattern and date. A date
+     * that can not be parsed is kept as null so the error is only logged once.
      */
-    private boolean isLeapYear(int year){
-        boolean flag = false;
-        if (year % 4 == 0 && year % 400 == 0) {
-            flag = true;
+    private static class DateCache extends LinkedHashMap<String, ParsedDate> {
+        private static final long serialVersionUID = 1L;
+
+        /** The number of dates kept */
+        private static final int CAPACITY = 4096;
+
+        /** The formats of the thread, by pattern */
+        private final Map<String, SimpleDateFormat> formats = new HashMap<String, SimpleDateFormat>();
+
+        /**
+         * Creates a new instance of <code>DateCache</code>.
+         */
+        private DateCache() {
+            super(CAPACITY * 4 / 3 + 1, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ParsedDate> eldest) {
+            return size() > CAPACITY;
+        }
+    }
+
+    /**
+     * A date reduced to the numbers the match types compare.
+     */
+    private static class ParsedDate {
+        /** The time in milliseconds */
+        private final long millis;
+
+        /** The year */
+        private final int year;
+
+        /** The months since year zero */
+        private final int month;
+
+        /**
+         * The days since year zero. Every year counts 365 days except the
+         * multiples of 400, which count 366, as the day counts have always
+         * been worked out here, so the differences come out the same.
+         */
+        private final long day;
+
+        /**
+         * Creates a new instance of <code>ParsedDate</code>.
+         * @param cal the date.
+         */
+        private ParsedDate(Calendar cal) {
+            millis = cal.getTimeInMillis();
+            year = cal.get(Calendar.YEAR);
+            month = 12 * year + cal.get(Calendar.MONTH);
+            day = 365L * year + (year - 1) / 400 + cal.get(Calendar.DAY_OF_YEAR);
+        }
+    }
+
+    /**
+     * A match type of <code>OysterCompareDate</code> with its arguments parsed.
+     */
+    private class MatchCodePredicate implements OysterMatchPredicate {
+        private static final int NONE = 0, TRANSPOSE = 1, QTR = 2, SUBSTRLEFT = 3,
+                SUBSTRRIGHT = 4, SUBSTRMID = 5, WITHINDAYS = 6, WITHINMONTHS = 7,
+                WITHINYEARS = 8, DATEDIFF = 9;
+
+        /** The match type */
+        private int type = NONE;
+
+        /** Whether the NOT operator was given */
+        private boolean not = false;
+
+        private int length = 0, start = 0;
+        private float qTRThreshold = 0.25f;
+        private String pattern = "";
+
+        /**
+         * Creates a new instance of <code>MatchCodePredicate</code>.
+         * @param matchType the type of match to preform.
+         */
+        private MatchCodePredicate(String matchType) {
+            // Check for NOT operator
+            if (matchType.toUpperCase(Locale.US).startsWith("~")){
+                matchType = matchType.substring(1);
+                not = true;
+            }
+
+            //==================================================================
+            //  Get Funtionized arguments from Utilities
+            //==================================================================
+            if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRLEFT(")){
+                matchType = matchType.trim().substring(11, matchType.length()-1);
+
+                length = Integer.parseInt(matchType);
+                matchType = "SubStrLeft";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRRIGHT(")){
+                matchType = matchType.trim().substring(12, matchType.length()-1);
+
+                length = Integer.parseInt(matchType);
+                matchType = "SubStrRight";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRMID(")){
+                matchType = matchType.trim().substring(10, matchType.length()-1);
+                String temp[] = matchType.split("[,]");
+
+                start = Integer.parseInt(temp[0].trim());
+                length = Integer.parseInt(temp[1].trim());
+
+                matchType = "SubStrMid";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("QTR(")){
+                matchType = matchType.trim().substring(4, matchType.length()-1);
+
+                qTRThreshold = Float.parseFloat(matchType);
+                matchType = "qTR";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("WITHINDAYS(")){
+                matchType = matchType.trim().substring(11, matchType.length()-1);
+                String temp[] = matchType.split("[,]");
+
+                pattern = temp[0];
+                length = Integer.parseInt(temp[1].trim());
+
+                matchType = "WithinDays";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("WITHINMONTHS(")){
+                matchType = matchType.trim().substring(13, matchType.length()-1);
+                String temp[] = matchType.split("[,]");
+
+                pattern = temp[0];
+                length = Integer.parseInt(temp[1].trim());
+
+                matchType = "WithinMonths";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("WITHINYEARS(")){
+                matchType = matchType.trim().substring(12, matchType.length()-1);
+                String temp[] = matchType.split("[,]");
+
+                pattern = temp[0];
+                length = Integer.parseInt(temp[1].trim());
+
+                matchType = "WithinYears";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("DATEDIFF(")){
+                matchType = matchType.trim().substring(9, matchType.length()-1);
+                String temp[] = matchType.split("[,]");
+
+                pattern = temp[0];
+                length = Integer.parseInt(temp[1].trim());
+                if (temp.length > 2) {
+                    start = Integer.parseInt(temp[2].trim());
+                }
+
+                matchType = "DateDiff";
+            }
+
+            //==================================================================
+            //  Resolve the match type
+            //==================================================================
+            String [] names = {"", "Transpose", "qTR", "SubStrLeft", "SubStrRight",
+                "SubStrMid", "WithinDays", "WithinMonths", "WithinYears", "DateDiff"};
+            for (int i = 1; i < names.length; i++) {
+                if (matchType.equalsIgnoreCase(names[i])) {
+                    type = i;
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public boolean matches(String s, String t) {
+            boolean flag;
+
+            switch (type) {
+                case TRANSPOSE:
+                    flag = transpose.differByTranspose(s, t);
+                    break;
+                case QTR:
+                    flag = qGram.qTR(s, t) >= qTRThreshold;
+                    break;
+                case SUBSTRLEFT:
+                    flag = substr.left(s, t, length);
+                    break;
+                case SUBSTRRIGHT:
+                    flag = substr.right(s, t, length);
+                    break;
+                case SUBSTRMID:
+                    flag = substr.mid(s, t, start, length);
+                    break;
+                case WITHINDAYS:
+                    flag = withinDays(s, t, pattern, length);
+                    break;
+                case WITHINMONTHS:
+                    flag = withinMonths(s, t, pattern, length);
+                    break;
+                case WITHINYEARS:
+                    flag = withinYears(s, t, pattern, length);
+                    break;
+                case DATEDIFF:
+                    flag = datediff(s, t, pattern, length, start);
+                    break;
+                default:
+                    flag = false;
+            }
+
+            // unknown match types never match, with or without NOT
+            if (not && type != NONE) {
+                flag = !flag;
+            }
+            return flag;
         }
-        return flag;
     }
 }
@@ -20,24 +20,16 @@
 
 package edu.ualr.oyster.association.matching;
 
-import edu.ualr.oyster.utilities.Caverphone;
-import edu.ualr.oyster.utilities.Caverphone2;
+import edu.ualr.oyster.utilities.BoundedEditDistance;
 import edu.ualr.oyster.utilities.CharacterSubstringMatches;
-import edu.ualr.oyster.utilities.DaitchMokotoffSoundex;
-import edu.ualr.oyster.utilities.DoubleMetaphone;
-import edu.ualr.oyster.utilities.IBMAlphaCode;
 import edu.ualr.oyster.utilities.Jaccard;
 import edu.ualr.oyster.utilities.MatchRatingApproach;
-import edu.ualr.oyster.utilities.Metaphone;
-import edu.ualr.oyster.utilities.NYSIISCode;
-import edu.ualr.oyster.utilities.OysterEditDistance;
 import edu.ualr.oyster.utilities.OysterNickNameTable;
 import edu.ualr.oyster.utilities.OysterUtilityTranspose;
 import edu.ualr.oyster.utilities.QGramTetrahedralRatio;
 import edu.ualr.oyster.utilities.Scan;
 import edu.ualr.oyster.utilities.SmithWaterman;
 import edu.ualr.oyster.utilities.Sorensen;
-import edu.ualr.oyster.utilities.Soundex;
 import edu.ualr.oyster.utilities.Tanimoto;
 import edu.ualr.oyster.utilities.TverskyIndex;
 import java.util.Locale;
@@ -182,9 +174,6 @@ public class OysterCompareDefault extends OysterComparator {
     /** Single Character Transpose Utility */
     private OysterUtilityTranspose transpose;
     
-    /** Levenshtein Edit Distance */
-    private OysterEditDistance editDist;
-    
     /** Q-Gram Tetrahedral Ratio operator */
     private QGramTetrahedralRatio qGram;
     
@@ -201,35 +190,11 @@ public class OysterCompareDefault extends OysterComparator {
     private TverskyIndex tversky;
     
     //==========================================================================
-    //  Soundexs
+    //  Soundexs, the codes are read through OysterFeatures
     //==========================================================================
-    /** Standard Soundex utility */
-    private Soundex soundex;
-    
-    /** Daitch-Mokotoff Soundex operator */
-    private DaitchMokotoffSoundex dmSoundex;
-    
-    /** IBM AlphaCode operator */
-    private IBMAlphaCode alphaCode;
-    
     /** Match Rating Approach operator */
     private MatchRatingApproach matchRating;
     
-    /** New York State Identification and Intelligence System operator */
-    private NYSIISCode nysiis;
-    
-    /** Caverphone 1.0 phonetic matching algorithm by David Hood */
-    private Caverphone caverphone;
-    
-    /** Caverphone 2.0 phonetic matching algorithm by David Hood */
-    private Caverphone2 caverphone2;
-    
-    /** Metaphone phonetic algorithm */
-    private Metaphone metaphone;
-    
-    /** Double Metaphone phonetic algorithm */
-    private DoubleMetaphone metaphone2;
-    
     /** Metaphone3 phonetic algorithm */
 //    Metaphone3 metaphone3;
     
@@ -273,22 +238,13 @@ public class OysterCompareDefault extends OysterComparator {
         }
         
         transpose = new OysterUtilityTranspose();
-	editDist = new OysterEditDistance();
         qGram = new QGramTetrahedralRatio();
         jaccard = new Jaccard();
         sorensen = new Sorensen();
         tanimoto = new Tanimoto();
         tversky = new TverskyIndex();
         
-        soundex = new Soundex();
-        dmSoundex = new DaitchMokotoffSoundex();
-        alphaCode = new IBMAlphaCode();
         matchRating = new MatchRatingApproach();
-        nysiis = new NYSIISCode();
-        caverphone = new Caverphone();
-        caverphone2 = new Caverphone2();
-        metaphone = new Metaphone();
-        metaphone2 = new DoubleMetaphone();
 //        metaphone3 = new Metaphone3();
         
 //        needlemanWunsch = new NeedlemanWunsch();
@@ -309,324 +265,303 @@ public class OysterCompareDefault extends OysterComparator {
      */
     @Override
     public String getMatchCode (String s, String t, String matchType) {
-        String result, tempMatchType = matchType, direction = "", charType = "",
-                upperCase = "", order = "";
-        int sLen = 0, tLen = 0, length = 0, start = 0;
-        float qTRThreshold = 0.25f, ledThreshold = 0.8f;
-        float match = 1f, mismatch = 0f, gap = 0f, alpha = 0f, beta = 0f;
-        boolean not = false;
+        String result = "X";
         
-        // Check for NOT operator
-        if (matchType.toUpperCase(Locale.US).startsWith("~")){
-            matchType = matchType.substring(1);
-            not = true;
-        }
-        
-        if (s != null) {
-            sLen = s.length();
+        if (compileMatchCode(matchType).matches(s, t)) {
+            result = matchType;
         }
+        return result.toUpperCase();
+    }
+    
+    /**
+     * Compiles the match type and its arguments into a predicate.
+     * @param matchType the type of match to preform.
+     * @return the <code>OysterMatchPredicate</code>.
+     */
+    @Override
+    protected OysterMatchPredicate compileMatchCode(String matchType) {
+        return new MatchCodePredicate(matchType);
+    }
+    
+    /**
+     * Returns whether two phonetic codes are the same, neither being null.
+     * @param s the source code.
+     * @param t the target code.
+     * @return true if the codes are the same, otherwise false.
+     */
+    private static boolean sameCode(String s, String t) {
+        return s != null && t != null && s.equals(t);
+    }
+    
+    /**
+     * Returns whether any of the source codes is one of the target codes, the
+     * same as <code>DaitchMokotoffSoundex.compareDMSoundex</code> and <code>
+     * DoubleMetaphone.compareDoubleMetaphone</code> compare their codes.
+     * @param s the source codes.
+     * @param t the target codes.
+     * @return true if a code is shared, otherwise false.
+     */
+    private static boolean anyCode(String [] s, String [] t) {
+        boolean flag = false;
         
-        if (t != null) {
-            tLen = t.length();
-        }
-
-        //======================================================================
-        //  Get Funtionized arguments from Utilities
-        //======================================================================
-        if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRLEFT(")){
-            matchType = matchType.trim().substring(11, matchType.length()-1);
-            
-            length = Integer.parseInt(matchType);
-            matchType = "SubStrLeft";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRRIGHT(")){
-            matchType = matchType.trim().substring(12, matchType.length()-1);
-            
-            length = Integer.parseInt(matchType);
-            matchType = "SubStrRight";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRMID(")){
-            matchType = matchType.trim().substring(10, matchType.length()-1);
-            String temp[] = matchType.split("[,]");
-            
-            start = Integer.parseInt(temp[0]);
-            length = Integer.parseInt(temp[1]);
-            
-            matchType = "SubStrMid";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("PSUBSTR(")){
-            matchType = matchType.trim().substring(8, matchType.length()-1);
-            
-            length = Integer.parseInt(matchType);
-            matchType = "PSubStr";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("QTR(")){
-            matchType = matchType.trim().substring(4, matchType.length()-1);
-            
-            qTRThreshold = Float.parseFloat(matchType);
-            matchType = "qTR";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("LED(")){
-            matchType = matchType.trim().substring(4, matchType.length()-1);
-            
-            ledThreshold = Float.parseFloat(matchType);
-            matchType = "LED";
-        } else if (matchType.toUpperCase().startsWith("JACCARD(")){
-            matchType = matchType.trim().substring(8, matchType.length()-1);
-            
-            ledThreshold = Float.parseFloat(matchType);
-            matchType = "JACCARD";
-        } else if (matchType.toUpperCase().startsWith("TANIMOTO(")){
-            matchType = matchType.trim().substring(9, matchType.length()-1);
-            
-            ledThreshold = Float.parseFloat(matchType);
-            matchType = "TANIMOTO";
-        } else if (matchType.toUpperCase().startsWith("SORENSEN(")){
-            matchType = matchType.trim().substring(9, matchType.length()-1);
-            
-            ledThreshold = Float.parseFloat(matchType);
-            matchType = "SORENSEN";
-        } else if (matchType.toUpperCase().startsWith("TVERSKY(")){
-            matchType = matchType.trim().substring(8, matchType.length()-1);
-            
-            String [] temp = matchType.split(",");
-            ledThreshold = Float.parseFloat(temp[0].trim());
-            
-            if (temp.length > 1){
-                alpha = Float.parseFloat(temp[1].trim());
-                beta  = Float.parseFloat(temp[2].trim());
+        for (int i = 0; i < s.length; i++) {
+            for (int j = 0; j < t.length; j++) {
+                if (s[i].equals(t[j])) {
+                    flag = true;
+                    break;
+                }
             }
-            matchType = "TVERSKY";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("NEEDLEMANWUNSCH(")){
-            matchType = matchType.trim().substring(16, matchType.length()-1);
-            
-            // Match, Mismatch, Gap, Threshold
-            String [] temp = matchType.split("[,]");
-            
-            match        = Float.parseFloat(temp[0].trim());
-            mismatch     = Float.parseFloat(temp[1].trim());
-            gap          = Float.parseFloat(temp[2].trim());
-            ledThreshold = Float.parseFloat(temp[3].trim());
-            
-            matchType = "NeedlemanWunsch";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("SMITHWATERMAN(")){
-            matchType = matchType.trim().substring(14, matchType.length()-1);
-            
-            // Match, Mismatch, Gap, Threshold
-            String [] temp = matchType.split("[,]");
-            
-            match        = Float.parseFloat(temp[0].trim());
-            mismatch     = Float.parseFloat(temp[1].trim());
-            gap          = Float.parseFloat(temp[2].trim());
-            ledThreshold = Float.parseFloat(temp[3].trim());
-            matchType = "SmithWaterman";
-        } else if (matchType.toUpperCase(Locale.US).startsWith("SCAN(")){
-            matchType = matchType.trim().substring(5, matchType.length()-1);
-            
-            // Scan(LR, DIGIT, 9, KeepCase, L2HKeepDup)
-            String [] temp = matchType.split("[,]");
-            direction  = temp[0].trim();
-            charType   = temp[1].trim();
-            length     = Integer.parseInt(temp[2].trim());
-            upperCase  = temp[3].trim();
-            order      = temp[4].trim();
-            
-            matchType = "SCAN";
         }
+        return flag;
+    }
+    
+    /**
+     * A match type of <code>OysterCompareDefault</code> with its arguments 
+     * parsed.
+     */
+    private class MatchCodePredicate implements OysterMatchPredicate {
+        private static final int NONE = 0, INITIAL = 1, TRANSPOSE = 2, SOUNDEX = 3,
+                DMSOUNDEX = 4, IBMALPHACODE = 5, MATCHRATING = 6, NYSIIS = 7,
+                CAVERPHONE = 8, CAVERPHONE2 = 9, METAPHONE = 10, METAPHONE2 = 11,
+                LED = 12, QTR = 13, JACCARD = 14, SORENSEN = 15, TANIMOTO = 16,
+                TVERSKY = 17, SMITHWATERMAN = 18, NICKNAME = 19, SUBSTRLEFT = 20,
+                SUBSTRRIGHT = 21, SUBSTRMID = 22, PSUBSTR = 23, SCAN = 24;
         
-        //======================================================================
-        //======================================================================
-        if (!not) {
-            if (matchType.equalsIgnoreCase("Initial") && s.charAt(0) == t.charAt(0)
-                    && ((sLen == 1 && tLen > 1) || (sLen > 1 && tLen == 1))) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("Transpose") && transpose.differByTranspose(s, t)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("Soundex") && soundex.compareSoundex(s, t)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("DMSoundex") && dmSoundex.compareDMSoundex(s, t)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("IBMAlphaCode") && alphaCode.compareAlphaCodes(s, t)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("MatchRating") && matchRating.compareMatchRatingCodes(s, t)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("NYSIIS") && nysiis.compareNYSIISCodes(s, t)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("CAVERPHONE") && caverphone.compareCaverphone(s, t)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("CAVERPHONE2") && caverphone2.compareCaverphone(s, t)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("METAPHONE") && metaphone.compareMetaphone(s, t)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("METAPHONE2") && metaphone2.compareDoubleMetaphone(s, t)) {
-            result = tempMatchType;
-        }/* 
-        else if (matchType.equalsIgnoreCase("METAPHONE3") && metaphone3.compareNYSIISCodes(s, t)) {
-            result = tempMatchType;
-        }*/ else if (matchType.equalsIgnoreCase("LED")){
-            // calculate edit distance
-            editDist.computeDistance(s, t);
-            
-            // if greater than or equal to normalized score it's a match
-            if (editDist.computeNormalizedScore() >= ledThreshold) {
-            result = tempMatchType;
-            } else {
-                result = "X";
-            }
-        } else if (matchType.equalsIgnoreCase("qTR") && qGram.qTR(s, t) >= qTRThreshold) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("JACCARD") && jaccard.computeDistance(s, t) >= ledThreshold) {
-            // calculate Jaccard Coefficient
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("SORENSEN") && sorensen.computeDistance(s, t) >= ledThreshold) {
-            // calculate Sorensen Similarity
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("TANIMOTO") && tanimoto.computeDistance(s, t) >= ledThreshold) {
-            // calculate Tanimoto Coefficient
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("TVERSKY")){
-            if (alpha != 0.0){
-                tversky.setAlpha(alpha);
-                tversky.setBeta(beta);
+        /** The match type */
+        private int type = NONE;
+        
+        /** Whether the NOT operator was given */
+        private boolean not = false;
+        
+        private String direction = "", charType = "", upperCase = "", order = "";
+        private int length = 0, start = 0;
+        private float qTRThreshold = 0.25f, ledThreshold = 0.8f;
+        private float match = 1f, mismatch = 0f, gap = 0f, alpha = 0f, beta = 0f;
+        
+        /**
+         * Creates a new instance of <code>MatchCodePredicate</code>.
+         * @param matchType the type of match to preform.
+         */
+        private MatchCodePredicate(String matchType) {
+            // Check for NOT operator
+            if (matchType.toUpperCase(Locale.US).startsWith("~")){
+                matchType = matchType.substring(1);
+                not = true;
             }
             
-            // calculate Tversky Index
-            if (tversky.computeDistance(s, t) >= ledThreshold) {
-            result = tempMatchType;
-            } else {
-                result = "X";
+            //==================================================================
+            //  Get Funtionized arguments from Utilities
+            //==================================================================
+            if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRLEFT(")){
+                matchType = matchType.trim().substring(11, matchType.length()-1);
+
+                length = Integer.parseInt(matchType);
+                matchType = "SubStrLeft";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRRIGHT(")){
+                matchType = matchType.trim().substring(12, matchType.length()-1);
+
+                length = Integer.parseInt(matchType);
+                matchType = "SubStrRight";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("SUBSTRMID(")){
+                matchType = matchType.trim().substring(10, matchType.length()-1);
+                String temp[] = matchType.split("[,]");
+
+                start = Integer.parseInt(temp[0]);
+                length = Integer.parseInt(temp[1]);
+
+                matchType = "SubStrMid";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("PSUBSTR(")){
+                matchType = matchType.trim().substring(8, matchType.length()-1);
+
+                length = Integer.parseInt(matchType);
+                matchType = "PSubStr";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("QTR(")){
+                matchType = matchType.trim().substring(4, matchType.length()-1);
+
+                qTRThreshold = Float.parseFloat(matchType);
+                matchType = "qTR";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("LED(")){
+                matchType = matchType.trim().substring(4, matchType.length()-1);
+
+                ledThreshold = Float.parseFloat(matchType);
+                matchType = "LED";
+            } else if (matchType.toUpperCase().startsWith("JACCARD(")){
+                matchType = matchType.trim().substring(8, matchType.length()-1);
+
+                ledThreshold = Float.parseFloat(matchType);
+                matchType = "JACCARD";
+            } else if (matchType.toUpperCase().startsWith("TANIMOTO(")){
+                matchType = matchType.trim().substring(9, matchType.length()-1);
+
+                ledThreshold = Float.parseFloat(matchType);
+                matchType = "TANIMOTO";
+            } else if (matchType.toUpperCase().startsWith("SORENSEN(")){
+                matchType = matchType.trim().substring(9, matchType.length()-1);
+
+                ledThreshold = Float.parseFloat(matchType);
+                matchType = "SORENSEN";
+            } else if (matchType.toUpperCase().startsWith("TVERSKY(")){
+                matchType = matchType.trim().substring(8, matchType.length()-1);
+
+                String [] temp = matchType.split(",");
+                ledThreshold = Float.parseFloat(temp[0].trim());
+
+                if (temp.length > 1){
+                    alpha = Float.parseFloat(temp[1].trim());
+                    beta  = Float.parseFloat(temp[2].trim());
+                }
+                matchType = "TVERSKY";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("NEEDLEMANWUNSCH(")){
+                matchType = matchType.trim().substring(16, matchType.length()-1);
+
+                // Match, Mismatch, Gap, Threshold
+                String [] temp = matchType.split("[,]");
+
+                match        = Float.parseFloat(temp[0].trim());
+                mismatch     = Float.parseFloat(temp[1].trim());
+                gap          = Float.parseFloat(temp[2].trim());
+                ledThreshold = Float.parseFloat(temp[3].trim());
+
+                matchType = "NeedlemanWunsch";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("SMITHWATERMAN(")){
+                matchType = matchType.trim().substring(14, matchType.length()-1);
+
+                // Match, Mismatch, Gap, Threshold
+                String [] temp = matchType.split("[,]");
+
+                match        = Float.parseFloat(temp[0].trim());
+                mismatch     = Float.parseFloat(temp[1].trim());
+                gap          = Float.parseFloat(temp[2].trim());
+                ledThreshold = Float.parseFloat(temp[3].trim());
+                matchType = "SmithWaterman";
+            } else if (matchType.toUpperCase(Locale.US).startsWith("SCAN(")){
+                matchType = matchType.trim().substring(5, matchType.length()-1);
+
+                // Scan(LR, DIGIT, 9, KeepCase, L2HKeepDup)
+                String [] temp = matchType.split("[,]");
+                direction  = temp[0].trim();
+                charType   = temp[1].trim();
+                length     = Integer.parseInt(temp[2].trim());
+                upperCase  = temp[3].trim();
+                order      = temp[4].trim();
+
+                matchType = "SCAN";
             }
-        }/*
-        else if (matchType.equalsIgnoreCase("NeedlemanWunsch")) {
-            // calculate distance
-            needlemanWunsch.computeNeedlemanWunsch(s, t, match, mismatch, gap);
             
-            // if greater than or equal to normalized score it's a match
-            if (needlemanWunsch.computeNormalizedScore(match) >= ledThreshold) {
-            result = tempMatchType;
-            } else {
-                result = "X";
+            //==================================================================
+            //  Resolve the match type
+            //==================================================================
+            String [] names = {"", "Initial", "Transpose", "Soundex", "DMSoundex", 
+                "IBMAlphaCode", "MatchRating", "NYSIIS", "CAVERPHONE", "CAVERPHONE2",
+                "METAPHONE", "METAPHONE2", "LED", "qTR", "JACCARD", "SORENSEN", 
+                "TANIMOTO", "TVERSKY", "SmithWaterman", "NickName", "SubStrLeft",
+                "SubStrRight", "SubStrMid", "PSubStr", "SCAN"};
+            for (int i = 1; i < names.length; i++) {
+                if (matchType.equalsIgnoreCase(names[i])) {
+                    type = i;
+                    break;
+                }
+            }
         }
-        } */ else if (matchType.equalsIgnoreCase("SmithWaterman")) {
-            // calculate distance
-            smithWaterman.computeSmithWaterman(s, t, match, mismatch, gap);
+        
+        @Override
+        public boolean matches(String s, String t) {
+            boolean flag;
             
-            // if greater than or equal to normalized score it's a match
-            if (smithWaterman.computeNormalizedScore() >= ledThreshold) {
-                result = tempMatchType;
-            } else {
-                result = "X";
+            switch (type) {
+                case INITIAL:
+                    flag = s.charAt(0) == t.charAt(0)
+                        && ((s.length() == 1 && t.length() > 1) || (s.length() > 1 && t.length() == 1));
+                    break;
+                case TRANSPOSE:
+                    flag = transpose.differByTranspose(s, t);
+                    break;
+                case SOUNDEX:
+                    flag = sameCode(OysterFeatures.of(s).getSoundex(), OysterFeatures.of(t).getSoundex());
+                    break;
+                case DMSOUNDEX:
+                    flag = anyCode(OysterFeatures.of(s).getDMSoundex(), OysterFeatures.of(t).getDMSoundex());
+                    break;
+                case IBMALPHACODE:
+                    flag = sameCode(OysterFeatures.of(s).getIBMAlphaCode(), OysterFeatures.of(t).getIBMAlphaCode());
+                    break;
+                case MATCHRATING:
+                    flag = matchRating.compareCodes(OysterFeatures.of(s).getMatchRatingCode(), OysterFeatures.of(t).getMatchRatingCode());
+                    break;
+                case NYSIIS:
+                    flag = sameCode(OysterFeatures.of(s).getNYSIISCode(), OysterFeatures.of(t).getNYSIISCode());
+                    break;
+                case CAVERPHONE:
+                    flag = sameCode(OysterFeatures.of(s).getCaverphone(), OysterFeatures.of(t).getCaverphone());
+                    break;
+                case CAVERPHONE2:
+                    flag = sameCode(OysterFeatures.of(s).getCaverphone2(), OysterFeatures.of(t).getCaverphone2());
+                    break;
+                case METAPHONE:
+                    flag = sameCode(OysterFeatures.of(s).getMetaphone(), OysterFeatures.of(t).getMetaphone());
+                    break;
+                case METAPHONE2:
+                    flag = anyCode(OysterFeatures.of(s).getDoubleMetaphone(), OysterFeatures.of(t).getDoubleMetaphone());
+                    break;
+                case LED:
+                    // if greater than or equal to normalized score it's a match
+                    flag = BoundedEditDistance.matches(s, t, ledThreshold);
+                    break;
+                case QTR:
+                    flag = qGram.qTR(s, t) >= qTRThreshold;
+                    break;
+                case JACCARD:
+                    // calculate Jaccard Coefficient
+                    flag = jaccard.computeDistance(s, t) >= ledThreshold;
+                    break;
+                case SORENSEN:
+                    // calculate Sorensen Similarity
+                    flag = sorensen.computeDistance(s, t) >= ledThreshold;
+                    break;
+                case TANIMOTO:
+                    // calculate Tanimoto Coefficient
+                    flag = tanimoto.computeDistance(s, t) >= ledThreshold;
+                    break;
+                case TVERSKY:
+                    // calculate Tversky Index, the shared instance keeps its
+                    // default weights
+                    if (alpha != 0.0){
+                        flag = tversky.computeDistance(s, t, alpha, beta) >= ledThreshold;
+                    } else {
+                        flag = tversky.computeDistance(s, t) >= ledThreshold;
+                    }
+                    break;
+                case SMITHWATERMAN:
+                    // if greater than or equal to normalized score it's a match
+                    flag = smithWaterman.computeNormalizedScore(s, t, match, mismatch, gap) >= ledThreshold;
+                    break;
+                case NICKNAME:
+                    flag = nnTable.isNicknamePair(s, t);
+                    break;
+                case SUBSTRLEFT:
+                    flag = substr.left(s, t, length);
+                    break;
+                case SUBSTRRIGHT:
+                    flag = substr.right(s, t, length);
+                    break;
+                case SUBSTRMID:
+                    flag = substr.mid(s, t, start, length);
+                    break;
+                case PSUBSTR:
+                    flag = substr.properSubString(s, t, length);
+                    break;
+                case SCAN:
+                    flag = scan.compareScan(s, t, direction, charType, length, upperCase, order);
+                    break;
+                default:
+                    flag = false;
             }
-        } else if (matchType.equalsIgnoreCase("NickName") && nnTable.isNicknamePair(s, t)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("SubStrLeft") && substr.left(s, t, length)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("SubStrRight") && substr.right(s, t, length)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("SubStrMid") && substr.mid(s, t, start, length)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("PSubStr") && substr.properSubString(s, t, length)) {
-            result = tempMatchType;
-        } else if (matchType.equalsIgnoreCase("SCAN") && scan.compareScan(s, t, direction, charType, length, upperCase, order)){
-            result = tempMatchType;
-        } else {
-            result = "X";
-        }
-        } else {
-            if (matchType.equalsIgnoreCase("Initial") && !(s.charAt(0) == t.charAt(0)
-                    && ((sLen == 1 && tLen > 1) || (sLen > 1 && tLen == 1)))) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("Transpose") && !transpose.differByTranspose(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("qTR") && !(qGram.qTR(s, t) >= qTRThreshold)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("Soundex") && !soundex.compareSoundex(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("DMSoundex") && !dmSoundex.compareDMSoundex(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("IBMAlphaCode") && !alphaCode.compareAlphaCodes(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("MatchRating") && !matchRating.compareMatchRatingCodes(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("NYSIIS") && !nysiis.compareNYSIISCodes(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("CAVERPHONE") && !caverphone.compareCaverphone(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("CAVERPHONE2") && !caverphone2.compareCaverphone(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("METAPHONE") && !metaphone.compareMetaphone(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("METAPHONE2") && !metaphone2.compareDoubleMetaphone(s, t)) {
-                result = tempMatchType;
-            }/* 
-             else if (matchType.equalsIgnoreCase("METAPHONE3") && !metaphone3.compareNYSIISCodes(s, t)) {
-             result = tempMatchType;
-             }*/ else if (matchType.equalsIgnoreCase("LED")) {
-                // calculate edit distance
-                editDist.computeDistance(s, t);
-
-                // if greater than or equal to normalized score it's a match
-                if (!(editDist.computeNormalizedScore() >= ledThreshold)) {
-                    result = tempMatchType;
-                } else {
-                    result = "X";
-                }
-            } else if (matchType.equalsIgnoreCase("qTR") && !(qGram.qTR(s, t) >= qTRThreshold)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("JACCARD") && !(jaccard.computeDistance(s, t) >= ledThreshold)) {
-                // calculate Jaccard Coefficient
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SORENSEN") && !(sorensen.computeDistance(s, t) >= ledThreshold)) {
-                // calculate Sorensen Similarity
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("TANIMOTO") && !(tanimoto.computeDistance(s, t) >= ledThreshold)) {
-                // calculate Tanimoto Coefficient
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("TVERSKY")) {
-                if (alpha != 0.0) {
-                    tversky.setAlpha(alpha);
-                    tversky.setBeta(beta);
-                }
-
-                // calculate Tversky Index
-                if (!(tversky.computeDistance(s, t) >= ledThreshold)) {
-                    result = tempMatchType;
-                } else {
-                    result = "X";
-                }
-            }/*
-             else if (matchType.equalsIgnoreCase("NeedlemanWunsch")) {
-             // calculate distance
-             needlemanWunsch.computeNeedlemanWunsch(s, t, match, mismatch, gap);
             
-             // if greater than or equal to normalized score it's a match
-             if (needlemanWunsch.computeNormalizedScore(match) >= ledThreshold) {
-             result = tempMatchType;
-             } else {
-             result = "X";
-             }
-             } */ else if (matchType.equalsIgnoreCase("SmithWaterman")) {
-                // calculate distance
-                smithWaterman.computeSmithWaterman(s, t, match, mismatch, gap);
-
-                // if greater than or equal to normalized score it's a match
-                if (!(smithWaterman.computeNormalizedScore() >= ledThreshold)) {
-                    result = tempMatchType;
-                } else {
-                    result = "X";
-                }
-            } else if (matchType.equalsIgnoreCase("NickName") && !nnTable.isNicknamePair(s, t)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SubStrLeft") && !substr.left(s, t, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SubStrRight") && !substr.right(s, t, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SubStrMid") && !substr.mid(s, t, start, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("PSubStr") && !substr.properSubString(s, t, length)) {
-                result = tempMatchType;
-            } else if (matchType.equalsIgnoreCase("SCAN") && !scan.compareScan(s, t, direction, charType, length, upperCase, order)) {
-                result = tempMatchType;
-            } else {
-                result = "X";
+            // unknown match types never match, with or without NOT
+            if (not && type != NONE) {
+                flag = !flag;
             }
+            return flag;
         }
-        return result.toUpperCase();
     }
 }
-
@@ -20,8 +20,8 @@
 
 package edu.ualr.oyster.association.matching;
 
+import edu.ualr.oyster.utilities.BoundedEditDistance;
 import edu.ualr.oyster.utilities.CharacterSubstringMatches;
-import edu.ualr.oyster.utilities.OysterEditDistance;
 import edu.ualr.oyster.utilities.OysterUtilityTranspose;
 import java.util.Locale;
 
@@ -77,9 +77,6 @@ public class OysterComparePhone extends OysterComparator {
     /** Single Character Transpose Utility */
     private OysterUtilityTranspose transpose;
     
-    /** Levenshtein Edit Distance */
-    private OysterEditDistance editDist;
-
     /** Sub String Matches */
     private CharacterSubstringMatches substr;
     
@@ -95,7 +92,6 @@ public class OysterComparePhone extends OysterComparator {
         }
         
         transpose = new OysterUtilityTranspose();
-	editDist = new OysterEditDistance();
         substr = new CharacterSubstringMatches();
     }
     
@@ -109,8 +105,8 @@ public class OysterComparePhone extends OysterComparator {
     @Override
     public String getMatchCode (String s, String t, String matchType) {
         String result, tempMatchType = matchType;
-        String sTemp = replaceAlpha(s);
-        String tTemp = replaceAlpha(t);
+        String sTemp = OysterFeatures.of(s).getPhoneDigits();
+        String tTemp = OysterFeatures.of(t).getPhoneDigits();
         int length = 0, start = 0;
         float ledThreshold = 0.8f;
         boolean not = false;
@@ -168,11 +164,8 @@ public class OysterComparePhone extends OysterComparator {
         } else if (matchType.equalsIgnoreCase("SubStrMid") && substr.mid(sTemp, tTemp, start, length)) {
             result = tempMatchType;
         } else if (matchType.equalsIgnoreCase("LED")){
-            // calculate edit distance
-            editDist.computeDistance(sTemp, tTemp);
-            
             // if greater than or equal to normalized score it's a match
-            if (editDist.computeNormalizedScore() >= ledThreshold) {
+            if (BoundedEditDistance.matches(sTemp, tTemp, ledThreshold)) {
                 result = tempMatchType;
             } else {
                 result = "X";
@@ -192,11 +185,8 @@ public class OysterComparePhone extends OysterComparator {
             } else if (matchType.equalsIgnoreCase("SubStrMid") && !substr.mid(sTemp, tTemp, start, length)) {
                 result = tempMatchType;
             } else if (matchType.equalsIgnoreCase("LED")) {
-                // calculate edit distance
-                editDist.computeDistance(sTemp, tTemp);
-
                 // if greater than or equal to normalized score it's a match
-                if (!(editDist.computeNormalizedScore() >= ledThreshold)) {
+                if (!BoundedEditDistance.matches(sTemp, tTemp, ledThreshold)) {
                     result = tempMatchType;
                 } else {
                     result = "X";
@@ -210,11 +200,12 @@ public class OysterComparePhone extends OysterComparator {
 
     /**
      * This method replaced letters in phone numbers with their numeric position
-     * on a phone keypad, i.e. 555-TAXI -> 555-8294.
+     * on a phone keypad, i.e. 555-TAXI -> 555-8294. The comparisons read it
+     * through <code>OysterFeatures</code> so it is done once per value.
      * @param s
      * @return 
      */
-    private String replaceAlpha(String s) {
+    static String replaceAlpha(String s) {
         String result = "";
         
         if (s != null) {
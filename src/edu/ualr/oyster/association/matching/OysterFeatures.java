@@ -0,0 +1,276 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.association.matching;
+
+import edu.ualr.oyster.utilities.Caverphone;
+import edu.ualr.oyster.utilities.Caverphone2;
+import edu.ualr.oyster.utilities.DaitchMokotoffSoundex;
+import edu.ualr.oyster.utilities.DoubleMetaphone;
+import edu.ualr.oyster.utilities.IBMAlphaCode;
+import edu.ualr.oyster.utilities.MatchRatingApproach;
+import edu.ualr.oyster.utilities.Metaphone;
+import edu.ualr.oyster.utilities.NYSIISCode;
+import edu.ualr.oyster.utilities.Soundex;
+
+/**
+ * The features of an attribute value that the comparators derive from one
+ * side of a comparison, e.g. the phonetic codes of a name, the digits of a
+ * phone number or the parts of an address. The input value of a rule term is
+ * compared against every candidate and the candidate values come round again
+ * for later inputs, so each feature is worked out the first time a comparator
+ * asks for it and kept with the value.
+ *
+ * The features are held in a cache shared by all of the comparators. The
+ * cache is direct mapped on the value hash, like the cache of <code>
+ * IndexHashFunction</code>, and an entry is replaced when another value falls
+ * in its slot. The value of an entry never changes and a feature is only
+ * marked as worked out after it is set, so the cache can be read and written
+ * by several threads without locking; two threads may both work out the same
+ * feature, which gives the same result.
+ *
+ * The arrays returned are shared and must not be changed.
+ * @author Eric D. Nelson
+ */
+public final class OysterFeatures {
+    /** The number of cache slots */
+    public static final int CACHE_SIZE = 65536;
+
+    /** The features that have been worked out */
+    private static final int SOUNDEX = 1, DMSOUNDEX = 2, IBMALPHACODE = 4,
+            MATCHRATING = 8, NYSIIS = 16, CAVERPHONE = 32, CAVERPHONE2 = 64,
+            METAPHONE = 128, METAPHONE2 = 256, PHONE = 512, ADDRESS = 1024;
+
+    /** The cache slots, null when empty */
+    private static final OysterFeatures [] CACHE = new OysterFeatures[CACHE_SIZE];
+
+    /** Standard Soundex utility */
+    private static final Soundex soundex = new Soundex();
+
+    /** Daitch-Mokotoff Soundex utility */
+    private static final DaitchMokotoffSoundex dmSoundex = new DaitchMokotoffSoundex();
+
+    /** IBM AlphaCode Soundex utility */
+    private static final IBMAlphaCode alphaCode = new IBMAlphaCode();
+
+    /** Match Rating Approach utility */
+    private static final MatchRatingApproach matchRating = new MatchRatingApproach();
+
+    /** NYSIIS Code utility */
+    private static final NYSIISCode nysiis = new NYSIISCode();
+
+    /** Caverphone utility */
+    private static final Caverphone caverphone = new Caverphone();
+
+    /** Caverphone 2 utility */
+    private static final Caverphone2 caverphone2 = new Caverphone2();
+
+    /** Metaphone utility */
+    private static final Metaphone metaphone = new Metaphone();
+
+    /** Double Metaphone utility */
+    private static final DoubleMetaphone metaphone2 = new DoubleMetaphone();
+
+    /** The value */
+    private final String value;
+
+    /** The features that have been worked out, set after the feature */
+    private volatile int computed = 0;
+
+    private String soundexCode, alphaCodeCode, matchRatingCode, nysiisCode;
+    private String caverphoneCode, caverphone2Code, metaphoneCode, phoneDigits;
+    private String [] dmSoundexCodes, metaphone2Codes;
+    private OysterAddressComparator.USAddress address;
+
+    /**
+     * Creates a new instance of <code>OysterFeatures</code>.
+     * @param value the value.
+     */
+    private OysterFeatures(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the features of a value, from the cache if the value is there.
+     * @param value the value, may be null.
+     * @return the <code>OysterFeatures</code>.
+     */
+    public static OysterFeatures of(String value) {
+        OysterFeatures result;
+
+        if (value != null) {
+            int hash = value.hashCode();
+            int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+            result = CACHE[slot];
+
+            if (result == null || !result.value.equals(value)) {
+                result = new OysterFeatures(value);
+                CACHE[slot] = result;
+            }
+        } else {
+            result = new OysterFeatures(null);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value.
+     * @return the value.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the Soundex code, as <code>Soundex.getSoundex</code>.
+     * @return the code, null if the value has none.
+     */
+    public String getSoundex() {
+        if ((computed & SOUNDEX) == 0) {
+            soundexCode = soundex.getSoundex(value);
+            computed |= SOUNDEX;
+        }
+        return soundexCode;
+    }
+
+    /**
+     * Returns the Daitch-Mokotoff Soundex codes, as <code>DaitchMokotoffSoundex.
+     * getDMSoundex</code>.
+     * @return the codes.
+     */
+    public String [] getDMSoundex() {
+        if ((computed & DMSOUNDEX) == 0) {
+            dmSoundexCodes = dmSoundex.getDMSoundex(value);
+            computed |= DMSOUNDEX;
+        }
+        return dmSoundexCodes;
+    }
+
+    /**
+     * Returns the IBM Alpha Code, as <code>IBMAlphaCode.getIBMAlphaCode</code>.
+     * @return the code, null if the value has none.
+     */
+    public String getIBMAlphaCode() {
+        if ((computed & IBMALPHACODE) == 0) {
+            alphaCodeCode = alphaCode.getIBMAlphaCode(value);
+            computed |= IBMALPHACODE;
+        }
+        return alphaCodeCode;
+    }
+
+    /**
+     * Returns the Match Rating Approach code, as <code>MatchRatingApproach.
+     * getMatchRatingApproachCode</code>.
+     * @return the code, null if the value has none.
+     */
+    public String getMatchRatingCode() {
+        if ((computed & MATCHRATING) == 0) {
+            matchRatingCode = matchRating.getMatchRatingApproachCode(value);
+            computed |= MATCHRATING;
+        }
+        return matchRatingCode;
+    }
+
+    /**
+     * Returns the NYSIIS code, as <code>NYSIISCode.getNYSIISCode</code>.
+     * @return the code, null if the value has none.
+     */
+    public String getNYSIISCode() {
+        if ((computed & NYSIIS) == 0) {
+            nysiisCode = nysiis.getNYSIISCode(value);
+            computed |= NYSIIS;
+        }
+        return nysiisCode;
+    }
+
+    /**
+     * Returns the Caverphone code, as <code>Caverphone.getCaverphone</code>.
+     * @return the code, null if the value has none.
+     */
+    public String getCaverphone() {
+        if ((computed & CAVERPHONE) == 0) {
+            caverphoneCode = caverphone.getCaverphone(value);
+            computed |= CAVERPHONE;
+        }
+        return caverphoneCode;
+    }
+
+    /**
+     * Returns the Caverphone 2 code, as <code>Caverphone2.getCaverphone</code>.
+     * @return the code, null if the value has none.
+     */
+    public String getCaverphone2() {
+        if ((computed & CAVERPHONE2) == 0) {
+            caverphone2Code = caverphone2.getCaverphone(value);
+            computed |= CAVERPHONE2;
+        }
+        return caverphone2Code;
+    }
+
+    /**
+     * Returns the Metaphone code, as <code>Metaphone.getMetaphone</code>.
+     * @return the code, null if the value has none.
+     */
+    public String getMetaphone() {
+        if ((computed & METAPHONE) == 0) {
+            metaphoneCode = metaphone.getMetaphone(value);
+            computed |= METAPHONE;
+        }
+        return metaphoneCode;
+    }
+
+    /**
+     * Returns the Double Metaphone codes, as <code>DoubleMetaphone.
+     * getDoubleMetaphone</code>.
+     * @return the codes.
+     */
+    public String [] getDoubleMetaphone() {
+        if ((computed & METAPHONE2) == 0) {
+            metaphone2Codes = metaphone2.getDoubleMetaphone(value);
+            computed |= METAPHONE2;
+        }
+        return metaphone2Codes;
+    }
+
+    /**
+     * Returns the digits of a phone number with the letters replaced by their
+     * keypad digits, i.e. 555-TAXI -> 5558294.
+     * @return the digits, empty for a null value.
+     */
+    public String getPhoneDigits() {
+        if ((computed & PHONE) == 0) {
+            phoneDigits = OysterComparePhone.replaceAlpha(value);
+            computed |= PHONE;
+        }
+        return phoneDigits;
+    }
+
+    /**
+     * Returns the parts of an address line.
+     * @return the <code>USAddress</code>.
+     */
+    OysterAddressComparator.USAddress getAddress() {
+        if ((computed & ADDRESS) == 0) {
+            address = OysterAddressComparator.parse(value);
+            computed |= ADDRESS;
+        }
+        return address;
+    }
+}
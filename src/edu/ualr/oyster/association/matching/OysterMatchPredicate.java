@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.association.matching;
+
+/**
+ * A match type of an <code>OysterComparator</code> compiled with its arguments,
+ * e.g. <code>LED(0.8)</code> or <code>~SUBSTRLEFT(4)</code>. The match type is
+ * parsed once when the predicate is created so testing a source and target
+ * pair does no string parsing.
+ *
+ * A predicate holds no state between calls and may be tested by several
+ * threads at once; any scratch space is kept per thread.
+ * @author Eric D. Nelson
+ */
+public interface OysterMatchPredicate {
+    /**
+     * Returns whether the source and target match for the compiled match type.
+     * This is the same as the comparator's <code>compare</code> returning the
+     * match type.
+     * @param s source String.
+     * @param t target String.
+     * @return true if the match type holds, otherwise false.
+     */
+    public boolean matches(String s, String t);
+}
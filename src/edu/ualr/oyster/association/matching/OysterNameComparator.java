@@ -20,7 +20,7 @@
 
 package edu.ualr.oyster.association.matching;
 
-import edu.ualr.oyster.utilities.OysterEditDistance;
+import edu.ualr.oyster.utilities.BoundedEditDistance;
 import edu.ualr.oyster.utilities.OysterNickNameTable;
 import edu.ualr.oyster.utilities.OysterUtilityTranspose;
 import java.util.Locale;
@@ -41,9 +41,6 @@ public class OysterNameComparator extends OysterComparator {
     /** Single character transposition operator */
     private OysterUtilityTranspose transpose;
     
-    /** Levenshtein Edit Distance */
-    private OysterEditDistance editDist;
-    
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.E3EF23FE-0550-8390-6C9B-A8C6A23F6489]
     // </editor-fold> 
@@ -61,7 +58,6 @@ public class OysterNameComparator extends OysterComparator {
         
         transpose = new OysterUtilityTranspose();
         nnTable = new OysterNickNameTable();
-        editDist = new OysterEditDistance();
     }
 
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
@@ -98,11 +94,8 @@ public class OysterNameComparator extends OysterComparator {
         } else if (matchType.equalsIgnoreCase("Transpose") && transpose.differByTranspose(s, t)) {
             result = tempMatchType;
         } else if (matchType.equalsIgnoreCase("Led80")) {
-            // calculate edit distance
-            editDist.computeDistance(s, t);
-            
             // if greater than or equal to normalized score it's a match
-            if (editDist.computeNormalizedScore() >= 0.8) {
+            if (BoundedEditDistance.matches(s, t, 0.8)) {
                 result = tempMatchType;
             } else {
                 result = "X";
@@ -119,11 +112,8 @@ public class OysterNameComparator extends OysterComparator {
             } else if (matchType.equalsIgnoreCase("Transpose") && !transpose.differByTranspose(s, t)) {
                 result = tempMatchType;
             } else if (matchType.equalsIgnoreCase("Led80")) {
-                // calculate edit distance
-                editDist.computeDistance(s, t);
-
                 // if greater than or equal to normalized score it's a match
-                if (!(editDist.computeNormalizedScore() >= 0.8)) {
+                if (!BoundedEditDistance.matches(s, t, 0.8)) {
                     result = tempMatchType;
                 } else {
                     result = "X";
@@ -28,6 +28,7 @@ import edu.ualr.oyster.data.ClusterRecord;
 import edu.ualr.oyster.data.ClusterRecordSet;
 import edu.ualr.oyster.data.ClusterTypes;
 import edu.ualr.oyster.data.CoDoSAOIR;
+import edu.ualr.oyster.data.IndexedCoDoSAOIR;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.data.OysterIdentityRecordMap;
 import edu.ualr.oyster.data.RecordTypes;
@@ -37,19 +38,27 @@ import edu.ualr.oyster.er.OysterEngine;
 import edu.ualr.oyster.er.OysterMergeConsolidationEngine;
 import edu.ualr.oyster.er.OysterMergeEngine;
 import edu.ualr.oyster.er.OysterResolutionEngine;
+import edu.ualr.oyster.er.OysterResolutionPipeline;
+import edu.ualr.oyster.index.CandidateSelector;
 import edu.ualr.oyster.index.Index;
 import edu.ualr.oyster.index.IndexRule;
 import edu.ualr.oyster.index.NullIndex;
 import edu.ualr.oyster.index.TalburtZhouInvertedIndex;
 import edu.ualr.oyster.io.AttributesParser;
+import edu.ualr.oyster.io.OysterBinaryIdentityWriter;
 import edu.ualr.oyster.io.OysterDatabaseReader;
 import edu.ualr.oyster.io.OysterDatabaseWriter;
 import edu.ualr.oyster.io.OysterDelimitedReader;
 import edu.ualr.oyster.io.OysterFixedWidthReader;
+import edu.ualr.oyster.io.OysterMappedDelimitedReader;
+import edu.ualr.oyster.io.OysterParallelSourceReader;
+import edu.ualr.oyster.io.OysterPartitionedDatabaseReader;
+import edu.ualr.oyster.io.OysterSourceReader;
 import edu.ualr.oyster.io.RunScriptParser;
 import edu.ualr.oyster.io.SourceDescriptorParser;
 import edu.ualr.oyster.kb.DBEntityMap;
 import edu.ualr.oyster.kb.EntityMap;
+import edu.ualr.oyster.kb.LogEntityMap;
 import edu.ualr.oyster.kb.ModificationRecord;
 import edu.ualr.oyster.kb.OysterIdentityRepository;
 import java.io.BufferedReader;
@@ -920,7 +929,8 @@ public class OysterMain {
                     repository.setPassThruAttributes(passThruAttributes);
                     repository.setMid("1");
                     sourceNames = new LinkedHashSet<String>();
-                } else if (runScript.getIdentityInputType().equalsIgnoreCase("TextFile")) {
+                } else if (runScript.getIdentityInputType().equalsIgnoreCase("TextFile") ||
+                        runScript.getIdentityInputType().equalsIgnoreCase("BinaryFile")) {
                     setRepository(new OysterIdentityRepository(logger, attributes, runScript.getSecurityHash(), recordType));
 
                     repository.setEntityMap(entityMap);
@@ -936,7 +946,10 @@ public class OysterMain {
                       .append(runScript.getIdentityInputLocation())
                       .append(System.getProperty("line.separator"));
                     logger.severe(sb.toString());
-                    repository.load(runScript.getIdentityInputLocation(), keepPreviousDBTable, runScript.isIdentityOutputTrace());
+                    repository.setLoadThreads(runScript.getLoadThreads());
+                    repository.setIndexSnapshotInput(runScript.isIdentityInputIndexSnapshot());
+                    repository.load(runScript.getIdentityInputLocation(), keepPreviousDBTable, runScript.isIdentityOutputTrace(),
+                            runScript.getIdentityInputType().equalsIgnoreCase("BinaryFile"));
                     sourceNames = repository.getSourceNames();
                     
                     // determine the next mid number
@@ -1050,6 +1063,23 @@ public class OysterMain {
                     logger.severe(sb.toString());
                     repository.setRepositoryWriter(new PrintWriter(new OutputStreamWriter(new FileOutputStream(runScript.getIdentityOutputLocation()), "UTF8")));
                     repository.setTraceOn(runScript.isIdentityOutputTrace());
+                    if (runScript.isIdentityOutputIndexSnapshot()) {
+                        repository.setIndexSnapshotOutput(runScript.getIdentityOutputLocation());
+                    }
+                } else if (runScript.getIdentityOutputType().equalsIgnoreCase("BinaryFile")) {
+                    StringBuilder sb = new StringBuilder(250);
+                    sb.append("Identity Output Type: ")
+                      .append(runScript.getIdentityOutputType())
+                      .append(System.getProperty("line.separator"));
+                    sb.append("Identity Output: ")
+                      .append(runScript.getIdentityOutputLocation())
+                      .append(System.getProperty("line.separator"));
+                    logger.severe(sb.toString());
+                    repository.setIdentityWriter(new OysterBinaryIdentityWriter(new FileOutputStream(runScript.getIdentityOutputLocation())));
+                    repository.setTraceOn(runScript.isIdentityOutputTrace());
+                    if (runScript.isIdentityOutputIndexSnapshot()) {
+                        repository.setIndexSnapshotOutput(runScript.getIdentityOutputLocation());
+                    }
                 } else if (runScript.getIdentityOutputType().equalsIgnoreCase("Database")) {
                     StringBuilder sb = new StringBuilder(250);
                     sb.append("Identity Output Type: ")
@@ -1759,19 +1789,23 @@ public class OysterMain {
 
             // open the reference source
             if (ors.getSourceType().equalsIgnoreCase("FileDelim")) {
-                OysterDelimitedReader osr = new OysterDelimitedReader(ors.getSourcePath(), ors.getDelimiter(), ors.getQualifer(), ors.isLabel(), ors.getReferenceItems(), logger);
-                osr.open();
-                ors.setSourceReader(osr);
+                OysterDelimitedReader osr;
+                if (ors.isMapped()) {
+                    osr = new OysterMappedDelimitedReader(ors.getSourcePath(), ors.getDelimiter(), ors.getQualifer(), ors.isLabel(), ors.getReferenceItems(), logger);
+                } else {
+                    osr = new OysterDelimitedReader(ors.getSourcePath(), ors.getDelimiter(), ors.getQualifer(), ors.isLabel(), ors.getReferenceItems(), logger);
+                }
+                OysterSourceReader reader = parallelReader(osr);
+                reader.open();
+                ors.setSourceReader(reader);
             } else if (ors.getSourceType().equalsIgnoreCase("FileFixed")) {
                 OysterFixedWidthReader osr = new OysterFixedWidthReader(ors.getSourcePath(), ors.getReferenceItems(), logger);
-                osr.open();
-                ors.setSourceReader(osr);
+                OysterSourceReader reader = parallelReader(osr);
+                reader.open();
+                ors.setSourceReader(reader);
             } else if (ors.getSourceType().equalsIgnoreCase("Database")) {
                 OysterDatabaseReader osr = new OysterDatabaseReader(ors.getSourcePath(), ors.getConnectionType(), ors.getServer(), ors.getPort(), ors.getSid(), ors.getUserID(), ors.getPasswd(), ors.getReferenceItems(), logger);
-                if (osr.isConnected()) {
-                    osr.open();
-                }
-                ors.setSourceReader(osr);
+                ors.setSourceReader(openDatabaseReader(osr, ors));
             }
 
             ors.getSourceReader().setSource(ors.getSourceName());
@@ -1786,11 +1820,47 @@ public class OysterMain {
         }
     }
 
+    /**
+     * Returns the reader for a file source. The reader is wrapped in an <code>
+     * OysterParallelSourceReader</code> if more than one read thread is set.
+     * @param osr the unopened file source reader.
+     * @return the reader to be opened.
+     */
+    private OysterSourceReader parallelReader(OysterSourceReader osr) {
+        OysterSourceReader reader = osr;
+        
+        if (getRunScript().getReadThreads() > 1 && OysterParallelSourceReader.isSupported(osr)) {
+            reader = new OysterParallelSourceReader(osr, getRunScript().getReadThreads(), logger);
+        }
+        return reader;
+    }
+
+    /**
+     * Opens a Database source, in several partitions read at the same time if
+     * the source descriptor asks for it.
+     * @param osr the unopened database reader.
+     * @param ors the reference source being read.
+     * @return the opened reader.
+     */
+    private OysterSourceReader openDatabaseReader(OysterDatabaseReader osr, OysterReferenceSource ors) {
+        OysterSourceReader reader = osr;
+        
+        osr.setFetchSize(ors.getFetchSize());
+        if (ors.isPartitioned()) {
+            reader = new OysterPartitionedDatabaseReader(osr, ors.getPartitions(), ors.getPartitionKey(), ors.getPartitionMode(), logger);
+            reader.open();
+        } else if (osr.isConnected()) {
+            osr.open();
+        }
+        return reader;
+    }
+
     private void syncOysterIdentityRecord() {
         OysterIdentityRecord tempOIR;
         
         switch (recordType) {
             case RecordTypes.CODOSA: tempOIR = new CoDoSAOIR(); break;
+            case RecordTypes.INDEXED_CODOSA: tempOIR = new IndexedCoDoSAOIR(); break;
             case RecordTypes.MAP: tempOIR = new OysterIdentityRecordMap(); break;
             default: tempOIR = new OysterIdentityRecordMap();
         }
@@ -1965,6 +2035,15 @@ public class OysterMain {
         sb.append(System.getProperty("line.separator"));
         sb.append(System.getProperty("line.separator"));
         
+        if (getEngine() instanceof OysterResolutionEngine) {
+            sb.append("#######################").append(System.getProperty("line.separator"));
+            sb.append("##  Rule Term Stats  ##").append(System.getProperty("line.separator"));
+            sb.append("#######################").append(System.getProperty("line.separator"));
+            sb.append(((OysterResolutionEngine) getEngine()).termStats());
+            sb.append(System.getProperty("line.separator"));
+            sb.append(System.getProperty("line.separator"));
+        }
+        
         if (runScript.getRunMode().equalsIgnoreCase(OysterKeywords.RUNMODE_IDENT_RESOLVE)) {
             sb.append("########################").append(System.getProperty("line.separator"));
             sb.append("##  Resolution Stats  ##").append(System.getProperty("line.separator"));
@@ -2223,6 +2302,10 @@ public class OysterMain {
                             if (attributes.getIndexingRules() != null && !attributes.getIndexingRules().isEmpty()){
                                 TalburtZhouInvertedIndex tzIndex = new TalburtZhouInvertedIndex();
                                 tzIndex.setRules(attributes.getIndexingRules());
+                                tzIndex.setStopKeyCeiling(runScript.getStopKeyCeiling());
+                                CandidateSelector selector = new CandidateSelector(runScript.getCandidateThreshold(), runScript.getCandidateCap(), runScript.getCandidateRatio());
+                                selector.setExact(runScript.isCandidateExact());
+                                tzIndex.setSelector(selector);
                                 index = tzIndex;
                             } else {
                                 index = new NullIndex();
@@ -2239,13 +2322,20 @@ public class OysterMain {
 
                         //==========================================================================                    
                         // Initialize the Record & Cluster Types
-                        // These are hardcoded right now but should become dynamic in the future
+                        // The cluster type is hardcoded right now but should become dynamic in the future
                         //==========================================================================
                         // OysterIdentityRecord Type
                         String type;
-                        recordType = RecordTypes.MAP;
+                        if (runScript.getRecordType().equalsIgnoreCase("CoDoSA")) {
+                            recordType = RecordTypes.CODOSA;
+                        } else if (runScript.getRecordType().equalsIgnoreCase("IndexedCoDoSA")) {
+                            recordType = RecordTypes.INDEXED_CODOSA;
+                        } else {
+                            recordType = RecordTypes.MAP;
+                        }
                         switch (recordType){
                             case RecordTypes.CODOSA: type = "CoDoSA"; break;
+                            case RecordTypes.INDEXED_CODOSA: type = "IndexedCoDoSA"; break;
                             case RecordTypes.MAP: type = "Map"; break;
                             default: type = "Map";
                         }
@@ -2282,11 +2372,25 @@ public class OysterMain {
                             entityMap = new EntityMap(new LinkedHashMap<String, ClusterRecord>(), recordType);
                         } else if (runScript.getEntityMapType().equalsIgnoreCase("DBEntityMap")) {
                             DBEntityMap dbEntityMap = new DBEntityMap(new LinkedHashMap<String, ClusterRecord>(), runScript.getEntityMapCType(), runScript.getEntityMapServer(), runScript.getEntityMapPort(), runScript.getEntityMapSID(), runScript.getEntityMapUserID(), runScript.getEntityMapPasswd(), recordType);
+                            dbEntityMap.setBatchSize(runScript.getEntityMapBatchSize());
+                            dbEntityMap.setCacheSize(runScript.getEntityMapCacheSize());
                             if (dbEntityMap.isConnected(keepPreviousDBTable)) {
                                 entityMap = dbEntityMap;
                             } else {
                                 return (-1000);
                             }
+                        } else if (runScript.getEntityMapType().equalsIgnoreCase("LogEntityMap")) {
+                            LogEntityMap logEntityMap = new LogEntityMap(runScript.getEntityMapPath(), recordType);
+                            long segmentSize = runScript.getEntityMapSegmentSize() * 1024L * 1024L;
+                            logEntityMap.setSegmentSize((int) Math.min(segmentSize, Integer.MAX_VALUE));
+                            if (runScript.getEntityMapCacheSize() > 0) {
+                                logEntityMap.setCacheSize(runScript.getEntityMapCacheSize());
+                            }
+                            if (logEntityMap.open(keepPreviousDBTable)) {
+                                entityMap = logEntityMap;
+                            } else {
+                                return (-1000);
+                            }
                         } else {
                             try {
                                 Class comp = Class.forName(runScript.getEntityMapType());
@@ -2353,6 +2457,9 @@ public class OysterMain {
                                 // set the ER engine parameters
                                 engine.setRepository(repository);
                                 engine.setDebug(runScript.isDebug());
+                                if (engine instanceof OysterResolutionEngine) {
+                                    ((OysterResolutionEngine) engine).setTermOrderInterval(runScript.getTermOrderInterval());
+                                }
 
                                 // do I need to preload the index?
                                 if (runScript.isPreLoad()) {
@@ -2422,22 +2529,25 @@ public class OysterMain {
                                         
                                             // open the reference source
                                             if (source.getSourceType().equalsIgnoreCase("FileDelim")) {
-                                                OysterDelimitedReader osr = new OysterDelimitedReader(source.getSourcePath(), source.getDelimiter(), source.getQualifer(), source.isLabel(), source.getReferenceItems(), logger);
-                                                osr.open();
+                                                OysterDelimitedReader osr;
+                                                if (source.isMapped()) {
+                                                    osr = new OysterMappedDelimitedReader(source.getSourcePath(), source.getDelimiter(), source.getQualifer(), source.isLabel(), source.getReferenceItems(), logger);
+                                                } else {
+                                                    osr = new OysterDelimitedReader(source.getSourcePath(), source.getDelimiter(), source.getQualifer(), source.isLabel(), source.getReferenceItems(), logger);
+                                                }
+                                                OysterSourceReader reader = parallelReader(osr);
+                                                reader.open();
 //                                    osr.setCountPoint(1000);
-                                                source.setSourceReader(osr);
+                                                source.setSourceReader(reader);
                                             } else if (source.getSourceType().equalsIgnoreCase("FileFixed")) {
                                                 OysterFixedWidthReader osr = new OysterFixedWidthReader(source.getSourcePath(), source.getReferenceItems(), logger);
-                                                osr.open();
-                                                source.setSourceReader(osr);
+                                                OysterSourceReader reader = parallelReader(osr);
+                                                reader.open();
+                                                source.setSourceReader(reader);
                                             } else if (source.getSourceType().equalsIgnoreCase("Database")) {
                                                 OysterDatabaseReader osr = new OysterDatabaseReader(source.getSourcePath(), source.getConnectionType(), source.getServer(), source.getPort(), source.getSid(), source.getUserID(), source.getPasswd(), source.getReferenceItems(), logger);
                                                 osr.setOverRideSQL(source.getOverRideSQL());
-                                            
-                                                if (osr.isConnected()) {
-                                                    osr.open();
-                                                }
-                                                source.setSourceReader(osr);
+                                                source.setSourceReader(openDatabaseReader(osr, source));
                                             }
 //======================================
 // CAN I MOVE THIS OUTSIDE THE LOOP
@@ -2463,26 +2573,48 @@ public class OysterMain {
 
                                             String start, stop;
                                             start = now();
-                                            while (source.getSourceReader().getNextReference() > 0 && !die) {
-                                                if (debugRecords.contains(source.getSourceReader().getClusterRecord().getMergedRecord().get("@RefID"))){
+                                            
+                                            // resolve the source in parallel if more than one thread is set
+                                            OysterResolutionPipeline pipeline = null;
+                                            if (runScript.getThreads() > 1) {
+                                                pipeline = new OysterResolutionPipeline((OysterResolutionEngine) engine, source.getSourceReader(), sorted, runScript.getThreads(), runScript.getBatchSize(), logger);
+                                                pipeline.open();
+                                            }
+                                            
+                                            ClusterRecord current;
+                                            long recordCount;
+                                            while ((pipeline != null ? pipeline.next() : source.getSourceReader().getNextReference() > 0) && !die) {
+                                                if (pipeline != null) {
+                                                    current = pipeline.getClusterRecord();
+                                                    recordCount = pipeline.getRecordCount();
+                                                } else {
+                                                    current = source.getSourceReader().getClusterRecord();
+                                                    recordCount = source.getSourceReader().getRecordCount();
+                                                }
+                                                
+                                                if (debugRecords.contains(current.getMergedRecordView().get("@RefID"))){
                                                     logger.setLevel(Level.FINEST);
                                                 }
 //                                    isNotJunk()
                                                 {
 /*
                                                 if (repository.isDebug()) {
-                                                    System.out.println("## Record Count    : " + source.getSourceReader().getRecordCount());
+                                                    System.out.println("## Record Count    : " + recordCount);
                                                 }
 */
                                                     // Ask ResolutionEngine to resolve reference
-                                                    ((OysterResolutionEngine) engine).integrateSource(sorted, source.getSourceReader().getRecordCount());
+                                                    if (pipeline != null) {
+                                                        pipeline.integrate();
+                                                    } else {
+                                                        ((OysterResolutionEngine) engine).integrateSource(sorted, recordCount);
+                                                    }
 
                                                     // How long does it take to pull the clusters per 10,000
                                                     if (entityMap.getClass().getSimpleName().equalsIgnoreCase("DBEntityMap")) {
-                                                        if (source.getSourceReader().getRecordCount() % 10000 == 0) {
+                                                        if (recordCount % 10000 == 0) {
                                                             stop = now();
                                                             long elasped = elapsedSecs(start, stop);
-                                                            String s = "Total elapsed time " + source.getSourceReader().getRecordCount() +
+                                                            String s = "Total elapsed time " + recordCount +
                                                                     "\t" + elasped +
                                                                     "\t" + ((DBEntityMap) entityMap).getDatabaseCallInfo();
                                                             logger.severe(s);
@@ -2493,29 +2625,38 @@ public class OysterMain {
                                                     }
 
                                                     // Check for Garbage Collection
-                                                    if (gc > -1 && source.getSourceReader().getRecordCount() % gc == 0) {
+                                                    if (gc > -1 && recordCount % gc == 0) {
                                                         System.out.println("Collecting Garbage");
                                                     
                                                         if (entityMap.getClass().getSimpleName().equalsIgnoreCase("DBEntityMap")) {
                                                             repository.getEntityMap().clear();
+                                                            
+                                                            // evaluated clusters may no longer be in the map
+                                                            if (pipeline != null) {
+                                                                pipeline.invalidate();
+                                                            }
                                                         }
                                                     
                                                         runGC();
                                                     }
 
                                                     // turn on/off debug flag
-                                                    if (source.getSourceReader().getRecordCount() == topStart) {
+                                                    if (recordCount == topStart) {
                                                         repository.setDebug(true);
-                                                    } else if (source.getSourceReader().getRecordCount() == topStop) {
+                                                    } else if (recordCount == topStop) {
                                                         repository.setDebug(false);
                                                     }
                                                 }
                                             
                                                 // turn off
-                                                if (debugRecords.contains(source.getSourceReader().getClusterRecord().getMergedRecord().get("@RefID"))){
+                                                if (debugRecords.contains(current.getMergedRecordView().get("@RefID"))){
                                                     logger.setLevel(logLevel);
                                                 }
                                             }
+                                            
+                                            if (pipeline != null) {
+                                                pipeline.close();
+                                            }
 
                                             if (((OysterResolutionEngine) engine).hasPostConsolidation()) {
                                                 // get the system stats Pre RSwoosh
@@ -2594,10 +2735,16 @@ public class OysterMain {
                                         logger.severe(sb.toString());
                                         System.out.println(sb.toString());
 
-                                        OysterDelimitedReader osr = new OysterDelimitedReader(source.getSourcePath(), source.getDelimiter(), source.getQualifer(), source.isLabel(), source.getReferenceItems(), logger);
-                                        osr.open();
+                                        OysterDelimitedReader osr;
+                                        if (source.isMapped()) {
+                                            osr = new OysterMappedDelimitedReader(source.getSourcePath(), source.getDelimiter(), source.getQualifer(), source.isLabel(), source.getReferenceItems(), logger);
+                                        } else {
+                                            osr = new OysterDelimitedReader(source.getSourcePath(), source.getDelimiter(), source.getQualifer(), source.isLabel(), source.getReferenceItems(), logger);
+                                        }
+                                        OysterSourceReader reader = parallelReader(osr);
+                                        reader.open();
 //                                        osr.setCountPoint(1000);
-                                        source.setSourceReader(osr);
+                                        source.setSourceReader(reader);
 //======================================
 // CAN I MOVE THIS OUTSIDE THE LOOP
 //======================================
@@ -98,6 +98,21 @@ public class OysterReferenceSource {
     /** The custom SQL string to run */
     private static String overRideSQL = null;
     
+    /** The read mode of a delimited file, Mapped to read it through a memory map */
+    private String readMode = "";
+    
+    /** The number of rows fetched from the database at a time */
+    private int fetchSize = 1000;
+    
+    /** The number of partitions a database source is read in concurrently */
+    private int partitions = 1;
+    
+    /** The numeric column the database source is partitioned on */
+    private String partitionKey = null;
+    
+    /** How the rows are assigned to partitions, Modulus or Range */
+    private String partitionMode = "Modulus";
+    
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.F200947E-D735-25CB-B1D0-682AE3488F03]
     // </editor-fold> 
@@ -362,6 +377,105 @@ public class OysterReferenceSource {
         overRideSQL = aOverRideSQL;
     }
     
+    /**
+     * Returns the read mode for this <code>OysterReferenceSource</code>.
+     * @return the read mode.
+     */
+    public String getReadMode() {
+        return readMode;
+    }
+
+    /**
+     * Sets the read mode for this <code>OysterReferenceSource</code>.
+     * @param aReadMode the read mode to be set.
+     */
+    public void setReadMode(String aReadMode) {
+        readMode = aReadMode;
+    }
+    
+    /**
+     * Returns whether a delimited file is read through a memory map.
+     * @return true if the read mode is Mapped, otherwise false.
+     */
+    public boolean isMapped() {
+        return "Mapped".equalsIgnoreCase(readMode);
+    }
+    
+    /**
+     * Returns the number of rows fetched from the database at a time for this
+     * <code>OysterReferenceSource</code>.
+     * @return the fetch size.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the number of rows fetched from the database at a time for this
+     * <code>OysterReferenceSource</code>.
+     * @param aFetchSize the fetch size to be set.
+     */
+    public void setFetchSize(int aFetchSize) {
+        fetchSize = aFetchSize;
+    }
+    
+    /**
+     * Returns the number of partitions the database source is read in.
+     * @return the number of partitions.
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Sets the number of partitions the database source is read in.
+     * @param aPartitions the number of partitions to be set.
+     */
+    public void setPartitions(int aPartitions) {
+        partitions = aPartitions;
+    }
+    
+    /**
+     * Returns the numeric column the database source is partitioned on.
+     * @return the partition key.
+     */
+    public String getPartitionKey() {
+        return partitionKey;
+    }
+
+    /**
+     * Sets the numeric column the database source is partitioned on.
+     * @param aPartitionKey the partition key to be set.
+     */
+    public void setPartitionKey(String aPartitionKey) {
+        partitionKey = aPartitionKey;
+    }
+    
+    /**
+     * Returns how the rows are assigned to partitions, Modulus or Range.
+     * @return the partition mode.
+     */
+    public String getPartitionMode() {
+        return partitionMode;
+    }
+
+    /**
+     * Sets how the rows are assigned to partitions, Modulus or Range.
+     * @param aPartitionMode the partition mode to be set.
+     */
+    public void setPartitionMode(String aPartitionMode) {
+        partitionMode = aPartitionMode;
+    }
+    
+    /**
+     * Returns whether the database source is read in several partitions.
+     * @return true if there is more than one partition and a partition key,
+     * otherwise false.
+     */
+    public boolean isPartitioned() {
+        return partitions > 1 && partitionKey != null && !partitionKey.equals("");
+    }
+    
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.1F57C935-B12B-DBCC-BE95-4525701FC4D0]
     // </editor-fold> 
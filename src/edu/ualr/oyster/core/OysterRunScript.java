@@ -101,6 +101,12 @@ public class OysterRunScript {
     /** Trace Flag */
     private static boolean identityOutputTrace = false;
     
+    /** Load the value index from the snapshot of the Identity Input */
+    private static boolean identityInputIndexSnapshot = false;
+    
+    /** Save a snapshot of the value index with the Identity Output */
+    private static boolean identityOutputIndexSnapshot = false;
+    
     /** Link Output file loaction/path/table name */
     private static String linkOutputLocation = null;
     
@@ -175,6 +181,22 @@ public class OysterRunScript {
     /** EntityMap database connection type */
     private static String entityMapCType = null;
     
+    /** The number of cluster changes the DBEntityMap queues before writing them */
+    private static int entityMapBatchSize = 1000;
+    
+    /** The number of clusters the DBEntityMap keeps in memory, 0 for all */
+    private static int entityMapCacheSize = 0;
+    
+    /** The directory the LogEntityMap keeps its segment files in */
+    private static String entityMapPath = null;
+    
+    /** The largest size in megabytes of a LogEntityMap segment file, which
+        must be mapped in one buffer */
+    public static final int MAX_ENTITY_MAP_SEGMENT_SIZE = 2047;
+    
+    /** The size in megabytes a LogEntityMap segment file is sealed at */
+    private static int entityMapSegmentSize = 64;
+    
     /** Oyster Index PreLoad Indicator */
     private static boolean preLoad = false;
     
@@ -190,6 +212,39 @@ public class OysterRunScript {
     private static int gc = -1;
     
     private static int slidingWindow = 0;
+    
+    /** The number of threads used to resolve a source */
+    private static int threads = 1;
+    
+    /** The number of references resolved together when running in parallel */
+    private static int batchSize = 256;
+    
+    /** The number of threads used to read a file source */
+    private static int readThreads = 1;
+    
+    /** The number of threads used to build the index when the identity input is loaded */
+    private static int loadThreads = 1;
+    
+    /** The candidate count above which the candidate list is cut */
+    private static int candidateThreshold = 100;
+    
+    /** The most candidates kept when the candidate list is cut */
+    private static int candidateCap = 100;
+    
+    /** The part of the candidates kept when the candidate list is cut */
+    private static double candidateRatio = 1D / 3D;
+    
+    /** Whether the candidate list cut keeps exactly the cap instead of every tie at the cut */
+    private static boolean candidateExact = false;
+    
+    /** The postings size at which an index key becomes a stop key, 0 for none */
+    private static int stopKeyCeiling = 0;
+    
+    /** The number of rule evaluations between reordering the rule items, 0 for none */
+    private static int termOrderInterval = 1024;
+    
+    /** The OysterIdentityRecord type, Map, CoDoSA or IndexedCoDoSA */
+    private static String recordType = "Map";
 
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.410246AE-0491-60F3-9C4A-935B2D801814]
@@ -548,6 +603,42 @@ public class OysterRunScript {
     public void setIdentityOutputTrace(boolean aIdentityOutputTrace) {
         identityOutputTrace = aIdentityOutputTrace;
     }
+
+    /**
+     * Returns whether the value index is loaded from the index snapshot of the
+     * Identity Input, when it matches, instead of being built.
+     * @return true if the index snapshot is used.
+     */
+    public boolean isIdentityInputIndexSnapshot() {
+        return identityInputIndexSnapshot;
+    }
+
+    /**
+     * Sets whether the value index is loaded from the index snapshot of the
+     * Identity Input.
+     * @param aIdentityInputIndexSnapshot the Identity Input Index Snapshot to be set.
+     */
+    public void setIdentityInputIndexSnapshot(boolean aIdentityInputIndexSnapshot) {
+        identityInputIndexSnapshot = aIdentityInputIndexSnapshot;
+    }
+
+    /**
+     * Returns whether a snapshot of the value index is saved with the Identity
+     * Output.
+     * @return true if the index snapshot is saved.
+     */
+    public boolean isIdentityOutputIndexSnapshot() {
+        return identityOutputIndexSnapshot;
+    }
+
+    /**
+     * Sets whether a snapshot of the value index is saved with the Identity
+     * Output.
+     * @param aIdentityOutputIndexSnapshot the Identity Output Index Snapshot to be set.
+     */
+    public void setIdentityOutputIndexSnapshot(boolean aIdentityOutputIndexSnapshot) {
+        identityOutputIndexSnapshot = aIdentityOutputIndexSnapshot;
+    }
     
     /**
      * Returns the Link Output Location for this <code>OysterRunScript</code>.
@@ -883,6 +974,43 @@ public class OysterRunScript {
         entityMapCType = aEntityMapCType;
     }
 
+    public int getEntityMapBatchSize() {
+        return entityMapBatchSize;
+    }
+
+    public void setEntityMapBatchSize(int aEntityMapBatchSize) {
+        entityMapBatchSize = aEntityMapBatchSize;
+    }
+
+    public int getEntityMapCacheSize() {
+        return entityMapCacheSize;
+    }
+
+    public void setEntityMapCacheSize(int aEntityMapCacheSize) {
+        entityMapCacheSize = aEntityMapCacheSize;
+    }
+
+    public String getEntityMapPath() {
+        return entityMapPath;
+    }
+
+    public void setEntityMapPath(String aEntityMapPath) {
+        entityMapPath = aEntityMapPath;
+    }
+
+    public int getEntityMapSegmentSize() {
+        return entityMapSegmentSize;
+    }
+
+    /**
+     * Sets the size in megabytes a LogEntityMap segment file is sealed at,
+     * kept between 1 and <code>MAX_ENTITY_MAP_SEGMENT_SIZE</code>.
+     * @param aEntityMapSegmentSize the segment size in megabytes.
+     */
+    public void setEntityMapSegmentSize(int aEntityMapSegmentSize) {
+        entityMapSegmentSize = Math.min(Math.max(aEntityMapSegmentSize, 1), MAX_ENTITY_MAP_SEGMENT_SIZE);
+    }
+
     public boolean isPreLoad() {
         return preLoad;
     }
@@ -930,6 +1058,94 @@ public class OysterRunScript {
     public void setSlidingWindow(int aSlidingWindow) {
         slidingWindow = aSlidingWindow;
     }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int aThreads) {
+        threads = aThreads;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int aBatchSize) {
+        batchSize = aBatchSize;
+    }
+
+    public int getReadThreads() {
+        return readThreads;
+    }
+
+    public void setReadThreads(int aReadThreads) {
+        readThreads = aReadThreads;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public void setLoadThreads(int aLoadThreads) {
+        loadThreads = aLoadThreads;
+    }
+
+    public int getCandidateThreshold() {
+        return candidateThreshold;
+    }
+
+    public void setCandidateThreshold(int aCandidateThreshold) {
+        candidateThreshold = aCandidateThreshold;
+    }
+
+    public int getCandidateCap() {
+        return candidateCap;
+    }
+
+    public void setCandidateCap(int aCandidateCap) {
+        candidateCap = aCandidateCap;
+    }
+
+    public double getCandidateRatio() {
+        return candidateRatio;
+    }
+
+    public void setCandidateRatio(double aCandidateRatio) {
+        candidateRatio = aCandidateRatio;
+    }
+
+    public boolean isCandidateExact() {
+        return candidateExact;
+    }
+
+    public void setCandidateExact(boolean aCandidateExact) {
+        candidateExact = aCandidateExact;
+    }
+
+    public int getStopKeyCeiling() {
+        return stopKeyCeiling;
+    }
+
+    public void setStopKeyCeiling(int aStopKeyCeiling) {
+        stopKeyCeiling = aStopKeyCeiling;
+    }
+
+    public int getTermOrderInterval() {
+        return termOrderInterval;
+    }
+
+    public void setTermOrderInterval(int aTermOrderInterval) {
+        termOrderInterval = aTermOrderInterval;
+    }
+
+    public String getRecordType() {
+        return recordType;
+    }
+
+    public void setRecordType(String aRecordType) {
+        recordType = aRecordType;
+    }
     
     /*
     @Override
@@ -27,6 +27,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -148,10 +149,10 @@ public abstract class ClusterRecord implements Serializable{
 
     /**
      * Returns the Creation Date for this <code>ClusterRecord</code>
-     * @return the clusters creation date
+     * @return the clusters creation date, null if it is not set
      */
     public Date getCreationDate() {
-        return (Date) creationDate.clone();
+        return creationDate != null ? (Date) creationDate.clone() : null;
     }
 
     /**
@@ -494,6 +495,14 @@ public abstract class ClusterRecord implements Serializable{
      */
     public abstract OysterIdentityRecord getMergedRecord();
 
+    /**
+     * Returns the merged record kept by this <code>ClusterRecord</code> without
+     * copying it. The record must not be changed, use <code>getMergedRecord
+     * </code> for a copy that can be.
+     * @return the merged record of the <code>ClusterRecord</code>.
+     */
+    public abstract OysterIdentityRecord getMergedRecordView();
+
     /**
      * This method returns the <code>OysterIdentityRecord</code> at the index position. If the
      * index is larger than the record set null is returned.
@@ -502,6 +511,20 @@ public abstract class ClusterRecord implements Serializable{
      */
     public abstract OysterIdentityRecord getOysterIdentityRecord(int index);
 
+    /**
+     * This method returns the <code>OysterIdentityRecord</code> with the RefID.
+     * @param refID the RefID to be looked for
+     * @return the <code>OysterIdentityRecord</code> if found, otherwise null.
+     */
+    public abstract OysterIdentityRecord getOysterIdentityRecord(String refID);
+
+    /**
+     * Returns the records of this <code>ClusterRecord</code> in the order they
+     * were inserted. The list is a read only view, not a copy.
+     * @return the records
+     */
+    public abstract List<OysterIdentityRecord> getRecordList();
+
     /**
      * Returns the data for this entire column for this <code>ClusterRecord</code>
      * @param field the attribute name to be looked for
@@ -22,8 +22,9 @@ package edu.ualr.oyster.data;
 import edu.ualr.oyster.kb.TraceRecord;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -37,6 +38,15 @@ import java.util.logging.Logger;
  * <code>ClusterRecordSet</code> class that is used to hold records that clustered
  * based on the Entity Resolution method that is currently being run. The possible
  * ER approaches are Merge and Clustering.
+ * 
+ * The records are held in a list in the order they were inserted, with a hash
+ * index on the RefID. A <code>ClusterRecordSet</code> holds at most one record
+ * per RefID, so positional access and RefID lookup are constant time and the
+ * records can be iterated without copying.
+ * 
+ * The merged record is kept up to date as records are inserted, a record that
+ * is added to the end is appended to it. Only a replace or a remove merges the
+ * records again, and that is done when the merged record is next asked for.
  *
  * Created on Nov 27, 2010 1:37:04 AM
  * @author Eric D. Nelson
@@ -45,14 +55,28 @@ public class ClusterRecordSet extends ClusterRecord implements Comparable<Cluste
     private static final long serialVersionUID = -5763163285639617779L;
 
     /** The actual records for this <code>ClusterRecord</code> */
-    private LinkedHashSet<OysterIdentityRecord> records = null;
+    private ArrayList<OysterIdentityRecord> records = null;
+    
+    /** The records by RefID */
+    private HashMap<String, OysterIdentityRecord> byRefID = null;
+    
+    /** The records merged in order, null when they have to be merged again.
+        It is made lazily by the evaluation threads, so it is volatile */
+    private transient volatile OysterIdentityRecord base = null;
+    
+    /** The merged record handed out, null when it has to be made again */
+    private transient volatile OysterIdentityRecord merged = null;
+    
+    /** The OysterID the merged record was made with */
+    private transient volatile String mergedOysterID = null;
 
     /**
      * Creates a new instance of ClusterRecordSet
      */
     public ClusterRecordSet(int recordType){
         super(recordType);
-        records = new LinkedHashSet<OysterIdentityRecord>();
+        records = new ArrayList<OysterIdentityRecord>();
+        byRefID = new HashMap<String, OysterIdentityRecord>();
     }
 
     /**
@@ -75,15 +99,12 @@ public class ClusterRecordSet extends ClusterRecord implements Comparable<Cluste
      */
     @Override
     public void removeField(String field) {
-        LinkedHashSet<OysterIdentityRecord> s = new LinkedHashSet<OysterIdentityRecord>();
         for (Iterator<OysterIdentityRecord> it = records.iterator(); it.hasNext();){
             OysterIdentityRecord oir = it.next();
-            it.remove();
-
             oir.remove(field);
-            s.add(oir);
         }
-        records.addAll(s);
+        base = null;
+        merged = null;
     }
 
     /**
@@ -143,34 +164,40 @@ public class ClusterRecordSet extends ClusterRecord implements Comparable<Cluste
     public void insertRecord(OysterIdentityRecord r) {
         try {
             OysterIdentityRecord oir = r.clone();
+            String refID = oir.get("@RefID");
+            OysterIdentityRecord oir2 = byRefID.get(refID);
 
-            if (!records.contains(oir)) {
+            if (oir2 == null || !oir2.equals(oir)) {
                 // be sure there isn't a lesser partial oyster record
-                for (Iterator<OysterIdentityRecord> it = records.iterator(); it.hasNext();) {
-                    OysterIdentityRecord oir2 = it.next();
-
+                if (oir2 != null) {
                     TraceRecord tr = null;
-                    if (oir2.get("@RefID").equals(oir.get("@RefID"))) {
-                        // if the trace isn't set set it
-                        if (oir2.currTrace == null) {
-                            tr = oir.getCurrTrace();
-                        }
-                        it.remove();
-                        size--;
+                    
+                    // if the trace isn't set set it
+                    if (oir2.currTrace == null) {
+                        tr = oir.getCurrTrace();
+                    }
+                    removeRecord(oir2);
 
-                        if (oir.compareTo(oir2) > 0) {
-                            oir = oir2;
-                        }
+                    if (oir.compareTo(oir2) > 0) {
+                        oir = oir2;
+                    }
 
-                        if (tr != null && oir.getCurrTrace() == null) {
-                            oir.setCurrTrace(tr);
-                        }
+                    if (tr != null && oir.getCurrTrace() == null) {
+                        oir.setCurrTrace(tr);
                     }
+                    base = null;
                 }
 
                 // insert the record
                 records.add(oir);
-                size++;
+                byRefID.put(refID, oir);
+                size = records.size();
+                
+                // a record at the end only has to be appended
+                if (base != null) {
+                    appendRecord(base, oir);
+                }
+                merged = null;
             }
         } catch (CloneNotSupportedException ex) {
             Logger.getLogger(ClusterRecordSet.class.getName()).log(Level.SEVERE, null, ex);
@@ -186,15 +213,34 @@ public class ClusterRecordSet extends ClusterRecord implements Comparable<Cluste
     @Override
     public OysterIdentityRecord getOysterIdentityRecord(int index){
         OysterIdentityRecord r = null;
-        OysterIdentityRecord [] arr = new OysterIdentityRecord[size];
 
         if (index < size && index >= 0){
             // get record
-            r = records.toArray(arr)[index];
+            r = records.get(index);
         }
         return r;
     }
 
+    /**
+     * This method returns the <code>OysterIdentityRecord</code> with the RefID.
+     * @param refID the RefID to be looked for
+     * @return the <code>OysterIdentityRecord</code> if found, otherwise null.
+     */
+    @Override
+    public OysterIdentityRecord getOysterIdentityRecord(String refID){
+        return byRefID.get(refID);
+    }
+
+    /**
+     * Returns the records of this <code>ClusterRecord</code> in the order they
+     * were inserted. The list is a read only view, not a copy.
+     * @return the records
+     */
+    @Override
+    public List<OysterIdentityRecord> getRecordList() {
+        return Collections.unmodifiableList(records);
+    }
+
     /**
      * This method removes the OysterIdentityRecord at this index from this <code>ClusterRecord</code>
      * @param index of the OysterIdentityRecord to remove
@@ -202,29 +248,34 @@ public class ClusterRecordSet extends ClusterRecord implements Comparable<Cluste
     @Override
     public OysterIdentityRecord remove(int index){
         OysterIdentityRecord r = null;
-        OysterIdentityRecord [] arr = new OysterIdentityRecord[size];
-        LinkedHashSet<OysterIdentityRecord> temp = new LinkedHashSet<OysterIdentityRecord>();
 
         if (index < size && index >= 0){
             // get record
-            r = records.toArray(arr)[index];
-            // remove method is not working must be in how I've implemented the OIR
-            // flag = records.remove(r);
-            
-            for (Iterator<OysterIdentityRecord>it = records.iterator(); it.hasNext();){
-                OysterIdentityRecord oir = it.next();
-                
-                if (!oir.get("@RefID").equals(r.get("@RefID"))){
-                    temp.add(oir);
-                }
-            }
-            records.clear();
-            records.addAll(temp);
+            r = records.remove(index);
+            byRefID.remove(r.get("@RefID"));
             size = records.size();
+            base = null;
+            merged = null;
         }
         return r;
     }
     
+    /**
+     * Removes the record from the list and the RefID index. The record is
+     * looked for by identity since the records are mutable.
+     * @param oir the <code>OysterIdentityRecord</code> to be removed.
+     */
+    private void removeRecord(OysterIdentityRecord oir) {
+        for (int i = records.size() - 1; i >= 0; i--) {
+            if (records.get(i) == oir) {
+                records.remove(i);
+                break;
+            }
+        }
+        byRefID.remove(oir.get("@RefID"));
+        size = records.size();
+    }
+    
     /**
      * This method "collapses" the <code>ClusterRecord</code> to a single record.
      * This is done by merging data within a attribute name's domain.
@@ -232,37 +283,88 @@ public class ClusterRecordSet extends ClusterRecord implements Comparable<Cluste
      */
     @Override
     public OysterIdentityRecord getMergedRecord(){
+        OysterIdentityRecord r = null;
+        try {
+            r = getMergedRecordView().clone();
+        } catch (CloneNotSupportedException ex) {
+            Logger.getLogger(ClusterRecordSet.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return r;
+    }
+
+    /**
+     * Returns the merged record kept by this <code>ClusterRecord</code> without
+     * copying it. The record must not be changed, it is replaced rather than 
+     * changed when records are inserted or removed.
+     * @return the merged record of the <code>ClusterRecord</code>.
+     */
+    @Override
+    public OysterIdentityRecord getMergedRecordView(){
+        OysterIdentityRecord r = merged;
+        String id = this.oysterID;
+
+        if (r == null || (id == null ? mergedOysterID != null : !id.equals(mergedOysterID))) {
+            try {
+                OysterIdentityRecord b = base;
+                if (b == null) {
+                    b = newRecord();
+                    for (Iterator<OysterIdentityRecord> it = records.iterator(); it.hasNext();){
+                        appendRecord(b, it.next());
+                    }
+                    base = b;
+                }
+
+                r = b.clone();
+                if (id != null && !id.equals("")) {
+                    r.append("@OysterID", id);
+                }
+                mergedOysterID = id;
+                merged = r;
+            } catch (CloneNotSupportedException ex) {
+                Logger.getLogger(ClusterRecordSet.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Returns an empty record of the record type.
+     * @return the record.
+     */
+    private OysterIdentityRecord newRecord(){
         OysterIdentityRecord r;
 
         switch (recordType){
             case RecordTypes.CODOSA:
                 r = new CoDoSAOIR();
                 break;
+            case RecordTypes.INDEXED_CODOSA:
+                r = new IndexedCoDoSAOIR();
+                break;
             case RecordTypes.MAP:
                 r = new OysterIdentityRecordMap();
                 break;
             default: r = new OysterIdentityRecordMap();
         }
-        // then get record data
-        for (Iterator<OysterIdentityRecord> it = records.iterator(); it.hasNext();){
-            OysterIdentityRecord r1 = it.next();
+        return r;
+    }
 
-            for (Iterator<String> it2 = metadata.keySet().iterator(); it2.hasNext();){
-                String tag = it2.next();
-                String attributeName = metadata.get(tag);
+    /**
+     * Appends the data of the record to the merged record.
+     * @param r the merged record.
+     * @param r1 the record to be appended.
+     */
+    private void appendRecord(OysterIdentityRecord r, OysterIdentityRecord r1){
+        for (Iterator<String> it2 = metadata.keySet().iterator(); it2.hasNext();){
+            String tag = it2.next();
+            String attributeName = metadata.get(tag);
 
-                if (!attributeName.equals("@OysterID")){
-                    String data = r1.get(attributeName);
+            if (!attributeName.equals("@OysterID")){
+                String data = r1.get(attributeName);
 
-                    r.append(attributeName, data);
-                }
+                r.append(attributeName, data);
             }
         }
-
-        if (this.oysterID != null && !this.oysterID.equals("")) {
-            r.append("@OysterID", this.oysterID);
-        }
-        return r;
     }
 
     /**
@@ -340,8 +442,7 @@ public class ClusterRecordSet extends ClusterRecord implements Comparable<Cluste
 
         buf.append("\t\t<References>").append(System.getProperty("line.separator"));
 
-        OysterIdentityRecord [] a = new OysterIdentityRecord[records.size()];
-        List<OysterIdentityRecord> refs = Arrays.asList(records.toArray(a));
+        List<OysterIdentityRecord> refs = new ArrayList<OysterIdentityRecord>(records);
         Collections.sort(refs);
         for (Iterator<OysterIdentityRecord> it = refs.iterator(); it.hasNext();){
             OysterIdentityRecord oir = it.next();
@@ -431,7 +532,7 @@ public class ClusterRecordSet extends ClusterRecord implements Comparable<Cluste
         hash = 31 * hash + (this.strToStr != null ? this.strToStr.hashCode() : 0);
         hash = 31 * hash + (this.negStrToStr != null ? this.negStrToStr.hashCode() : 0);
         hash = 31 * hash + (this.merges != null ? this.merges.hashCode() : 0);
-        hash = 31 * hash + (this.records != null ? this.records.hashCode() : 0);
+        hash = 31 * hash + (this.byRefID != null ? this.byRefID.hashCode() : 0);
         return hash;
     }
 
@@ -468,7 +569,7 @@ public class ClusterRecordSet extends ClusterRecord implements Comparable<Cluste
         if (this.merges != other.merges && (this.merges == null || !this.merges.equals(other.merges))) {
             return false;
         }
-        if (this.records != other.records && (this.records == null || !this.records.equals(other.records))) {
+        if (this.byRefID != other.byRefID && (this.byRefID == null || !this.byRefID.equals(other.byRefID))) {
             return false;
         }
         return true;
@@ -506,6 +607,9 @@ public class ClusterRecordSet extends ClusterRecord implements Comparable<Cluste
         size = 0;
         oysterID = null;
         records.clear();
+        byRefID.clear();
+        base = null;
+        merged = null;
     }
     
     /** 
@@ -0,0 +1,500 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.data;
+
+import edu.ualr.oyster.core.ReferenceItem;
+import edu.ualr.oyster.kb.TraceRecord;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+
+/**
+ * The <code>IndexedCoDoSAOIR</code> class holds a single record with the same
+ * Compressed Document Set Architecture (CoDoSA) string as <code>CoDoSAOIR
+ * </code> on input and output, e.g. <code>[[A^value][B^value]]</code>. In
+ * memory the values are held in an array indexed by the ordinal of their tag,
+ * so reading or writing an attribute does not scan or rebuild the string.
+ *
+ * The ordinals are handed out once per tag for all records, in the order the
+ * tags are first seen. The CoDoSA string is only built when it is asked for,
+ * and it is what is written when the record is serialized.
+ * @author Eric D. Nelson
+ */
+public class IndexedCoDoSAOIR extends OysterIdentityRecord implements Comparable<OysterIdentityRecord>{
+    private static final long serialVersionUID = -3079470785331985327L;
+
+    /** The tag ordinals shared by all records */
+    private static volatile TagTable tags = new TagTable();
+
+    /** The values by tag ordinal, null when not set */
+    private transient String [] values = new String[0];
+
+    /**
+     * Creates a new instance of IndexedCoDoSAOIR
+     */
+    public IndexedCoDoSAOIR() {
+        super();
+    }
+
+    /**
+     * Returns the data as a Compressed Document Set Architecture (CoDoSA)
+     * string ordered by tag.
+     * @return the data as a CoDoSA string.
+     */
+    @Override
+    public String getData() {
+        return order();
+    }
+
+    /**
+     * Sets the data from a CoDoSA string.
+     * @param data the CoDoSA String to be set.
+     */
+    @Override
+    public void setData(Object data) {
+        String s = (String) data;
+        Arrays.fill(values, null);
+
+        // [[tag^value][tag^value]]
+        int begin = s.indexOf('[', 1);
+        while (begin != -1) {
+            int end = s.indexOf(']', begin);
+            if (end == -1) {
+                break;
+            }
+
+            int sep = s.indexOf('^', begin);
+            if (sep != -1 && sep < end) {
+                set(ordinal(s.substring(begin + 1, sep)), s.substring(sep + 1, end));
+            } else if (end > begin + 1) {
+                set(ordinal(s.substring(begin + 1, end)), "");
+            }
+            begin = s.indexOf('[', end);
+        }
+    }
+
+    /**
+     * This method adds a keyword value pair to the <code>IndexedCoDoSAOIR</code>.
+     * @param key the attribute name that is to be used as the key.
+     * @param value the data value to be associated with the key.
+     */
+    @Override
+    public void add(String key, String value) {
+        String tag = md1.get(key);
+
+        if (tag != null) {
+            set(ordinal(tag), value);
+        }
+    }
+
+    /**
+     * Returns the data for the Oyster Attribute Item value.
+     * @param key the Oyster Attribute Item value.
+     * @return the data value that matches the input key, otherwise null.
+     */
+    @Override
+    public String get(String key) {
+        String value = null;
+        String tag = md1.get(key);
+
+        if (tag != null) {
+            value = getValueByTag(tag);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the data for the CoDoSA tag value.
+     * @param tag the CoDoSA tag value.
+     * @return a String of data if available, otherwise null.
+     */
+    @Override
+    public String getValueByTag(String tag){
+        String value = null;
+        Integer ordinal = tags.ordinals.get(tag);
+
+        if (ordinal != null && ordinal < values.length) {
+            value = values[ordinal];
+        }
+        return value;
+    }
+
+    /**
+     * Returns the values of the <code>IndexedCoDoSAOIR</code> as a string.
+     * @return the string values of the <code>IndexedCoDoSAOIR</code>
+     */
+    @Override
+    public String getValues() {
+        TagTable t = tags;
+        ArrayList<String> l = new ArrayList<String>();
+
+        for (int i = 0; i < t.sorted.length; i++) {
+            int ordinal = t.sorted[i];
+            if (ordinal < values.length && values[ordinal] != null && !values[ordinal].equals("")) {
+                l.add(values[ordinal]);
+            }
+        }
+        return l.toString();
+    }
+
+    /**
+     * Appends the data value to an existing data value otherwise inserts the
+     * value only if the value is not null/empty.
+     * @param key the attribute name.
+     * @param value value a String of data.
+     */
+    @Override
+    public void append(String key, String value) {
+        if (value != null && !value.equals("")) {
+            String tag = md1.get(key);
+
+            if (tag != null) {
+                int ordinal = ordinal(tag);
+                String token = ordinal < values.length ? values[ordinal] : null;
+
+                if (token == null) {
+                    set(ordinal, value);
+                } else if (!token.equalsIgnoreCase(value)) {
+                    // does the value already exist?
+                    set(ordinal, token + "|" + value);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method converts an ArrayList of <code>ReferenceItems</code> into a
+     * OysterIdentityRecord.
+     * @param referenceItems to be converted.
+     */
+    @Override
+    public void convertToOIR(ArrayList<ReferenceItem> referenceItems){
+        Arrays.fill(values, null);
+
+        for (Iterator<ReferenceItem> it = referenceItems.iterator(); it.hasNext();){
+            ReferenceItem ri = it.next();
+
+            if (ri.getAttribute() != null){
+                String tag = md1.get(ri.getAttribute());
+
+                if (ri.getData() != null && !ri.getData().trim().equals("") && tag != null){
+                    int ordinal = ordinal(tag);
+                    String s = ordinal < values.length ? values[ordinal] : null;
+
+                    if (s != null) {
+                        // don't add data that you already have
+                        String[] sArr = s.split("[|]");
+                        boolean found = false;
+                        for (int i = 0; i < sArr.length; i++) {
+                            if (sArr[i].equalsIgnoreCase(ri.getData())) {
+                                found = true;
+                            }
+                        }
+
+                        if (!found){
+                            set(ordinal, s + "|" + ri.getData());
+                        }
+                    } else {
+                        set(ordinal, ri.getData());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove this field from the <code>IndexedCoDoSAOIR</code>
+     * @param field the attribute name to be removed
+     */
+    @Override
+    public void remove(String field){
+        String tag = md1.get(field);
+
+        if (tag != null) {
+            Integer ordinal = tags.ordinals.get(tag);
+            if (ordinal != null && ordinal < values.length) {
+                values[ordinal] = null;
+            }
+        }
+    }
+
+    /**
+     * Checks the equality for the <code>OysterIdentityRecord</code>. The values
+     * are compared ignoring case as <code>CoDoSAOIR</code> does.
+     * @param obj the <code>OysterIdentityRecord</code> to check against
+     * @return true if the <code>OysterIdentityRecord</code> are equal, otherwise false
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final IndexedCoDoSAOIR other = (IndexedCoDoSAOIR) obj;
+        int n = Math.max(this.values.length, other.values.length);
+        for (int i = 0; i < n; i++) {
+            String a = i < this.values.length ? this.values[i] : null;
+            String b = i < other.values.length ? other.values[i] : null;
+
+            if (a == null ? b != null : !a.equalsIgnoreCase(b)) {
+                return false;
+            }
+        }
+
+        if ((this.currTrace == null || !this.currTrace.equals(other.currTrace)) && this.currTrace != other.currTrace) {
+            return false;
+        }
+
+        if ((this.prevTraces == null || !this.prevTraces.equals(other.prevTraces)) && this.prevTraces != other.prevTraces) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the hash code for this <code>OysterIdentityRecord</code>
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                hash = 79 * hash + i;
+                hash = 79 * hash + values[i].toUpperCase(Locale.US).hashCode();
+            }
+        }
+        hash = 79 * hash + (this.currTrace != null ? this.currTrace.hashCode() : 0);
+        hash = 79 * hash + (this.prevTraces != null ? this.prevTraces.hashCode() : 0);
+        hash = 79 * hash + (this.input ? 1 : 0);
+        return hash;
+    }
+
+    /**
+     * Returns the comparison of the <code>IndexedCoDoSAOIR</code>. If the
+     * <code>IndexedCoDoSAOIR</code>s are found to be equal the return value
+     * is 0.
+     * @param o the <code>OysterIdentityRecord</code> to compare
+     * @return 0 if the <code>OysterIdentityRecord</code> are equal otherwise a
+     * negative or non-negative integer
+     */
+    @Override
+    public int compareTo(OysterIdentityRecord o) {
+        return this.toString().compareToIgnoreCase(((IndexedCoDoSAOIR)o).toString());
+    }
+
+    /**
+     * This method preforms a deep copy of the current IndexedCoDoSAOIR.
+     * @return a copy of this OysterIdentityRecord.
+     */
+    @Override
+    public OysterIdentityRecord clone() throws CloneNotSupportedException {
+        IndexedCoDoSAOIR oir = (IndexedCoDoSAOIR) super.clone();
+        oir.values = this.values.clone();
+        oir.setInput(this.input);
+
+        oir.currTrace = this.currTrace;
+
+        // do a deep copy on the previous traces
+        oir.prevTraces = new LinkedHashSet<TraceRecord>();
+        if (!this.prevTraces.isEmpty()){
+            for (Iterator<TraceRecord> it = this.prevTraces.iterator(); it.hasNext();) {
+                TraceRecord tr = it.next();
+                oir.getPrevTraces().add(tr);
+            }
+        }
+
+        return oir;
+    }
+
+    /**
+     * Returns the string representation of this <code>IndexedCoDoSAOIR</code>
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(order()).append(", ");
+        sb.append("Input record: ").append(this.input).append(", ");
+        sb.append("Current Traces: ").append(currTrace);
+        sb.append("Previous Traces: ").append(prevTraces);
+        return sb.toString();
+    }
+
+    /**
+     * Removes all data from this <code>IndexedCoDoSAOIR</code>.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+    }
+
+    /**
+     * Writes the record with its data as a CoDoSA string, the ordinals are
+     * only valid in this JVM.
+     * @param out the stream to be written to.
+     * @throws IOException if the record could not be written.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(order());
+    }
+
+    /**
+     * Reads the record with its data as a CoDoSA string.
+     * @param in the stream to be read from.
+     * @throws IOException if the record could not be read.
+     * @throws ClassNotFoundException if a class of the record is not found.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        values = new String[0];
+        setData(in.readObject());
+    }
+
+    /**
+     * Sets the value at the ordinal, the values grow as needed.
+     * @param ordinal the tag ordinal.
+     * @param value the value to be set.
+     */
+    private void set(int ordinal, String value) {
+        if (ordinal >= values.length) {
+            values = Arrays.copyOf(values, Math.max(ordinal + 1, tags.sorted.length));
+        }
+        values[ordinal] = value;
+    }
+
+    /**
+     * This method builds the CoDoSA string ordered alphabetically by tag.
+     * @return an ordered CoDoSA string
+     */
+    private String order() {
+        TagTable t = tags;
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("[");
+        for (int i = 0; i < t.sorted.length; i++) {
+            int ordinal = t.sorted[i];
+            if (ordinal < values.length && values[ordinal] != null) {
+                sb.append("[").append(t.names[ordinal]).append("^").append(values[ordinal]).append("]");
+            }
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * Returns the ordinal of the tag, a new ordinal is handed out if the tag
+     * has not been seen.
+     * @param tag the CoDoSA tag.
+     * @return the ordinal.
+     */
+    private static int ordinal(String tag) {
+        Integer ordinal = tags.ordinals.get(tag);
+
+        if (ordinal == null) {
+            synchronized (IndexedCoDoSAOIR.class) {
+                ordinal = tags.ordinals.get(tag);
+                if (ordinal == null) {
+                    TagTable t = tags.with(tag);
+                    ordinal = t.ordinals.get(tag);
+                    tags = t;
+                }
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * The tags with their ordinals. A table is never changed once it is
+     * published, a new tag gives a new table so it can be read without locking.
+     */
+    private static class TagTable {
+        /** The ordinal of each tag */
+        private final HashMap<String, Integer> ordinals;
+
+        /** The tags by ordinal */
+        private final String [] names;
+
+        /** The ordinals in the order of their tags */
+        private final int [] sorted;
+
+        /**
+         * Creates an empty <code>TagTable</code>.
+         */
+        private TagTable() {
+            ordinals = new HashMap<String, Integer>();
+            names = new String[0];
+            sorted = new int[0];
+        }
+
+        /**
+         * Creates a <code>TagTable</code>.
+         * @param ordinals the ordinal of each tag.
+         * @param names the tags by ordinal.
+         * @param sorted the ordinals in the order of their tags.
+         */
+        private TagTable(HashMap<String, Integer> ordinals, String [] names, int [] sorted) {
+            this.ordinals = ordinals;
+            this.names = names;
+            this.sorted = sorted;
+        }
+
+        /**
+         * Returns a copy of this table with the tag added.
+         * @param tag the tag to be added.
+         * @return the new table.
+         */
+        private TagTable with(String tag) {
+            HashMap<String, Integer> o = new HashMap<String, Integer>(ordinals);
+            String [] n = Arrays.copyOf(names, names.length + 1);
+            int ordinal = names.length;
+
+            o.put(tag, ordinal);
+            n[ordinal] = tag;
+
+            // insert the ordinal in tag order
+            int [] s = new int[sorted.length + 1];
+            int j = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (j == i && names[sorted[i]].compareTo(tag) > 0) {
+                    s[j++] = ordinal;
+                }
+                s[j++] = sorted[i];
+            }
+            if (j == sorted.length) {
+                s[j] = ordinal;
+            }
+            return new TagTable(o, n, s);
+        }
+    }
+}
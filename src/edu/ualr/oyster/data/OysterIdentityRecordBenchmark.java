@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.data;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * This class compares the time taken by the record types to fill a record
+ * and read its attributes back, and checks that <code>IndexedCoDoSAOIR</code>
+ * holds the same values and CoDoSA string as <code>CoDoSAOIR</code> and the
+ * same values as <code>OysterIdentityRecordMap</code>.
+ * <ul>
+ * <li>[records] [runs] fills and reads that many records with 12 attributes
+ * in each record type and reports the best time per record of each</li>
+ * </ul>
+ * Each record is cleared, each attribute is added and then every attribute
+ * is read four times, as a record is read and compared in a run.
+ * @author Eric D. Nelson
+ */
+public class OysterIdentityRecordBenchmark {
+    /** The attributes of the records */
+    private static final String [] ATTRIBUTES = {
+        "@RefID", "FirstName", "MiddleName", "LastName", "Suffix", "DOB",
+        "SSN", "Address", "City", "State", "Zip", "Phone"
+    };
+
+    /** The number of times each attribute is read */
+    private static final int GETS = 4;
+
+    /** The record types compared */
+    private static final int [] TYPES = {RecordTypes.MAP, RecordTypes.CODOSA, RecordTypes.INDEXED_CODOSA};
+
+    /** The names of the record types */
+    private static final String [] NAMES = {"Map", "CoDoSA", "IndexedCoDoSA"};
+
+    /** The values of each record */
+    private String [][] values;
+
+    /** A sum of the values read, so the reads are not optimized away */
+    private long checksum = 0;
+
+    /**
+     * Creates a new instance of <code>OysterIdentityRecordBenchmark</code>.
+     * The CoDoSA tags A to L are given to the attributes.
+     * @param records the number of records.
+     * @param seed the seed of the random values.
+     */
+    public OysterIdentityRecordBenchmark(int records, long seed) {
+        // the metadata is created with the first ClusterRecord
+        new ClusterRecordSet(RecordTypes.MAP);
+        TreeMap<String, String> metadata = ClusterRecord.getMetadata();
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            metadata.put(String.valueOf((char) ('A' + i)), ATTRIBUTES[i]);
+        }
+
+        Random random = new Random(seed);
+        values = new String[records][ATTRIBUTES.length];
+        for (int i = 0; i < records; i++) {
+            values[i][0] = "Source." + i;
+            for (int j = 1; j < ATTRIBUTES.length; j++) {
+                StringBuilder sb = new StringBuilder();
+                int length = 3 + random.nextInt(12);
+                for (int k = 0; k < length; k++) {
+                    sb.append((char) ('A' + random.nextInt(26)));
+                }
+                values[i][j] = sb.toString();
+            }
+        }
+    }
+
+    /**
+     * Fills and reads every record in each record type and reports the best
+     * time per record of each and whether the types hold the same data.
+     * @param runs the number of times each record type is run.
+     * @return true if the types hold the same data.
+     */
+    public boolean benchmark(int runs) {
+        long [] best = new long[TYPES.length];
+
+        for (int r = 0; r < runs; r++) {
+            for (int k = 0; k < TYPES.length; k++) {
+                OysterIdentityRecord oir = create(TYPES[k]);
+
+                long start = System.nanoTime();
+                for (int i = 0; i < values.length; i++) {
+                    fill(oir, values[i]);
+                    for (int g = 0; g < GETS; g++) {
+                        for (int j = 0; j < ATTRIBUTES.length; j++) {
+                            checksum += oir.get(ATTRIBUTES[j]).length();
+                        }
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                best[k] = r == 0 ? elapsed : Math.min(best[k], elapsed);
+            }
+        }
+
+        boolean same = check();
+
+        System.out.println();
+        System.out.format("Records                : %1$,12d%n", values.length);
+        System.out.format("Attributes             : %1$,12d%n", ATTRIBUTES.length);
+        for (int k = 0; k < TYPES.length; k++) {
+            System.out.format("%1$-23s: %2$,12.2f us/record%n", NAMES[k], best[k] / 1000.0 / values.length);
+        }
+        System.out.println("Identical Records      : " + same);
+        return same;
+    }
+
+    /**
+     * Checks that each record type reads back the values it was given and
+     * that both CoDoSA types build the same CoDoSA string.
+     * @return true if the types hold the same data.
+     */
+    private boolean check() {
+        OysterIdentityRecord map = create(RecordTypes.MAP);
+        OysterIdentityRecord codosa = create(RecordTypes.CODOSA);
+        OysterIdentityRecord indexed = create(RecordTypes.INDEXED_CODOSA);
+
+        for (int i = 0; i < values.length; i++) {
+            fill(map, values[i]);
+            fill(codosa, values[i]);
+            fill(indexed, values[i]);
+
+            for (int j = 0; j < ATTRIBUTES.length; j++) {
+                String value = values[i][j];
+                if (!value.equals(map.get(ATTRIBUTES[j])) || !value.equals(codosa.get(ATTRIBUTES[j])) || !value.equals(indexed.get(ATTRIBUTES[j]))) {
+                    return false;
+                }
+            }
+
+            if (!codosa.getData().equals(indexed.getData())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clears a record and adds the values of a record to it.
+     * @param oir the record.
+     * @param record the values of the record.
+     */
+    private static void fill(OysterIdentityRecord oir, String [] record) {
+        oir.clear();
+        for (int j = 0; j < ATTRIBUTES.length; j++) {
+            oir.add(ATTRIBUTES[j], record[j]);
+        }
+    }
+
+    /**
+     * Creates a record of a record type.
+     * @param recordType the <code>RecordTypes</code> of the record.
+     * @return the record.
+     */
+    private static OysterIdentityRecord create(int recordType) {
+        OysterIdentityRecord oir;
+
+        switch (recordType) {
+            case RecordTypes.CODOSA:
+                oir = new CoDoSAOIR();
+                break;
+            case RecordTypes.INDEXED_CODOSA:
+                oir = new IndexedCoDoSAOIR();
+                break;
+            default:
+                oir = new OysterIdentityRecordMap();
+        }
+        return oir;
+    }
+
+    /**
+     * Returns the sum of the values read.
+     * @return the checksum.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * The main entry point of the benchmark.
+     * @param args [records] [runs].
+     */
+    public static void main(String[] args) {
+        if (args.length > 2) {
+            System.out.println("Usage: OysterIdentityRecordBenchmark [records] [runs]");
+            return;
+        }
+
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        OysterIdentityRecordBenchmark benchmark = new OysterIdentityRecordBenchmark(records, 11);
+        if (!benchmark.benchmark(runs)) {
+            System.exit(1);
+        }
+    }
+}
@@ -86,11 +86,15 @@ public class OysterIdentityRecordMap extends OysterIdentityRecord implements Com
                 for (int i = 0; i < arr.length; i++){
                     String [] arr2 = arr[i].split("[=]");
                     
+                    // the key is either the attribute or its tag
                     String tag = md1.get(arr2[0].trim());
+                    if (tag == null && md2.containsKey(arr2[0].trim())) {
+                        tag = arr2[0].trim();
+                    }
                     
                     if (tag != null){
                         if (arr2.length > 1) {
-                            this.data.put(arr2[0].trim(), arr2[1].trim());
+                            this.data.put(tag, arr2[1].trim());
                         }
 /*                        else {
                             System.out.println("##Error: java.lang.ArrayIndexOutOfBoundsException: 1 ");
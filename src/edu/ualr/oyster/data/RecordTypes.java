@@ -40,6 +40,13 @@ public class RecordTypes {
     */
     public final static int MAP 		=  -120000;
     
+    /**
+    * <P>The constant in the Java programming language, sometimes referred
+    * to as a type code, that identifies the generic Record type 
+    * <code>INDEXED_CODOSA</code>.
+    */
+    public final static int INDEXED_CODOSA 	=  -130000;
+    
     /**
      * Creates a new instance of ERTypes
      */
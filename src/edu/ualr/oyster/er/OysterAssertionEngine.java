@@ -177,7 +177,7 @@ public class OysterAssertionEngine extends OysterEngine {
             StringBuilder sb = new StringBuilder(250);
             sb.append(System.getProperty("line.separator"))
               .append("Input: ");
-            sb.append(clusterRecord.getMergedRecord());
+            sb.append(clusterRecord.getMergedRecordView());
             logger.info(sb.toString());
         }
         
@@ -193,7 +193,7 @@ public class OysterAssertionEngine extends OysterEngine {
                   .append("\t\t")
                   .append(entry.getKey());
                 sb.append("=")
-                  .append(entry.getValue().getMergedRecord().toExplanationString());
+                  .append(entry.getValue().getMergedRecordView().toExplanationString());
             }
             logger.fine(sb.toString());
         }
@@ -210,7 +210,7 @@ public class OysterAssertionEngine extends OysterEngine {
                 sb.append(" to Identity ")
                   .append(identityCount);
                 sb.append(" ")
-                  .append(cr.getMergedRecord().toExplanationString());
+                  .append(cr.getMergedRecordView().toExplanationString());
                 logger.info(sb.toString());
             }
             
@@ -244,13 +244,13 @@ public class OysterAssertionEngine extends OysterEngine {
         }
         
         // update the Assertion IDs for any future candidates
-        String assertKey = clusterRecord.getMergedRecord().get(assertionType);
+        String assertKey = clusterRecord.getMergedRecordView().get(assertionType);
         LinkedHashSet<String> s = repository.getAssertMap().get(assertKey);
         if (s == null) {
             s = new LinkedHashSet<String>();
         }
             
-        String RefIDs = clusterRecord.getMergedRecord().get("@RefID");
+        String RefIDs = clusterRecord.getMergedRecordView().get("@RefID");
         String [] refID = RefIDs.split("[|]");
         s.addAll(Arrays.asList(refID));
         repository.getAssertMap().put(assertKey, s);
@@ -262,26 +262,26 @@ public class OysterAssertionEngine extends OysterEngine {
      * @param recordCount the current record count
      */
     public void assertRefToStr(long recordCount) {
-        String rule = "", index = clusterRecord.getMergedRecord().get("@RefID");
+        String rule = "", index = clusterRecord.getMergedRecordView().get("@RefID");
         ClusterRecord cr;
 
         if (logger.isLoggable(Level.INFO)) {
             StringBuilder sb = new StringBuilder(250);
             sb.append(System.getProperty("line.separator"))
               .append("Input: ");
-            sb.append(clusterRecord.getMergedRecord());
+            sb.append(clusterRecord.getMergedRecordView());
             logger.info(sb.toString());
         }
 
         // Ask IdentityRepository for a list of assertion candidates
-        cr = repository.getEntityMap().getCluster(clusterRecord.getMergedRecord().get("@AssertRefToStr"));
+        cr = repository.getEntityMap().getCluster(clusterRecord.getMergedRecordView().get("@AssertRefToStr"));
 
         if (logger.isLoggable(Level.FINE)) {
             StringBuilder sb = new StringBuilder(250);
             sb.append("\tAssertion List:\t\t")
               .append(clusterRecord.getOysterID());
             sb.append("=")
-              .append(cr.getMergedRecord().toExplanationString());
+              .append(cr.getMergedRecordView().toExplanationString());
             sb.append(System.getProperty("line.separator"));
             logger.fine(sb.toString());
         }
@@ -296,7 +296,7 @@ public class OysterAssertionEngine extends OysterEngine {
                 sb.append(" to Identity ")
                   .append(identityCount);
                 sb.append(" ")
-                  .append(cr.getMergedRecord().toExplanationString());
+                  .append(cr.getMergedRecordView().toExplanationString());
                 logger.info(sb.toString());
             }
 
@@ -318,12 +318,12 @@ public class OysterAssertionEngine extends OysterEngine {
             manageEntity(cr, index, rule, recordCount);
 
             // update the Assertion IDs for any future candidates
-            String assertKey = clusterRecord.getMergedRecord().get(assertionType);
+            String assertKey = clusterRecord.getMergedRecordView().get(assertionType);
             LinkedHashSet<String> s = repository.getAssertMap().get(assertKey);
             if (s == null) {
                 s = new LinkedHashSet<String>();
             }
-            String RefIDs = clusterRecord.getMergedRecord().get("@RefID");
+            String RefIDs = clusterRecord.getMergedRecordView().get("@RefID");
             String[] refID = RefIDs.split("[|]");
             s.addAll(Arrays.asList(refID));
             repository.getAssertMap().put(assertKey, s);
@@ -344,13 +344,13 @@ public class OysterAssertionEngine extends OysterEngine {
      */
     public void assertStrToStr(long recordCount){
         ClusterRecord cr;
-        String assertKey = clusterRecord.getMergedRecord().get(assertionType);
+        String assertKey = clusterRecord.getMergedRecordView().get(assertionType);
         LinkedHashSet<String> s = repository.getAssertMap().get(assertKey);
         if (s == null) {
             s = new LinkedHashSet<String>();
         }
             
-        String refID = clusterRecord.getMergedRecord().get("@RefID");
+        String refID = clusterRecord.getMergedRecordView().get("@RefID");
         s.add(refID);
         repository.getAssertMap().put(assertKey, s);
         
@@ -367,21 +367,21 @@ public class OysterAssertionEngine extends OysterEngine {
      */
     public void assertSplitStr(long recordCount) {
         ClusterRecord cr;
-        String assertKey = clusterRecord.getMergedRecord().get(assertionType);
+        String assertKey = clusterRecord.getMergedRecordView().get(assertionType);
         Map<String, Set<String>> m = splits.get(assertKey);
 
         if (m == null) {
             m = new LinkedHashMap<String, Set<String>>();
         }
 
-        String oid = clusterRecord.getMergedRecord().get(OysterKeywords.OID);
+        String oid = clusterRecord.getMergedRecordView().get(OysterKeywords.OID);
         Set<String> s = m.get(oid);
 
         if (s == null) {
             s = new LinkedHashSet<String>();
         }
 
-        String rid = clusterRecord.getMergedRecord().get(OysterKeywords.RID);
+        String rid = clusterRecord.getMergedRecordView().get(OysterKeywords.RID);
         s.add(rid);
 
         m.put(oid, s);
@@ -392,7 +392,7 @@ public class OysterAssertionEngine extends OysterEngine {
             s1 = new LinkedHashSet<String>();
         }
 
-        String refID = clusterRecord.getMergedRecord().get("@RefID");
+        String refID = clusterRecord.getMergedRecordView().get("@RefID");
         s1.add(refID);
         repository.getAssertMap().put(assertKey, s1);
 
@@ -441,10 +441,10 @@ public class OysterAssertionEngine extends OysterEngine {
         
         if (assertionType.equalsIgnoreCase(OysterKeywords.ASSERT_REF_TO_REF)){
             assert1 = oir.get(assertionType);
-            assert2 = clusterRecord.getMergedRecord().get(assertionType);
+            assert2 = clusterRecord.getMergedRecordView().get(assertionType);
         } else if (assertionType.equalsIgnoreCase(OysterKeywords.ASSERT_REF_TO_STR)){
             assert1 = oir.get("@AssertRefToStr");
-            assert2 = clusterRecord.getMergedRecord().get(assertionType);
+            assert2 = clusterRecord.getMergedRecordView().get(assertionType);
         }
         
         if (assert1 != null && assert2 != null && 
@@ -759,20 +759,20 @@ public class OysterAssertionEngine extends OysterEngine {
             }
 
             repository.addIndex(cr, false);
-            repository.addLink(cr.getMergedRecord(), id, rule);
+            repository.addLink(cr.getMergedRecordView(), id, rule);
 
             if (logger.isLoggable(Level.INFO)) {
                 StringBuilder sb = new StringBuilder(250);
                 sb.append("\tNew Entity ")
-                  .append(cr.getMergedRecord().toExplanationString())
+                  .append(cr.getMergedRecordView().toExplanationString())
                   .append(System.getProperty("line.separator"));
                 sb.append("\tNew Index: ")
-                  .append(cr.getMergedRecord())
+                  .append(cr.getMergedRecordView())
                   .append(System.getProperty("line.separator"));
                 sb.append("\tNew LinkMap{")
-                  .append(cr.getMergedRecord().get("@RefID"));
+                  .append(cr.getMergedRecordView().get("@RefID"));
                 sb.append("}, ")
-                  .append(cr.getMergedRecord().toExplanationString())
+                  .append(cr.getMergedRecordView().toExplanationString())
                   .append(System.getProperty("line.separator"));
                 logger.info(sb.toString());
             }
@@ -826,10 +826,10 @@ public class OysterAssertionEngine extends OysterEngine {
 
                 if (cr != null) {
                     sb.append("\tUpdate Entity: ")
-                      .append(cr.getMergedRecord().toExplanationString());
+                      .append(cr.getMergedRecordView().toExplanationString());
                 } else {
                     sb.append("\tUpdate Entity: ")
-                      .append(clusterRecord.getMergedRecord().toExplanationString());
+                      .append(clusterRecord.getMergedRecordView().toExplanationString());
                 }
                 sb.append(System.getProperty("line.separator"));
                 logger.info(sb.toString());
@@ -837,7 +837,7 @@ public class OysterAssertionEngine extends OysterEngine {
 
             if (logger.isLoggable(Level.INFO)) {
                 StringBuilder sb = new StringBuilder(250);
-                sb.append("\tUpdate Index: ").append(index).append(" for ri ").append(clusterRecord.getMergedRecord());
+                sb.append("\tUpdate Index: ").append(index).append(" for ri ").append(clusterRecord.getMergedRecordView());
                 logger.fine(sb.toString());
             }
         }
@@ -887,10 +887,10 @@ public class OysterAssertionEngine extends OysterEngine {
 
             if (cr != null) {
                 sb.append("\tUpdate Entity: ")
-                  .append(cr.getMergedRecord().toExplanationString());
+                  .append(cr.getMergedRecordView().toExplanationString());
             } else {
                 sb.append("\tUpdate Entity: ")
-                  .append(clusterRecord.getMergedRecord().toExplanationString());
+                  .append(clusterRecord.getMergedRecordView().toExplanationString());
             }
             sb.append(System.getProperty("line.separator"));
             logger.info(sb.toString());
@@ -898,7 +898,7 @@ public class OysterAssertionEngine extends OysterEngine {
 
         if (logger.isLoggable(Level.INFO)) {
             StringBuilder sb = new StringBuilder(250);
-            sb.append("\tUpdate Index: ").append(index).append(" for ri ").append(clusterRecord.getMergedRecord());
+            sb.append("\tUpdate Index: ").append(index).append(" for ri ").append(clusterRecord.getMergedRecordView());
             logger.fine(sb.toString());
         }
     }
@@ -20,8 +20,8 @@
 
 package edu.ualr.oyster.er;
 
-import edu.ualr.oyster.ErrorFormatter;
 import edu.ualr.oyster.association.matching.OysterComparator;
+import edu.ualr.oyster.association.matching.OysterMatchPredicate;
 import edu.ualr.oyster.data.ClusterRecord;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.optimization.Matrix;
@@ -101,11 +101,17 @@ public class OysterClusterEngine extends OysterResolutionEngine {
      * 
      * Currently, ALL candidates that pass the filter are evaluated UNLESS they have
      * been consolidated in a previous iteration of during this specific call.
+     * @param input the <code>ClusterRecord</code> to be evaluated
      * @param sort true if a sorted candidate list is to be used otherwise false.
      * @param recordCount the current record count
+     * @param workMatrix the working <code>Matrix</code> for the rule evaluation
+     * @param comparators the comparators by attribute name, null to use the
+     * comparators from the attributes
+     * @return the <code>OysterResolutionResult</code> to be committed
      */
     @Override
-    public void integrateSource (boolean sort, long recordCount) {
+    public OysterResolutionResult evaluate (ClusterRecord input, boolean sort, long recordCount, Matrix workMatrix, Map<String, OysterComparator> comparators) {
+        OysterResolutionResult result = new OysterResolutionResult(input, recordCount);
         boolean matched = false;
         int matchedCount = 0;
         ClusterRecord cr = null;
@@ -114,7 +120,7 @@ public class OysterClusterEngine extends OysterResolutionEngine {
         if (logger.isLoggable(Level.INFO)) {
             StringBuilder sb = new StringBuilder(100);
             sb.append(System.getProperty("line.separator"))
-              .append("Input: ").append(clusterRecord.getMergedRecord());
+              .append("Input: ").append(input.getMergedRecordView());
             logger.info(sb.toString());
         }        
 /*
@@ -123,24 +129,15 @@ public class OysterClusterEngine extends OysterResolutionEngine {
         }
 */
         // Ask IdentityRepository for a list of candidates
-        Map<String, ClusterRecord> list;
-        if ((list = repository.getCandidateList(clusterRecord, sort, primaryFilter, lcrdMinSize, isByPassFilter(), mergedList)).isEmpty()){
-            if (secondaryFilter != null) {
-                list = repository.getCandidateList(clusterRecord, sort, secondaryFilter, lcrdMinSize, isByPassFilter(), mergedList);
-            }
-        }
+        Map<String, ClusterRecord> list = getCandidateList(input, sort);
         
-        int unfiltered = list.size();
-        totalCandidatesSize += list.size();
+        result.setCandidateCount(list.size());
+        result.setOysterIDs(getOysterIDs(list));
         
         // Remove duplicate Clusters
         list = removeDuplicateClusters(list);
         
-        int filtered = list.size();
-        totalCandidatesDeDupSize += list.size();
-        if (list.size() > 0) {
-            totalCandidates++;
-        }
+        result.setUniqueCandidateCount(list.size());
         
         if (logger.isLoggable(Level.FINE)) {
             logger.fine("\tCandidate List:");
@@ -168,7 +165,7 @@ public class OysterClusterEngine extends OysterResolutionEngine {
         }
 */
         String index = "", rule = "";
-        Map<String, String> consolidate = new LinkedHashMap<String, String>();
+        Map<String, String> consolidate = result.getConsolidate();
         ArrayList<String> prevRefIDs = new ArrayList<String>();
         int identityCount = 1;
         for (Iterator<Entry<String, ClusterRecord>> it = list.entrySet().iterator(); it.hasNext();) {
@@ -190,10 +187,10 @@ public class OysterClusterEngine extends OysterResolutionEngine {
                  }
                  */
                 Set<String> completeRules = new TreeSet<String>();
-                if (!matched && !prevRefIDs.contains(oir.get("@RefID")) && applyRules(oir)) {
+                if (!matched && !prevRefIDs.contains(oir.get("@RefID")) && applyRules(input, oir, workMatrix, comparators)) {
                     if (logger.isLoggable(Level.FINE)) {
                         logger.fine("matrix");
-                        logger.fine(matrix.toString());
+                        logger.fine(workMatrix.toString());
                         logger.fine("");
                         logger.fine("masks");
                     }
@@ -207,44 +204,17 @@ public class OysterClusterEngine extends OysterResolutionEngine {
                             logger.fine(m.toString());
                         }
 
-                        // create temp rule with the AND Operator
-                        Matrix temp = null;
-                        try {
-                            temp = (Matrix) m.clone();
-                            temp.fill(false);
-
-                            for (int row = 0; row < m.getRows().size(); row++) {
-                                for (int col = 0; col < m.getColumns().size(); col++) {
-                                    if (m.getMatrix()[row][col] && matrix.getMatrix()[row][col]) {
-                                        temp.getMatrix()[row][col] = true;
-                                    }
-                                }
-                            }
-                        } catch (CloneNotSupportedException ex) {
-                            Logger.getLogger(OysterMergeEngine.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
-                        }
-
-                        // If the mask matches the temp rule then it's a match
-                        if (m.equals(temp)) {
+                        // If the mask matches the working matrix then it's a match
+                        if (matchesMask(m, workMatrix)) {
                             matched = true;
                             completeRules.add(key);
                             rule = key;
 
-                            long value = 0;
-                            if (completeRuleFiring.containsKey(completeRules.toString())) {
-                                value = completeRuleFiring.get(completeRules.toString());
-                            }
-                            value++;
-                            completeRuleFiring.put(completeRules.toString(), value);
+                            result.getCompleteRuleFirings().add(completeRules.toString());
 
                             if (matchedCount == 0) {
                                 rule = key;
-                                value = 0;
-                                if (ruleFreq.containsKey(key)) {
-                                    value = ruleFreq.get(key);
-                                }
-                                value++;
-                                ruleFreq.put(key, value);
+                                result.getRuleFirings().add(key);
 
                                 if (logger.isLoggable(Level.FINE)) {
                                     StringBuilder sb = new StringBuilder(100);
@@ -252,7 +222,7 @@ public class OysterClusterEngine extends OysterResolutionEngine {
                                     logger.fine(sb.toString());
                                     logger.fine("");
                                 }
-                                totalMatchedCount++;
+                                result.setMatchCount(result.getMatchCount() + 1);
                             }
                             matchedCount++;
                         }
@@ -287,9 +257,27 @@ public class OysterClusterEngine extends OysterResolutionEngine {
             matched = true;
         }
 
+        result.setCandidate(cr);
+        result.setIndex(index);
+        result.setRule(rule);
+        result.setMatched(matched);
+        result.setLatency(stop - start);
+        return result;
+    }
+
+    /**
+     * Ask the <code>OysterIdentityRepository</code> to update or create the 
+     * identity for an evaluated input and records the statistics.
+     * @param result the <code>OysterResolutionResult</code> to be committed
+     */
+    @Override
+    public void commit (OysterResolutionResult result) {
+        clusterRecord = result.getInput();
+        recordStatistics(result);
+
         // Ask IdentityRespository to update/create identity
-        if (index != null) {
-            manageEntity(cr, index, rule, matched, recordCount, consolidate);
+        if (result.getIndex() != null) {
+            manageEntity(result.getCandidate(), result.getIndex(), result.getRule(), result.isMatched(), result.getRecordCount(), result.getConsolidate());
         } else {
             System.out.println("Null index in Candidate List!!!");
             if (logger.isLoggable(Level.INFO)) {
@@ -297,21 +285,9 @@ public class OysterClusterEngine extends OysterResolutionEngine {
             }
         }
 
-        if (matched && logger.isLoggable(Level.FINEST)) {
+        if (result.isMatched() && logger.isLoggable(Level.FINEST)) {
             dump();
         }
-
-        // do the latency stats
-        long latency = stop - start;
-        if (matched) {
-            matchingLatency += latency;
-            maxMatchingLatency = Math.max(maxMatchingLatency, latency);
-            minMatchingLatency = Math.min(minMatchingLatency, latency);
-        } else {
-            nonMatchingLatency += latency;
-            maxNonMatchingLatency = Math.max(maxNonMatchingLatency, latency);
-            minNonMatchingLatency = Math.min(minNonMatchingLatency, latency);
-        }
     }
 
     /**
@@ -343,20 +319,20 @@ public class OysterClusterEngine extends OysterResolutionEngine {
                 }
 
                 repository.addIndex(cr, mergedList);
-                repository.addLink(cr.getMergedRecord(), id, rule);
+                repository.addLink(cr.getMergedRecordView(), id, rule);
                     
                 if (logger.isLoggable(Level.INFO)) {
                     StringBuilder sb = new StringBuilder(250);
                     sb.append("\tNew Entity ").append(cr.getOysterID())
                       .append(" ")
-                      .append(cr.getMergedRecord().toExplanationString())
+                      .append(cr.getMergedRecordView().toExplanationString())
                       .append(System.getProperty("line.separator"));
-                    sb.append("\tNew Index: ").append(cr.getMergedRecord())
+                    sb.append("\tNew Index: ").append(cr.getMergedRecordView())
                       .append(System.getProperty("line.separator"));
                     sb.append("\tNew LinkMap{")
-                      .append(cr.getMergedRecord().get("@RefID"))
+                      .append(cr.getMergedRecordView().get("@RefID"))
                       .append("}, ")
-                      .append(cr.getMergedRecord().toExplanationString());
+                      .append(cr.getMergedRecordView().toExplanationString());
                     logger.info(sb.toString());
                 }
             } else {
@@ -366,14 +342,14 @@ public class OysterClusterEngine extends OysterResolutionEngine {
                  */
                 cr = clusterRecord.clone();
                 
-                repository.addLink(cr.getMergedRecord(), "XXXXXXXXXXXXXXXX", rule);
+                repository.addLink(cr.getMergedRecordView(), "XXXXXXXXXXXXXXXX", rule);
 
                 if (logger.isLoggable(Level.INFO)) {
                     StringBuilder sb = new StringBuilder(100);
                     sb.append("\tNo Capture: LinkMap{")
-                      .append(cr.getMergedRecord().get("@RefID"))
+                      .append(cr.getMergedRecordView().get("@RefID"))
                       .append("}, ")
-                      .append(cr.getMergedRecord().toExplanationString());
+                      .append(cr.getMergedRecordView().toExplanationString());
                     logger.info(sb.toString());
                 }
             }
@@ -547,13 +523,13 @@ public class OysterClusterEngine extends OysterResolutionEngine {
                         sb.append("\tUpdate Entity: ")
                           .append(cr.getOysterID())
                           .append(" ")
-                          .append(cr.getMergedRecord().toExplanationString())
+                          .append(cr.getMergedRecordView().toExplanationString())
                           .append(System.getProperty("line.separator"));
                     } else {
                         sb.append("\tUpdate Entity: ")
                           .append(cr.getOysterID())
                           .append(" ")
-                          .append(clusterRecord.getMergedRecord().toExplanationString())
+                          .append(clusterRecord.getMergedRecordView().toExplanationString())
                           .append(System.getProperty("line.separator"));
                     }
                     sb.append("\t             : ")
@@ -562,7 +538,7 @@ public class OysterClusterEngine extends OysterResolutionEngine {
                     sb.append("\tUpdate Index: ")
                       .append(index)
                       .append(" for ri ")
-                      .append(clusterRecord.getMergedRecord())
+                      .append(clusterRecord.getMergedRecordView())
                       .append(System.getProperty("line.separator"));
                     sb.append("\tUpdate LinkMap: ")
                       .append(minCR.getOysterID())
@@ -586,36 +562,48 @@ public class OysterClusterEngine extends OysterResolutionEngine {
      * This method take the <code>OysterIdentityRecord</code> candidate and compares it
      * to the current referenceItems to see if there is a partial rule match based
      * on the current rule list. All rules are processed at one time
+     * @param input the <code>ClusterRecord</code> being evaluated
      * @param candidate the <code>OysterIdentityRecord</code> candidate to be compared
+     * @param workMatrix the working <code>Matrix</code> to be filled
+     * @param comparators the comparators by attribute name, null to use the
+     * comparators from the attributes
      * @return true if at least one partial rule matched, otherwise false.
      */
-    private boolean applyRules(OysterIdentityRecord candidate) {
+    private boolean applyRules(ClusterRecord input, OysterIdentityRecord candidate, Matrix workMatrix, Map<String, OysterComparator> comparators) {
         boolean matched = false;
-        matrix.fill(false);
-
-        // apply the rules
-        for (Iterator<String> it = rules.keySet().iterator(); it.hasNext();) {
-            String item = it.next();
-            ArrayList<String> rule = rules.get(item);
-            Set<String> compareToItems = compareTo.get(item);
-
-            for (Iterator<String> it2 = rule.iterator(); it2.hasNext();) {
-                String matchResult = it2.next();
-                boolean flag;
-
-                for (int z = 0; z < clusterRecord.getSize(); z++) {
-                    OysterIdentityRecord oir = clusterRecord.getOysterIdentityRecord(z);
-                    String source = oir.get(item);
-
-                    OysterComparator compare = getAttributes().getComparator(item);
-                    String target = candidate.get(item);
-
-                    if (!(flag = compare(compare, source, target, matchResult))) {
-                        if (compareToItems != null) {
-                            for (Iterator<String> it3 = compareToItems.iterator(); it3.hasNext();) {
-                                String secItem = it3.next();
-                                source = oir.get(secItem);
-                                if ((flag = compare(compare, source, target, matchResult))) {
+        workMatrix.fill(false);
+
+        // apply the rules in order of cost, stop once no mask can be satisfied
+        CompiledItem [] order = nextTermOrder();
+        long alive = allMasks;
+        for (int k = 0; k < order.length && alive != 0; k++) {
+            CompiledItem ci = order[k];
+            OysterComparator compare = getComparator(ci.item, comparators);
+            if (compare == null) {
+                alive &= ~(ci.later[0] & killableMasks);
+                continue;
+            }
+            String target = candidate.get(ci.item);
+            long start = System.nanoTime(), before = alive;
+
+            for (int m = 0; m < ci.matchResults.length; m++) {
+                // skip the match result if no mask needs it
+                if ((ci.masks[m] & alive) == 0) {
+                    continue;
+                }
+                
+                OysterMatchPredicate predicate = compare.getPredicate(ci.matchResults[m]);
+                boolean flag = false;
+
+                for (int z = 0; z < input.getSize() && !flag; z++) {
+                    OysterIdentityRecord oir = input.getOysterIdentityRecord(z);
+                    String source = oir.get(ci.item);
+
+                    if (!(flag = compare(predicate, source, target))) {
+                        if (ci.compareTo != null) {
+                            for (int n = 0; n < ci.compareTo.length; n++) {
+                                source = oir.get(ci.compareTo[n]);
+                                if ((flag = compare(predicate, source, target))) {
                                     break;
                                 }
                             }
@@ -624,11 +612,16 @@ public class OysterClusterEngine extends OysterResolutionEngine {
 
                     // update the working Matrix
                     if (flag) {
-                        matrix.getMatrix()[matrix.getRows().get(item)][matrix.getColumns().get(matchResult)] = flag;
+                        workMatrix.set(ci.row, ci.columns[m], flag);
                         matched = flag;
                     }
                 }
+                
+                if (!flag) {
+                    alive &= ~(ci.masks[m] & killableMasks);
+                }
             }
+            ci.record(System.nanoTime() - start, alive != before);
         }
         return matched;
     }
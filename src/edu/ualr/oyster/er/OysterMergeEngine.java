@@ -20,12 +20,11 @@
 
 package edu.ualr.oyster.er;
 
-import edu.ualr.oyster.ErrorFormatter;
 import edu.ualr.oyster.association.matching.OysterComparator;
+import edu.ualr.oyster.association.matching.OysterMatchPredicate;
 import edu.ualr.oyster.data.ClusterRecord;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.optimization.Matrix;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -107,11 +106,17 @@ public class OysterMergeEngine extends OysterResolutionEngine {
      * 
      * Currently, ALL candidates that pass the filter are evaluated UNLESS they have
      * been consolidated in a previous iteration of during this specific call.
+     * @param input the <code>ClusterRecord</code> to be evaluated
      * @param sort true if a sorted candidate list is to be used otherwise false.
      * @param recordCount the current record count
+     * @param workMatrix the working <code>Matrix</code> for the rule evaluation
+     * @param comparators the comparators by attribute name, null to use the
+     * comparators from the attributes
+     * @return the <code>OysterResolutionResult</code> to be committed
      */
     @Override
-    public void integrateSource (boolean sort, long recordCount) {
+    public OysterResolutionResult evaluate (ClusterRecord input, boolean sort, long recordCount, Matrix workMatrix, Map<String, OysterComparator> comparators) {
+        OysterResolutionResult result = new OysterResolutionResult(input, recordCount);
         boolean matched = false;
         int matchedCount = 0;
         ClusterRecord cr;
@@ -121,7 +126,7 @@ public class OysterMergeEngine extends OysterResolutionEngine {
             StringBuilder sb = new StringBuilder(250);
             sb.append(System.getProperty("line.separator"))
               .append("Input: ")
-              .append(clusterRecord.getMergedRecord());
+              .append(input.getMergedRecordView());
             logger.info(sb.toString());
         }
 //        System.out.println("Input: "  + clusterRecord.getMergedRecord());
@@ -132,22 +137,15 @@ public class OysterMergeEngine extends OysterResolutionEngine {
 */        
         
         // Ask IdentityRepository for a list of candidates
-        Map<String, ClusterRecord> list;
-        if ((list = repository.getCandidateList(clusterRecord, sort, primaryFilter, lcrdMinSize,isByPassFilter(), mergedList)).isEmpty()){
-            if (secondaryFilter != null) {
-                list = repository.getCandidateList(clusterRecord, sort, secondaryFilter, lcrdMinSize,isByPassFilter(), mergedList);
-            }
-        }
+        Map<String, ClusterRecord> list = getCandidateList(input, sort);
         
-        totalCandidatesSize += list.size();
+        result.setCandidateCount(list.size());
+        result.setOysterIDs(getOysterIDs(list));
         
         // Remove duplicate Clusters
         list = removeDuplicateClusters(list);
         
-        totalCandidatesDeDupSize += list.size();
-        if (list.size() > 0) {
-            totalCandidates++;
-        }
+        result.setUniqueCandidateCount(list.size());
         
         if (logger.isLoggable(Level.FINE)) {
             logger.fine("\tCandidate List:");
@@ -156,12 +154,13 @@ public class OysterMergeEngine extends OysterResolutionEngine {
                 cr = entry.getValue();
                 StringBuilder sb = new StringBuilder(250);
                 sb.append("\t\t").append(entry.getKey())
-                  .append("=").append(cr.getMergedRecord().toExplanationString());
+                  .append("=").append(cr.getMergedRecordView().toExplanationString());
                 logger.fine(sb.toString());
             }
             logger.fine("");
         }
         
+        OysterIdentityRecord source = input.getMergedRecordView();
         String matchedIndex = "", rule = "";
         int identityCount = 1;
         for(Iterator<Entry<String, ClusterRecord>> it = list.entrySet().iterator(); it.hasNext();){
@@ -175,7 +174,7 @@ public class OysterMergeEngine extends OysterResolutionEngine {
                   .append(" to Identity ")
                   .append(identityCount)
                   .append(" ")
-                  .append(cr.getMergedRecord().toExplanationString());
+                  .append(cr.getMergedRecordView().toExplanationString());
                 logger.info(sb.toString());
             }
             
@@ -183,10 +182,10 @@ public class OysterMergeEngine extends OysterResolutionEngine {
             // this record. This is need because of the consolidation. If not 
             // then apply the rules.
             Set<String> completeRules = new TreeSet<String>();
-            if (!matched && applyRules(cr.getMergedRecord())){
+            if (!matched && applyRules(source, cr.getMergedRecordView(), workMatrix, comparators)){
                 if (logger.isLoggable(Level.FINE)){
                     logger.fine("matrix");
-                    logger.fine(matrix.toString());
+                    logger.fine(workMatrix.toString());
                     logger.fine("");
                     logger.fine("masks");
                 }
@@ -200,42 +199,15 @@ public class OysterMergeEngine extends OysterResolutionEngine {
                         logger.fine(m.toString());
                     }
                     
-                    // create temp rule with the AND Operator
-                    Matrix temp = null;
-                    try {
-                        temp = (Matrix) m.clone();                        
-                        temp.fill(false);
-                        
-                        for (int row = 0; row < m.getRows().size(); row++) {
-                            for (int col = 0; col < m.getColumns().size(); col++) {
-                                if (m.getMatrix()[row][col] && matrix.getMatrix()[row][col]) {
-                                    temp.getMatrix()[row][col] = true;
-                                }
-                            }
-                        }
-                    } catch (CloneNotSupportedException ex) {
-                        Logger.getLogger(OysterMergeEngine.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
-                    }
-                    
-                    // If the mask matches the temp rule then it's a match
-                    if (m.equals(temp)){
+                    // If the mask matches the working matrix then it's a match
+                    if (matchesMask(m, workMatrix)){
                         matched = true;
-                        long value = 0;
-                        if (completeRuleFiring.containsKey(completeRules.toString())) {
-                            value = completeRuleFiring.get(completeRules.toString());
-                        }
-                        value++;
-                        completeRuleFiring.put(completeRules.toString(), value);
+                        result.getCompleteRuleFirings().add(completeRules.toString());
 
                         if (matchedCount == 0) {
                             matchedIndex = entry.getKey();
                             rule = key;
-                            value = 0;
-                            if (ruleFreq.containsKey(key)) {
-                                value = ruleFreq.get(key);
-                            }
-                            value++;
-                            ruleFreq.put(key, value);
+                            result.getRuleFirings().add(key);
 
                             if (logger.isLoggable(Level.FINE)) {
                                 StringBuilder sb = new StringBuilder(100);
@@ -256,9 +228,26 @@ public class OysterMergeEngine extends OysterResolutionEngine {
         }
         stop = System.currentTimeMillis();
         
+        result.setIndex(matchedIndex);
+        result.setRule(rule);
+        result.setMatched(matched);
+        result.setLatency(stop - start);
+        return result;
+    }
+    
+    /**
+     * Ask the <code>OysterIdentityRepository</code> to update or create the 
+     * identity for an evaluated input and records the statistics.
+     * @param result the <code>OysterResolutionResult</code> to be committed
+     */
+    @Override
+    public void commit (OysterResolutionResult result) {
+        clusterRecord = result.getInput();
+        recordStatistics(result);
+        
         // Ask IdentityRespository to update/create identity
-        if (matchedIndex != null){
-            manageEntity(matchedIndex, rule, matched, recordCount);
+        if (result.getIndex() != null){
+            manageEntity(result.getIndex(), result.getRule(), result.isMatched(), result.getRecordCount());
         } else {
             System.out.println("Null index in Candidate List!!!");
             if (logger.isLoggable(Level.INFO)){
@@ -266,21 +255,9 @@ public class OysterMergeEngine extends OysterResolutionEngine {
             }
         }
         
-        if (matched && logger.isLoggable(Level.FINEST)){
+        if (result.isMatched() && logger.isLoggable(Level.FINEST)){
             dump();
         }
-        
-        // do the latency stats
-        long latency = stop - start;
-        if (matched){
-            matchingLatency += latency;
-            maxMatchingLatency = Math.max(maxMatchingLatency, latency);
-            minMatchingLatency = Math.min(minMatchingLatency, latency);
-        } else {
-            nonMatchingLatency += latency;
-            maxNonMatchingLatency = Math.max(maxNonMatchingLatency, latency);
-            minNonMatchingLatency = Math.min(minNonMatchingLatency, latency);
-        }
     }
     
     /**
@@ -313,22 +290,22 @@ public class OysterMergeEngine extends OysterResolutionEngine {
 
 //                repository.addIndex(cr, mergedList);
                 repository.addIndex(cr, true);
-                repository.addLink(cr.getMergedRecord(), id, rule);
+                repository.addLink(cr.getMergedRecordView(), id, rule);
                     
                 if (logger.isLoggable(Level.INFO)) {
                     StringBuilder sb = new StringBuilder(250);
                     sb.append("\tNew Entity ")
                       .append(cr.getOysterID())
                       .append(" ")
-                      .append(cr.getMergedRecord().toExplanationString())
+                      .append(cr.getMergedRecordView().toExplanationString())
                       .append(System.getProperty("line.separator"));
                     sb.append("\tNew Index: ")
-                      .append(cr.getMergedRecord())
+                      .append(cr.getMergedRecordView())
                       .append(System.getProperty("line.separator"));
                     sb.append("\tNew LinkMap{")
-                      .append(cr.getMergedRecord().get("@RefID"))
+                      .append(cr.getMergedRecordView().get("@RefID"))
                       .append("}, ")
-                      .append(cr.getMergedRecord().toExplanationString());
+                      .append(cr.getMergedRecordView().toExplanationString());
                     logger.info(sb.toString());
                 }
             } else {
@@ -338,14 +315,14 @@ public class OysterMergeEngine extends OysterResolutionEngine {
                  */
                 cr = clusterRecord.clone();
                 
-                repository.addLink(cr.getMergedRecord(), "XXXXXXXXXXXXXXXX", rule);
+                repository.addLink(cr.getMergedRecordView(), "XXXXXXXXXXXXXXXX", rule);
 
                 if (logger.isLoggable(Level.INFO)) {
                     StringBuilder sb = new StringBuilder(250);
                     sb.append("\tNo Capture: LinkMap{")
-                      .append(cr.getMergedRecord().get("@RefID"))
+                      .append(cr.getMergedRecordView().get("@RefID"))
                       .append("}, ")
-                      .append(cr.getMergedRecord().toExplanationString());
+                      .append(cr.getMergedRecordView().toExplanationString());
                     logger.info(sb.toString());
                 }
             }
@@ -373,11 +350,11 @@ public class OysterMergeEngine extends OysterResolutionEngine {
                 
                 if (cr != null) {
                     repository.removeIndex(cr.getMergedRecord(), index);
-                    repository.addLink(cr.getMergedRecord(), id, rule);
-                    repository.addLink(clusterRecord.getMergedRecord(), id, rule);
+                    repository.addLink(cr.getMergedRecordView(), id, rule);
+                    repository.addLink(clusterRecord.getMergedRecordView(), id, rule);
                 } else {
                     repository.removeIndex(clusterRecord.getMergedRecord(), index);
-                    repository.addLink(clusterRecord.getMergedRecord(), id, rule);
+                    repository.addLink(clusterRecord.getMergedRecordView(), id, rule);
                 }
 
                 repository.getEntityMap().removeCluster(oysterID);
@@ -391,24 +368,24 @@ public class OysterMergeEngine extends OysterResolutionEngine {
                         sb.append("\tUpdate Entity: ")
                           .append(cr.getOysterID())
                           .append(" ")
-                          .append(cr.getMergedRecord().toExplanationString());
+                          .append(cr.getMergedRecordView().toExplanationString());
                     } else {
                         sb.append("\tUpdate Entity: ")
                           .append(clusterRecord.getOysterID())
                           .append(" ")
-                          .append(clusterRecord.getMergedRecord().toExplanationString());
+                          .append(clusterRecord.getMergedRecordView().toExplanationString());
                 }
                     sb.append(System.getProperty("line.separator"));
                     sb.append("\tUpdate Index: ")
                       .append(index)
                       .append(" for ri ")
-                      .append(clusterRecord.getMergedRecord())
+                      .append(clusterRecord.getMergedRecordView())
                       .append(System.getProperty("line.separator"));
                     logger.info(sb.toString());
                 }
             } else {
                 // repository.addLink(codosaIdentity, ci.getValueByTag("A"), rule);
-                repository.addLink(clusterRecord.getMergedRecord(), oysterID, rule);
+                repository.addLink(clusterRecord.getMergedRecordView(), oysterID, rule);
             }
             // I always count this but only use the counter in resolution mode
             resolvedRecords++;
@@ -424,51 +401,64 @@ public class OysterMergeEngine extends OysterResolutionEngine {
      * This method take the <code>OysterIdentityRecord</code> candidate and compares it
      * to the current referenceItems to see if there is a partial rule match based
      * on the current rule list. All rules are processed at one time
+     * @param oir the merged <code>OysterIdentityRecord</code> of the input
      * @param candidate the <code>OysterIdentityRecord</code> candidate to be compared
+     * @param workMatrix the working <code>Matrix</code> to be filled
+     * @param comparators the comparators by attribute name, null to use the
+     * comparators from the attributes
      * @return true if at least one partial rule matched, otherwise false.
      */
-    private boolean applyRules(OysterIdentityRecord candidate) {
+    private boolean applyRules(OysterIdentityRecord oir, OysterIdentityRecord candidate, Matrix workMatrix, Map<String, OysterComparator> comparators) {
         boolean matched = false;
-        matrix.fill(false);
+        workMatrix.fill(false);
 
-        // apply the rules
-        OysterIdentityRecord oir = clusterRecord.getMergedRecord();
+        // apply the rules in order of cost, stop once no mask can be satisfied
+        CompiledItem [] order = nextTermOrder();
+        long alive = allMasks;
+        for (int k = 0; k < order.length && alive != 0; k++) {
+            CompiledItem ci = order[k];
 
-        for (Iterator<String> it = rules.keySet().iterator(); it.hasNext();) {
-            String item = it.next();
-            ArrayList<String> rule = rules.get(item);
-            Set<String> compareToItems = compareTo.get(item);
+            // get the comparator for this rule term
+            OysterComparator compare = getComparator(ci.item, comparators);
+            if (compare == null) {
+                alive &= ~(ci.later[0] & killableMasks);
+                continue;
+            }
+            String target = candidate.get(ci.item);
+            long start = System.nanoTime(), before = alive;
 
-            for (Iterator<String> it2 = rule.iterator(); it2.hasNext();) {
-                String matchResult = it2.next();
+            for (int m = 0; m < ci.matchResults.length; m++) {
+                // the first match result that holds ends the item, so a match
+                // result is only skipped if no mask needs it or a later one
+                if ((ci.later[m] & alive) == 0) {
+                    break;
+                }
+                
+                OysterMatchPredicate predicate = compare.getPredicate(ci.matchResults[m]);
                 boolean flag;
 
-                String source = oir.get(item);
-
-                // get the comparator for this rule term
-                OysterComparator compare = getAttributes().getComparator(item);
-                String target = candidate.get(item);
-                if (compare != null) {
-                    if (!(flag = compare(compare, source, target, matchResult))) {
-                        if (compareToItems != null) {
-                            for (Iterator<String> it3 = compareToItems.iterator(); it3.hasNext();) {
-                                String secItem = it3.next();
-                                source = oir.get(secItem);
-                                if ((flag = compare(compare, source, target, matchResult))) {
-                                    break;
-                                }
+                String source = oir.get(ci.item);
+                if (!(flag = compare(predicate, source, target))) {
+                    if (ci.compareTo != null) {
+                        for (int n = 0; n < ci.compareTo.length; n++) {
+                            source = oir.get(ci.compareTo[n]);
+                            if ((flag = compare(predicate, source, target))) {
+                                break;
                             }
                         }
                     }
+                }
 
-                    // update the working Matrix
-                    if (flag) {
-                        matrix.getMatrix()[matrix.getRows().get(item)][matrix.getColumns().get(matchResult)] = flag;
-                        matched = flag;
-                        break;
-                    }
+                // update the working Matrix
+                if (flag) {
+                    workMatrix.set(ci.row, ci.columns[m], flag);
+                    matched = flag;
+                    alive &= ~(ci.later[m + 1] & killableMasks);
+                    break;
                 }
+                alive &= ~(ci.masks[m] & killableMasks);
             }
+            ci.record(System.nanoTime() - start, alive != before);
         }
         return matched;
     }
@@ -23,6 +23,7 @@ package edu.ualr.oyster.er;
 import edu.ualr.oyster.ErrorFormatter;
 import edu.ualr.oyster.OysterExplanationFormatter;
 import edu.ualr.oyster.association.matching.OysterComparator;
+import edu.ualr.oyster.association.matching.OysterMatchPredicate;
 import edu.ualr.oyster.core.OysterAttributes;
 import edu.ualr.oyster.core.OysterRule;
 import edu.ualr.oyster.core.ReferenceItem;
@@ -30,6 +31,7 @@ import edu.ualr.oyster.core.RuleTerm;
 import edu.ualr.oyster.data.ClusterRecord;
 import edu.ualr.oyster.data.ClusterRecordSet;
 import edu.ualr.oyster.data.CoDoSAOIR;
+import edu.ualr.oyster.data.IndexedCoDoSAOIR;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.data.OysterIdentityRecordMap;
 import edu.ualr.oyster.data.RecordTypes;
@@ -37,14 +39,21 @@ import edu.ualr.oyster.optimization.Matrix;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Formatter;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 /**
  * OysterResolutionEngine.java
@@ -96,6 +105,29 @@ public abstract class OysterResolutionEngine extends OysterEngine{
     
     /** */
     protected Map<String, Set<String>> compareTo = null;
+    
+    /** The rule items compiled with their matrix cells, in the order of rules */
+    protected CompiledItem [] compiledItems = new CompiledItem[0];
+    
+    /** One bit for each rule mask, in the order of masks */
+    protected long allMasks = 0L;
+    
+    /** The mask bits that can be dropped, with more than 64 masks the last bit
+     * is shared and never dropped */
+    protected long killableMasks = -1L;
+    
+    /** The compiled items in the order they are evaluated */
+    protected volatile CompiledItem [] termOrder = new CompiledItem[0];
+    
+    /** The number of rule evaluations between reordering the items, 0 to keep
+     * the order of rules */
+    protected int termOrderInterval = 1024;
+    
+    /** The number of rule evaluations since the items were compiled */
+    protected final AtomicLong ruleEvaluations = new AtomicLong();
+    
+    /** Splits multi-valued attributes */
+    private static final Pattern VALUE_SEPARATOR = Pattern.compile("[|]");
 
     /** contains the first rule that fired */
     protected Map<String, Long> ruleFreq = null;
@@ -282,6 +314,9 @@ public abstract class OysterResolutionEngine extends OysterEngine{
             case RecordTypes.CODOSA:
                 oir = new CoDoSAOIR();
                 break;
+            case RecordTypes.INDEXED_CODOSA:
+                oir = new IndexedCoDoSAOIR();
+                break;
             case RecordTypes.MAP:
                 oir = new OysterIdentityRecordMap();
                 break;
@@ -387,6 +422,23 @@ public abstract class OysterResolutionEngine extends OysterEngine{
     public void setByPassFilter(boolean byPassFilter) {
         this.byPassFilter = byPassFilter;
     }
+
+    /**
+     * Returns the number of rule evaluations between reordering the items.
+     * @return the termOrderInterval.
+     */
+    public int getTermOrderInterval() {
+        return termOrderInterval;
+    }
+
+    /**
+     * Sets the number of rule evaluations between reordering the items, 0 keeps
+     * the order of rules.
+     * @param termOrderInterval the termOrderInterval to be set.
+     */
+    public void setTermOrderInterval(int termOrderInterval) {
+        this.termOrderInterval = termOrderInterval;
+    }
     
     /**
      * The method creates a <code>Matrix</code> based on the current rules and Attribute
@@ -457,7 +509,7 @@ public abstract class OysterResolutionEngine extends OysterEngine{
                 for (Iterator<RuleTerm> it2 = or.getTermList().iterator(); it2.hasNext();) {
                     RuleTerm item = it2.next();
 
-                    m.getMatrix()[m.getRows().get(item.getItem())][m.getColumns().get(item.getMatchResult())] = true;
+                    m.set(m.getRows().get(item.getItem()), m.getColumns().get(item.getMatchResult()), true);
 
                     ArrayList<String> al = rules.get(item.getItem());
                     if (al == null) {
@@ -480,46 +532,308 @@ public abstract class OysterResolutionEngine extends OysterEngine{
             
             masks.put(or.getRuleIdentifer(), m);
         }
+        
+        compileItems();
     }
     
-    public abstract void integrateSource (boolean sort, long recordCount);
+    /**
+     * Compiles the rule items and match results with their cells in the <code>
+     * Matrix</code>, so the rule evaluation does no map lookups. The match 
+     * results are compiled into predicates by the comparators on first use.
+     * 
+     * Each cell also gets the bits of the masks that need it. While a record is
+     * compared the bits of the masks that can still be satisfied are kept, a 
+     * mask is dropped as soon as one of its cells is false and a cell no 
+     * remaining mask needs is not compared.
+     */
+    protected void compileItems() {
+        ArrayList<CompiledItem> items = new ArrayList<CompiledItem>();
+        ArrayList<Matrix> maskList = new ArrayList<Matrix>(masks.values());
+        
+        killableMasks = maskList.size() > 64 ? ~(1L << 63) : -1L;
+        allMasks = 0L;
+        for (int j = 0; j < maskList.size(); j++) {
+            allMasks |= 1L << Math.min(j, 63);
+        }
+        
+        for (Iterator<Entry<String, ArrayList<String>>> it = rules.entrySet().iterator(); it.hasNext();) {
+            Entry<String, ArrayList<String>> entry = it.next();
+            CompiledItem ci = new CompiledItem();
+            
+            ci.item = entry.getKey();
+            ci.row = matrix.getRows().get(ci.item);
+            
+            Set<String> s = compareTo.get(ci.item);
+            if (s != null) {
+                ci.compareTo = s.toArray(new String[s.size()]);
+            }
+            
+            ci.matchResults = entry.getValue().toArray(new String[entry.getValue().size()]);
+            ci.columns = new int[ci.matchResults.length];
+            ci.masks = new long[ci.matchResults.length];
+            ci.later = new long[ci.matchResults.length + 1];
+            for (int i = 0; i < ci.matchResults.length; i++) {
+                ci.columns[i] = matrix.getColumns().get(ci.matchResults[i]);
+                
+                for (int j = 0; j < maskList.size(); j++) {
+                    if (maskList.get(j).get(ci.row, ci.columns[i])) {
+                        ci.masks[i] |= 1L << Math.min(j, 63);
+                    }
+                }
+            }
+            
+            for (int i = ci.matchResults.length - 1; i >= 0; i--) {
+                ci.later[i] = ci.later[i + 1] | ci.masks[i];
+            }
+            items.add(ci);
+        }
+        compiledItems = items.toArray(new CompiledItem[items.size()]);
+        termOrder = compiledItems;
+        ruleEvaluations.set(0);
+    }
     
-    public abstract void postConsolidation(boolean sort, long recordCount, long countPoint);
+    /**
+     * Returns the compiled items in the order they should be evaluated for the
+     * next rule evaluation. Every <code>termOrderInterval</code> evaluations
+     * the items are sorted again on their measured cost, so the terms that are
+     * cheap and often drop a mask are evaluated first and the expensive ones
+     * are mostly skipped. The order does not change which masks are satisfied.
+     * @return the compiled items.
+     */
+    protected CompiledItem [] nextTermOrder() {
+        long n = ruleEvaluations.incrementAndGet();
+        
+        if (termOrderInterval > 0 && n % termOrderInterval == 0) {
+            final CompiledItem [] items = compiledItems;
+            
+            // take the costs once, the counts keep changing on other threads
+            final double [] cost = new double[items.length];
+            Integer [] pos = new Integer[items.length];
+            for (int i = 0; i < items.length; i++) {
+                cost[i] = items[i].getCost();
+                pos[i] = i;
+            }
+            
+            Arrays.sort(pos, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(cost[a], cost[b]);
+                }
+            });
+            
+            CompiledItem [] order = new CompiledItem[items.length];
+            for (int i = 0; i < items.length; i++) {
+                order[i] = items[pos[i]];
+            }
+            termOrder = order;
+        }
+        return termOrder;
+    }
     
-    protected boolean compare(OysterComparator compare, String source, String target, String matchResult) {
-        boolean flag = false;
+    /**
+     * Returns the measured cost of each rule item in the order they are
+     * evaluated.
+     * @return a string of the term stats.
+     */
+    public String termStats() {
+        StringBuilder sb = new StringBuilder(1000);
+        Formatter report = new Formatter(sb, Locale.US);
+        
+        report.format("Rule evaluations        : %1$,12d%n", ruleEvaluations.get());
+        report.format("Reorder interval        : %1$,12d%n", termOrderInterval);
+        sb.append(System.getProperty("line.separator"));
+        sb.append("Rule Item                          Evaluations   Avg Time (ns)   Drop Rate").append(System.getProperty("line.separator"));
+        CompiledItem [] order = termOrder;
+        for (int i = 0; i < order.length; i++) {
+            CompiledItem ci = order[i];
+            long count = ci.evaluations.get();
+            report.format("  %1$-30s  %2$,13d  %3$,14d   %4$9.5f%n", ci.item, count, count > 0 ? ci.nanos.get() / count : 0L, count > 0 ? (double) ci.drops.get() / (double) count : 0D);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Resolves the current <code>ClusterRecord</code> against the repository.
+     * This is the sequential path, the input is evaluated and then committed
+     * right away.
+     * @param sort true if a sorted candidate list is to be used otherwise false.
+     * @param recordCount the current record count
+     */
+    public void integrateSource (boolean sort, long recordCount) {
+        commit(evaluate(clusterRecord, sort, recordCount, matrix, null));
+    }
 
-        if (compare != null) {
-            String[] target2, source2;
+    /**
+     * Evaluates the input against the candidates pulled from the repository.
+     * This method only reads the repository and does not touch the engine
+     * statistics, so it can be run for several inputs at the same time as long
+     * as each caller has its own working <code>Matrix</code> and comparators.
+     * @param input the <code>ClusterRecord</code> to be evaluated
+     * @param sort true if a sorted candidate list is to be used otherwise false.
+     * @param recordCount the record count of the input
+     * @param workMatrix the working <code>Matrix</code> for the rule evaluation
+     * @param comparators the comparators by attribute name, null to use the
+     * comparators from the attributes
+     * @return the <code>OysterResolutionResult</code> to be committed
+     */
+    public abstract OysterResolutionResult evaluate (ClusterRecord input, boolean sort, long recordCount, Matrix workMatrix, Map<String, OysterComparator> comparators);
+
+    /**
+     * Applies an evaluated input to the repository and records the statistics.
+     * Results have to be committed in the order the inputs were read.
+     * @param result the <code>OysterResolutionResult</code> to be committed
+     */
+    public abstract void commit (OysterResolutionResult result);
+
+    /**
+     * Returns the comparator to use for the attribute.
+     * @param item the attribute name
+     * @param comparators the comparators by attribute name, null to use the
+     * comparators from the attributes
+     * @return the <code>OysterComparator</code> if present, otherwise null.
+     */
+    protected OysterComparator getComparator(String item, Map<String, OysterComparator> comparators) {
+        OysterComparator oc;
+        if (comparators != null) {
+            oc = comparators.get(item);
+        } else {
+            oc = getAttributes().getComparator(item);
+        }
+        return oc;
+    }
+
+    /**
+     * Checks the working <code>Matrix</code> against the rule mask. The mask
+     * matches if every cell set in the mask is also set in the working matrix.
+     * @param m the rule mask
+     * @param workMatrix the working <code>Matrix</code>
+     * @return true if the mask matches, otherwise false
+     */
+    protected boolean matchesMask(Matrix m, Matrix workMatrix) {
+        // (matrix & mask) == mask
+        return workMatrix.containsAll(m);
+    }
+
+    /**
+     * Records the statistics of a result in the engine counters.
+     * @param result the <code>OysterResolutionResult</code> being committed
+     */
+    protected void recordStatistics(OysterResolutionResult result) {
+        totalCandidatesSize += result.getCandidateCount();
+        totalCandidatesDeDupSize += result.getUniqueCandidateCount();
+        if (result.getUniqueCandidateCount() > 0) {
+            totalCandidates++;
+        }
 
-            if (target != null) {
-                target2 = target.split("[|]");
-            } else {
-                target2 = "".split("");
+        for (Iterator<String> it = result.getCompleteRuleFirings().iterator(); it.hasNext();) {
+            String key = it.next();
+            long value = 0;
+            if (completeRuleFiring.containsKey(key)) {
+                value = completeRuleFiring.get(key);
             }
+            value++;
+            completeRuleFiring.put(key, value);
+        }
 
-            if (source != null) {
-                source2 = source.split("[|]");
-            } else {
-                source2 = "".split("");
+        for (Iterator<String> it = result.getRuleFirings().iterator(); it.hasNext();) {
+            String key = it.next();
+            long value = 0;
+            if (ruleFreq.containsKey(key)) {
+                value = ruleFreq.get(key);
             }
+            value++;
+            ruleFreq.put(key, value);
+        }
+        totalMatchedCount += result.getMatchCount();
+
+        // do the latency stats
+        long latency = result.getLatency();
+        if (result.isMatched()) {
+            matchingLatency += latency;
+            maxMatchingLatency = Math.max(maxMatchingLatency, latency);
+            minMatchingLatency = Math.min(minMatchingLatency, latency);
+        } else {
+            nonMatchingLatency += latency;
+            maxNonMatchingLatency = Math.max(maxNonMatchingLatency, latency);
+            minNonMatchingLatency = Math.min(minNonMatchingLatency, latency);
+        }
+    }
 
-            for (int i = 0; i < target2.length; i++) {
-                for (int j = 0; j < source2.length; j++) {
-                    String result = compare.compare(source2[j], target2[i], matchResult);
+    /**
+     * Pulls the candidate list for the input from the repository. The secondary
+     * filter is used when the primary filter returns nothing.
+     * @param input the <code>ClusterRecord</code> to be evaluated
+     * @param sort true if a sorted candidate list is to be used otherwise false.
+     * @return the candidate list
+     */
+    protected Map<String, ClusterRecord> getCandidateList(ClusterRecord input, boolean sort) {
+        Map<String, ClusterRecord> list;
+        if ((list = repository.getCandidateList(input, sort, primaryFilter, lcrdMinSize, isByPassFilter(), mergedList)).isEmpty()){
+            if (secondaryFilter != null) {
+                list = repository.getCandidateList(input, sort, secondaryFilter, lcrdMinSize, isByPassFilter(), mergedList);
+            }
+        }
+        return list;
+    }
 
-                    if (matchResult.equalsIgnoreCase(result)) {
-                        flag = true;
-                        break;
-                    }
-                }
+    /**
+     * Returns the OysterIDs of the clusters in the candidate list. These are
+     * the clusters the evaluation read and the commit may change.
+     * @param list the candidate list
+     * @return the set of OysterIDs
+     */
+    protected Set<String> getOysterIDs(Map<String, ClusterRecord> list) {
+        Set<String> s = new HashSet<String>();
+        for (Iterator<ClusterRecord> it = list.values().iterator(); it.hasNext();) {
+            s.add(it.next().getOysterID());
+        }
+        return s;
+    }
+
+    public abstract void postConsolidation(boolean sort, long recordCount, long countPoint);
+    
+    protected boolean compare(OysterComparator compare, String source, String target, String matchResult) {
+        boolean flag = false;
+
+        if (compare != null) {
+            flag = compare(compare.getPredicate(matchResult), source, target);
+        }
 
-                if (flag) {
-                    break;
+        return flag;
+    }
+    
+    /**
+     * Compares the source to the target with a compiled match result. Multi 
+     * valued attributes match if any pair of values match. Single values are
+     * compared as they are, without splitting.
+     * @param predicate the compiled match result
+     * @param source the source value
+     * @param target the target value
+     * @return true if the match result holds, otherwise false.
+     */
+    protected boolean compare(OysterMatchPredicate predicate, String source, String target) {
+        boolean flag = false;
+        
+        if (source == null) {
+            source = "";
+        }
+        
+        if (target == null) {
+            target = "";
+        }
+        
+        if (source.indexOf('|') < 0 && target.indexOf('|') < 0) {
+            flag = predicate.matches(source, target);
+        } else {
+            String[] target2 = VALUE_SEPARATOR.split(target), source2 = VALUE_SEPARATOR.split(source);
+            
+            for (int i = 0; i < target2.length && !flag; i++) {
+                for (int j = 0; j < source2.length && !flag; j++) {
+                    flag = predicate.matches(source2[j], target2[i]);
                 }
             }
         }
-
+        
         return flag;
     }
     
@@ -619,4 +933,72 @@ public abstract class OysterResolutionEngine extends OysterEngine{
         }
         return result;
     }
+    
+    /**
+     * A rule item compiled with its match results and their cells in the 
+     * <code>Matrix</code>.
+     */
+    protected static class CompiledItem {
+        /** The attribute name */
+        protected String item;
+        
+        /** The secondary attributes the source is also taken from, or null */
+        protected String [] compareTo;
+        
+        /** The row of the item */
+        protected int row;
+        
+        /** The match results of the item */
+        protected String [] matchResults;
+        
+        /** The column of each match result */
+        protected int [] columns;
+        
+        /** The bits of the masks that need each match result */
+        protected long [] masks;
+        
+        /** The bits of the masks that need each match result or a later one
+         * of this item, with an empty entry at the end */
+        protected long [] later;
+        
+        /** The number of times the item was evaluated */
+        protected final AtomicLong evaluations = new AtomicLong();
+        
+        /** The time spent evaluating the item */
+        protected final AtomicLong nanos = new AtomicLong();
+        
+        /** The number of evaluations that dropped a mask */
+        protected final AtomicLong drops = new AtomicLong();
+        
+        /**
+         * Records an evaluation of the item.
+         * @param time the nanoseconds the evaluation took.
+         * @param dropped true if the evaluation dropped a mask.
+         */
+        protected void record(long time, boolean dropped) {
+            evaluations.incrementAndGet();
+            nanos.addAndGet(time);
+            if (dropped) {
+                drops.incrementAndGet();
+            }
+        }
+        
+        /**
+         * Returns the expected time spent on the item for each mask it drops.
+         * An item that has not been evaluated costs nothing so it is measured
+         * first.
+         * @return the cost.
+         */
+        protected double getCost() {
+            long count = evaluations.get();
+            double cost = 0;
+            
+            if (count > 0) {
+                double avg = (double) nanos.get() / (double) count;
+                double dropRate = (drops.get() + 1D) / (count + 2D);
+                cost = avg / dropRate;
+            }
+            return cost;
+        }
+    }
 }
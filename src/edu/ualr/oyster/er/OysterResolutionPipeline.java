@@ -0,0 +1,498 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.er;
+
+import edu.ualr.oyster.ErrorFormatter;
+import edu.ualr.oyster.association.matching.OysterComparator;
+import edu.ualr.oyster.data.ClusterRecord;
+import edu.ualr.oyster.io.OysterSourceReader;
+import edu.ualr.oyster.kb.OysterIdentityRepository;
+import edu.ualr.oyster.optimization.Matrix;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class resolves the references of a source with several threads while
+ * producing the same result as the sequential run.
+ *
+ * The references are read ahead by a reader thread and taken in batches. Each
+ * batch is evaluated in parallel against the repository as it stood before the
+ * batch, then the results are committed one at a time in read order. Every
+ * evaluation records the index keys it probed and the OysterIDs of the
+ * candidate clusters it read. A result is stale when an earlier commit in the
+ * same batch wrote to one of those keys or read one of those clusters; stale
+ * results are evaluated again right before they are committed.
+ *
+ * Responsibilities:
+ * <ul>
+ * <li>Read the source ahead of the resolution</li>
+ * <li>Evaluate the references of a batch in parallel</li>
+ * <li>Commit the results in read order</li>
+ * <li>Re-evaluate results that are invalidated by an earlier commit</li>
+ * </ul>
+ * @author Eric D. Nelson
+ */
+public class OysterResolutionPipeline {
+    /** The engine that does the evaluation and the commit */
+    private OysterResolutionEngine engine = null;
+
+    /** The repository that is being resolved against */
+    private OysterIdentityRepository repository = null;
+
+    /** The reader for the current source */
+    private OysterSourceReader reader = null;
+
+    /** True if a sorted candidate list is to be used otherwise false */
+    private boolean sort = false;
+
+    /** The number of evaluation threads */
+    private int threads = 1;
+
+    /** The number of references evaluated together */
+    private int batchSize = 1;
+
+    /** The references read ahead by the reader thread */
+    private BlockingQueue<OysterResolutionResult> queue = null;
+
+    /** The reader thread */
+    private Thread readerThread = null;
+
+    /** Set to stop the reader thread */
+    private volatile boolean stopped = false;
+
+    /** True once the reader has read the last reference */
+    private boolean exhausted = false;
+
+    /** The error that stopped the reader thread, null if none */
+    private volatile RuntimeException failure = null;
+
+    /** The evaluation threads */
+    private ExecutorService executor = null;
+
+    /** The working matrices, one per evaluation thread */
+    private ArrayList<Matrix> workMatrices = null;
+
+    /** The comparators, one set per evaluation thread */
+    private ArrayList<Map<String, OysterComparator>> workComparators = null;
+
+    /** The evaluated results of the current batch waiting to be committed */
+    private LinkedList<OysterResolutionResult> batch = null;
+
+    /** The result that is up next to be committed */
+    private OysterResolutionResult current = null;
+
+    /** The index keys written by the commits of the current batch */
+    private Set<String> journal = null;
+
+    /** The OysterIDs of the clusters the commits of the current batch could change */
+    private Set<String> writtenOysterIDs = null;
+
+    /** Set when the rest of the current batch can no longer be trusted */
+    private boolean invalid = false;
+
+    /** The number of results committed as evaluated by the threads */
+    private long speculative = 0;
+
+    /** The number of results that had to be evaluated again */
+    private long reevaluated = 0;
+
+    /** Marks the end of the source in the queue */
+    private static final OysterResolutionResult EOF = new OysterResolutionResult(null, -1);
+
+    /** The Logger */
+    private Logger logger = null;
+
+    /**
+     * Creates a new instance of <code>OysterResolutionPipeline</code>.
+     * @param engine the engine that does the evaluation and the commit.
+     * @param reader the opened reader for the current source.
+     * @param sort true if a sorted candidate list is to be used otherwise false.
+     * @param threads the number of evaluation threads.
+     * @param batchSize the number of references evaluated together.
+     * @param logger the logger to report to.
+     */
+    public OysterResolutionPipeline(OysterResolutionEngine engine, OysterSourceReader reader, boolean sort, int threads, int batchSize, Logger logger) {
+        this.engine = engine;
+        this.repository = engine.getRepository();
+        this.reader = reader;
+        this.sort = sort;
+        this.threads = Math.max(threads, 1);
+        this.batchSize = Math.max(batchSize, 1);
+        this.logger = logger;
+
+        batch = new LinkedList<OysterResolutionResult>();
+        journal = new HashSet<String>();
+        writtenOysterIDs = new HashSet<String>();
+    }
+
+    /**
+     * Returns the <code>ClusterRecord</code> that is up next to be committed.
+     * @return the <code>ClusterRecord</code>.
+     */
+    public ClusterRecord getClusterRecord() {
+        return current.getInput();
+    }
+
+    /**
+     * Returns the record count of the <code>ClusterRecord</code> that is up next
+     * to be committed.
+     * @return the record count.
+     */
+    public long getRecordCount() {
+        return current.getRecordCount();
+    }
+
+    /**
+     * Returns the number of results committed as evaluated by the threads.
+     * @return the speculative count.
+     */
+    public long getSpeculative() {
+        return speculative;
+    }
+
+    /**
+     * Returns the number of results that had to be evaluated again.
+     * @return the re-evaluated count.
+     */
+    public long getReevaluated() {
+        return reevaluated;
+    }
+
+    /**
+     * Starts the reader and the evaluation threads. A working matrix and a set
+     * of comparators is created for each evaluation thread since neither can
+     * be shared.
+     */
+    public void open() {
+        workMatrices = new ArrayList<Matrix>();
+        workComparators = new ArrayList<Map<String, OysterComparator>>();
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                workMatrices.add((Matrix) engine.matrix.clone());
+
+                Map<String, OysterComparator> comparators = new LinkedHashMap<String, OysterComparator>();
+                for (Iterator<String> it = engine.rules.keySet().iterator(); it.hasNext();) {
+                    String item = it.next();
+                    OysterComparator oc = engine.getAttributes().getComparator(item);
+
+                    if (oc != null) {
+                        comparators.put(item, oc.getClass().getDeclaredConstructor().newInstance());
+                    }
+                }
+                workComparators.add(comparators);
+            }
+        } catch (CloneNotSupportedException ex) {
+            Logger.getLogger(OysterResolutionPipeline.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        } catch (InstantiationException ex) {
+            Logger.getLogger(OysterResolutionPipeline.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        } catch (IllegalAccessException ex) {
+            Logger.getLogger(OysterResolutionPipeline.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        } catch (NoSuchMethodException ex) {
+            Logger.getLogger(OysterResolutionPipeline.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        } catch (InvocationTargetException ex) {
+            Logger.getLogger(OysterResolutionPipeline.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+
+        repository.getValueIndex().setJournal(journal);
+
+        queue = new ArrayBlockingQueue<OysterResolutionResult>(batchSize * 2);
+        readerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                read();
+            }
+        }, "OysterResolutionPipeline-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Moves to the next reference. When the current batch is used up the next
+     * batch is taken from the reader and evaluated.
+     * @return true if there is a reference to be committed, otherwise false.
+     */
+    public boolean next() {
+        if (batch.isEmpty()) {
+            evaluateBatch();
+        }
+
+        current = batch.poll();
+        return current != null;
+    }
+
+    /**
+     * Commits the current reference. The evaluation is redone first if an
+     * earlier commit of the batch touched what the evaluation read.
+     */
+    public void integrate() {
+        OysterResolutionResult result = current;
+
+        if (isStale(result)) {
+            result = engine.evaluate(result.getInput(), sort, result.getRecordCount(), engine.matrix, null);
+            collectReadSet(result);
+            reevaluated++;
+        } else {
+            speculative++;
+        }
+
+        engine.commit(result);
+        pin(current, false);
+
+        writtenOysterIDs.addAll(result.getOysterIDs());
+    }
+
+    /**
+     * Marks the rest of the current batch to be evaluated again. This is used
+     * when the repository is changed outside of the commits, e.g. when the
+     * entity map cache is cleared.
+     */
+    public void invalidate() {
+        invalid = true;
+    }
+
+    /**
+     * Stops the reader and the evaluation threads and reports how many results
+     * were committed as evaluated and how many had to be evaluated again.
+     */
+    public void close() {
+        stopped = true;
+        if (queue != null) {
+            queue.clear();
+        }
+        while (!batch.isEmpty()) {
+            pin(batch.poll(), false);
+        }
+
+        try {
+            if (readerThread != null) {
+                readerThread.join();
+            }
+
+            if (executor != null) {
+                executor.shutdown();
+                executor.awaitTermination(60, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(OysterResolutionPipeline.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+
+        repository.getValueIndex().setJournal(null);
+
+        StringBuilder sb = new StringBuilder(100);
+        sb.append("Parallel Resolution Threads: ").append(threads)
+          .append(" Batch Size: ").append(batchSize)
+          .append(" Speculative: ").append(speculative)
+          .append(" Re-evaluated: ").append(reevaluated);
+        logger.severe(sb.toString());
+        System.out.println(sb.toString());
+    }
+
+    /**
+     * Reads the source on the reader thread. Each reference is copied since the
+     * reader reuses its <code>ClusterRecord</code>. If the reader fails the end
+     * is still marked and the failure is thrown when the end is taken.
+     */
+    private void read() {
+        try {
+            try {
+                while (!stopped && reader.getNextReference() > 0) {
+                    OysterResolutionResult pending = new OysterResolutionResult(reader.getClusterRecord().clone(), reader.getRecordCount());
+
+                    while (!stopped && !queue.offer(pending, 100, TimeUnit.MILLISECONDS)) {
+                        // wait for the pipeline to catch up
+                    }
+                }
+            } catch (RuntimeException ex) {
+                // thrown on the resolution thread when it reaches the end
+                failure = ex;
+            }
+
+            while (!stopped && !queue.offer(EOF, 100, TimeUnit.MILLISECONDS)) {
+                // wait for the pipeline to catch up
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(OysterResolutionPipeline.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+    }
+
+    /**
+     * Takes the next batch from the reader and evaluates it in parallel. Each
+     * thread takes every n-th reference of the batch.
+     * @throws RuntimeException the error that stopped the reader, if any.
+     */
+    private void evaluateBatch() {
+        final ArrayList<OysterResolutionResult> pending = new ArrayList<OysterResolutionResult>();
+
+        try {
+            while (!exhausted && pending.size() < batchSize) {
+                OysterResolutionResult r = queue.take();
+
+                if (r == EOF) {
+                    exhausted = true;
+                    if (failure != null) {
+                        throw failure;
+                    }
+                } else {
+                    pending.add(r);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(OysterResolutionPipeline.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long evictions = repository.getEntityMap().getEvictions();
+        final OysterResolutionResult [] results = new OysterResolutionResult[pending.size()];
+        ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+
+        for (int i = 0; i < threads; i++) {
+            final int offset = i;
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    Matrix workMatrix = workMatrices.get(offset);
+                    Map<String, OysterComparator> comparators = workComparators.get(offset);
+
+                    for (int j = offset; j < pending.size(); j += threads) {
+                        OysterResolutionResult r = pending.get(j);
+                        results[j] = engine.evaluate(r.getInput(), sort, r.getRecordCount(), workMatrix, comparators);
+                        collectReadSet(results[j]);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (Iterator<Future<Object>> it = futures.iterator(); it.hasNext();) {
+            try {
+                it.next().get();
+            } catch (InterruptedException ex) {
+                Logger.getLogger(OysterResolutionPipeline.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            } catch (ExecutionException ex) {
+                Logger.getLogger(OysterResolutionPipeline.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            }
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            // a failed evaluation is done again on commit
+            if (results[i] == null) {
+                results[i] = pending.get(i);
+            }
+            batch.add(results[i]);
+            pin(results[i], true);
+        }
+
+        journal.clear();
+        writtenOysterIDs.clear();
+        
+        // an evaluated cluster may have been evicted before it was pinned
+        invalid = repository.getEntityMap().getEvictions() != evictions;
+    }
+
+    /**
+     * Pins or unpins the candidate clusters of an evaluated result, so they
+     * stay in the entity map until the result is committed.
+     * @param result the evaluated <code>OysterResolutionResult</code>.
+     * @param pin true to pin the clusters, false to unpin them.
+     */
+    private void pin(OysterResolutionResult result, boolean pin) {
+        if (result.getOysterIDs() != null) {
+            for (Iterator<String> it = result.getOysterIDs().iterator(); it.hasNext();) {
+                if (pin) {
+                    repository.getEntityMap().pin(it.next());
+                } else {
+                    repository.getEntityMap().unpin(it.next());
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the index keys the evaluation of the result probed. The OysterIDs
+     * of the candidate clusters are recorded by the evaluation itself.
+     * @param result the evaluated <code>OysterResolutionResult</code>.
+     */
+    private void collectReadSet(OysterResolutionResult result) {
+        result.setKeys(repository.getValueIndex().getKeys(result.getInput()));
+    }
+
+    /**
+     * Checks if an earlier commit of the batch touched what the evaluation of
+     * the result read.
+     * @param result the <code>OysterResolutionResult</code> to be checked.
+     * @return true if the result has to be evaluated again, otherwise false.
+     */
+    private boolean isStale(OysterResolutionResult result) {
+        boolean flag = invalid || result.getKeys() == null;
+
+        if (!flag) {
+            flag = intersects(result.getKeys(), journal) ||
+                   intersects(result.getOysterIDs(), writtenOysterIDs);
+        }
+        return flag;
+    }
+
+    /**
+     * Checks if two sets have an element in common.
+     * @param s1 the first set.
+     * @param s2 the second set.
+     * @return true if the sets share an element, otherwise false.
+     */
+    private boolean intersects(Set<String> s1, Set<String> s2) {
+        boolean flag = false;
+
+        if (s1.size() > s2.size()) {
+            Set<String> temp = s1;
+            s1 = s2;
+            s2 = temp;
+        }
+
+        for (Iterator<String> it = s1.iterator(); it.hasNext();) {
+            if (s2.contains(it.next())) {
+                flag = true;
+                break;
+            }
+        }
+        return flag;
+    }
+}
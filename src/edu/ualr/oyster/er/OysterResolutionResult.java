@@ -0,0 +1,303 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.er;
+
+import edu.ualr.oyster.data.ClusterRecord;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the outcome of evaluating one input <code>ClusterRecord</code> against
+ * the <code>OysterIdentityRepository</code>. The evaluation step (candidate
+ * list and rule matching) only reads the repository, everything that changes
+ * the repository or the engine statistics is deferred to the commit step
+ * which consumes this object.
+ *
+ * Responsibilities:
+ * <ul>
+ * <li>Carry the match decision from evaluation to commit</li>
+ * <li>Carry the statistics to be recorded on commit</li>
+ * <li>Carry the index keys and OysterIDs the evaluation read</li>
+ * </ul>
+ * @author Eric D. Nelson
+ */
+public class OysterResolutionResult {
+    /** The input that was evaluated */
+    private ClusterRecord input = null;
+
+    /** The record count of the input */
+    private long recordCount = 0;
+
+    /** The last candidate that was looked at */
+    private ClusterRecord candidate = null;
+
+    /** The RefID of the matched candidate */
+    private String index = "";
+
+    /** The rule the candidate matched on */
+    private String rule = "";
+
+    /** Whether the input matched a candidate */
+    private boolean matched = false;
+
+    /** All of the candidates that matched (RefID, rule) */
+    private Map<String, String> consolidate = null;
+
+    /** The candidate list size before duplicate clusters are removed */
+    private int candidateCount = 0;
+
+    /** The candidate list size after duplicate clusters are removed */
+    private int uniqueCandidateCount = 0;
+
+    /** Rule sets to be counted in the complete rule firing */
+    private ArrayList<String> completeRuleFirings = null;
+
+    /** Rules to be counted in the rule frequency */
+    private ArrayList<String> ruleFirings = null;
+
+    /** The number of matches to be added to the total matched count */
+    private int matchCount = 0;
+
+    /** The time it took to evaluate the input */
+    private long latency = 0;
+
+    /** The index keys read by the evaluation */
+    private Set<String> keys = null;
+
+    /** The OysterIDs of the candidate clusters read by the evaluation */
+    private Set<String> oysterIDs = null;
+
+    /**
+     * Creates a new instance of <code>OysterResolutionResult</code>.
+     * @param input the input that is being evaluated
+     * @param recordCount the record count of the input
+     */
+    public OysterResolutionResult(ClusterRecord input, long recordCount) {
+        this.input = input;
+        this.recordCount = recordCount;
+
+        consolidate = new LinkedHashMap<String, String>();
+        completeRuleFirings = new ArrayList<String>();
+        ruleFirings = new ArrayList<String>();
+    }
+
+    /**
+     * Returns the input for this <code>OysterResolutionResult</code>.
+     * @return the input.
+     */
+    public ClusterRecord getInput() {
+        return input;
+    }
+
+    /**
+     * Returns the record count for this <code>OysterResolutionResult</code>.
+     * @return the record count.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the last candidate that was looked at.
+     * @return the candidate, can be null.
+     */
+    public ClusterRecord getCandidate() {
+        return candidate;
+    }
+
+    /**
+     * Sets the last candidate that was looked at.
+     * @param candidate the candidate to be set.
+     */
+    public void setCandidate(ClusterRecord candidate) {
+        this.candidate = candidate;
+    }
+
+    /**
+     * Returns the RefID of the matched candidate.
+     * @return the index.
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the RefID of the matched candidate.
+     * @param index the index to be set.
+     */
+    public void setIndex(String index) {
+        this.index = index;
+    }
+
+    /**
+     * Returns the rule the candidate matched on.
+     * @return the rule.
+     */
+    public String getRule() {
+        return rule;
+    }
+
+    /**
+     * Sets the rule the candidate matched on.
+     * @param rule the rule to be set.
+     */
+    public void setRule(String rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * Returns whether the input matched a candidate.
+     * @return true if matched, otherwise false.
+     */
+    public boolean isMatched() {
+        return matched;
+    }
+
+    /**
+     * Sets whether the input matched a candidate.
+     * @param matched the matched flag to be set.
+     */
+    public void setMatched(boolean matched) {
+        this.matched = matched;
+    }
+
+    /**
+     * Returns all of the candidates that matched.
+     * @return the RefID to rule map.
+     */
+    public Map<String, String> getConsolidate() {
+        return consolidate;
+    }
+
+    /**
+     * Returns the candidate list size before duplicate clusters are removed.
+     * @return the candidate count.
+     */
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * Sets the candidate list size before duplicate clusters are removed.
+     * @param candidateCount the candidate count to be set.
+     */
+    public void setCandidateCount(int candidateCount) {
+        this.candidateCount = candidateCount;
+    }
+
+    /**
+     * Returns the candidate list size after duplicate clusters are removed.
+     * @return the unique candidate count.
+     */
+    public int getUniqueCandidateCount() {
+        return uniqueCandidateCount;
+    }
+
+    /**
+     * Sets the candidate list size after duplicate clusters are removed.
+     * @param uniqueCandidateCount the unique candidate count to be set.
+     */
+    public void setUniqueCandidateCount(int uniqueCandidateCount) {
+        this.uniqueCandidateCount = uniqueCandidateCount;
+    }
+
+    /**
+     * Returns the rule sets to be counted in the complete rule firing.
+     * @return the complete rule firings.
+     */
+    public ArrayList<String> getCompleteRuleFirings() {
+        return completeRuleFirings;
+    }
+
+    /**
+     * Returns the rules to be counted in the rule frequency.
+     * @return the rule firings.
+     */
+    public ArrayList<String> getRuleFirings() {
+        return ruleFirings;
+    }
+
+    /**
+     * Returns the number of matches to be added to the total matched count.
+     * @return the match count.
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * Sets the number of matches to be added to the total matched count.
+     * @param matchCount the match count to be set.
+     */
+    public void setMatchCount(int matchCount) {
+        this.matchCount = matchCount;
+    }
+
+    /**
+     * Returns the time it took to evaluate the input.
+     * @return the latency in milliseconds.
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * Sets the time it took to evaluate the input.
+     * @param latency the latency in milliseconds.
+     */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Returns the index keys read by the evaluation.
+     * @return the keys, null if they were not collected.
+     */
+    public Set<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Sets the index keys read by the evaluation.
+     * @param keys the keys to be set.
+     */
+    public void setKeys(Set<String> keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Returns the OysterIDs read by the evaluation.
+     * @return the OysterIDs, null if they were not collected.
+     */
+    public Set<String> getOysterIDs() {
+        return oysterIDs;
+    }
+
+    /**
+     * Sets the OysterIDs read by the evaluation.
+     * @param oysterIDs the OysterIDs to be set.
+     */
+    public void setOysterIDs(Set<String> oysterIDs) {
+        this.oysterIDs = oysterIDs;
+    }
+}
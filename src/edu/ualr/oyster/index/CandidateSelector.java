@@ -0,0 +1,378 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Scores and cuts the candidate list of an <code>InvertedIndex</code>. The
+ * score of a candidate is the number of index keys it was found under. When
+ * there are more than <code>threshold</code> candidates only the top
+ * <code>ratio</code> of them, at most <code>cap</code>, are kept. As in the
+ * original candidate list every candidate that scores the same as the last one
+ * kept is kept as well, so the cut may keep more than <code>cap</code>. With an
+ * exact cut exactly that many are kept and the ties at the cut are broken by
+ * the lowest RefID ordinal.
+ *
+ * The selection is a counting selection since the score is bounded by the
+ * number of keys. The postings of the largest key are never merged as a whole:
+ * the other postings are merged and looked up in it, and it is only walked as
+ * far as needed to fill the cut. A high frequency key (e.g. a common surname
+ * Soundex) therefore costs about as much as the candidates that are kept.
+ *
+ * The buffers are kept per thread and reused between calls.
+ * @author Eric D. Nelson
+ */
+public class CandidateSelector {
+    /** The candidate count above which the list is cut */
+    private int threshold = 100;
+
+    /** The most candidates kept when the list is cut */
+    private int cap = 100;
+
+    /** The part of the candidates kept when the list is cut */
+    private double ratio = 1D / 3D;
+
+    /** Whether the cut keeps exactly the cap instead of every tie at the cut */
+    private boolean exact = false;
+
+    /** The buffers of each thread */
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    /**
+     * Creates a new instance of <code>CandidateSelector</code> that keeps the
+     * top 1/3, at most 100, when there are more than 100 candidates.
+     */
+    public CandidateSelector() {
+    }
+
+    /**
+     * Creates a new instance of <code>CandidateSelector</code>.
+     * @param threshold the candidate count above which the list is cut.
+     * @param cap the most candidates kept when the list is cut.
+     * @param ratio the part of the candidates kept when the list is cut.
+     */
+    public CandidateSelector(int threshold, int cap, double ratio) {
+        this.threshold = threshold;
+        this.cap = cap;
+        this.ratio = ratio;
+    }
+
+    /**
+     * Returns the candidate count above which the list is cut.
+     * @return the threshold.
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the candidate count above which the list is cut.
+     * @param threshold the threshold to be set.
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns the most candidates kept when the list is cut.
+     * @return the cap.
+     */
+    public int getCap() {
+        return cap;
+    }
+
+    /**
+     * Sets the most candidates kept when the list is cut.
+     * @param cap the cap to be set.
+     */
+    public void setCap(int cap) {
+        this.cap = cap;
+    }
+
+    /**
+     * Returns the part of the candidates kept when the list is cut.
+     * @return the ratio.
+     */
+    public double getRatio() {
+        return ratio;
+    }
+
+    /**
+     * Sets the part of the candidates kept when the list is cut.
+     * @param ratio the ratio to be set.
+     */
+    public void setRatio(double ratio) {
+        this.ratio = ratio;
+    }
+
+    /**
+     * Returns whether the cut keeps exactly the cap, breaking the ties at the
+     * cut by the lowest RefID ordinal, instead of every tie at the cut.
+     * @return true if the cut is exact.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Sets whether the cut keeps exactly the cap, breaking the ties at the
+     * cut by the lowest RefID ordinal, instead of every tie at the cut.
+     * @param exact true if the cut is to be exact.
+     */
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
+    /**
+     * Returns the postings buffer of the current thread, cleared. The postings
+     * to be scored are added to it before <code>select</code> is called.
+     * @return the postings buffer.
+     */
+    public ArrayList<IntPostingList> getPostings() {
+        ArrayList<IntPostingList> lists = SCRATCH.get().lists;
+        lists.clear();
+        return lists;
+    }
+
+    /**
+     * Scores the postings added to the postings buffer and fills the candidates
+     * with the ones that are kept, in ascending order.
+     * @param candidates the buffer for the candidates, cleared first.
+     * @return the number of candidates before the cut.
+     */
+    public int select(IntPostingList candidates) {
+        Scratch scratch = SCRATCH.get();
+        ArrayList<IntPostingList> lists = scratch.lists;
+        candidates.clear();
+
+        if (lists.isEmpty()) {
+            return 0;
+        }
+
+        // set the largest postings aside
+        int largest = 0;
+        for (int i = 1; i < lists.size(); i++) {
+            if (lists.get(i).size() > lists.get(largest).size()) {
+                largest = i;
+            }
+        }
+        IntPostingList big = lists.remove(largest);
+
+        // merge the rest and look each one up in the largest
+        IntPostingList small = scratch.small;
+        merge(scratch, small);
+
+        int found = 0, from = 0;
+        int [] votes = scratch.votes;
+        for (int i = 0; i < small.size(); i++) {
+            int pos = Arrays.binarySearch(big.getValues(), from, big.size(), small.get(i));
+            if (pos >= 0) {
+                votes[i]++;
+                found++;
+                from = pos + 1;
+            } else {
+                from = -(pos + 1);
+            }
+        }
+
+        int total = small.size() + big.size() - found;
+        int keep = total;
+        int minVotes = 1;
+        int ties = 0;
+
+        if (total > threshold) {
+            keep = Math.min(cap, (int) (total * ratio));
+
+            // count the candidates per score, the ones only in the largest score 1
+            int maxVotes = lists.size() + 1;
+            int [] counts = scratch.counts(maxVotes + 1);
+            for (int i = 0; i < small.size(); i++) {
+                counts[votes[i]]++;
+            }
+            counts[1] += big.size() - found;
+
+            int sum = 0;
+            if (exact) {
+                // find the lowest score that is kept and how many of it
+                for (minVotes = maxVotes; minVotes > 1; minVotes--) {
+                    if (sum + counts[minVotes] >= keep) {
+                        break;
+                    }
+                    sum += counts[minVotes];
+                }
+                ties = keep - sum;
+            } else {
+                // keep whole scores until more than the cut are kept
+                for (minVotes = maxVotes; minVotes > 1; minVotes--) {
+                    sum += counts[minVotes];
+                    if (sum > keep) {
+                        break;
+                    }
+                }
+                ties = Integer.MAX_VALUE;
+            }
+        } else {
+            ties = total;
+        }
+
+        if (minVotes > 1) {
+            // everything kept is in the merged postings
+            for (int i = 0; i < small.size(); i++) {
+                int v = votes[i];
+                if (v > minVotes || (v == minVotes && ties-- > 0)) {
+                    candidates.append(small.get(i));
+                }
+            }
+        } else {
+            // walk both in ascending order, the ones only in the largest score 1
+            int i = 0, j = 0;
+            while (i < small.size() || (j < big.size() && ties > 0)) {
+                int a = i < small.size() ? small.get(i) : Integer.MAX_VALUE;
+                int b = j < big.size() && ties > 0 ? big.get(j) : Integer.MAX_VALUE;
+
+                if (a <= b) {
+                    int v = votes[i];
+                    if (v > 1 || ties-- > 0) {
+                        candidates.append(a);
+                    }
+                    if (a == b) {
+                        j++;
+                    }
+                    i++;
+                } else {
+                    candidates.append(b);
+                    ties--;
+                    j++;
+                }
+            }
+        }
+
+        lists.clear();
+        return total;
+    }
+
+    /**
+     * Merges the postings in the postings buffer into the candidates in
+     * ascending order. For each candidate the number of postings it was found
+     * in is placed in the scratch votes at the same position.
+     * @param scratch the buffers of the current thread.
+     * @param candidates the buffer for the candidates, cleared first.
+     */
+    private void merge(Scratch scratch, IntPostingList candidates) {
+        ArrayList<IntPostingList> lists = scratch.lists;
+        int k = lists.size();
+        int [] cursors = scratch.cursors(k);
+
+        candidates.clear();
+        while (true) {
+            // find the smallest head
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < k; i++) {
+                IntPostingList l = lists.get(i);
+                if (cursors[i] < l.size() && l.get(cursors[i]) < min) {
+                    min = l.get(cursors[i]);
+                }
+            }
+
+            if (min == Integer.MAX_VALUE) {
+                break;
+            }
+
+            // advance every list that holds it
+            int v = 0;
+            for (int i = 0; i < k; i++) {
+                IntPostingList l = lists.get(i);
+                if (cursors[i] < l.size() && l.get(cursors[i]) == min) {
+                    cursors[i]++;
+                    v++;
+                }
+            }
+
+            scratch.vote(candidates.size(), v);
+            candidates.append(min);
+        }
+    }
+
+    /**
+     * The buffers reused by each thread.
+     */
+    private static class Scratch {
+        /** The postings to be scored */
+        private ArrayList<IntPostingList> lists = new ArrayList<IntPostingList>();
+
+        /** The merged postings other than the largest */
+        private IntPostingList small = new IntPostingList(256);
+
+        /** The position in each of the postings */
+        private int [] cursors = new int[16];
+
+        /** The score of each merged candidate */
+        private int [] votes = new int[256];
+
+        /** The number of candidates per score */
+        private int [] counts = new int[16];
+
+        /**
+         * Returns the cursors, zeroed.
+         * @param k the number of postings.
+         * @return the cursors.
+         */
+        private int [] cursors(int k) {
+            if (cursors.length < k) {
+                cursors = new int[k];
+            }
+            Arrays.fill(cursors, 0, k, 0);
+            return cursors;
+        }
+
+        /**
+         * Returns the counts, zeroed.
+         * @param n the number of counts.
+         * @return the counts.
+         */
+        private int [] counts(int n) {
+            if (counts.length < n) {
+                counts = new int[n];
+            }
+            Arrays.fill(counts, 0, n, 0);
+            return counts;
+        }
+
+        /**
+         * Sets the score of the candidate at the position.
+         * @param i the position.
+         * @param v the score.
+         */
+        private void vote(int i, int v) {
+            if (i == votes.length) {
+                votes = Arrays.copyOf(votes, votes.length * 2);
+            }
+            votes[i] = v;
+        }
+    }
+}
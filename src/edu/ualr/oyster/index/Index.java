@@ -49,6 +49,23 @@ public interface Index {
      * @param obj the entry to be added.
      */
     public void addEntry(String i, Object obj);
+
+    /**
+     * Works out the keys of an entry without changing the <code>Index</code>.
+     * It may be called by several threads at once, the entries are then added
+     * in order with <code>addPreparedEntry</code>.
+     * @param obj the entry to be prepared.
+     * @return the prepared entry.
+     */
+    public Object prepareEntry(Object obj);
+
+    /**
+     * Add an entry prepared by <code>prepareEntry</code> to the <code>Index
+     * </code>, the same as <code>addEntry(Object)</code>.
+     * @param obj the entry to be added.
+     * @param prepared the result of <code>prepareEntry</code> for the entry.
+     */
+    public void addPreparedEntry(Object obj, Object prepared);
     
     /**
      * Associates the specified value with the specified key in this <code>Index</code>.
@@ -126,5 +143,43 @@ public interface Index {
 
     public Set<String> getCandidateList(ClusterRecord clusterRecord, Map<Integer, ArrayList<String>> lcrd);
 
+    /**
+     * Fills the buffer with the candidates for the <code>ClusterRecord</code>
+     * as RefID ordinals in ascending order.
+     * @param clusterRecord the <code>ClusterRecord</code> to be matched.
+     * @param lcrd the least common rule denominator.
+     * @param candidates the buffer for the candidates, cleared first.
+     * @return the number of candidates.
+     */
+    public int getCandidateList(ClusterRecord clusterRecord, Map<Integer, ArrayList<String>> lcrd, IntPostingList candidates);
+
+    /**
+     * Returns the RefID for an ordinal returned in a candidate list.
+     * @param ordinal the ordinal.
+     * @return the RefID.
+     */
+    public String getRefID(int ordinal);
+
+    /**
+     * Returns the index keys that are probed when a candidate list is pulled
+     * for the <code>ClusterRecord</code>.
+     * @param clusterRecord the <code>ClusterRecord</code> to be hashed.
+     * @return the set of keys.
+     */
+    public Set<String> getKeys(ClusterRecord clusterRecord);
+
+    /**
+     * Returns the journal of the keys written to this <code>Index</code>.
+     * @return the journal, null if journaling is off.
+     */
+    public Set<String> getJournal();
+
+    /**
+     * Sets the journal for this <code>Index</code>. While a journal is set 
+     * every key that is added to or removed from is recorded in it.
+     * @param journal the journal to be set, null to turn journaling off.
+     */
+    public void setJournal(Set<String> journal);
+
     public String indexStats();
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.index;
+
+import edu.ualr.oyster.ErrorFormatter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the postings written to an <code>InvertedIndex</code> while it is
+ * set on the index, so the changes of a run can be appended to the delta log
+ * of an <code>IndexSnapshot</code> instead of writing the whole index again.
+ * The changes are held in memory as the operation, the key and the RefID.
+ * @author Eric D. Nelson
+ */
+public class IndexDelta {
+    /** A RefID was added to the postings of a key */
+    static final byte ADD = 1;
+
+    /** A RefID was removed from the postings of a key */
+    static final byte REMOVE = 2;
+
+    /** A key was removed */
+    static final byte REMOVE_KEY = 3;
+
+    /** All of the keys were removed */
+    static final byte CLEAR = 4;
+
+    /** The recorded operations */
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+
+    /** Writes the operations to the buffer */
+    private DataOutputStream out = new DataOutputStream(buffer);
+
+    /** The number of operations recorded */
+    private int size = 0;
+
+    /**
+     * Creates a new instance of <code>IndexDelta</code>.
+     */
+    public IndexDelta() {
+    }
+
+    /**
+     * Returns the number of operations recorded.
+     * @return the size.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Records that a RefID was added to the postings of a key.
+     * @param key the key.
+     * @param refID the RefID.
+     */
+    public synchronized void add(String key, String refID) {
+        record(ADD, key, refID);
+    }
+
+    /**
+     * Records that a RefID was removed from the postings of a key.
+     * @param key the key.
+     * @param refID the RefID.
+     */
+    public synchronized void remove(String key, String refID) {
+        record(REMOVE, key, refID);
+    }
+
+    /**
+     * Records that a key was removed.
+     * @param key the key.
+     */
+    public synchronized void removeKey(String key) {
+        record(REMOVE_KEY, key, "");
+    }
+
+    /**
+     * Records that all of the keys were removed.
+     */
+    public synchronized void clear() {
+        record(CLEAR, "", "");
+    }
+
+    /**
+     * Returns the recorded operations as they are written to the delta log.
+     * @return the operations.
+     */
+    synchronized byte [] toByteArray() {
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Appends an operation to the buffer.
+     * @param op the operation.
+     * @param key the key.
+     * @param refID the RefID.
+     */
+    private void record(byte op, String key, String refID) {
+        try {
+            out.writeByte(op);
+            out.writeUTF(key);
+            out.writeUTF(refID);
+            size++;
+        } catch (IOException ex) {
+            // a ByteArrayOutputStream does not throw
+            Logger.getLogger(IndexDelta.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+    }
+
+    /**
+     * Applies recorded operations to an <code>InvertedIndex</code> the same
+     * way they were first made, so the stop keys come out the same.
+     * @param index the <code>InvertedIndex</code>.
+     * @param in the operations.
+     * @param count the number of operations.
+     * @throws IOException if the operations can not be read.
+     */
+    static void replay(InvertedIndex index, DataInputStream in, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            byte op = in.readByte();
+            String key = in.readUTF();
+            String refID = in.readUTF();
+
+            switch (op) {
+                case ADD:
+                    index.addPosting(key, refID);
+                    break;
+                case REMOVE:
+                    index.removePosting(key, refID);
+                    break;
+                case REMOVE_KEY:
+                    index.removeEntry(key);
+                    break;
+                case CLEAR:
+                    index.clear();
+                    break;
+                default:
+                    throw new IOException("Unknown index delta operation " + op);
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.index;
+
+import edu.ualr.oyster.utilities.DaitchMokotoffSoundex;
+import edu.ualr.oyster.utilities.IBMAlphaCode;
+import edu.ualr.oyster.utilities.NYSIISCode;
+import edu.ualr.oyster.utilities.Scan;
+import edu.ualr.oyster.utilities.Soundex;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The hash method of an index rule segment, e.g. <code>SOUNDEX</code>, <code>
+ * DMSOUNDEX(6)</code> or <code>SCAN(LR,ALPHA,5,ToUpper,SameOrder)</code>. The
+ * method string is parsed once when the rule is loaded and the arguments are
+ * held as fields.
+ *
+ * Names and dates repeat heavily so the codes are kept in a bounded cache in
+ * front of the hash method. The cache is direct mapped on the token hash, an
+ * entry is replaced when another token falls in its slot. Each entry is an
+ * immutable pair so the cache can be read and written by several threads
+ * without locking.
+ * @author Eric D. Nelson
+ */
+public class IndexHashFunction {
+    /** Unknown method, the code is empty */
+    public static final int NONE = 0;
+
+    /** Standard Soundex */
+    public static final int SOUNDEX = 1;
+
+    /** Daitch-Mokotoff Soundex */
+    public static final int DMSOUNDEX = 2;
+
+    /** IBM Alpha Code */
+    public static final int IBMALPHACODE = 3;
+
+    /** NYSIIS */
+    public static final int NYSIIS = 4;
+
+    /** Scan */
+    public static final int SCAN = 5;
+
+    /** The default number of cache slots */
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    /** The method string as given in the rule */
+    private final String method;
+
+    /** The method type */
+    private final int type;
+
+    /** The length the code is cut to, 0 for the whole code */
+    private int length = 0;
+
+    /** The Scan direction */
+    private String direction = "";
+
+    /** The Scan character type */
+    private String charType = "";
+
+    /** The Scan case */
+    private String upperCase = "";
+
+    /** The Scan order */
+    private String order = "";
+
+    /** Standard Soundex utility */
+    private Soundex soundex;
+
+    /** Daitch-Mokotoff Soundex utility */
+    private DaitchMokotoffSoundex dmSoundex;
+
+    /** IBM AlphaCode Soundex utility */
+    private IBMAlphaCode alphaCode;
+
+    /** NYSIISCode Soundex utility */
+    private NYSIISCode nysiis;
+
+    /** Scan Utility */
+    private Scan scan;
+
+    /** The cache slots, null when empty */
+    private final CacheEntry [] cache;
+
+    /** The number of codes found in the cache */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of codes computed */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new instance of <code>IndexHashFunction</code> with the default
+     * cache size.
+     * @param method the method string of the rule segment.
+     */
+    public IndexHashFunction(String method) {
+        this(method, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new instance of <code>IndexHashFunction</code>.
+     * @param method the method string of the rule segment.
+     * @param cacheSize the number of cache slots, rounded up to a power of 2. 0
+     * turns the cache off.
+     */
+    public IndexHashFunction(String method, int cacheSize) {
+        this.method = method;
+        this.type = parse(method);
+
+        if (cacheSize > 0) {
+            int size = Integer.highestOneBit(Math.max(cacheSize - 1, 1)) << 1;
+            cache = new CacheEntry[size];
+        } else {
+            cache = null;
+        }
+
+        switch (type) {
+            case SOUNDEX:
+                soundex = new Soundex();
+                break;
+            case DMSOUNDEX:
+                dmSoundex = new DaitchMokotoffSoundex();
+                break;
+            case IBMALPHACODE:
+                alphaCode = new IBMAlphaCode();
+                break;
+            case NYSIIS:
+                nysiis = new NYSIISCode();
+                break;
+            case SCAN:
+                scan = new Scan();
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Returns the method string as given in the rule.
+     * @return the method.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the method type.
+     * @return the type.
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of codes found in the cache.
+     * @return the hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of codes computed.
+     * @return the misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the code of the token followed by a NUL segment separator, or an
+     * empty string if the method gives no code.
+     * @param token the token to be hashed.
+     * @return the code.
+     */
+    public String hash(String token) {
+        String result;
+
+        if (cache != null) {
+            int slot = token.hashCode() & (cache.length - 1);
+            CacheEntry entry = cache[slot];
+
+            if (entry != null && entry.token.equals(token)) {
+                hits.incrementAndGet();
+                result = entry.code;
+            } else {
+                misses.incrementAndGet();
+                result = compute(token);
+                cache[slot] = new CacheEntry(token, result);
+            }
+        } else {
+            misses.incrementAndGet();
+            result = compute(token);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the code of the token.
+     * @param token the token to be hashed.
+     * @return the code.
+     */
+    private String compute(String token) {
+        String result = "";
+
+        switch (type) {
+            case SOUNDEX:
+                result = soundex.getSoundex(token);
+                break;
+            case DMSOUNDEX:
+                result = dmSoundex.getDMSoundex(token)[0];
+                break;
+            case IBMALPHACODE:
+                result = alphaCode.getIBMAlphaCode(token);
+                break;
+            case NYSIIS:
+                result = nysiis.getNYSIISCode(token);
+                break;
+            case SCAN:
+                result = scan.getScan(token, direction, charType, length, upperCase, order);
+                break;
+            default:
+        }
+
+        if (length > 0 && result.length() > length && type != SCAN){
+            result = result.substring(0, length);
+        }
+
+        if (!"".equals(result)) {
+            result += "\u0000";
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses the method string and sets the arguments.
+     * @param hashCode the method string.
+     * @return the method type.
+     */
+    private int parse(String hashCode) {
+        int result = NONE;
+        String args;
+
+        if (hashCode.toUpperCase(Locale.US).startsWith("SOUNDEX")){
+            result = SOUNDEX;
+        } else if (hashCode.toUpperCase(Locale.US).startsWith("DMSOUNDEX(")){
+            args = hashCode.trim().substring(10, hashCode.length()-1);
+
+            length = Integer.parseInt(args);
+            result = DMSOUNDEX;
+        } else if (hashCode.toUpperCase(Locale.US).startsWith("IBMALPHACODE(")){
+            args = hashCode.trim().substring(13, hashCode.length()-1);
+
+            length = Integer.parseInt(args);
+            result = IBMALPHACODE;
+        } else if (hashCode.toUpperCase(Locale.US).startsWith("NYSIIS(")){
+            args = hashCode.trim().substring(7, hashCode.length()-1);
+
+            length = Integer.parseInt(args);
+            result = NYSIIS;
+        } else if (hashCode.toUpperCase(Locale.US).startsWith("SCAN(")){
+            args = hashCode.trim().substring(5, hashCode.length()-1);
+            String [] temp = args.split("[,]");
+            for (int i = 0; i < temp.length; i++){
+                switch (i) {
+                    case 0:
+                        if (temp[i].trim().equalsIgnoreCase("LR") || temp[i].trim().equalsIgnoreCase("RL")){
+                            direction = temp[i].trim();
+                        }
+                        break;
+                    case 1:
+                        if (temp[i].trim().equalsIgnoreCase("ALL") || temp[i].trim().equalsIgnoreCase("NONBLANK") ||
+                            temp[i].trim().equalsIgnoreCase("ALPHA") || temp[i].trim().equalsIgnoreCase("LETTER") ||
+                            temp[i].trim().equalsIgnoreCase("DIGIT")){
+                            charType = temp[i].trim();
+                        }
+                        break;
+                    case 2:
+                        length = Integer.parseInt(temp[i].trim());
+                        break;
+                    case 3:
+                        if (temp[i].trim().equalsIgnoreCase("ToUpper") || temp[i].trim().equalsIgnoreCase("KeepCase")){
+                            upperCase = temp[i].trim();
+                        }
+                        break;
+                    case 4:
+                        if (temp[i].trim().equalsIgnoreCase("Same") || temp[i].trim().equalsIgnoreCase("L2HKeepDup") ||
+                            temp[i].trim().equalsIgnoreCase("L2HDropDup")){
+                            order = temp[i].trim();
+                        }
+                        break;
+                    default: //FIXME: Should throw an error here but for now just a message
+                        System.err.println("Invalid Argument List in SCAN method");
+                }
+            }
+            result = SCAN;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a string representation of the <code>IndexHashFunction</code>.
+     * @return  a string representation of this object.
+     */
+    @Override
+    public String toString(){
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getName());
+        sb.append("[method=").append(method);
+        sb.append(", hits=").append(hits.get());
+        sb.append(", misses=").append(misses.get());
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * A token and its code.
+     */
+    private static class CacheEntry {
+        /** The token */
+        private final String token;
+
+        /** The code of the token */
+        private final String code;
+
+        /**
+         * Creates a new instance of <code>CacheEntry</code>.
+         * @param token the token.
+         * @param code the code of the token.
+         */
+        private CacheEntry(String token, String code) {
+            this.token = token;
+            this.code = code;
+        }
+    }
+}
@@ -0,0 +1,602 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.index;
+
+import edu.ualr.oyster.ErrorFormatter;
+import edu.ualr.oyster.data.ClusterRecord;
+import edu.ualr.oyster.data.OysterIdentityRecord;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Saves an <code>InvertedIndex</code> next to the identity repository it was
+ * built from, so the next run can load it instead of hashing every reference
+ * again.
+ *
+ * The snapshot (<code>repository.idx</code>) is a fixed header followed by the
+ * postings of every key as raw ints, which are read through a memory mapped
+ * buffer, and then the index configuration, the RefIDs, the keys with their
+ * postings size and the stop keys. The header holds a CRC of the rest of the
+ * file and the fingerprint of the repository. The snapshot is written to a
+ * temporary file and renamed over the old one.
+ *
+ * When a run loaded the snapshot and writes the repository back to the same
+ * file, the postings written during the run are appended as one segment to the
+ * delta log (<code>repository.idxlog</code>) instead, each segment holding the
+ * fingerprint of the repository after the run. Once the log holds more than
+ * <code>compactRatio</code> of the snapshot postings a new snapshot is written
+ * and the log is deleted.
+ *
+ * A snapshot is only loaded if the fingerprint of the repository being loaded
+ * matches, otherwise the index is built from the repository as before. A
+ * snapshot larger than <code>MAX_SNAPSHOT_SIZE</code> is not written, so the
+ * index of such a repository is always built. After
+ * loading, the RefID ordinals are handed out again in repository order, so the
+ * candidate lists come out the same as for a rebuilt index.
+ * @author Eric D. Nelson
+ */
+public class IndexSnapshot {
+    /** The suffix of the snapshot file */
+    public static final String SNAPSHOT_SUFFIX = ".idx";
+
+    /** The suffix of the delta log */
+    public static final String LOG_SUFFIX = ".idxlog";
+
+    /** The default part of the snapshot postings the log may reach */
+    public static final double DEFAULT_COMPACT_RATIO = 0.25;
+
+    /** Marks an index snapshot, "OYIX" */
+    static final int MAGIC = 0x4F594958;
+
+    /** Marks a delta log segment, "OYDL" */
+    static final int LOG_MAGIC = 0x4F59444C;
+
+    /** The snapshot format version */
+    static final int VERSION = 1;
+
+    /** The size of the snapshot header, the postings start here */
+    static final int HEADER_SIZE = 64;
+
+    /** The largest snapshot, which has to be mapped in one buffer */
+    static final long MAX_SNAPSHOT_SIZE = Integer.MAX_VALUE;
+
+    /** The identity repository the snapshot belongs to */
+    private String repository = null;
+
+    /** The id of the snapshot, the log segments carry it */
+    private long id = 0;
+
+    /** The number of postings in the snapshot */
+    private long postings = 0;
+
+    /** The number of operations in the delta log */
+    private long logOperations = 0;
+
+    /** The length of the valid part of the delta log */
+    private long logLength = 0;
+
+    /** The part of the snapshot postings the log may reach */
+    private double compactRatio = DEFAULT_COMPACT_RATIO;
+
+    /** true once the snapshot has been loaded or saved */
+    private boolean loaded = false;
+
+    /**
+     * Creates a new instance of <code>IndexSnapshot</code>.
+     * @param repository the identity repository the snapshot belongs to.
+     */
+    public IndexSnapshot(String repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Returns the identity repository the snapshot belongs to.
+     * @return the repository.
+     */
+    public String getRepository() {
+        return repository;
+    }
+
+    /**
+     * Returns the snapshot file.
+     * @return the snapshot file.
+     */
+    public String getSnapshotFile() {
+        return repository + SNAPSHOT_SUFFIX;
+    }
+
+    /**
+     * Returns the delta log.
+     * @return the delta log.
+     */
+    public String getLogFile() {
+        return repository + LOG_SUFFIX;
+    }
+
+    /**
+     * Returns whether the snapshot has been loaded or saved.
+     * @return true if the snapshot is current.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns whether a snapshot file exists for the repository.
+     * @return true if the snapshot file exists.
+     */
+    public boolean exists() {
+        return new File(getSnapshotFile()).exists();
+    }
+
+    /**
+     * Returns the part of the snapshot postings the log may reach.
+     * @return the compact ratio.
+     */
+    public double getCompactRatio() {
+        return compactRatio;
+    }
+
+    /**
+     * Sets the part of the snapshot postings the log may reach before a new
+     * snapshot is written.
+     * @param compactRatio the compact ratio to be set.
+     */
+    public void setCompactRatio(double compactRatio) {
+        this.compactRatio = compactRatio;
+    }
+
+    /**
+     * Returns the part of the repository fingerprint for an identity. The
+     * fingerprint of a repository is the sum over its identities, so it does
+     * not depend on the order the identities are read in. Each record adds its
+     * RefID and a digest of its attribute values, so a snapshot is not loaded
+     * for a repository whose values were edited.
+     * @param cr the <code>ClusterRecord</code> of the identity.
+     * @return the fingerprint of the identity.
+     */
+    public static long fingerprint(ClusterRecord cr) {
+        String oysterID = cr.getOysterID();
+        long id = oysterID == null ? 0 : oysterID.hashCode();
+        long result = mix(id);
+        Map<String, String> metadata = ClusterRecord.getMetadata();
+
+        for (int i = 0; i < cr.getSize(); i++) {
+            OysterIdentityRecord oir = cr.getOysterIdentityRecord(i);
+            String refID = oir.get("@RefID");
+
+            // the values in tag order
+            long values = 0;
+            if (metadata != null) {
+                for (Iterator<String> it = metadata.values().iterator(); it.hasNext();) {
+                    String value = oir.get(it.next());
+                    values = 31 * values + (value == null ? 0 : value.hashCode());
+                }
+            }
+            result += mix(mix((id << 32) ^ (refID == null ? 0 : refID.hashCode() & 0xFFFFFFFFL)) ^ values);
+        }
+        return result;
+    }
+
+    /**
+     * Loads the snapshot and replays the delta log into an empty <code>
+     * InvertedIndex</code>, if they match the repository and the index
+     * configuration.
+     * @param index the <code>InvertedIndex</code> to be loaded.
+     * @param fingerprint the fingerprint of the repository that was loaded.
+     * @param refIDs the RefIDs of the repository in the order they were loaded.
+     * @return true if the index was loaded, false if it has to be built.
+     */
+    public boolean load(InvertedIndex index, long fingerprint, List<String> refIDs) {
+        loaded = false;
+
+        if (!exists()) {
+            return false;
+        }
+
+        try {
+            RandomAccessFile file = new RandomAccessFile(getSnapshotFile(), "r");
+            try {
+                FileChannel channel = file.getChannel();
+                if (channel.size() < HEADER_SIZE) {
+                    return false;
+                }
+                if (channel.size() > MAX_SNAPSHOT_SIZE) {
+                    System.out.println("Index snapshot is too large to be mapped: " + getSnapshotFile());
+                    return false;
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    System.out.println("Not an index snapshot: " + getSnapshotFile());
+                    return false;
+                }
+
+                long snapshotID = buffer.getLong(8);
+                long snapshotFingerprint = buffer.getLong(16);
+                int refIDCount = buffer.getInt(24);
+                int keyCount = buffer.getInt(28);
+                long postingCount = buffer.getLong(32);
+                int crc = buffer.getInt(40);
+
+                long postingsEnd = HEADER_SIZE + postingCount * 4;
+                if (postingCount < 0 || postingsEnd > buffer.limit()) {
+                    System.out.println("Index snapshot is damaged: " + getSnapshotFile());
+                    return false;
+                }
+
+                if (crc(buffer, HEADER_SIZE, buffer.limit()) != crc) {
+                    System.out.println("Index snapshot fails its CRC: " + getSnapshotFile());
+                    return false;
+                }
+
+                // the log holds the fingerprint of the last run
+                List<byte []> segments = new ArrayList<byte []>();
+                long expected = readLog(snapshotID, snapshotFingerprint, segments);
+                if (expected != fingerprint) {
+                    System.out.println("Index snapshot does not match the repository: " + getSnapshotFile());
+                    return false;
+                }
+
+                buffer.position((int) postingsEnd);
+                DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer.slice()));
+                if (!in.readUTF().equals(index.getConfiguration())) {
+                    System.out.println("Index snapshot was built with other index settings: " + getSnapshotFile());
+                    return false;
+                }
+
+                index.clear();
+                for (int i = 0; i < refIDCount; i++) {
+                    index.dictionary.intern(in.readUTF());
+                }
+
+                buffer.position(HEADER_SIZE);
+                IntBuffer ints = buffer.slice().asIntBuffer();
+                for (int i = 0; i < keyCount; i++) {
+                    String key = in.readUTF();
+                    int size = in.readInt();
+                    int [] values = new int[size];
+
+                    ints.get(values);
+                    index.index.put(key, new IntPostingList(values, size));
+                }
+
+                int stopKeyCount = in.readInt();
+                for (int i = 0; i < stopKeyCount; i++) {
+                    String key = in.readUTF();
+                    int size = in.readInt();
+                    ((TalburtZhouInvertedIndex) index).getStopKeys().put(key, size);
+                }
+
+                for (Iterator<byte []> it = segments.iterator(); it.hasNext();) {
+                    DataInputStream segment = new DataInputStream(new ByteArrayInputStream(it.next()));
+                    segment.readLong();
+                    segment.readLong();
+                    IndexDelta.replay(index, segment, segment.readInt());
+                }
+
+                index.reorder(refIDs);
+
+                id = snapshotID;
+                postings = postingCount;
+                loaded = true;
+            } finally {
+                file.close();
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(IndexSnapshot.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            index.clear();
+        }
+        return loaded;
+    }
+
+    /**
+     * Writes a new snapshot of the <code>InvertedIndex</code> and deletes the
+     * delta log. A snapshot larger than <code>MAX_SNAPSHOT_SIZE</code> is
+     * dropped along with the old snapshot and the log.
+     * @param index the <code>InvertedIndex</code>.
+     * @param fingerprint the fingerprint of the repository the index matches.
+     * @throws IOException if the snapshot can not be written or is too large.
+     */
+    public void save(InvertedIndex index, long fingerprint) throws IOException {
+        File target = new File(getSnapshotFile());
+        File temp = new File(getSnapshotFile() + ".tmp");
+        long snapshotID = newID();
+        long postingCount = 0;
+        CRC32 crc = new CRC32();
+
+        FileOutputStream fos = new FileOutputStream(temp);
+        fos.write(new byte[HEADER_SIZE]);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fos, crc), 64 * 1024));
+        try {
+            for (Iterator<IntPostingList> it = index.index.values().iterator(); it.hasNext();) {
+                IntPostingList list = it.next();
+                for (int i = 0; i < list.size(); i++) {
+                    out.writeInt(list.get(i));
+                }
+                postingCount += list.size();
+            }
+
+            out.writeUTF(index.getConfiguration());
+            for (int i = 0; i < index.dictionary.size(); i++) {
+                out.writeUTF(index.dictionary.get(i));
+            }
+
+            for (Iterator<Entry<String, IntPostingList>> it = index.index.entrySet().iterator(); it.hasNext();) {
+                Entry<String, IntPostingList> entry = it.next();
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+            }
+
+            if (index instanceof TalburtZhouInvertedIndex) {
+                Map<String, Integer> stopKeys = ((TalburtZhouInvertedIndex) index).getStopKeys();
+                out.writeInt(stopKeys.size());
+                for (Iterator<Entry<String, Integer>> it = stopKeys.entrySet().iterator(); it.hasNext();) {
+                    Entry<String, Integer> entry = it.next();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+            } else {
+                out.writeInt(0);
+            }
+        } finally {
+            out.close();
+        }
+
+        RandomAccessFile file = new RandomAccessFile(temp, "rw");
+        try {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeLong(snapshotID);
+            file.writeLong(fingerprint);
+            file.writeInt(index.dictionary.size());
+            file.writeInt(index.index.size());
+            file.writeLong(postingCount);
+            file.writeInt((int) crc.getValue());
+        } finally {
+            file.close();
+        }
+
+        File log = new File(getLogFile());
+        if (temp.length() > MAX_SNAPSHOT_SIZE) {
+            long size = temp.length();
+            loaded = false;
+            temp.delete();
+            target.delete();
+            log.delete();
+            throw new IOException("Index snapshot of " + size + " bytes is larger than " + MAX_SNAPSHOT_SIZE + " bytes and was not written: " + target);
+        }
+
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Unable to replace the index snapshot " + target);
+        }
+        if (!temp.renameTo(target)) {
+            throw new IOException("Unable to rename " + temp + " to " + target);
+        }
+
+        if (log.exists() && !log.delete()) {
+            throw new IOException("Unable to delete the index delta log " + log);
+        }
+
+        id = snapshotID;
+        postings = postingCount;
+        logOperations = 0;
+        logLength = 0;
+        loaded = true;
+    }
+
+    /**
+     * Appends the postings written during the run to the delta log, or writes
+     * a new snapshot if the snapshot was not loaded or the log has grown past
+     * <code>compactRatio</code> of the snapshot.
+     * @param delta the postings written during the run.
+     * @param index the <code>InvertedIndex</code>.
+     * @param fingerprint the fingerprint of the repository the index matches.
+     * @throws IOException if the log or the snapshot can not be written.
+     */
+    public void append(IndexDelta delta, InvertedIndex index, long fingerprint) throws IOException {
+        if (!loaded || logOperations + delta.size() > compactRatio * Math.max(postings, 1)) {
+            save(index, fingerprint);
+            return;
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeLong(id);
+        out.writeLong(fingerprint);
+        out.writeInt(delta.size());
+        out.write(delta.toByteArray());
+        out.close();
+
+        byte [] data = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+
+        RandomAccessFile file = new RandomAccessFile(getLogFile(), "rw");
+        try {
+            // a segment that was cut short is dropped
+            file.setLength(logLength);
+            file.seek(logLength);
+            file.writeInt(LOG_MAGIC);
+            file.writeInt(data.length);
+            file.writeInt((int) crc.getValue());
+            file.write(data);
+            logLength = file.getFilePointer();
+        } finally {
+            file.close();
+        }
+        logOperations += delta.size();
+    }
+
+    /**
+     * Reads the segments of the delta log that belong to the snapshot, up to
+     * the first segment that is cut short, fails its CRC or belongs to another
+     * snapshot.
+     * @param snapshotID the id of the snapshot.
+     * @param fingerprint the fingerprint of the repository the snapshot matches.
+     * @param segments the segments read.
+     * @return the fingerprint of the repository after the last segment.
+     * @throws IOException if the log can not be read.
+     */
+    private long readLog(long snapshotID, long fingerprint, List<byte []> segments) throws IOException {
+        long result = fingerprint;
+        logOperations = 0;
+        logLength = 0;
+
+        File log = new File(getLogFile());
+        if (!log.exists()) {
+            return result;
+        }
+
+        RandomAccessFile file = new RandomAccessFile(log, "r");
+        try {
+            long length = file.length();
+            long position = 0;
+
+            while (position + 12 <= length) {
+                file.seek(position);
+                int magic = file.readInt();
+                int size = file.readInt();
+                int crc = file.readInt();
+
+                if (magic != LOG_MAGIC || size < 20 || position + 12 + size > length) {
+                    break;
+                }
+
+                byte [] data = new byte[size];
+                file.readFully(data);
+
+                CRC32 check = new CRC32();
+                check.update(data, 0, size);
+                ByteBuffer header = ByteBuffer.wrap(data);
+                if ((int) check.getValue() != crc || header.getLong(0) != snapshotID) {
+                    break;
+                }
+
+                segments.add(data);
+                result = header.getLong(8);
+                logOperations += header.getInt(16);
+                position += 12 + size;
+                logLength = position;
+            }
+        } finally {
+            file.close();
+        }
+        return result;
+    }
+
+    /**
+     * Computes the CRC of part of a buffer.
+     * @param buffer the buffer.
+     * @param start the first byte.
+     * @param end the byte after the last.
+     * @return the CRC.
+     */
+    private static int crc(ByteBuffer buffer, int start, int end) {
+        CRC32 crc = new CRC32();
+        byte [] chunk = new byte[64 * 1024];
+
+        buffer.position(start);
+        for (int position = start; position < end;) {
+            int n = Math.min(chunk.length, end - position);
+            buffer.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+            position += n;
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns a new snapshot id.
+     * @return the id, never 0.
+     */
+    private static long newID() {
+        long result;
+        Random random = new Random();
+        do {
+            result = random.nextLong();
+        } while (result == 0);
+        return result;
+    }
+
+    /**
+     * Spreads the bits of a hash code.
+     * @param h the hash code.
+     * @return the mixed hash code.
+     */
+    private static long mix(long h) {
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Reads a <code>ByteBuffer</code> as an <code>InputStream</code>.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        /** The buffer */
+        private final ByteBuffer buffer;
+
+        /**
+         * Creates a new instance of <code>ByteBufferInputStream</code>.
+         * @param buffer the buffer, read from its position.
+         */
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte [] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.index;
+
+import java.util.Arrays;
+
+/**
+ * A sorted set of int values backed by a primitive array. It is used for the
+ * postings of an <code>InvertedIndex</code> key, where each value is the
+ * ordinal of a RefID in the <code>RefIDDictionary</code>, and as a reusable
+ * buffer for candidate lists. Ordinals are handed out in increasing order so
+ * an add is almost always an append.
+ * @author Eric D. Nelson
+ */
+public class IntPostingList {
+    /** The values in ascending order */
+    private int [] values;
+
+    /** The number of values in use */
+    private int size = 0;
+
+    /**
+     * Creates a new instance of <code>IntPostingList</code>.
+     */
+    public IntPostingList() {
+        this(2);
+    }
+
+    /**
+     * Creates a new instance of <code>IntPostingList</code>.
+     * @param capacity the initial capacity.
+     */
+    public IntPostingList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Creates a new instance of <code>IntPostingList</code> over an array.
+     * The array is used as the backing array, not copied.
+     * @param values the values in ascending order.
+     * @param size the number of values in use.
+     */
+    public IntPostingList(int [] values, int size) {
+        this.values = values.length > 0 ? values : new int[1];
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of values in this <code>IntPostingList</code>.
+     * @return the size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether this <code>IntPostingList</code> is empty.
+     * @return true if empty, otherwise false.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value at the position.
+     * @param i the position.
+     * @return the value.
+     */
+    public int get(int i) {
+        return values[i];
+    }
+
+    /**
+     * Returns the backing array. Only the first <code>size()</code> values are
+     * in use.
+     * @return the backing array.
+     */
+    public int [] getValues() {
+        return values;
+    }
+
+    /**
+     * Returns whether the value is in this <code>IntPostingList</code>.
+     * @param value the value to be searched for.
+     * @return true if present, otherwise false.
+     */
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /**
+     * Adds the value keeping the values in ascending order.
+     * @param value the value to be added.
+     * @return true if the value was added, false if it was already present.
+     */
+    public boolean add(int value) {
+        boolean flag = false;
+
+        if (size == 0 || values[size - 1] < value) {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+            flag = true;
+        } else {
+            int pos = Arrays.binarySearch(values, 0, size, value);
+
+            if (pos < 0) {
+                pos = -(pos + 1);
+                ensureCapacity(size + 1);
+                System.arraycopy(values, pos, values, pos + 1, size - pos);
+                values[pos] = value;
+                size++;
+                flag = true;
+            }
+        }
+        return flag;
+    }
+
+    /**
+     * Appends the value without checking the order. The caller has to keep the
+     * values in ascending order.
+     * @param value the value to be appended.
+     */
+    public void append(int value) {
+        ensureCapacity(size + 1);
+        values[size++] = value;
+    }
+
+    /**
+     * Removes the value.
+     * @param value the value to be removed.
+     * @return true if the value was removed, false if it was not present.
+     */
+    public boolean remove(int value) {
+        boolean flag = false;
+        int pos = Arrays.binarySearch(values, 0, size, value);
+
+        if (pos >= 0) {
+            System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+            size--;
+            flag = true;
+        }
+        return flag;
+    }
+
+    /**
+     * Sets the number of values in use. This is used to cut the list after the
+     * values were compacted in place.
+     * @param size the new size, not greater than the current size.
+     */
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Removes all of the values. The backing array is kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Makes sure the backing array can hold the number of values.
+     * @param capacity the number of values.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            int newCapacity = Math.max(capacity, values.length + (values.length >> 1) + 1);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+
+    /**
+     * Returns a string representation of this <code>IntPostingList</code>.
+     * @return the values.
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(values, size));
+    }
+}
@@ -24,11 +24,12 @@ import edu.ualr.oyster.data.ClusterRecord;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Formatter;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map; 
 import java.util.Map.Entry;
@@ -44,7 +45,9 @@ import java.util.TreeMap;
  * allows fast full document search of all reference items that it has read up 
  * to the point of the index query. This index will simply be a map object. The 
  * key will be the reference item (name, DOB, etc) and the value list will be a 
- * collection of sequence numbers. 
+ * collection of sequence numbers. The RefIDs are interned in a <code>
+ * RefIDDictionary</code> and each value list is an <code>IntPostingList</code>
+ * of RefID ordinals.
  * @author Eric D. Nelson
  */
 
@@ -57,7 +60,10 @@ abstract public class InvertedIndex implements Index {
     // #[regen=yes,id=DCE.F1C932DB-21AE-9032-65AF-9366DDC94E34]
     // </editor-fold> 
     /** The Index */
-    protected Map<String, Set<String>> index;
+    protected Map<String, IntPostingList> index;
+
+    /** The RefIDs held in the postings */
+    protected RefIDDictionary dictionary;
 
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.F2D90D28-B70C-8A21-7E67-BED44EEE7405]
@@ -71,6 +77,15 @@ abstract public class InvertedIndex implements Index {
     
     protected TreeMap<Integer, Integer> candidateList = new TreeMap<Integer, Integer>();
     
+    /** Scores and cuts the candidate lists */
+    protected CandidateSelector selector = new CandidateSelector();
+    
+    /** Records the keys that are written while it is set */
+    protected Set<String> journal = null;
+    
+    /** Records the postings that are written while it is set */
+    protected IndexDelta delta = null;
+    
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.1FB65BE1-5D05-9937-B69B-A01347C94336]
     // </editor-fold> 
@@ -78,7 +93,8 @@ abstract public class InvertedIndex implements Index {
      * Creates a new instance of <code>InvertedIndex</code>.
      */
     public InvertedIndex () {
-        index = new LinkedHashMap<String, Set<String>>();
+        index = new LinkedHashMap<String, IntPostingList>();
+        dictionary = new RefIDDictionary();
         passThruAttributes = new LinkedHashSet<String>();
     }
 
@@ -89,7 +105,7 @@ abstract public class InvertedIndex implements Index {
      * Returns the index.
      * @return the index.
      */
-    public Map<String, Set<String>> getIndex () {
+    public Map<String, IntPostingList> getIndex () {
         return index;
     }
 
@@ -100,10 +116,36 @@ abstract public class InvertedIndex implements Index {
      * Sets the index.
      * @param index the index to be set.
      */
-    public void setIndex (Map<String, Set<String>> index) {
+    public void setIndex (Map<String, IntPostingList> index) {
         this.index = index;
     }
 
+    /**
+     * Returns the <code>CandidateSelector</code> that scores and cuts the 
+     * candidate lists.
+     * @return the selector.
+     */
+    public CandidateSelector getSelector () {
+        return selector;
+    }
+
+    /**
+     * Sets the <code>CandidateSelector</code> that scores and cuts the 
+     * candidate lists.
+     * @param selector the selector to be set.
+     */
+    public void setSelector (CandidateSelector selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * Returns the dictionary of the RefIDs held in the postings.
+     * @return the dictionary.
+     */
+    public RefIDDictionary getDictionary () {
+        return dictionary;
+    }
+
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.DFBAD3A9-8002-4BC3-1508-5415434F0811]
     // </editor-fold> 
@@ -168,25 +210,47 @@ abstract public class InvertedIndex implements Index {
     @Override
     public void addEntry(Object obj) {
         if (obj != null) {
-            OysterIdentityRecord oir = (OysterIdentityRecord) obj;
+            addPreparedEntry(obj, prepareEntry(obj));
+        } else {
+            System.out.println("Null obj insertion into index");
+        }
+    }
 
-            // get the RefID
-            String value = oir.get("@RefID");
-            Set<String> hashes = getHash(oir);
-            for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
-                String hash = it.next();
-                Set<String> s = index.get(hash);
+    /**
+     * Works out the RefIDs and the keys of an entry without changing the 
+     * <code>InvertedIndex</code>, so it may be called by several threads at
+     * once.
+     * @param obj the entry to be prepared.
+     * @return the prepared entry.
+     */
+    @Override
+    public Object prepareEntry(Object obj) {
+        OysterIdentityRecord oir = (OysterIdentityRecord) obj;
 
-                if (s == null) {
-                    s = new LinkedHashSet<String>();
-                }
+        // get the RefID
+        String value = oir.get("@RefID");
+        return new PreparedEntry(value.split("[|]"), prepareHash(oir));
+    }
 
-                String[] values = value.split("[|]");
-                s.addAll(Arrays.asList(values));
-                index.put(hash, s);
+    /**
+     * Add an entry prepared by <code>prepareEntry</code> to the <code>
+     * InvertedIndex</code>.
+     * @param obj the entry to be added.
+     * @param prepared the result of <code>prepareEntry</code> for the entry.
+     */
+    @Override
+    public void addPreparedEntry(Object obj, Object prepared) {
+        OysterIdentityRecord oir = (OysterIdentityRecord) obj;
+        PreparedEntry entry = (PreparedEntry) prepared;
+
+        String[] values = entry.refIDs;
+        Set<String> hashes = getHash(oir, entry.hash);
+        for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
+            String hash = it.next();
+
+            for (int i = 0; i < values.length; i++) {
+                addPosting(hash, values[i]);
             }
-        } else {
-            System.out.println("Null obj insertion into index");
         }
     }
 
@@ -202,15 +266,7 @@ abstract public class InvertedIndex implements Index {
             Set<String> hashes = getHash(oir);
 
             for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
-                String hash = it.next();
-                Set<String> s = index.get(hash);
-
-                if (s == null) {
-                    s = new LinkedHashSet<String>();
-                }
-
-                s.add(refID);
-                index.put(hash, s);
+                addPosting(it.next(), refID);
             }
         } else {
             System.out.println("Null obj insertion into index");
@@ -228,14 +284,9 @@ abstract public class InvertedIndex implements Index {
     @SuppressWarnings( "unchecked")
     @Override
     public void add(String key, Object o) {
-        Set<String> s = index.get(key.trim());
         Set<String> set = (Set<String>) o;
-        if (s != null) {
-            s.addAll(set);
-
-            index.put(key.trim(), s);
-        } else {
-            index.put(key.trim(), set);
+        for (Iterator<String> it = set.iterator(); it.hasNext();) {
+            addPosting(key.trim(), it.next());
         }
     }
 
@@ -259,15 +310,9 @@ abstract public class InvertedIndex implements Index {
 
             for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
                 String hash = it.next();
-                Set<String> s = index.get(hash);
 
-                if (s == null) {
-                    s = new LinkedHashSet<String>();
-                }
-
-                if (!s.contains(value) && !hash.equals("")) {
-                    s.add(value);
-                    index.put(hash, s);
+                if (!hash.equals("")) {
+                    addPosting(hash, value);
                 }
             }
         } else {
@@ -287,6 +332,11 @@ abstract public class InvertedIndex implements Index {
     public void removeEntry (Object obj) {
         String key = (String) obj;
         index.remove(key);
+        journal(key);
+        
+        if (delta != null) {
+            delta.removeKey(key);
+        }
     }
 
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
@@ -305,20 +355,50 @@ abstract public class InvertedIndex implements Index {
             Set<String> hashes = getHash(oir);
 
             for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
-                String hash = it.next();
-                Set<String> s = index.get(hash);
+                removePosting(it.next(), refID);
+            }
+        }
+    }
 
-                if (s != null) {
-                    if (s.contains(refID)) {
-                        s.remove(refID);
+    /**
+     * Adds the RefID to the postings of the key.
+     * @param key the key.
+     * @param refID the RefID to be added.
+     */
+    protected void addPosting(String key, String refID) {
+        IntPostingList postings = index.get(key);
 
-                        if (s.isEmpty()) {
-                            this.index.remove(hash);
-                        } else {
-                            this.index.put(hash, s);
-                        }
-                    }
-                }
+        if (postings == null) {
+            postings = new IntPostingList();
+            index.put(key, postings);
+        }
+
+        postings.add(dictionary.intern(refID));
+        journal(key);
+        
+        if (delta != null) {
+            delta.add(key, refID);
+        }
+    }
+
+    /**
+     * Removes the RefID from the postings of the key. The key is dropped once
+     * it has no postings left.
+     * @param key the key.
+     * @param refID the RefID to be removed.
+     */
+    protected void removePosting(String key, String refID) {
+        IntPostingList postings = index.get(key);
+        int ordinal = dictionary.lookup(refID);
+
+        if (postings != null && ordinal >= 0 && postings.remove(ordinal)) {
+            if (postings.isEmpty()) {
+                index.remove(key);
+            }
+            journal(key);
+            
+            if (delta != null) {
+                delta.remove(key, refID);
             }
         }
     }
@@ -330,6 +410,11 @@ abstract public class InvertedIndex implements Index {
     @Override
     public void clear() {
         index.clear();
+        dictionary.clear();
+        
+        if (delta != null) {
+            delta.clear();
+        }
     }
 
     /**
@@ -340,12 +425,19 @@ abstract public class InvertedIndex implements Index {
      * it's also possible that the <code>InvertedIndex</code> explicitly maps 
      * the key to null.
      * @param key the key to be searched for.
-     * @return the value Object specified by the key if it exist, otherwise null.
+     * @return the set of RefIDs specified by the key if it exist, otherwise null.
      */
     @Override
     public Object get(Object key){
-        Set<String> s;
-        s = index.get((String) key);
+        Set<String> s = null;
+        IntPostingList postings = index.get((String) key);
+        
+        if (postings != null) {
+            s = new LinkedHashSet<String>();
+            for (int i = 0; i < postings.size(); i++) {
+                s.add(dictionary.get(postings.get(i)));
+            }
+        }
         return s;
     }
     
@@ -360,84 +452,186 @@ abstract public class InvertedIndex implements Index {
         return index.keySet().iterator();
     }
 
-    @SuppressWarnings( "unchecked" )
+    /**
+     * Returns the RefID for an ordinal returned in a candidate list.
+     * @param ordinal the ordinal.
+     * @return the RefID.
+     */
+    @Override
+    public String getRefID(int ordinal) {
+        return dictionary.get(ordinal);
+    }
+
+    /**
+     * Returns the candidates for the <code>ClusterRecord</code> as a set of
+     * RefIDs.
+     * @param clusterRecord the <code>ClusterRecord</code> to be matched.
+     * @param lcrd the least common rule denominator.
+     * @return the set of RefIDs.
+     */
     @Override
     public Set<String> getCandidateList(ClusterRecord clusterRecord, Map<Integer, ArrayList<String>> lcrd) {
-        Set<String> candidates = new HashSet<String>();
-        OysterIdentityRecord oysterIdentityRecord = clusterRecord.getMergedRecord();
-        Map<String, Integer> sort = new LinkedHashMap<String, Integer>();
+        IntPostingList candidates = new IntPostingList();
+        getCandidateList(clusterRecord, lcrd, candidates);
+
+        Set<String> s = new LinkedHashSet<String>();
+        for (int i = 0; i < candidates.size(); i++) {
+            s.add(dictionary.get(candidates.get(i)));
+        }
+        return s;
+    }
+
+    /**
+     * Fills the buffer with the candidates for the <code>ClusterRecord</code>
+     * as RefID ordinals in ascending order. The postings of the keys are scored
+     * and cut by the <code>CandidateSelector</code>.
+     * @param clusterRecord the <code>ClusterRecord</code> to be matched.
+     * @param lcrd the least common rule denominator.
+     * @param candidates the buffer for the candidates, cleared first.
+     * @return the number of candidates.
+     */
+    @Override
+    public int getCandidateList(ClusterRecord clusterRecord, Map<Integer, ArrayList<String>> lcrd, IntPostingList candidates) {
+        OysterIdentityRecord oysterIdentityRecord = clusterRecord.getMergedRecordView();
+        ArrayList<IntPostingList> postings = selector.getPostings();
 
         Set<String> hashes = getHash(oysterIdentityRecord);
 
         for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
-            String hash = it.next();
-            Set<String> s = index.get(hash);
+            IntPostingList s = index.get(it.next());
             
-            if (s != null) {
-                Set<String> temp = new HashSet<String>();
-                for (Iterator<String> it2 = s.iterator(); it2.hasNext();){
-                    String key = it2.next();
-                        
-                    int value = 0;
-                    if (sort.containsKey(key)) {
-                        value = sort.get(key);
-                    }
-                    value++;
-                    sort.put(key, value);
-                }
-                candidates.addAll(temp);
+            if (s != null && !s.isEmpty()) {
+                postings.add(s);
             }
         }
+        int size = selector.select(candidates);
 
         int value = 0;
-        if (candidateList.containsKey(candidates.size())) {
-            value = candidateList.get(candidates.size());
+        synchronized (candidateList) {
+            if (candidateList.containsKey(size)) {
+                value = candidateList.get(size);
+            }
+            value++;
+            candidateList.put(size, value);
         }
-        value++;
-        candidateList.put(candidates.size(), value);
-        
-        // if more than 100 candidates only return the top 1/3 sorted based on most occuring
-        if (candidates.size() > 100){
-            TreeMap<Integer, Set<String>> sort2 = new TreeMap<Integer, Set<String>>();
-            
-            for(Iterator<Entry<String, Integer>> it = sort.entrySet().iterator(); it.hasNext();){
-                Entry<String, Integer> entry = it.next();
-                value = entry.getValue();
-                
-                Set<String> s2 = sort2.get(value);
-                
-                if (s2 == null) {
-                    s2 = new LinkedHashSet<String>();
-                }
-                
-                s2.add(entry.getKey());
-                sort2.put(value, s2);
+
+        return candidates.size();
+    }
+
+    /**
+     * Returns the index keys that are probed when a candidate list is pulled
+     * for the <code>ClusterRecord</code>.
+     * @param clusterRecord the <code>ClusterRecord</code> to be hashed.
+     * @return the set of keys.
+     */
+    @Override
+    public Set<String> getKeys(ClusterRecord clusterRecord) {
+        return getHash(clusterRecord.getMergedRecordView());
+    }
+
+    /**
+     * Returns the journal of the keys written to this <code>InvertedIndex</code>.
+     * @return the journal, null if journaling is off.
+     */
+    @Override
+    public Set<String> getJournal() {
+        return journal;
+    }
+
+    /**
+     * Sets the journal for this <code>InvertedIndex</code>. While a journal is
+     * set every key that is added to or removed from is recorded in it.
+     * @param journal the journal to be set, null to turn journaling off.
+     */
+    @Override
+    public void setJournal(Set<String> journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the <code>IndexDelta</code> the postings are recorded in.
+     * @return the delta, null if the postings are not recorded.
+     */
+    public IndexDelta getDelta() {
+        return delta;
+    }
+
+    /**
+     * Sets the <code>IndexDelta</code> for this <code>InvertedIndex</code>.
+     * While a delta is set every posting that is added or removed is recorded
+     * in it.
+     * @param delta the delta to be set, null to stop recording.
+     */
+    public void setDelta(IndexDelta delta) {
+        this.delta = delta;
+    }
+
+    /**
+     * Returns a description of the settings the keys depend on. An <code>
+     * IndexSnapshot</code> is only loaded into an index with the same
+     * configuration.
+     * @return the configuration.
+     */
+    public String getConfiguration() {
+        return getClass().getName() + " " + passThruAttributes;
+    }
+
+    /**
+     * Hands out the RefID ordinals again in the order of the RefIDs given, as
+     * if the postings had been added in that order. RefIDs that are not given
+     * follow in their current order. The postings are sorted again, so the
+     * candidate lists come out in the new order.
+     * @param refIDs the RefIDs in order, RefIDs that are not in the index are
+     * skipped.
+     */
+    public void reorder(List<String> refIDs) {
+        RefIDDictionary ordered = new RefIDDictionary();
+        int [] ordinals = new int[dictionary.size()];
+        Arrays.fill(ordinals, -1);
+
+        for (Iterator<String> it = refIDs.iterator(); it.hasNext();) {
+            String refID = it.next();
+            int ordinal = dictionary.lookup(refID);
+
+            if (ordinal >= 0 && ordinals[ordinal] < 0) {
+                ordinals[ordinal] = ordered.intern(refID);
             }
-            
-            int check = candidates.size() / 3;
-            if (check > 100) {
-                check = 100;
+        }
+
+        for (int i = 0; i < ordinals.length; i++) {
+            if (ordinals[i] < 0) {
+                ordinals[i] = ordered.intern(dictionary.get(i));
             }
-            
-            candidates.clear();
-            
-            for (int i = sort2.lastKey(); i >= 0; i--){
-                Set<String> s2 = sort2.get(i);
-                
-                if (s2 != null) {
-                    candidates.addAll(s2);
-                }
-                
-                if (candidates.size() > check) {
-                    break;
-                }
+        }
+
+        for (Iterator<IntPostingList> it = index.values().iterator(); it.hasNext();) {
+            IntPostingList postings = it.next();
+            int [] values = postings.getValues();
+
+            for (int i = 0; i < postings.size(); i++) {
+                values[i] = ordinals[values[i]];
             }
+            Arrays.sort(values, 0, postings.size());
         }
+        dictionary = ordered;
+    }
 
-        return candidates;
+    /**
+     * Records the key in the journal if journaling is on.
+     * @param key the key that was written.
+     */
+    protected void journal(String key) {
+        if (journal != null) {
+            journal.add(key);
+        }
     }
 
-    private Set<String> getHash(OysterIdentityRecord oir) {
+    /**
+     * Returns the keys of the <code>OysterIdentityRecord</code>.
+     * @param oir the <code>OysterIdentityRecord</code> to be hashed.
+     * @return the set of keys.
+     */
+    protected Set<String> getHash(OysterIdentityRecord oir) {
         Set<String> hashes = new LinkedHashSet<String>();
 
         for (Iterator<String> it = oir.getMetaData().keySet().iterator(); it.hasNext();) {
@@ -466,6 +660,30 @@ abstract public class InvertedIndex implements Index {
         return hashes;
     }
 
+    /**
+     * Works out the part of the keys of the <code>OysterIdentityRecord</code>
+     * that does not depend on the postings. It may be called by several threads
+     * at once.
+     * @param oir the <code>OysterIdentityRecord</code> to be hashed.
+     * @return the prepared keys, passed to <code>getHash(OysterIdentityRecord,
+     * Object)</code>.
+     */
+    protected Object prepareHash(OysterIdentityRecord oir) {
+        return getHash(oir);
+    }
+
+    /**
+     * Returns the keys of the <code>OysterIdentityRecord</code> from the keys
+     * prepared by <code>prepareHash</code>.
+     * @param oir the <code>OysterIdentityRecord</code> to be hashed.
+     * @param prepared the prepared keys.
+     * @return the set of keys.
+     */
+    @SuppressWarnings( "unchecked")
+    protected Set<String> getHash(OysterIdentityRecord oir, Object prepared) {
+        return (Set<String>) prepared;
+    }
+
     @Override
     public String indexStats() {
         StringBuilder sb = new StringBuilder(1000);
@@ -474,16 +692,18 @@ abstract public class InvertedIndex implements Index {
         Formatter report = new Formatter(sb, Locale.US);
         
         long totalTokens = 0L, maxTokens = 0L, minTokens = 0x7fffffffL, minTokensGT1 = 0x7fffffffL;
-        Set<String> uniqueTokens = new HashSet<String>();
+        BitSet uniqueTokens = new BitSet();
         TreeMap<Integer, Set<String>> topTenMaxKeys = new TreeMap<Integer, Set<String>>();
         TreeMap<Integer, Integer> tm = new TreeMap<Integer, Integer>();
 
         for (Iterator<String> it = index.keySet().iterator(); it.hasNext();){
             String key = it.next();
-            Set<String> s = index.get(key);
+            IntPostingList s = index.get(key);
             
             totalTokens += s.size();
-            uniqueTokens.addAll(s);
+            for (int i = 0; i < s.size(); i++) {
+                uniqueTokens.set(s.get(i));
+            }
             
             maxTokens = Math.max(maxTokens, s.size());
             minTokens = Math.min(minTokens, s.size());
@@ -512,16 +732,16 @@ abstract public class InvertedIndex implements Index {
         
         report.format("Keys                    : %1$,12d%n", index.size());
         report.format("Total tokens            : %1$,12d%n", totalTokens);
-        report.format("Unique tokens           : %1$,12d%n", uniqueTokens.size());
+        report.format("Unique tokens           : %1$,12d%n", uniqueTokens.cardinality());
         report.format("Max tokens per key      : %1$,12d%n", maxTokens);
         report.format("Min tokens per key      : %1$,12d%n", minTokens);
         report.format("Min tokens > 1 per key  : %1$,12d%n", minTokensGT1);
         report.format(System.getProperty("line.separator"));
         
         report.format("Total tokens per key    : %1$,12.5f%n", (double)totalTokens/(double)index.size());
-        report.format("Unique tokens per key   : %1$,12.5f%n", (double)uniqueTokens.size()/(double)index.size());
-        report.format("Total per Unique tokens : %1$,12.5f%n", (double)totalTokens/(double)uniqueTokens.size());
-        report.format("Unique per Total tokens : %1$,12.5f%n", (double)uniqueTokens.size()/(double)totalTokens);
+        report.format("Unique tokens per key   : %1$,12.5f%n", (double)uniqueTokens.cardinality()/(double)index.size());
+        report.format("Total per Unique tokens : %1$,12.5f%n", (double)totalTokens/(double)uniqueTokens.cardinality());
+        report.format("Unique per Total tokens : %1$,12.5f%n", (double)uniqueTokens.cardinality()/(double)totalTokens);
         sb.append(System.getProperty("line.separator"));
         
         // calculate the Skew measures
@@ -609,5 +829,25 @@ abstract public class InvertedIndex implements Index {
         }
         return sb.toString();
     }
-}
 
+    /**
+     * An entry prepared for the <code>InvertedIndex</code>.
+     */
+    private static class PreparedEntry {
+        /** The RefIDs of the entry */
+        private final String[] refIDs;
+
+        /** The prepared keys of the entry */
+        private final Object hash;
+
+        /**
+         * Creates a new instance of <code>PreparedEntry</code>.
+         * @param refIDs the RefIDs of the entry.
+         * @param hash the prepared keys of the entry.
+         */
+        private PreparedEntry(String[] refIDs, Object hash) {
+            this.refIDs = refIDs;
+            this.hash = hash;
+        }
+    }
+}
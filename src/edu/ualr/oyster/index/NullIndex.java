@@ -25,7 +25,6 @@ import edu.ualr.oyster.data.OysterIdentityRecord;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -57,15 +56,28 @@ public class NullIndex extends InvertedIndex {
 
             // get the RefID
             String value = oir.get("@RefID");
-            Set<String> s = index.get(hash);
+            addPosting(hash, value);
+        }
+    }
 
-            if (s == null) {
-                s = new LinkedHashSet<String>();
-            }
+    /**
+     * The <code>NullIndex</code> has nothing to prepare.
+     * @param obj the entry to be prepared.
+     * @return null.
+     */
+    @Override
+    public Object prepareEntry(Object obj) {
+        return null;
+    }
 
-            s.add(value);
-            index.put(hash, s);
-        }
+    /**
+     * Add an entry to the <code>NullIndex</code>.
+     * @param obj the entry to be added.
+     * @param prepared not used.
+     */
+    @Override
+    public void addPreparedEntry(Object obj, Object prepared) {
+        addEntry(obj);
     }
 
     /**
@@ -76,14 +88,7 @@ public class NullIndex extends InvertedIndex {
     @Override
     public void addEntry(String refID, Object obj) {
         if (obj != null) {
-            Set<String> s = index.get(hash);
-
-            if (s == null) {
-                s = new LinkedHashSet<String>();
-            }
-
-            s.add(refID);
-            index.put(hash, s);
+            addPosting(hash, refID);
         }
     }
     
@@ -97,15 +102,9 @@ public class NullIndex extends InvertedIndex {
     @SuppressWarnings( "unchecked" )
     @Override
     public void add(String key, Object o){
-        Set<String> s = index.get(hash);
         Set<String> set = (Set<String>) o;
-        if (s != null) {
-            s.addAll(set);
-            
-            index.put(hash, s);
-        }
-        else {
-            index.put(hash, set);
+        for (Iterator<String> it = set.iterator(); it.hasNext();) {
+            addPosting(hash, it.next());
         }
     }
     
@@ -121,14 +120,7 @@ public class NullIndex extends InvertedIndex {
         OysterIdentityRecord oir = (OysterIdentityRecord) key;
         
         if (oir != null) {
-            Set<String> s = index.get(hash);
-
-            if (s == null) {
-                s = new LinkedHashSet<String>();
-            }
-
-            s.add(value);
-            index.put(hash, s);
+            addPosting(hash, value);
         }
     }
 
@@ -152,21 +144,39 @@ public class NullIndex extends InvertedIndex {
         
     }
 
-    @SuppressWarnings( "unchecked" )
+    /**
+     * Fills the buffer with every RefID seen so far as ordinals in ascending
+     * order.
+     * @param clusterRecord the <code>ClusterRecord</code> to be matched.
+     * @param lcrd the least common rule denominator.
+     * @param candidates the buffer for the candidates, cleared first.
+     * @return the number of candidates.
+     */
     @Override
-    public Set<String> getCandidateList(ClusterRecord clusterRecord, Map<Integer, ArrayList<String>> lcrd) {        
-        Set<String> candidates = new HashSet<String>();
+    public int getCandidateList(ClusterRecord clusterRecord, Map<Integer, ArrayList<String>> lcrd, IntPostingList candidates) {
+        candidates.clear();
 
-        Set<String> s = index.get(hash);
-        
-        if (s == null) {
-            s = new HashSet<String>();
-        }
+        IntPostingList s = index.get(hash);
         
-        for (Iterator<String> it = s.iterator(); it.hasNext();) {
-            candidates.add(it.next());
+        if (s != null) {
+            for (int i = 0; i < s.size(); i++) {
+                candidates.append(s.get(i));
+            }
         }
 
-        return candidates;
+        return candidates.size();
+    }
+
+    /**
+     * Returns the key of the <code>OysterIdentityRecord</code>. The <code>
+     * NullIndex</code> has only the one key.
+     * @param oir the <code>OysterIdentityRecord</code> to be hashed.
+     * @return the set of keys.
+     */
+    @Override
+    protected Set<String> getHash(OysterIdentityRecord oir) {
+        Set<String> keys = new HashSet<String>();
+        keys.add(hash);
+        return keys;
     }
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.index;
+
+import edu.ualr.oyster.ErrorFormatter;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class adds a stream of entries to an <code>Index</code> with several
+ * threads, giving the same <code>Index</code> as adding them one at a time.
+ *
+ * The entries are gathered into batches and the keys of each batch are worked
+ * out on a worker thread with <code>prepareEntry</code>, which is where the
+ * hash functions are run. The prepared batches are added to the <code>Index
+ * </code> on the calling thread in the order the entries were given, so the
+ * RefID ordinals and the stop keys come out the same as for a serial build.
+ * At most two batches per thread are prepared ahead.
+ * @author Eric D. Nelson
+ */
+public class ParallelIndexBuilder {
+    /** The default number of entries in a batch */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /** The <code>Index</code> being built */
+    private Index index = null;
+
+    /** The number of worker threads */
+    private int threads = 1;
+
+    /** The number of entries in a batch */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** The worker threads */
+    private ExecutorService executor = null;
+
+    /** The batches being prepared, in order */
+    private LinkedList<Future<Batch>> pending = null;
+
+    /** The batch being gathered */
+    private ArrayList<Object> entries = null;
+
+    /** The number of entries added */
+    private long count = 0;
+
+    /**
+     * Creates a new instance of <code>ParallelIndexBuilder</code>.
+     * @param index the <code>Index</code> to be built.
+     * @param threads the number of worker threads, 1 or less adds each entry
+     * as it is given.
+     */
+    public ParallelIndexBuilder(Index index, int threads) {
+        this.index = index;
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * Returns the number of entries in a batch.
+     * @return the batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of entries in a batch. This must be set before the first
+     * entry is added.
+     * @param batchSize the batch size to be set.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    /**
+     * Returns the number of entries added to the <code>Index</code>.
+     * @return the count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Adds an entry. With more than one thread the entry is held until its
+     * batch has been prepared.
+     * @param obj the entry to be added.
+     */
+    public void addEntry(Object obj) {
+        if (threads == 1) {
+            index.addEntry(obj);
+            count++;
+        } else {
+            if (pending == null) {
+                start();
+            }
+
+            entries.add(obj);
+            if (entries.size() == batchSize) {
+                submit();
+            }
+        }
+    }
+
+    /**
+     * Adds the entries still held and stops the worker threads.
+     */
+    public void finish() {
+        if (pending != null) {
+            if (!entries.isEmpty()) {
+                submit();
+            }
+
+            while (!pending.isEmpty()) {
+                add(pending.removeFirst());
+            }
+
+            executor.shutdownNow();
+            executor = null;
+            pending = null;
+        }
+    }
+
+    /**
+     * Starts the worker threads.
+     */
+    private void start() {
+        pending = new LinkedList<Future<Batch>>();
+        entries = new ArrayList<Object>(batchSize);
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ParallelIndexBuilder-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Hands the gathered batch to the workers, first adding the oldest batch
+     * if two batches per thread are already being prepared.
+     */
+    private void submit() {
+        if (pending.size() >= threads * 2) {
+            add(pending.removeFirst());
+        }
+
+        final ArrayList<Object> batch = entries;
+        entries = new ArrayList<Object>(batchSize);
+
+        pending.add(executor.submit(new Callable<Batch>() {
+            @Override
+            public Batch call() {
+                Object [] prepared = new Object[batch.size()];
+                try {
+                    for (int i = 0; i < prepared.length; i++) {
+                        prepared[i] = index.prepareEntry(batch.get(i));
+                    }
+                } catch (RuntimeException ex) {
+                    Logger.getLogger(ParallelIndexBuilder.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+                    prepared = null;
+                }
+                return new Batch(batch, prepared);
+            }
+        }));
+    }
+
+    /**
+     * Adds the entries of a prepared batch to the <code>Index</code>. If the
+     * batch could not be prepared its entries are added one at a time.
+     * @param future the batch.
+     */
+    private void add(Future<Batch> future) {
+        Batch batch = null;
+        try {
+            batch = future.get();
+        } catch (InterruptedException ex) {
+            Logger.getLogger(ParallelIndexBuilder.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Logger.getLogger(ParallelIndexBuilder.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+
+        if (batch != null) {
+            for (int i = 0; i < batch.entries.size(); i++) {
+                if (batch.prepared != null) {
+                    index.addPreparedEntry(batch.entries.get(i), batch.prepared[i]);
+                } else {
+                    index.addEntry(batch.entries.get(i));
+                }
+            }
+            count += batch.entries.size();
+        }
+    }
+
+    /**
+     * A batch of entries and their prepared keys.
+     */
+    private static class Batch {
+        /** The entries */
+        private final ArrayList<Object> entries;
+
+        /** The result of <code>prepareEntry</code> for each entry, null if the batch could not be prepared */
+        private final Object [] prepared;
+
+        /**
+         * Creates a new instance of <code>Batch</code>.
+         * @param entries the entries.
+         * @param prepared the result of <code>prepareEntry</code> for each entry.
+         */
+        private Batch(ArrayList<Object> entries, Object [] prepared) {
+            this.entries = entries;
+            this.prepared = prepared;
+        }
+    }
+}
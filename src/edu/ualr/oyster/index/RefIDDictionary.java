@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.index;
+
+import java.util.Arrays;
+
+/**
+ * Maps each RefID to a dense int ordinal and back. The ordinals are handed out
+ * in the order the RefIDs are first seen and are never reused, so the postings
+ * of an <code>InvertedIndex</code> only have to hold 4 bytes per RefID. The
+ * lookup table uses open addressing on the RefID hash and holds ordinals only,
+ * the RefID itself is held once in the ordinal array.
+ * @author Eric D. Nelson
+ */
+public class RefIDDictionary {
+    /** The RefIDs by ordinal */
+    private String [] refIDs;
+
+    /** The number of RefIDs */
+    private int size = 0;
+
+    /** The hash table, each slot holds the ordinal + 1 or 0 when empty */
+    private int [] table;
+
+    /**
+     * Creates a new instance of <code>RefIDDictionary</code>.
+     */
+    public RefIDDictionary() {
+        refIDs = new String[1024];
+        table = new int[2048];
+    }
+
+    /**
+     * Returns the number of RefIDs in this <code>RefIDDictionary</code>.
+     * @return the size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ordinal for the RefID, a new ordinal is handed out if the
+     * RefID has not been seen.
+     * @param refID the RefID.
+     * @return the ordinal.
+     */
+    public int intern(String refID) {
+        int slot = find(refID);
+        int ordinal = table[slot] - 1;
+
+        if (ordinal < 0) {
+            if (size == refIDs.length) {
+                refIDs = Arrays.copyOf(refIDs, size * 2);
+            }
+            ordinal = size++;
+            refIDs[ordinal] = refID;
+            table[slot] = ordinal + 1;
+
+            // keep the load factor under 1/2
+            if (size * 2 > table.length) {
+                rehash();
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * Returns the ordinal for the RefID.
+     * @param refID the RefID.
+     * @return the ordinal if the RefID has been seen, otherwise -1.
+     */
+    public int lookup(String refID) {
+        return table[find(refID)] - 1;
+    }
+
+    /**
+     * Returns the RefID for the ordinal.
+     * @param ordinal the ordinal.
+     * @return the RefID.
+     */
+    public String get(int ordinal) {
+        return refIDs[ordinal];
+    }
+
+    /**
+     * Removes all of the RefIDs.
+     */
+    public void clear() {
+        Arrays.fill(refIDs, 0, size, null);
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+
+    /**
+     * Returns the slot of the RefID, or the empty slot it would go in.
+     * @param refID the RefID.
+     * @return the slot.
+     */
+    private int find(String refID) {
+        int mask = table.length - 1;
+        int slot = mix(refID.hashCode()) & mask;
+
+        while (table[slot] != 0 && !refIDs[table[slot] - 1].equals(refID)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the hash table and places the ordinals again.
+     */
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int slot = mix(refIDs[ordinal].hashCode()) & mask;
+
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = ordinal + 1;
+        }
+    }
+
+    /**
+     * Spreads the bits of the hash code since the table size is a power of 2.
+     * @param h the hash code.
+     * @return the mixed hash code.
+     */
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -20,24 +20,18 @@
 
 package edu.ualr.oyster.index;
 
-import edu.ualr.oyster.data.ClusterRecord;
 import edu.ualr.oyster.data.OysterIdentityRecord;
-import edu.ualr.oyster.utilities.DaitchMokotoffSoundex;
-import edu.ualr.oyster.utilities.IBMAlphaCode;
-import edu.ualr.oyster.utilities.NYSIISCode;
-import edu.ualr.oyster.utilities.Scan;
-import edu.ualr.oyster.utilities.Soundex;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Formatter;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Locale;
-import java.util.Map; 
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.logging.Logger;
 
 /**
  * An Inverted Index is a mapping structure that maps a word to its location 
@@ -76,6 +70,13 @@ import java.util.TreeMap;
  * "JOHNS" is the first 5 chars in upper case of "Johnson"
  * "223344567" are the 9 alphanumeric chars of "432-43-7652" in sorted order
  * 
+ * A key whose postings reach the stop key ceiling becomes a stop key. Its 
+ * postings are frozen and from then on the records that hash to it are indexed
+ * under finer composite keys instead, the stop key plus one segment of each of
+ * the other rules (e.g. "Soundex(Last)" refined by "Scan(First)" or "DOB"). A 
+ * lookup reads the frozen postings and the composite keys of the record, so a 
+ * common name no longer hands every later record a super-block.
+ * 
  * @author Eric D. Nelson
  */
 
@@ -89,32 +90,32 @@ public class TalburtZhouInvertedIndex extends InvertedIndex {
     /** The rules to be used for the ER run */
     private ArrayList<IndexRule> rules = null;
     
-    /** Standard Soundex utility */
-    private Soundex soundex;
-
-    /** Standard Soundex utility */
-    private DaitchMokotoffSoundex dmSoundex;
-
-    /** IBM AlphaCode Soundex utility */
-    private IBMAlphaCode alphaCode;
-
-    /** NYSIISCode Soundex utility */
-    private NYSIISCode nysiis;
+    /** The rules compiled into hash functions, in the order of the rules */
+    private ArrayList<CompiledRule> compiled = new ArrayList<CompiledRule>();
+    
+    /** The hash functions by method string, shared by the compiled rules */
+    private Map<String, IndexHashFunction> functions = new LinkedHashMap<String, IndexHashFunction>();
     
-    /** Scan Utility */
-    private Scan scan;
+    /** The number of cache slots of each hash function */
+    private int hashCacheSize = IndexHashFunction.DEFAULT_CACHE_SIZE;
+    
+    /** The postings size at which a key becomes a stop key, 0 for no stop keys */
+    private int stopKeyCeiling = 0;
+    
+    /** The stop keys and their postings size when they were stopped */
+    private Map<String, Integer> stopKeys = new LinkedHashMap<String, Integer>();
+    
+    /** Whether the keys of every rule can be refined when they are stopped */
+    private boolean refinable = false;
+    
+    /** Separates the stop key from the refinement in a composite key */
+    private static final String COMPOSITE = "\u0001";
     
     /**
      * Creates a new instance of <code>TalburtZhouInvertedIndex</code>.
      */
     public TalburtZhouInvertedIndex () {
         super();
-        
-        soundex = new Soundex();
-        dmSoundex = new DaitchMokotoffSoundex();
-        alphaCode = new IBMAlphaCode();
-        nysiis = new NYSIISCode();
-        scan = new Scan();
     }
 
     public int getSlidingWindow() {
@@ -131,360 +132,382 @@ public class TalburtZhouInvertedIndex extends InvertedIndex {
 
     public void setRules(ArrayList<IndexRule> rules) {
         this.rules = rules;
+        compile();
     }
-    
+
     /**
-     * Add an entry to the <code>TalburtZhouInvertedIndex</code>.
-     * @param obj the entry to be added.
+     * Returns the number of cache slots of each hash function.
+     * @return the hash cache size.
      */
-    @Override
-    public void addEntry(Object obj) {
-        if (obj != null) {
-            OysterIdentityRecord oir = (OysterIdentityRecord) obj;
-
-            // get the RefID
-            String value = oir.get("@RefID");
-            Set<String> hashes = getHash(oir, rules);
-            for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
-                String hash = it.next();
-                Set<String> s = index.get(hash);
-
-                if (s == null) {
-                    s = new LinkedHashSet<String>();
-                }
+    public int getHashCacheSize() {
+        return hashCacheSize;
+    }
 
-                String[] values = value.split("[|]");
-                s.addAll(Arrays.asList(values));
-                index.put(hash, s);
-            }
-        } else {
-            System.out.println("Null obj insertion into index");
-        }
+    /**
+     * Sets the number of cache slots of each hash function. The rules are
+     * compiled again.
+     * @param hashCacheSize the hash cache size to be set, 0 for no cache.
+     */
+    public void setHashCacheSize(int hashCacheSize) {
+        this.hashCacheSize = hashCacheSize;
+        compile();
     }
 
     /**
-     * Add an entry to the <code>TalburtZhouInvertedIndex</code>.
-     * @param refID the refID to set the reference items to.
-     * @param obj the entry to be added.
+     * Returns the postings size at which a key becomes a stop key.
+     * @return the stop key ceiling, 0 if there are no stop keys.
      */
-    @Override
-    public void addEntry(String refID, Object obj) {
-        if (obj != null) {
-            OysterIdentityRecord oir = (OysterIdentityRecord) obj;
-            Set<String> hashes = getHash(oir, rules);
+    public int getStopKeyCeiling() {
+        return stopKeyCeiling;
+    }
 
-            for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
-                String hash = it.next();
-                Set<String> s = index.get(hash);
+    /**
+     * Sets the postings size at which a key becomes a stop key.
+     * @param stopKeyCeiling the stop key ceiling to be set, 0 for no stop keys.
+     */
+    public void setStopKeyCeiling(int stopKeyCeiling) {
+        this.stopKeyCeiling = stopKeyCeiling;
+        compile();
+    }
 
-                if (s == null) {
-                    s = new LinkedHashSet<String>();
-                }
+    /**
+     * Returns the stop keys and their postings size when they were stopped.
+     * @return the stop keys.
+     */
+    public Map<String, Integer> getStopKeys() {
+        return stopKeys;
+    }
 
-                s.add(refID);
-                index.put(hash, s);
+    /**
+     * Returns a description of the settings the keys depend on: the index
+     * rules and the stop key ceiling.
+     * @return the configuration.
+     */
+    @Override
+    public String getConfiguration() {
+        StringBuilder sb = new StringBuilder(super.getConfiguration());
+        if (rules != null) {
+            for (Iterator<IndexRule> it = rules.iterator(); it.hasNext();) {
+                sb.append(' ').append(it.next().getSegments());
             }
-        } else {
-            System.out.println("Null obj insertion into index");
         }
+        sb.append(" StopKeyCeiling=").append(stopKeyCeiling);
+        return sb.toString();
     }
-    
+
     /**
-     * Associates the specified value with the specified key in this <code>
-     * TalburtZhouInvertedIndex</code>. If the <code>TalburtZhouInvertedIndex</code>
-     * previously contained a mapping for this key, the old value is replaced by
-     * the specified value. 
-     * @param key the key with which the specified value is to be associated.
-     * @param o the value to be associated with the specified key.
+     * Compiles the rules into hash functions, the method strings are parsed once
+     * here instead of for every token. Each rule also gets the composite rules 
+     * it is refined by when one of its keys is a stop key, every segment of the
+     * other rules that it does not already have. If a rule can not be refined
+     * the stop keys are turned off, since freezing its keys would lose 
+     * candidates.
      */
-    @SuppressWarnings( "unchecked" )
-    @Override
-    public void add(String key, Object o){
-        Set<String> s = index.get(key.trim());
-        Set<String> set = (Set<String>) o;
-        if (s != null) {
-            s.addAll(set);
+    private void compile() {
+        compiled = new ArrayList<CompiledRule>();
+        functions = new LinkedHashMap<String, IndexHashFunction>();
+        refinable = false;
+        
+        if (rules != null) {
+            for (Iterator<IndexRule> it = rules.iterator(); it.hasNext();) {
+                compiled.add(compile(it.next().getSegments()));
+            }
             
-            index.put(key.trim(), s);
-        }
-        else {
-            index.put(key.trim(), set);
+            refinable = stopKeyCeiling > 0;
+            for (int i = 0; i < rules.size() && refinable; i++) {
+                IndexRule ir = rules.get(i);
+                ArrayList<Map<String, String>> list = new ArrayList<Map<String, String>>();
+                
+                for (Iterator<IndexRule> it2 = rules.iterator(); it2.hasNext();) {
+                    IndexRule other = it2.next();
+                    
+                    for (Iterator<Entry<String, String>> it3 = other.getSegments().entrySet().iterator(); it3.hasNext();) {
+                        Entry<String, String> entry = it3.next();
+                        
+                        if (!entry.getValue().equals(ir.getSegments().get(entry.getKey()))) {
+                            Map<String, String> segment = new LinkedHashMap<String, String>();
+                            segment.put(entry.getKey(), entry.getValue());
+                            
+                            if (!list.contains(segment)) {
+                                list.add(segment);
+                            }
+                        }
+                    }
+                }
+                
+                if (list.isEmpty()) {
+                    Logger.getLogger(TalburtZhouInvertedIndex.class.getName()).warning("Stop keys turned off, no finer rule for " + ir.getRuleIdentifier());
+                    refinable = false;
+                }
+                
+                for (Iterator<Map<String, String>> it2 = list.iterator(); it2.hasNext();) {
+                    compiled.get(i).refinements.add(compile(it2.next()));
+                }
+            }
         }
     }
     
     /**
-     * Associates the specified value with the specified key in this <code>
-     * TalburtZhouInvertedIndex</code>. If the <code>TalburtZhouInvertedIndex</code>
-     * previously contained a mapping for this key, the old value is replaced by
-     * the specified value. 
-     * @param key the key with which the specified value is to be associated.
-     * @param value the value to be associated with the specified key.
+     * Compiles the segments of a rule.
+     * @param segments the attributes and their hash methods.
+     * @return the compiled rule.
      */
-    @Override
-    public void setEntryAt(Object key, String value) {
-        OysterIdentityRecord oir = (OysterIdentityRecord) key;
+    private CompiledRule compile(Map<String, String> segments) {
+        CompiledRule cr = new CompiledRule(segments.size());
         
-        if (oir != null) {
-            Set<String> hashes = getHash(oir, rules);
-
-            for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
-                String hash = it.next();
-                Set<String> s = index.get(hash);
-
-                if (s == null) {
-                    s = new LinkedHashSet<String>();
-                }
-
-                if (!s.contains(value) && !hash.equals("")) {
-                    s.add(value);
-                    index.put(hash, s);
-                }
+        int i = 0;
+        for (Iterator<Entry<String, String>> it = segments.entrySet().iterator(); it.hasNext(); i++) {
+            Entry<String, String> entry = it.next();
+            
+            IndexHashFunction function = functions.get(entry.getValue());
+            if (function == null) {
+                function = new IndexHashFunction(entry.getValue(), hashCacheSize);
+                functions.put(entry.getValue(), function);
             }
-        } else {
-            System.out.println("Null obj insertion into index");
+            
+            cr.attributes[i] = entry.getKey();
+            cr.functions[i] = function;
         }
+        return cr;
     }
-
+    
     /**
-     * Removes the mapping for this key from this <code>TalburtZhouInvertedIndex
-     * </code> if it is present.
-     * @param obj the Object to be removed.
+     * Returns the keys of the <code>OysterIdentityRecord</code>, one for each
+     * of the index rules that can be applied.
+     * @param oir the <code>OysterIdentityRecord</code> to be hashed.
+     * @return the set of keys.
      */
     @Override
-    public void removeEntry (Object obj) {
-        String key = (String) obj;
-        index.remove(key);
+    protected Set<String> getHash(OysterIdentityRecord oir) {
+        return getHash(oir, prepareHash(oir));
     }
-
+    
     /**
-     * Remove the refID from the Object in the <code>TalburtZhouInvertedIndex</code>.
-     * @param obj the Object to be searched.
-     * @param refID the refID to be removed from the Object.
+     * Works out the key of each index rule. The composite keys of the stop keys
+     * are left to <code>getHash(OysterIdentityRecord, Object)</code> since the
+     * stop keys change as the postings are added.
+     * @param oir the <code>OysterIdentityRecord</code> to be hashed.
+     * @return the key of each compiled rule, null where a rule can not be
+     * applied.
      */
     @Override
-    public void removeEntry(Object obj, String refID) {
-        OysterIdentityRecord oir = (OysterIdentityRecord) obj;
+    protected Object prepareHash(OysterIdentityRecord oir) {
+        String [] keys = new String[compiled.size()];
         
-        if (oir != null) {
-            Set<String> hashes = getHash(oir, rules);
-
-            for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
-                String hash = it.next();
-                Set<String> s = index.get(hash);
-
-                if (s != null) {
-                    if (s.contains(refID)) {
-                        s.remove(refID);
-
-                    if (s.isEmpty()) {
-                            Set<String> set = this.index.remove(hash);
-                            set = null;
-                        } else {
-                            this.index.put(hash, s);
-                        }
-                    }
-                }
-            }
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = getHash(oir, compiled.get(i));
         }
+        return keys;
     }
-
+    
     /**
-     * 
-     * @param clusterRecord
-     * @param lcrd
-     * @return 
+     * Returns the keys of the <code>OysterIdentityRecord</code> from the key of
+     * each index rule, adding the composite keys of the stop keys.
+     * @param oir the <code>OysterIdentityRecord</code> to be hashed.
+     * @param prepared the key of each compiled rule from <code>prepareHash
+     * </code>.
+     * @return the set of keys.
      */
-    @SuppressWarnings( "unchecked" )
     @Override
-    public Set<String> getCandidateList(ClusterRecord clusterRecord, Map<Integer, ArrayList<String>> lcrd) {
-        Set<String> candidates = new HashSet<String>();
-        OysterIdentityRecord oysterIdentityRecord = clusterRecord.getMergedRecord();
-        Map<String, Integer> sort = new LinkedHashMap<String, Integer>();
-
-        Set<String> hashes = getHash(oysterIdentityRecord, rules);
-
-        for (Iterator<String> it = hashes.iterator(); it.hasNext();) {
-            String hash = it.next();
-            Set<String> s = index.get(hash);
+    protected Set<String> getHash(OysterIdentityRecord oir, Object prepared) {
+        String [] keys = (String []) prepared;
+        Set<String> hashes = new LinkedHashSet<String>();
+        
+        for (int i = 0; i < keys.length; i++) {
+            String hash = keys[i];
             
-            if (s != null) {
-                candidates.addAll(s);
-
-                for (Iterator<String> it2 = s.iterator(); it2.hasNext();) {
-                    String key = it2.next();
-
-                    int value = 0;
-                    if (sort.containsKey(key)) {
-                        value = sort.get(key);
+            if (hash != null){
+                hashes.add(hash);
+                
+                // a stop key is looked up and written through its composite keys
+                if (refinable && stopKeys.containsKey(hash)) {
+                    for (Iterator<CompiledRule> it = compiled.get(i).refinements.iterator(); it.hasNext();) {
+                        String refinement = getHash(oir, it.next());
+                        
+                        if (refinement != null) {
+                            hashes.add(hash + COMPOSITE + refinement);
+                        }
                     }
-                    value++;
-                    sort.put(key, value);
                 }
             }
         }
-
-        int value = 0;
-        if (candidateList.containsKey(candidates.size())) {
-            value = candidateList.get(candidates.size());
-        }
-        value++;
-        candidateList.put(candidates.size(), value);
         
-        // if more than 100 candidates only return the top 1/3 sorted based on most occuring
-        if (candidates.size() > 100){
-            TreeMap<Integer, Set<String>> sort2 = new TreeMap<Integer, Set<String>>();
+        return hashes;
+    }
+    
+    /**
+     * Returns the key of the <code>OysterIdentityRecord</code> for a compiled
+     * rule.
+     * @param oir the <code>OysterIdentityRecord</code> to be hashed.
+     * @param cr the compiled rule.
+     * @return the key, null if an attribute is empty.
+     */
+    private String getHash(OysterIdentityRecord oir, CompiledRule cr){
+        StringBuilder hash = null;
+        for (int i = 0; i < cr.attributes.length; i++) {
+            String token = oir.get(cr.attributes[i]);
             
-            for(Iterator<Entry<String, Integer>> it = sort.entrySet().iterator(); it.hasNext();){
-                Entry<String, Integer> entry = it.next();
-                value = entry.getValue();
-                
-                Set<String> s2 = sort2.get(value);
-                
-                if (s2 == null) {
-                    s2 = new LinkedHashSet<String>();
+            if (token != null && !token.trim().isEmpty()){
+                if (hash == null) {
+                    hash = new StringBuilder(32);
                 }
-                
-                s2.add(entry.getKey());
-                sort2.put(value, s2);
+                hash.append(cr.functions[i].hash(token));
+            } else {
+                // Change per Dr T. if any element in the data is empty do not create a hash for this record
+                hash = null;
+                break;
             }
-            
-            int check = candidates.size() / 3;
-            if (check > 100) {
-                check = 100;
+        }
+        
+        String result = null;
+        if (hash != null && hash.length() > 0){
+            if (hash.charAt(hash.length() - 1) == '\u0000') {
+                hash.setLength(hash.length() - 1);
             }
+            result = hash.toString();
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Adds the RefID to the postings of the key. The postings of a stop key are
+     * frozen, a key becomes a stop key when its postings reach the ceiling.
+     * @param key the key.
+     * @param refID the RefID to be added.
+     */
+    @Override
+    protected void addPosting(String key, String refID) {
+        if (!stopKeys.containsKey(key)) {
+            super.addPosting(key, refID);
             
-            candidates.clear();
-            
-            for (int i = sort2.lastKey(); i >= 0; i--){
-                Set<String> s2 = sort2.get(i);
+            if (refinable && !key.contains(COMPOSITE)) {
+                int size = index.get(key).size();
                 
-                if (s2 != null) {
-                    candidates.addAll(s2);
-                }
-                
-                if (candidates.size() > check) {
-                    break;
+                if (size >= stopKeyCeiling) {
+                    stopKeys.put(key, size);
                 }
             }
         }
+    }
 
-        return candidates;
+    /**
+     * Removes all of the elements and the stop keys from this <code>
+     * TalburtZhouInvertedIndex</code>.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        stopKeys.clear();
     }
 
-    private Set<String> getHash(OysterIdentityRecord oir, ArrayList<IndexRule> irs){
-        Set<String> hashes = new LinkedHashSet<String>();
+    /**
+     * Returns the index statistics followed by the stop keys, their frozen 
+     * postings size and the composite keys they were split into.
+     * @return the index statistics.
+     */
+    @Override
+    public String indexStats() {
+        StringBuilder sb = new StringBuilder(super.indexStats());
         
-        for (Iterator<IndexRule> it = irs.iterator(); it.hasNext();) {
-            IndexRule ir = it.next();
-            String hash = null;
-            for (Iterator<String> it2 = ir.getSegments().keySet().iterator(); it2.hasNext();) {
-                String attribute = it2.next();
-                String hashCode = ir.getSegments().get(attribute);
-                
-                String token = oir.get(attribute);
-                
-                if (token != null && !token.trim().isEmpty()){
-                    if (hash == null) {
-                        hash = "";
-                    }
-                    hash += decodeMethodSignature(token, hashCode);
-                } else {
-                    // Change per Dr T. if any element in the data is empty do not create a hash for this record
-                    hash = null;
-                    break;
-                }
-            }
+        // Send all output to the Appendable object sb
+        Formatter report = new Formatter(sb, Locale.US);
+        
+        // count the composite keys and postings of each stop key
+        Map<String, long []> composites = new LinkedHashMap<String, long []>();
+        for (Iterator<String> it = index.keySet().iterator(); it.hasNext();) {
+            String key = it.next();
+            int pos = key.indexOf(COMPOSITE);
             
-            if (hash != null && !hash.isEmpty()){
-                if (hash.endsWith("\u0000")) {
-                    hash = hash.substring(0, hash.length()-1);
+            if (pos > 0) {
+                String stopKey = key.substring(0, pos);
+                long [] counts = composites.get(stopKey);
+                if (counts == null) {
+                    counts = new long[3];
+                    composites.put(stopKey, counts);
                 }
-                hashes.add(hash);
+                int size = index.get(key).size();
+                counts[0]++;
+                counts[1] += size;
+                counts[2] = Math.max(counts[2], size);
             }
         }
         
-        return hashes;
-    }
-    
-    private String decodeMethodSignature(String token, String hashCode){
-        String result = "", matchType = "", direction = "", charType = "", upperCase = "", order = "";
-        int length = 0;
+        long compositeKeys = 0L;
+        for (Iterator<long []> it = composites.values().iterator(); it.hasNext();) {
+            compositeKeys += it.next()[0];
+        }
         
-        if (hashCode.toUpperCase(Locale.US).startsWith("SOUNDEX")){
-            matchType = "Soundex";
-        } else if (hashCode.toUpperCase(Locale.US).startsWith("DMSOUNDEX(")){
-            matchType = hashCode.trim().substring(10, hashCode.length()-1);
-            
-            length = Integer.parseInt(matchType);
-            matchType = "DMSoundex";
-        } else if (hashCode.toUpperCase(Locale.US).startsWith("IBMALPHACODE(")){
-            matchType = hashCode.trim().substring(13, hashCode.length()-1);
-            
-            length = Integer.parseInt(matchType);
-            matchType = "IBMAlphaCode";
-        } else if (hashCode.toUpperCase(Locale.US).startsWith("NYSIIS(")){
-            matchType = hashCode.trim().substring(7, hashCode.length()-1);
+        sb.append(System.getProperty("line.separator"));
+        sb.append(System.getProperty("line.separator"));
+        report.format("Stop key ceiling        : %1$,12d%n", stopKeyCeiling);
+        report.format("Stop keys               : %1$,12d%n", stopKeys.size());
+        report.format("Composite keys          : %1$,12d%n", compositeKeys);
+        
+        sb.append(System.getProperty("line.separator"));
+        sb.append("Hash Function                                   Cache Hits     Cache Misses   Hit Ratio").append(System.getProperty("line.separator"));
+        for (Iterator<IndexHashFunction> it = functions.values().iterator(); it.hasNext();) {
+            IndexHashFunction function = it.next();
+            long hits = function.getHits(), misses = function.getMisses();
+            report.format("  %1$-40s  %2$,15d  %3$,15d   %4$9.5f%n", function.getMethod(), hits, misses, hits + misses > 0 ? (double) hits / (double) (hits + misses) : 0D);
+        }
+        
+        if (!stopKeys.isEmpty()) {
+            // largest frozen postings first
+            TreeMap<Integer, Set<String>> bySize = new TreeMap<Integer, Set<String>>();
+            for (Iterator<Entry<String, Integer>> it = stopKeys.entrySet().iterator(); it.hasNext();) {
+                Entry<String, Integer> entry = it.next();
+                Set<String> keys = bySize.get(entry.getValue());
+                if (keys == null) {
+                    keys = new LinkedHashSet<String>();
+                    bySize.put(entry.getValue(), keys);
+                }
+                keys.add(entry.getKey());
+            }
             
-            length = Integer.parseInt(matchType);
-            matchType = "NYSIIS";
-        } else if (hashCode.toUpperCase(Locale.US).startsWith("SCAN(")){
-            matchType = hashCode.trim().substring(5, hashCode.length()-1);
-            String [] args = matchType.split("[,]");
-            for (int i = 0; i < args.length; i++){
-                switch (i) {
-                    case 0:
-                        if (args[i].trim().equalsIgnoreCase("LR") || args[i].trim().equalsIgnoreCase("RL")){
-                            direction = args[i].trim();
-                        }
-                        break;
-                    case 1:
-                        if (args[i].trim().equalsIgnoreCase("ALL") || args[i].trim().equalsIgnoreCase("NONBLANK") ||
-                            args[i].trim().equalsIgnoreCase("ALPHA") || args[i].trim().equalsIgnoreCase("LETTER") ||
-                            args[i].trim().equalsIgnoreCase("DIGIT")){
-                            charType = args[i].trim();
-                        }
-                        break;
-                    case 2:
-                        length = Integer.parseInt(args[i].trim());
-                        break;
-                    case 3:
-                        if (args[i].trim().equalsIgnoreCase("ToUpper") || args[i].trim().equalsIgnoreCase("KeepCase")){
-                            upperCase = args[i].trim();
-                        }
-                        break;
-                    case 4:
-                        if (args[i].trim().equalsIgnoreCase("Same") || args[i].trim().equalsIgnoreCase("L2HKeepDup") ||
-                            args[i].trim().equalsIgnoreCase("L2HDropDup")){
-                            order = args[i].trim();
-                        }
-                        break;
-                    default: //FIXME: Should throw an error here but for now just a message
-                        System.err.println("Invalid Argument List in SCAN method");
+            sb.append(System.getProperty("line.separator"));
+            sb.append("  Frozen Size     Composite Keys    Composite Tokens   Max Composite   Stop Key").append(System.getProperty("line.separator"));
+            int count = 0;
+            for (Iterator<Entry<Integer, Set<String>>> it = bySize.descendingMap().entrySet().iterator(); it.hasNext() && count < 20;) {
+                Entry<Integer, Set<String>> entry = it.next();
+                
+                for (Iterator<String> it2 = entry.getValue().iterator(); it2.hasNext() && count < 20; count++) {
+                    String key = it2.next();
+                    long [] counts = composites.get(key);
+                    if (counts == null) {
+                        counts = new long[3];
+                    }
+                    report.format("  %1$,11d     %2$,14d    %3$,16d   %4$,13d   %5$s%n", entry.getKey(), counts[0], counts[1], counts[2], key);
                 }
             }
-            matchType = "Scan";
+            
+            if (stopKeys.size() > 20) {
+                sb.append("  [").append(stopKeys.size() - 20).append(" More]...").append(System.getProperty("line.separator"));
+            }
         }
+        return sb.toString();
+    }
+
+    /**
+     * An index rule compiled into its attributes and hash functions.
+     */
+    private static class CompiledRule {
+        /** The attributes of the segments */
+        private String [] attributes;
         
-        if (matchType.equalsIgnoreCase("Soundex")){
-            result = soundex.getSoundex(token);
-        } else if (matchType.equalsIgnoreCase("DMSoundex")){
-            result = dmSoundex.getDMSoundex(token)[0];
-        } else if (matchType.equalsIgnoreCase("IBMAlphaCode")){
-            result = alphaCode.getIBMAlphaCode(token);
-        } else if (matchType.equalsIgnoreCase("NYSIIS")){
-            result = nysiis.getNYSIISCode(token);
-        } else if (matchType.equalsIgnoreCase("Scan")){
-            result = scan.getScan(token, direction, charType, length, upperCase, order);
-        }
+        /** The hash functions of the segments */
+        private IndexHashFunction [] functions;
         
-        if (length > 0 && result.length() > length && !matchType.equalsIgnoreCase("Scan")){
-            result = result.substring(0, length);
-        }
+        /** The composite rules the keys are refined by when they are stopped */
+        private ArrayList<CompiledRule> refinements = new ArrayList<CompiledRule>();
         
-        if (!"".equals(result)) {
-            result += "\u0000";
+        /**
+         * Creates a new instance of <code>CompiledRule</code>.
+         * @param size the number of segments.
+         */
+        private CompiledRule(int size) {
+            attributes = new String[size];
+            functions = new IndexHashFunction[size];
         }
-        
-        return result;
     }
-}
\ No newline at end of file
+}
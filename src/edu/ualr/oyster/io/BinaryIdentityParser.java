@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ * 
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+
+package edu.ualr.oyster.io;
+
+import edu.ualr.oyster.ErrorFormatter;
+import edu.ualr.oyster.data.ClusterRecord;
+import edu.ualr.oyster.index.Index;
+import edu.ualr.oyster.kb.EntityMap;
+import edu.ualr.oyster.kb.ModificationRecord;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class loads an identity repository written by the
+ * <code>OysterBinaryIdentityWriter</code>. The identities are loaded and the
+ * value index is built the same way the <code>IdentityParser</code> does for
+ * the XML form, so the same getters return the results.
+ * @author Eric D. Nelson
+ */
+public class BinaryIdentityParser extends IdentityParser {
+    /**
+     * Creates a new instance of <code>BinaryIdentityParser</code>.
+     * @param recordType the type of the records created.
+     */
+    public BinaryIdentityParser(int recordType) {
+        super(recordType);
+    }
+
+    /**
+     * Creates a new instance of <code>BinaryIdentityParser</code>.
+     * @param index the empty index to be populated by the parser.
+     * @param entity the EntityMap to be populated by the parser.
+     * @param recordType the type of the records created.
+     */
+    public BinaryIdentityParser(Index index, EntityMap entity, int recordType) {
+        super(index, entity, recordType);
+    }
+
+    /**
+     * This method is the main entry point for the parser.
+     * @param file the binary identity repository to be loaded.
+     * @param index the empty index to be populated by the parser.
+     * @param entityMap the EntityMap to be populated by the parser.
+     */
+    @Override
+    public void parse(String file, Index index, EntityMap entityMap) {
+        BinaryIdentityParser loader = new BinaryIdentityParser(index, entityMap, recordType);
+        loader.setDontLoad(isDontLoad());
+        loader.setTraceOn(isTraceOn());
+        loader.setLoadThreads(getLoadThreads());
+        loader.setIndexSnapshot(getIndexSnapshot());
+        loader.load(file);
+    }
+
+    /**
+     * Loads each identity of the repository and then builds the value index.
+     * @param file the binary identity repository to be loaded.
+     */
+    private void load(String file) {
+        OysterBinaryIdentityReader reader = null;
+        try {
+            reader = new OysterBinaryIdentityReader(new FileInputStream(file), new File(file).length(), recordType);
+
+            for (Iterator<ModificationRecord> it = reader.getModifications().iterator(); it.hasNext();) {
+                ModificationRecord mr = it.next();
+                getModifications().put(mr.getDate(), mr);
+            }
+
+            ClusterRecord cr;
+            while ((cr = reader.readIdentity()) != null) {
+                referenceCount += cr.getSize();
+                loadIdentity(cr.getOysterID(), cr);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(BinaryIdentityParser.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(BinaryIdentityParser.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+                }
+            }
+        }
+
+        buildIndex();
+    }
+}
@@ -24,10 +24,14 @@ import edu.ualr.oyster.ErrorFormatter;
 import edu.ualr.oyster.data.ClusterRecord;
 import edu.ualr.oyster.data.ClusterRecordSet;
 import edu.ualr.oyster.data.CoDoSAOIR;
+import edu.ualr.oyster.data.IndexedCoDoSAOIR;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.data.OysterIdentityRecordMap;
 import edu.ualr.oyster.data.RecordTypes;
 import edu.ualr.oyster.index.Index;
+import edu.ualr.oyster.index.IndexSnapshot;
+import edu.ualr.oyster.index.InvertedIndex;
+import edu.ualr.oyster.index.ParallelIndexBuilder;
 import edu.ualr.oyster.kb.DBEntityMap;
 import edu.ualr.oyster.kb.EntityMap;
 import edu.ualr.oyster.kb.ModificationRecord;
@@ -41,6 +45,7 @@ import java.io.Reader;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
@@ -59,7 +64,6 @@ import javax.xml.parsers.SAXParserFactory;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * This class is used to parse the Identity XML file and return an Entity Map,
@@ -126,9 +130,9 @@ public class IdentityParser extends OysterXMLParser {
     private static int clusterCount = 0;
     
     /** The number of references read */
-    private static int referenceCount = 0;
+    protected static int referenceCount = 0;
     
-    private int recordType = 0;
+    protected int recordType = 0;
     
     private boolean dontLoad = false;
     
@@ -136,6 +140,12 @@ public class IdentityParser extends OysterXMLParser {
     
     private boolean traceOn = false;
     
+    /** The number of threads used to build the value index */
+    private int loadThreads = 1;
+    
+    /** The snapshot the value index is loaded from, if it matches */
+    private IndexSnapshot indexSnapshot = null;
+    
     private static Set<String> sourceNames;
     
     /**
@@ -283,6 +293,40 @@ public class IdentityParser extends OysterXMLParser {
         this.traceOn = traceOn;
     }
     
+    /**
+     * Returns the number of threads used to build the value index.
+     * @return the load threads.
+     */
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    /**
+     * Sets the number of threads used to build the value index.
+     * @param loadThreads the load threads to be set.
+     */
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads;
+    }
+    
+    /**
+     * Returns the snapshot the value index is loaded from.
+     * @return the index snapshot, null if the index is always built.
+     */
+    public IndexSnapshot getIndexSnapshot() {
+        return indexSnapshot;
+    }
+
+    /**
+     * Sets the snapshot the value index is loaded from. The snapshot is only
+     * used if it matches the repository that was loaded, otherwise the index
+     * is built.
+     * @param indexSnapshot the index snapshot to be set.
+     */
+    public void setIndexSnapshot(IndexSnapshot indexSnapshot) {
+        this.indexSnapshot = indexSnapshot;
+    }
+    
     public Set<String> getSourceNames() {
         return sourceNames;
     }
@@ -319,17 +363,109 @@ public class IdentityParser extends OysterXMLParser {
      */
     @Override
     public void endDocument () throws org.xml.sax.SAXException {
+        buildIndex();
+    }
+
+    /**
+     * Adds the references of every identity loaded to the value index. The
+     * keys of the references are worked out on <code>loadThreads</code> threads
+     * while the identities are read from the <code>EntityMap</code>.
+     */
+    protected void buildIndex() {
+        if (indexSnapshot != null && loadIndexSnapshot()) {
+            return;
+        }
+        
         // build index
         System.out.println("Building Index");
 
+        ParallelIndexBuilder builder = new ParallelIndexBuilder(valueIndex, loadThreads);
+        for (Iterator <String> it = entityMap.getData().keySet().iterator(); it.hasNext();){
+            String key = it.next();
+            ClusterRecord cr = entityMap.getCluster(key);
+            
+            for (int i = 0; i < cr.getSize(); i++) {
+                builder.addEntry(cr.getOysterIdentityRecord(i));
+            }
+        }
+        builder.finish();
+    }
+
+    /**
+     * Loads the value index from the <code>IndexSnapshot</code> if it matches
+     * the identities loaded. The RefIDs are gathered in the order <code>
+     * buildIndex</code> would add them, so the index comes out the same.
+     * @return true if the index was loaded.
+     */
+    private boolean loadIndexSnapshot() {
+        if (!(valueIndex instanceof InvertedIndex) || isDontLoad() || !indexSnapshot.exists()
+                || entityMap.getSize() != count - 1) {
+            return false;
+        }
+        
+        System.out.println("Loading Index Snapshot");
+        
+        ArrayList<String> refIDs = new ArrayList<String>();
+        long fingerprint = 0;
         for (Iterator <String> it = entityMap.getData().keySet().iterator(); it.hasNext();){
             String key = it.next();
             ClusterRecord cr = entityMap.getCluster(key);
             
+            fingerprint += IndexSnapshot.fingerprint(cr);
             for (int i = 0; i < cr.getSize(); i++) {
-                valueIndex.addEntry(cr.getOysterIdentityRecord(i));
+                String refID = cr.getOysterIdentityRecord(i).get("@RefID");
+                if (refID != null) {
+                    refIDs.add(refID);
+                }
             }
         }
+        return indexSnapshot.load((InvertedIndex) valueIndex, fingerprint, refIDs);
+    }
+
+    /**
+     * Adds an identity read from the repository to the <code>EntityMap</code>
+     * and records the RefIDs of its references.
+     * @param oysterID the OysterID of the identity.
+     * @param cr the <code>ClusterRecord</code> of the identity.
+     */
+    protected void loadIdentity(String oysterID, ClusterRecord cr) {
+        // HashMap<String, ClusterRecord> entityMap
+
+        if (!isDontLoad()) {
+            if (entityMap.getClass().getSimpleName().equalsIgnoreCase("DBEntityMap")) {
+                ((DBEntityMap) entityMap).delayAddIdentity(oysterID, cr, clusterCount);
+            } else {
+                entityMap.addIdentity(oysterID, cr, null, null, traceOn);
+            }
+        }
+
+        for (int i = 0; i < cr.getSize(); i++) {
+            OysterIdentityRecord o = cr.getOysterIdentityRecord(i);
+
+            if (o.get("@RefID") != null) {
+                String refID = o.get("@RefID");
+                inputIDs.add(refID);
+
+                refIDLookup.put(refID, oysterID);
+                
+                sourceNames.add((refID.split("\\."))[0]);
+            }
+        }
+
+        if (count % 10000 == 0) {
+            System.out.println("Loading " + count + "...");
+
+            if (entityMap.getClass().getSimpleName().equalsIgnoreCase("DBEntityMap")) {
+                try {
+                    ((DBEntityMap) entityMap).getConn().commit();
+                } catch (SQLException ex) {
+                    Logger.getLogger(IdentityParser.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        }
+        count++;
+
+        clusterCount++;
     }
 
     /**
@@ -377,6 +513,9 @@ public class IdentityParser extends OysterXMLParser {
                 case RecordTypes.CODOSA:
                     oir = new CoDoSAOIR();
                     break;
+                case RecordTypes.INDEXED_CODOSA:
+                    oir = new IndexedCoDoSAOIR();
+                    break;
                 case RecordTypes.MAP:
                     oir = new OysterIdentityRecordMap();
                     break;
@@ -481,43 +620,7 @@ public class IdentityParser extends OysterXMLParser {
 */
         if (eName.equalsIgnoreCase("Identity")) {
             if (!badCoDoSA) {
-                // HashMap<String, ClusterRecord> entityMap
-
-                if (!isDontLoad()) {
-                    if (entityMap.getClass().getSimpleName().equalsIgnoreCase("DBEntityMap")) {
-                        ((DBEntityMap) entityMap).delayAddIdentity(id, identity, clusterCount);
-                    } else {
-                        entityMap.addIdentity(id, identity, null, null, traceOn);
-                    }
-                }
-
-                for (int i = 0; i < identity.getSize(); i++) {
-                    OysterIdentityRecord o = identity.getOysterIdentityRecord(i);
-
-                    if (o.get("@RefID") != null) {
-                        String refID = o.get("@RefID");
-                        inputIDs.add(refID);
-
-                        refIDLookup.put(refID, id);
-                        
-                        sourceNames.add((refID.split("\\."))[0]);
-                    }
-                }
-
-                if (count % 10000 == 0) {
-                    System.out.println("Loading " + count + "...");
-
-                    if (entityMap.getClass().getSimpleName().equalsIgnoreCase("DBEntityMap")) {
-                        try {
-                            ((DBEntityMap) entityMap).getConn().commit();
-                        } catch (SQLException ex) {
-                            Logger.getLogger(IdentityParser.class.getName()).log(Level.SEVERE, null, ex);
-                        }
-                    }
-                }
-                count++;
-
-                clusterCount++;
+                loadIdentity(id, identity);
             } else {
                 badCoDoSA = false;
             }
@@ -581,7 +684,9 @@ public class IdentityParser extends OysterXMLParser {
      */
     public void parse(String file, Index index, EntityMap entityMap) {
         // Use an instance of ourselves as the SAX event handler 
-        DefaultHandler handler = new IdentityParser(index, entityMap, recordType); 
+        IdentityParser handler = new IdentityParser(index, entityMap, recordType); 
+        handler.setLoadThreads(loadThreads);
+        handler.setIndexSnapshot(indexSnapshot);
         
         // Use the default (non-validating) parser 
         SAXParserFactory factory = SAXParserFactory.newInstance(); 
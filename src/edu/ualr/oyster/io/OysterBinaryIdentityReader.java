@@ -0,0 +1,426 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ * 
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+
+package edu.ualr.oyster.io;
+
+import edu.ualr.oyster.data.ClusterRecord;
+import edu.ualr.oyster.data.ClusterRecordSet;
+import edu.ualr.oyster.data.CoDoSAOIR;
+import edu.ualr.oyster.data.IndexedCoDoSAOIR;
+import edu.ualr.oyster.data.OysterIdentityRecord;
+import edu.ualr.oyster.data.OysterIdentityRecordMap;
+import edu.ualr.oyster.data.RecordTypes;
+import edu.ualr.oyster.kb.ModificationRecord;
+import edu.ualr.oyster.kb.TraceRecord;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * This class reads an identity repository written by the
+ * <code>OysterBinaryIdentityWriter</code>, one identity at a time. Each frame
+ * is checked against its CRC before any identity in it is returned.
+ * @author Eric D. Nelson
+ */
+public class OysterBinaryIdentityReader {
+    /** The stream the repository is read from */
+    private DataInputStream in = null;
+
+    /** The type of the records created */
+    private int recordType = 0;
+
+    /** The modifications of the repository */
+    private List<ModificationRecord> mods = new ArrayList<ModificationRecord>();
+
+    /** The attribute names by tag */
+    private Map<String, String> attributes = new LinkedHashMap<String, String>();
+
+    /** The attribute names in the order of their codes */
+    private String [] names = null;
+
+    /** The dictionary of each attribute */
+    private List<List<String>> dictionaries = null;
+
+    /** The dictionary of the creation dates */
+    private List<String> dates = new ArrayList<String>();
+
+    /** The dictionary of the trace OIDs, RunIDs and rules */
+    private List<String> traces = new ArrayList<String>();
+
+    /** Parses the creation dates */
+    private SimpleDateFormat sdf = null;
+
+    /** The frame being read */
+    private DataInputStream frame = null;
+
+    /** The number of identities left in the frame being read */
+    private int frameCount = 0;
+
+    /** true once the end frame has been read */
+    private boolean end = false;
+
+    /** The number of identities read */
+    private long identities = 0;
+
+    /** The number of references read */
+    private long references = 0;
+
+    /** The size of the repository in bytes, -1 if it is not known */
+    private long size = -1;
+
+    /** The number of bytes read from the repository */
+    private long position = 0;
+
+    /**
+     * Creates a new instance of <code>OysterBinaryIdentityReader</code> and
+     * reads the metadata of the repository.
+     * @param in the stream the repository is read from.
+     * @param recordType the type of the records created.
+     * @throws IOException if the stream is not a binary identity repository or
+     * is damaged.
+     */
+    public OysterBinaryIdentityReader(InputStream in, int recordType) throws IOException {
+        this(in, -1, recordType);
+    }
+
+    /**
+     * Creates a new instance of <code>OysterBinaryIdentityReader</code> and
+     * reads the metadata of the repository. No frame longer than the rest of
+     * the repository is allocated.
+     * @param in the stream the repository is read from.
+     * @param size the size of the repository in bytes, -1 if it is not known.
+     * @param recordType the type of the records created.
+     * @throws IOException if the stream is not a binary identity repository or
+     * is damaged.
+     */
+    public OysterBinaryIdentityReader(InputStream in, long size, int recordType) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        this.size = size;
+        this.recordType = recordType;
+
+        sdf = new SimpleDateFormat("yyyy-MM-dd");
+        sdf.setTimeZone(TimeZone.getDefault());
+
+        int magic;
+        try {
+            magic = this.in.readInt();
+        } catch (EOFException ex) {
+            magic = 0;
+        }
+        if (magic != OysterBinaryIdentityWriter.MAGIC) {
+            throw new IOException("Not a binary identity repository");
+        }
+
+        int version = this.in.readInt();
+        position = 8;
+        if (version < 1 || version > OysterBinaryIdentityWriter.VERSION) {
+            throw new IOException("Unsupported binary identity repository version " + version);
+        }
+
+        if (readFrame() != OysterBinaryIdentityWriter.METADATA) {
+            throw new IOException("Missing binary identity repository metadata");
+        }
+
+        int n = readVarInt(frame);
+        for (int i = 0; i < n; i++) {
+            ModificationRecord mr = new ModificationRecord();
+            mr.setId(readString(frame));
+            mr.setOysterVersion(readString(frame));
+            mr.setDate(readString(frame));
+            mr.setRunScriptName(readString(frame));
+            mods.add(mr);
+        }
+
+        // the attributes are added to the metadata as the XML form does
+        ClusterRecord identity = new ClusterRecordSet(recordType);
+        n = readVarInt(frame);
+        names = new String[n];
+        dictionaries = new ArrayList<List<String>>(n);
+        for (int i = 0; i < n; i++) {
+            names[i] = readString(frame);
+            String tag = readString(frame);
+            attributes.put(tag, names[i]);
+            identity.updateMetaData(names[i], tag);
+            dictionaries.add(new ArrayList<String>());
+        }
+        frame = null;
+    }
+
+    /**
+     * Returns the modifications of the repository in the order they were
+     * written.
+     * @return the modifications.
+     */
+    public List<ModificationRecord> getModifications() {
+        return mods;
+    }
+
+    /**
+     * Returns the attribute names of the repository by tag.
+     * @return the attributes.
+     */
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Returns the number of identities read.
+     * @return the identity count.
+     */
+    public long getIdentityCount() {
+        return identities;
+    }
+
+    /**
+     * Returns the number of references read.
+     * @return the reference count.
+     */
+    public long getReferenceCount() {
+        return references;
+    }
+
+    /**
+     * Reads the next identity.
+     * @return the identity, null after the last identity.
+     * @throws IOException if the repository is damaged or truncated.
+     */
+    public ClusterRecord readIdentity() throws IOException {
+        while (frameCount == 0) {
+            if (end) {
+                return null;
+            }
+
+            byte type = readFrame();
+            if (type == OysterBinaryIdentityWriter.IDENTITIES) {
+                frameCount = readVarInt(frame);
+            } else if (type == OysterBinaryIdentityWriter.END) {
+                long i = frame.readLong();
+                long r = frame.readLong();
+                if (i != identities || r != references) {
+                    throw new IOException("Binary identity repository holds " + identities + " identities and " + references + 
+                            " references, " + i + " and " + r + " were written");
+                }
+                end = true;
+            } else {
+                throw new IOException("Unknown binary identity repository frame " + type);
+            }
+        }
+
+        DataInputStream f = frame;
+        ClusterRecord cr = new ClusterRecordSet(recordType);
+        cr.setPersistant(true);
+        cr.setOysterID(readString(f));
+
+        String cdate = readString(f, dates);
+        try {
+            cr.setCreationDate(sdf.parse(cdate));
+        } catch (ParseException ex) {
+            Logger.getLogger(OysterBinaryIdentityReader.class.getName()).log(Level.SEVERE, null, ex);
+            cr.setCreationDate(Calendar.getInstance(TimeZone.getDefault()).getTime());
+        }
+        readStrings(f, cr.getStrToStr());
+        readStrings(f, cr.getNegStrToStr());
+
+        int refs = readVarInt(f);
+        for (int i = 0; i < refs; i++) {
+            OysterIdentityRecord oir;
+            switch (recordType) {
+                case RecordTypes.CODOSA:
+                    oir = new CoDoSAOIR();
+                    break;
+                case RecordTypes.INDEXED_CODOSA:
+                    oir = new IndexedCoDoSAOIR();
+                    break;
+                case RecordTypes.MAP:
+                    oir = new OysterIdentityRecordMap();
+                    break;
+                default:
+                    oir = new OysterIdentityRecordMap();
+            }
+
+            int count = readVarInt(f);
+            for (int j = 0; j < count; j++) {
+                int code = readVarInt(f);
+                if (code >= names.length) {
+                    throw new IOException("Unknown attribute " + code + " in identity " + cr.getOysterID());
+                }
+                oir.add(names[code], readString(f, dictionaries.get(code)));
+            }
+            oir.setInput(true);
+
+            Set<TraceRecord> trs = new LinkedHashSet<TraceRecord>();
+            int n = readVarInt(f);
+            for (int j = 0; j < n; j++) {
+                TraceRecord tr = new TraceRecord();
+                tr.setOid(readString(f, traces));
+                tr.setRunID(readString(f, traces));
+
+                int rules = readVarInt(f);
+                if (rules > 0) {
+                    Set<String> set = new LinkedHashSet<String>();
+                    for (int k = 1; k < rules; k++) {
+                        set.add(readString(f, traces));
+                    }
+                    tr.setRule(set);
+                }
+                trs.add(tr);
+            }
+            oir.setPrevTraces(trs);
+
+            cr.insertRecord(oir);
+        }
+
+        frameCount--;
+        identities++;
+        references += refs;
+        return cr;
+    }
+
+    /**
+     * Closes the stream.
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the next frame and checks its CRC. The frame length is checked
+     * against <code>MAX_FRAME_SIZE</code> and the rest of the repository
+     * before the frame is allocated.
+     * @return the frame type.
+     * @throws IOException if the frame is truncated or damaged.
+     */
+    private byte readFrame() throws IOException {
+        byte [] b;
+        int crc;
+        try {
+            int length = in.readInt();
+            crc = in.readInt();
+            position += 8;
+            if (length < 1 || length > OysterBinaryIdentityWriter.MAX_FRAME_SIZE) {
+                throw new IOException("Damaged binary identity repository frame of length " + length + " at offset " + (position - 8));
+            }
+            if (size >= 0 && length > size - position) {
+                throw new IOException("Binary identity repository is truncated, the frame at offset " + (position - 8) + " needs " + length + " bytes but " + Math.max(size - position, 0) + " remain");
+            }
+            b = new byte[length];
+            in.readFully(b);
+            position += length;
+        } catch (EOFException ex) {
+            throw new IOException("Binary identity repository is truncated", ex);
+        }
+
+        CRC32 check = new CRC32();
+        check.update(b);
+        if ((int) check.getValue() != crc) {
+            throw new IOException("Binary identity repository frame fails its CRC after " + identities + " identities");
+        }
+
+        frame = new DataInputStream(new ByteArrayInputStream(b, 1, b.length - 1));
+        return b[0];
+    }
+
+    /**
+     * Reads the strings written for a set and adds them to the set.
+     * @param f the stream to read from.
+     * @param set the set.
+     * @throws IOException
+     */
+    private static void readStrings(DataInputStream f, Set<String> set) throws IOException {
+        int n = readVarInt(f);
+        for (int i = 0; i < n; i++) {
+            set.add(readString(f));
+        }
+    }
+
+    /**
+     * Reads a string written through a dictionary.
+     * @param f the stream to read from.
+     * @param dictionary the values seen so far in the order of their codes.
+     * @return the string, may be null.
+     * @throws IOException
+     */
+    private static String readString(DataInputStream f, List<String> dictionary) throws IOException {
+        String s;
+        int code = readVarInt(f);
+
+        if (code == OysterBinaryIdentityWriter.NULL) {
+            s = null;
+        } else if (code == OysterBinaryIdentityWriter.LITERAL) {
+            s = readString(f);
+            if (dictionary.size() < OysterBinaryIdentityWriter.DICTIONARY_SIZE) {
+                dictionary.add(s);
+            }
+        } else if (code - 2 < dictionary.size()) {
+            s = dictionary.get(code - 2);
+        } else {
+            throw new IOException("Unknown dictionary code " + code);
+        }
+        return s;
+    }
+
+    /**
+     * Reads a string written as its UTF-8 length followed by the bytes.
+     * @param f the stream to read from.
+     * @return the string.
+     * @throws IOException
+     */
+    private static String readString(DataInputStream f) throws IOException {
+        byte [] b = new byte[readVarInt(f)];
+        f.readFully(b);
+        return new String(b, "UTF-8");
+    }
+
+    /**
+     * Reads an int written in 7 bit groups.
+     * @param f the stream to read from.
+     * @return the value.
+     * @throws IOException
+     */
+    private static int readVarInt(DataInputStream f) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = f.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Damaged binary identity repository value");
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ * 
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+
+package edu.ualr.oyster.io;
+
+import edu.ualr.oyster.data.ClusterRecord;
+import edu.ualr.oyster.data.OysterIdentityRecord;
+import edu.ualr.oyster.kb.ModificationRecord;
+import edu.ualr.oyster.kb.TraceRecord;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+
+/**
+ * This class writes an identity repository in the binary form read by the
+ * <code>OysterBinaryIdentityReader</code>. The binary form holds the same
+ * information as the XML form and is loaded in the same way.
+ *
+ * The file starts with a magic number and the format version, followed by
+ * frames. Each frame is its length, the CRC of its contents, a frame type and
+ * the contents. The first frame holds the metadata, the following frames hold
+ * the identities in order and the last frame holds the number of identities
+ * and references written, so a truncated file is detected.
+ *
+ * Strings are written as their UTF-8 length followed by the bytes. Attribute
+ * values, creation dates and traces repeat often, so they are dictionary
+ * encoded: the first time a value is seen it is written in full and added to
+ * the dictionary of its attribute, after that only its dictionary code is
+ * written. A dictionary stops growing at <code>DICTIONARY_SIZE</code> values.
+ * @author Eric D. Nelson
+ */
+public class OysterBinaryIdentityWriter extends OysterIdentityWriter {
+    /** The first four bytes of a binary identity repository, "OYID" */
+    public static final int MAGIC = 0x4F594944;
+
+    /** The version of the format written */
+    public static final int VERSION = 1;
+
+    /** The frame that holds the metadata */
+    static final byte METADATA = 1;
+
+    /** A frame that holds identities */
+    static final byte IDENTITIES = 2;
+
+    /** The frame that ends the repository */
+    static final byte END = 3;
+
+    /** The largest number of values a dictionary holds */
+    static final int DICTIONARY_SIZE = 65536;
+
+    /** The code of a value written in full */
+    static final int LITERAL = 0;
+
+    /** The code of a null value */
+    static final int NULL = 1;
+
+    /** The default size a frame of identities is written at */
+    public static final int DEFAULT_FRAME_SIZE = 256 * 1024;
+
+    /** The largest frame that is written or read, type byte included */
+    public static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+
+    /** The stream the repository is written to */
+    private DataOutputStream out = null;
+
+    /** The identities of the frame being built */
+    private ByteArrayOutputStream frame = new ByteArrayOutputStream(DEFAULT_FRAME_SIZE + 4096);
+
+    /** The stream the identities of the frame are written to */
+    private DataOutputStream frameOut = new DataOutputStream(frame);
+
+    /** The number of identities in the frame being built */
+    private int frameCount = 0;
+
+    /** The size a frame of identities is written at */
+    private int frameSize = DEFAULT_FRAME_SIZE;
+
+    /** The attribute names in the order of their codes */
+    private String [] names = null;
+
+    /** The dictionary of each attribute */
+    private List<Map<String, Integer>> dictionaries = null;
+
+    /** The dictionary of the creation dates */
+    private Map<String, Integer> dates = new HashMap<String, Integer>();
+
+    /** The dictionary of the trace OIDs, RunIDs and rules */
+    private Map<String, Integer> traces = new HashMap<String, Integer>();
+
+    /** Formats the creation dates */
+    private SimpleDateFormat sdf = null;
+
+    /** The last creation date formatted */
+    private Date lastDate = null;
+
+    /** The last creation date formatted as a String */
+    private String lastCDate = null;
+
+    /** The number of identities written */
+    private long identities = 0;
+
+    /** The number of references written */
+    private long references = 0;
+
+    /**
+     * Creates a new instance of <code>OysterBinaryIdentityWriter</code>.
+     * @param out the stream the repository is written to.
+     */
+    public OysterBinaryIdentityWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+
+        sdf = new SimpleDateFormat("yyyy-MM-dd");
+        sdf.setTimeZone(TimeZone.getDefault());
+    }
+
+    /**
+     * Returns the size a frame of identities is written at.
+     * @return the frame size in bytes.
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Sets the size a frame of identities is written at.
+     * @param frameSize the frame size in bytes.
+     */
+    public void setFrameSize(int frameSize) {
+        this.frameSize = Math.min(Math.max(frameSize, 1), MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Returns the number of identities written.
+     * @return the identity count.
+     */
+    public long getIdentityCount() {
+        return identities;
+    }
+
+    /**
+     * Returns the number of references written.
+     * @return the reference count.
+     */
+    public long getReferenceCount() {
+        return references;
+    }
+
+    @Override
+    public void writeMetadata(Collection<ModificationRecord> mods, Map<String, String> attributes) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream meta = new DataOutputStream(bytes);
+
+        writeVarInt(meta, mods.size());
+        for (Iterator<ModificationRecord> it = mods.iterator(); it.hasNext();) {
+            ModificationRecord mr = it.next();
+            writeString(meta, mr.getId());
+            writeString(meta, mr.getOysterVersion());
+            writeString(meta, mr.getDate());
+            writeString(meta, mr.getRunScriptName());
+        }
+
+        names = new String[attributes.size()];
+        dictionaries = new ArrayList<Map<String, Integer>>(attributes.size());
+
+        writeVarInt(meta, attributes.size());
+        int i = 0;
+        for (Iterator<Entry<String, String>> it = attributes.entrySet().iterator(); it.hasNext(); i++) {
+            Entry<String, String> entry = it.next();
+            writeString(meta, entry.getValue());
+            writeString(meta, entry.getKey());
+
+            names[i] = entry.getValue();
+            dictionaries.add(new HashMap<String, Integer>());
+        }
+        meta.flush();
+
+        writeFrame(METADATA, bytes.toByteArray(), bytes.size());
+    }
+
+    @Override
+    public void writeIdentity(ClusterRecord cr, String date) throws IOException {
+        DataOutputStream o = frameOut;
+
+        writeString(o, cr.getOysterID());
+        writeString(o, dates, format(cr.getCreationDate(), date));
+        writeStrings(o, cr.getStrToStr());
+        writeStrings(o, cr.getNegStrToStr());
+
+        // the references are written in the order of the XML form
+        List<OysterIdentityRecord> refs = new ArrayList<OysterIdentityRecord>(cr.getRecordList());
+        Collections.sort(refs);
+
+        writeVarInt(o, refs.size());
+        for (Iterator<OysterIdentityRecord> it = refs.iterator(); it.hasNext();) {
+            OysterIdentityRecord oir = it.next();
+
+            int count = 0;
+            String [] values = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                values[i] = oir.get(names[i]);
+                if (values[i] != null) {
+                    count++;
+                }
+            }
+
+            writeVarInt(o, count);
+            for (int i = 0; i < names.length; i++) {
+                if (values[i] != null) {
+                    writeVarInt(o, i);
+                    writeString(o, dictionaries.get(i), values[i]);
+                }
+            }
+
+            List<TraceRecord> trs = new ArrayList<TraceRecord>();
+            if (oir.getPrevTraces() != null) {
+                trs.addAll(oir.getPrevTraces());
+            }
+            if (oir.getCurrTrace() != null) {
+                trs.add(oir.getCurrTrace());
+            }
+
+            writeVarInt(o, trs.size());
+            for (Iterator<TraceRecord> it2 = trs.iterator(); it2.hasNext();) {
+                TraceRecord tr = it2.next();
+                writeString(o, traces, tr.getOid());
+                writeString(o, traces, tr.getRunID());
+
+                Set<String> rules = tr.getRule();
+                if (rules == null) {
+                    writeVarInt(o, 0);
+                } else {
+                    writeVarInt(o, rules.size() + 1);
+                    for (Iterator<String> it3 = rules.iterator(); it3.hasNext();) {
+                        writeString(o, traces, it3.next());
+                    }
+                }
+            }
+        }
+
+        frameCount++;
+        identities++;
+        references += refs.size();
+
+        if (frame.size() >= frameSize) {
+            flushFrame();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushFrame();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream end = new DataOutputStream(bytes);
+        end.writeLong(identities);
+        end.writeLong(references);
+        end.flush();
+        writeFrame(END, bytes.toByteArray(), bytes.size());
+
+        out.close();
+    }
+
+    /**
+     * Writes the identities of the frame being built as a frame.
+     * @throws IOException
+     */
+    private void flushFrame() throws IOException {
+        if (frameCount > 0) {
+            frameOut.flush();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(frame.size() + 8);
+            DataOutputStream o = new DataOutputStream(bytes);
+            writeVarInt(o, frameCount);
+            frame.writeTo(o);
+            o.flush();
+
+            writeFrame(IDENTITIES, bytes.toByteArray(), bytes.size());
+            frame.reset();
+            frameCount = 0;
+        }
+    }
+
+    /**
+     * Writes a frame.
+     * @param type the frame type.
+     * @param contents the buffer that holds the contents.
+     * @param length the length of the contents.
+     * @throws IOException if the frame is larger than <code>MAX_FRAME_SIZE
+     * </code>.
+     */
+    private void writeFrame(byte type, byte [] contents, int length) throws IOException {
+        if (length >= MAX_FRAME_SIZE) {
+            throw new IOException("Binary identity repository frame of " + (length + 1L) + " bytes exceeds the limit of " + MAX_FRAME_SIZE + " bytes");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(contents, 0, length);
+
+        out.writeInt(length + 1);
+        out.writeInt((int) crc.getValue());
+        out.writeByte(type);
+        out.write(contents, 0, length);
+    }
+
+    /**
+     * Formats a creation date, reusing the last result since the identities
+     * of a run share their creation dates.
+     * @param creationDate the creation date, may be null.
+     * @param date the date used when there is no creation date.
+     * @return the creation date as yyyy-MM-dd.
+     */
+    private String format(Date creationDate, String date) {
+        if (creationDate == null) {
+            return date;
+        }
+        if (!creationDate.equals(lastDate)) {
+            lastDate = creationDate;
+            lastCDate = sdf.format(creationDate);
+        }
+        return lastCDate;
+    }
+
+    /**
+     * Writes each string of a set.
+     * @param o the stream to write to.
+     * @param set the strings, may be null.
+     * @throws IOException
+     */
+    private static void writeStrings(DataOutputStream o, Set<String> set) throws IOException {
+        if (set == null) {
+            writeVarInt(o, 0);
+        } else {
+            writeVarInt(o, set.size());
+            for (Iterator<String> it = set.iterator(); it.hasNext();) {
+                writeString(o, it.next());
+            }
+        }
+    }
+
+    /**
+     * Writes a string through a dictionary.
+     * @param o the stream to write to.
+     * @param dictionary the codes of the values seen so far.
+     * @param s the string, may be null.
+     * @throws IOException
+     */
+    private static void writeString(DataOutputStream o, Map<String, Integer> dictionary, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(o, NULL);
+        } else {
+            Integer code = dictionary.get(s);
+            if (code != null) {
+                writeVarInt(o, code + 2);
+            } else {
+                writeVarInt(o, LITERAL);
+                writeString(o, s);
+
+                if (dictionary.size() < DICTIONARY_SIZE) {
+                    dictionary.put(s, dictionary.size());
+                }
+            }
+        }
+    }
+    /**
+     * Writes a string as its UTF-8 length followed by the bytes.
+     * @param o the stream to write to.
+     * @param s the string.
+     * @throws IOException
+     */
+    private static void writeString(DataOutputStream o, String s) throws IOException {
+        byte [] b = s.getBytes("UTF-8");
+        writeVarInt(o, b.length);
+        o.write(b);
+    }
+
+    /**
+     * Writes a non negative int in 7 bit groups, low group first, with the high
+     * bit set on every byte but the last.
+     * @param o the stream to write to.
+     * @param value the value.
+     * @throws IOException
+     */
+    static void writeVarInt(DataOutputStream o, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            o.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        o.writeByte(value);
+    }
+}
@@ -24,6 +24,7 @@ import edu.ualr.oyster.ErrorFormatter;
 import edu.ualr.oyster.core.ReferenceItem;
 import edu.ualr.oyster.data.ClusterRecordSet;
 import edu.ualr.oyster.data.CoDoSAOIR;
+import edu.ualr.oyster.data.IndexedCoDoSAOIR;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.data.OysterIdentityRecordMap;
 import edu.ualr.oyster.data.RecordTypes;
@@ -92,6 +93,22 @@ public class OysterDatabaseReader extends OysterSourceReader {
     /** The custom SQL string to run */
     private String overRideSQL = null;
     
+    /** The default number of rows fetched from the database at a time */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    
+    /** The number of rows fetched from the database at a time */
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    
+    /** The condition that restricts the rows read to a partition of the data,
+        null to read all rows */
+    private String partitionFilter = null;
+    
+    /** The result set column of each reference item, 0 if the item is not read */
+    private int [] columns = null;
+    
+    /** The error that ended the reading of the rows, null if there was none */
+    private SQLException readError = null;
+    
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.50F48DA2-7022-DEB4-4D06-C90E4BDF2FC1]
     // </editor-fold> 
@@ -286,6 +303,72 @@ public class OysterDatabaseReader extends OysterSourceReader {
         this.overRideSQL = overRideSQL;
     }
     
+    /**
+     * Returns the number of rows fetched from the database at a time for this
+     * <code>OysterDatabaseReader</code>.
+     * @return the fetch size.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the number of rows fetched from the database at a time for this
+     * <code>OysterDatabaseReader</code>. This must be set before the reader is
+     * opened.
+     * @param fetchSize the fetch size to be set.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Returns the condition that restricts the rows read by this <code>
+     * OysterDatabaseReader</code> to a partition of the data.
+     * @return the partition filter, null if all rows are read.
+     */
+    public String getPartitionFilter() {
+        return partitionFilter;
+    }
+
+    /**
+     * Sets the condition that restricts the rows read by this <code>
+     * OysterDatabaseReader</code> to a partition of the data. This must be set
+     * before the reader is opened.
+     * @param partitionFilter the partition filter to be set, null to read all
+     * rows.
+     */
+    public void setPartitionFilter(String partitionFilter) {
+        this.partitionFilter = partitionFilter;
+    }
+    
+    /**
+     * Returns the error that ended the reading of the rows. <code>
+     * getNextReference</code> returns zero after such an error, as it does at
+     * the end of the rows.
+     * @return the error, null if the rows were read without one.
+     */
+    public SQLException getReadError() {
+        return readError;
+    }
+    
+    /**
+     * Returns the SQL statement that reads the data of this <code>
+     * OysterDatabaseReader</code>, either the overRideSQL or the statement
+     * created from the reference items. The partition filter is not applied.
+     * @return the SQL statement.
+     */
+    public String getSQL() {
+        String sql;
+        
+        if (overRideSQL == null) {
+            sql = createConnectionString();
+        } else {
+            sql = overRideSQL;
+        }
+        return sql;
+    }
+    
     /**
      * Returns whether the connection to the database is established.
      * @return true if the connection to the database is established, otherwise 
@@ -422,14 +505,10 @@ public class OysterDatabaseReader extends OysterSourceReader {
      */
     @Override
     public void open () {
-//        ReferenceItem item = null;
-        
-        String sql;
+        String sql = getSQL();
         
-        if (overRideSQL == null) {
-            sql = createConnectionString();
-        } else {
-            sql = overRideSQL;
+        if (partitionFilter != null) {
+            sql = "select * from (" + sql + ") oyster_source where " + partitionFilter;
         }
         
         // Output the SQL statement
@@ -439,30 +518,38 @@ public class OysterDatabaseReader extends OysterSourceReader {
         System.out.println(sb.toString());
         
         try {
-            // this handles the fact that MySQL will attempt to read the entire
-            // database in to memory BEFORE operating on the data. This forces it 
-            // to read on read at a time.
-            if (this.connectionType.equalsIgnoreCase("mysql")){
-                
-                stmt = conn.createStatement(java.sql.ResultSet.TYPE_FORWARD_ONLY, java.sql.ResultSet.CONCUR_READ_ONLY);
-//                stmt.setFetchSize(Integer.MIN_VALUE);
-                stmt.setFetchSize(1000);
-                
-                rs = stmt.executeQuery(sql);
-            } else {
-                stmt = conn.createStatement();
-                rs = stmt.executeQuery(sql);
+            // a forward only cursor with a fetch size streams the rows instead
+            // of reading the entire table in to memory BEFORE operating on the
+            // data. MySQL in particular will otherwise buffer the whole result.
+            // PostgreSQL only uses the fetch size outside of auto commit.
+            if (fetchSize > 0 && connectionType.equalsIgnoreCase("postgresql")) {
+                conn.setAutoCommit(false);
+            }
+
+            stmt = conn.createStatement(java.sql.ResultSet.TYPE_FORWARD_ONLY, java.sql.ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0) {
+                try {
+                    stmt.setFetchSize(fetchSize);
+                } catch (SQLException ex) {
+                    // the fetch size is only a hint, some drivers reject it
+                    logger.warning("Fetch size " + fetchSize + " not supported: " + ex.getMessage());
+                }
             }
             
-            /*
-            ResultSetMetaData rsmd = rs.getMetaData();
+            rs = stmt.executeQuery(sql);
             
-            for (int i = 1; i <= rsmd.getColumnCount(); i++){
-                item = new ReferenceItem();
-                item.setName(rsmd.getColumnName(i));
-                referenceItems.add(item);
+            // resolve the column of each item once instead of by name per row
+            columns = new int[getItemCount()];
+            for (int i = 0; i < getItemCount(); i++) {
+                ReferenceItem item = referenceItems.get(i);
+                if (!item.getName().startsWith("@")) {
+                    try {
+                        columns[i] = rs.findColumn(item.getName());
+                    } catch (SQLException ex) {
+                        Logger.getLogger(OysterDatabaseReader.class.getName()).log(Level.SEVERE, "Column " + item.getName() + " not found: " + ex.getMessage());
+                    }
+                }
             }
-            */ 
         } catch (SQLException ex) {
             System.err.println(sql);
             Logger.getLogger(OysterDatabaseReader.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
@@ -511,9 +598,10 @@ public class OysterDatabaseReader extends OysterSourceReader {
             if (rs.next()) {
                 for (int i = 0; i < getItemCount(); i++) {
                     ReferenceItem item = referenceItems.get(i);
-                    String token = rs.getString(item.getName());
                     
                     if (!item.getName().startsWith("@")){
+                        String token = columns[i] > 0 ? rs.getString(columns[i]) : null;
+                        
                         // if there are multiple items with the same item name 
                         // concatenate if the items are different
                         if (item.getData() != null && !item.getData().equals("")){
@@ -527,12 +615,8 @@ public class OysterDatabaseReader extends OysterSourceReader {
                         }
                         
                         // TODO: Add flag that is set from XML script to enable/disable this derived input RefID
-                        if (item.getAttribute().equals("@RefID")){ 
-                            if (item.getData() != null && !item.getData().equals("")){
-                            item.setData(source + "." + item.getData());
-                        } else {
-                                item.setData(source + ".D" + this.recordCount);
-                            }
+                        if (item.getAttribute().equals("@RefID")) {
+                            item.setData(getRefID(item.getData()));
                         }
                         
                         // ignore any records that have a blank or null id
@@ -550,6 +634,9 @@ public class OysterDatabaseReader extends OysterSourceReader {
                     case RecordTypes.CODOSA:
                         oysterIdentityRecord = new CoDoSAOIR();
                         break;
+                    case RecordTypes.INDEXED_CODOSA:
+                        oysterIdentityRecord = new IndexedCoDoSAOIR();
+                        break;
                     case RecordTypes.MAP:
                         oysterIdentityRecord = new OysterIdentityRecordMap();
                         break;
@@ -573,8 +660,10 @@ public class OysterDatabaseReader extends OysterSourceReader {
                 recordCount++;
             }
         } catch (SQLException ex) {
+            readError = ex;
+            count = 0;
             Logger.getLogger(OysterDatabaseReader.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
-            Logger.getLogger(OysterDatabaseReader.class.getName()).log(Level.SEVERE, clusterRecord.toString());
+            Logger.getLogger(OysterDatabaseReader.class.getName()).log(Level.SEVERE, String.valueOf(clusterRecord));
         }
         
         return count;
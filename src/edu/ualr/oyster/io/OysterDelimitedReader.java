@@ -24,6 +24,7 @@ import edu.ualr.oyster.ErrorFormatter;
 import edu.ualr.oyster.core.ReferenceItem;
 import edu.ualr.oyster.data.ClusterRecordSet;
 import edu.ualr.oyster.data.CoDoSAOIR;
+import edu.ualr.oyster.data.IndexedCoDoSAOIR;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.data.OysterIdentityRecordMap;
 import edu.ualr.oyster.data.RecordTypes;
@@ -228,43 +229,14 @@ public class OysterDelimitedReader extends OysterSourceReader {
                     item.setData(text.get(item.getName()));
                     // TODO: Add flag that is set from XML script to enable/disable this derived input RefID
                     if (item.getAttribute().equals("@RefID")) {
-                        if (item.getData() != null && !item.getData().equals("")) {
-                            item.setData(source + "." + item.getData());
-                        } else {
-                            item.setData(source + ".D" + this.recordCount);
-                        }
+                        item.setData(getRefID(item.getData()));
                     }
                     
                     referenceItems.set(i, item);
                     count++;
                 }
                 
-                OysterIdentityRecord oysterIdentityRecord;
-                
-                switch (recordType) {
-                    case RecordTypes.CODOSA:
-                        oysterIdentityRecord = new CoDoSAOIR();
-                        break;
-                    case RecordTypes.MAP:
-                        oysterIdentityRecord = new OysterIdentityRecordMap();
-                        break;
-                    default:
-                        oysterIdentityRecord = new OysterIdentityRecordMap();
-                }
-                
-                oysterIdentityRecord.convertToOIR(referenceItems);
-                if (clusterRecord == null) {
-                    clusterRecord = new ClusterRecordSet(recordType);
-                }
-                
-                clusterRecord.clear();
-                clusterRecord.insertRecord(oysterIdentityRecord);
-                
-                if (recordCount % getCountPoint() == 0) {
-                    System.out.println(recordCount + "...");
-                }
-                
-                recordCount++;
+                loadClusterRecord();
             }
         } catch (IOException ex) {
             System.err.println(read);
@@ -274,6 +246,42 @@ public class OysterDelimitedReader extends OysterSourceReader {
         return count;
     }
 
+    /**
+     * Builds an <code>OysterIdentityRecord</code> from the data of the reference
+     * items and places it as the only record of the <code>ClusterRecord</code>.
+     */
+    protected void loadClusterRecord() {
+        OysterIdentityRecord oysterIdentityRecord;
+        
+        switch (recordType) {
+            case RecordTypes.CODOSA:
+                oysterIdentityRecord = new CoDoSAOIR();
+                break;
+            case RecordTypes.INDEXED_CODOSA:
+                oysterIdentityRecord = new IndexedCoDoSAOIR();
+                break;
+            case RecordTypes.MAP:
+                oysterIdentityRecord = new OysterIdentityRecordMap();
+                break;
+            default:
+                oysterIdentityRecord = new OysterIdentityRecordMap();
+        }
+        
+        oysterIdentityRecord.convertToOIR(referenceItems);
+        if (clusterRecord == null) {
+            clusterRecord = new ClusterRecordSet(recordType);
+        }
+        
+        clusterRecord.clear();
+        clusterRecord.insertRecord(oysterIdentityRecord);
+        
+        if (recordCount % getCountPoint() == 0) {
+            System.out.println(recordCount + "...");
+        }
+        
+        recordCount++;
+    }
+
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.6596E5EF-7180-C270-96F0-0EAB40EFD39E]
     // </editor-fold> 
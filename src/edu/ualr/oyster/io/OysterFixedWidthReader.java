@@ -24,6 +24,7 @@ import edu.ualr.oyster.ErrorFormatter;
 import edu.ualr.oyster.core.ReferenceItem;
 import edu.ualr.oyster.data.ClusterRecordSet;
 import edu.ualr.oyster.data.CoDoSAOIR;
+import edu.ualr.oyster.data.IndexedCoDoSAOIR;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.data.OysterIdentityRecordMap;
 import edu.ualr.oyster.data.RecordTypes;
@@ -150,12 +151,8 @@ public class OysterFixedWidthReader extends OysterSourceReader{
                         item.setData(token);
                     }
                     // TODO: Add flag that is set from XML script to enable/disable this derived input RefID
-                    if (item.getAttribute().equals("@RefID")){ 
-                        if (item.getData() != null && !item.getData().equals("")){
-                        item.setData(source + "." + item.getData());
-                    } else {
-                            item.setData(source + ".D" + this.recordCount);
-                        }
+                    if (item.getAttribute().equals("@RefID")) {
+                        item.setData(getRefID(item.getData()));
                     }
                     
                     referenceItems.set(i, item);
@@ -168,6 +165,9 @@ public class OysterFixedWidthReader extends OysterSourceReader{
                     case RecordTypes.CODOSA:
                         oysterIdentityRecord = new CoDoSAOIR();
                         break;
+                    case RecordTypes.INDEXED_CODOSA:
+                        oysterIdentityRecord = new IndexedCoDoSAOIR();
+                        break;
                     case RecordTypes.MAP:
                         oysterIdentityRecord = new OysterIdentityRecordMap();
                         break;
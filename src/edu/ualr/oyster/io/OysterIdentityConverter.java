@@ -0,0 +1,258 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ * 
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+
+package edu.ualr.oyster.io;
+
+import edu.ualr.oyster.ErrorFormatter;
+import edu.ualr.oyster.data.ClusterRecord;
+import edu.ualr.oyster.data.RecordTypes;
+import edu.ualr.oyster.index.NullIndex;
+import edu.ualr.oyster.kb.EntityMap;
+import edu.ualr.oyster.kb.ModificationRecord;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class converts an identity repository between the XML form and the
+ * binary form, and compares the time taken to load and save a repository in
+ * each form.
+ * <ul>
+ * <li>-toBinary in.idty out.idtb converts an XML repository to binary</li>
+ * <li>-toXML in.idtb out.idty converts a binary repository to XML</li>
+ * <li>-benchmark in.idty [runs] loads and saves an XML repository in both
+ * forms and reports the best time of each and the file sizes</li>
+ * </ul>
+ * Both conversions stream the identities, so the repository does not have to
+ * fit in memory.
+ * @author Eric D. Nelson
+ */
+public class OysterIdentityConverter {
+    /** The type of the records created */
+    private int recordType = RecordTypes.MAP;
+
+    /** The date used as the creation date of an identity that has none */
+    private String date = null;
+
+    /**
+     * Creates a new instance of <code>OysterIdentityConverter</code>.
+     * @param recordType the type of the records created.
+     */
+    public OysterIdentityConverter(int recordType) {
+        this.recordType = recordType;
+
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        this.date = sdf.format(new Date());
+    }
+
+    /**
+     * Converts an XML repository to the binary form.
+     * @param in the XML repository.
+     * @param out the binary repository to be written.
+     * @return the number of identities converted.
+     * @throws IOException
+     */
+    public long toBinary(String in, String out) throws IOException {
+        final IdentityParser parser = new IdentityParser(recordType);
+        final OysterBinaryIdentityWriter writer = new OysterBinaryIdentityWriter(new FileOutputStream(out));
+        final IOException [] error = new IOException[1];
+        final boolean [] started = new boolean[1];
+
+        // the identities are written as the parser adds them, so none are kept
+        EntityMap stream = new EntityMap(recordType) {
+            @Override
+            public void addIdentity(String oysterID, ClusterRecord cr, String runID, Set<String> rules, boolean traceOn) {
+                if (error[0] == null) {
+                    try {
+                        if (!started[0]) {
+                            writer.writeMetadata(parser.getModifications().values(), OysterIdentityWriter.getRepositoryAttributes());
+                            started[0] = true;
+                        }
+                        cr.setOysterID(oysterID);
+                        writer.writeIdentity(cr, date);
+                    } catch (IOException ex) {
+                        error[0] = ex;
+                    }
+                }
+            }
+        };
+
+        parser.parse(in, new NullIndex(), stream);
+        if (error[0] != null) {
+            throw error[0];
+        }
+
+        if (!started[0]) {
+            writer.writeMetadata(parser.getModifications().values(), OysterIdentityWriter.getRepositoryAttributes());
+        }
+        writer.close();
+        return writer.getIdentityCount();
+    }
+
+    /**
+     * Converts a binary repository to the XML form.
+     * @param in the binary repository.
+     * @param out the XML repository to be written.
+     * @return the number of identities converted.
+     * @throws IOException
+     */
+    public long toXML(String in, String out) throws IOException {
+        OysterBinaryIdentityReader reader = new OysterBinaryIdentityReader(new FileInputStream(in), new File(in).length(), recordType);
+        try {
+            OysterXMLIdentityWriter writer = new OysterXMLIdentityWriter(new PrintWriter(new OutputStreamWriter(new FileOutputStream(out), "UTF8")));
+            writer.writeMetadata(reader.getModifications(), reader.getAttributes());
+
+            ClusterRecord cr;
+            while ((cr = reader.readIdentity()) != null) {
+                writer.writeIdentity(cr, date);
+            }
+            writer.close();
+        } finally {
+            reader.close();
+        }
+        return reader.getIdentityCount();
+    }
+
+    /**
+     * Loads and saves an XML repository in the XML and binary forms and
+     * reports the best time of each, the file sizes and whether both forms
+     * load the same identities.
+     * @param in the XML repository.
+     * @param runs the number of times each step is run.
+     * @throws IOException
+     */
+    public void benchmark(String in, int runs) throws IOException {
+        File xml = File.createTempFile("oyster", ".idty");
+        File binary = File.createTempFile("oyster", ".idtb");
+        xml.deleteOnExit();
+        binary.deleteOnExit();
+
+        long [] best = new long[4];
+        Arrays.fill(best, Long.MAX_VALUE);
+        EntityMap fromXML = null, fromBinary = null;
+
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            fromXML = load(new IdentityParser(recordType), in);
+            best[0] = Math.min(best[0], System.nanoTime() - start);
+
+            List<ModificationRecord> mods = new ArrayList<ModificationRecord>(new IdentityParser(recordType).getModifications().values());
+
+            start = System.nanoTime();
+            save(fromXML, mods, new OysterXMLIdentityWriter(new PrintWriter(new OutputStreamWriter(new FileOutputStream(xml), "UTF8"))));
+            best[1] = Math.min(best[1], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            save(fromXML, mods, new OysterBinaryIdentityWriter(new FileOutputStream(binary)));
+            best[2] = Math.min(best[2], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            fromBinary = load(new BinaryIdentityParser(recordType), binary.getPath());
+            best[3] = Math.min(best[3], System.nanoTime() - start);
+        }
+
+        boolean same = fromXML.getSize() == fromBinary.getSize();
+        for (Iterator<String> it = fromXML.getData().keySet().iterator(); same && it.hasNext();) {
+            String key = it.next();
+            ClusterRecord cr = fromBinary.getCluster(key);
+            same = cr != null && cr.convertToXML(date).equals(fromXML.getCluster(key).convertToXML(date));
+        }
+
+        System.out.println();
+        System.out.format("Identities             : %1$,12d%n", fromXML.getSize());
+        System.out.format("XML Size               : %1$,12d bytes%n", xml.length());
+        System.out.format("Binary Size            : %1$,12d bytes  %2$,8.2f%%%n", binary.length(), 100.0 * binary.length() / xml.length());
+        System.out.format("XML Load               : %1$,12d ms%n", best[0] / 1000000);
+        System.out.format("XML Save               : %1$,12d ms%n", best[1] / 1000000);
+        System.out.format("Binary Load            : %1$,12d ms%n", best[3] / 1000000);
+        System.out.format("Binary Save            : %1$,12d ms%n", best[2] / 1000000);
+        System.out.println("Identical Identities   : " + same);
+    }
+
+    /**
+     * Loads a repository into a new <code>EntityMap</code>.
+     * @param parser the parser of the repository form.
+     * @param file the repository.
+     * @return the EntityMap.
+     */
+    private EntityMap load(IdentityParser parser, String file) {
+        EntityMap entityMap = new EntityMap(new LinkedHashMap<String, ClusterRecord>(), recordType);
+        parser.parse(file, new NullIndex(), entityMap);
+        return entityMap;
+    }
+
+    /**
+     * Saves an <code>EntityMap</code> in OysterID order, as the
+     * <code>OysterIdentityRepository</code> does.
+     * @param entityMap the EntityMap.
+     * @param mods the modifications of the repository.
+     * @param writer the writer of the repository form.
+     * @throws IOException
+     */
+    private void save(EntityMap entityMap, List<ModificationRecord> mods, OysterIdentityWriter writer) throws IOException {
+        writer.writeMetadata(mods, OysterIdentityWriter.getRepositoryAttributes());
+
+        List<String> keys = new ArrayList<String>(entityMap.getData().keySet());
+        Collections.sort(keys);
+        for (Iterator<String> it = keys.iterator(); it.hasNext();) {
+            writer.writeIdentity(entityMap.getCluster(it.next()), date);
+        }
+        writer.close();
+    }
+
+    /**
+     * The main entry point of the converter.
+     * @param args -toBinary in out, -toXML in out or -benchmark in [runs].
+     */
+    public static void main(String[] args) {
+        OysterIdentityConverter converter = new OysterIdentityConverter(RecordTypes.MAP);
+
+        try {
+            if (args.length == 3 && args[0].equalsIgnoreCase("-toBinary")) {
+                System.out.println("Identities converted: " + converter.toBinary(args[1], args[2]));
+            } else if (args.length == 3 && args[0].equalsIgnoreCase("-toXML")) {
+                System.out.println("Identities converted: " + converter.toXML(args[1], args[2]));
+            } else if ((args.length == 2 || args.length == 3) && args[0].equalsIgnoreCase("-benchmark")) {
+                converter.benchmark(args[1], args.length == 3 ? Integer.parseInt(args[2]) : 3);
+            } else {
+                System.out.println("Usage: OysterIdentityConverter -toBinary in.idty out.idtb");
+                System.out.println("       OysterIdentityConverter -toXML in.idtb out.idty");
+                System.out.println("       OysterIdentityConverter -benchmark in.idty [runs]");
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(OysterIdentityConverter.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ * 
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+
+package edu.ualr.oyster.io;
+
+import edu.ualr.oyster.data.ClusterRecord;
+import edu.ualr.oyster.kb.ModificationRecord;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * This is the base class for the writers of an identity repository. The
+ * metadata is written first, followed by each identity and the writer is then
+ * closed.
+ * @author Eric D. Nelson
+ */
+public abstract class OysterIdentityWriter {
+    /**
+     * Returns the attributes of the <code>ClusterRecord</code> metadata that
+     * are written to a repository. Internal attributes are skipped, except for
+     * the RefIDs.
+     * @return the attribute names by tag.
+     */
+    public static Map<String, String> getRepositoryAttributes() {
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        for (Iterator<Entry<String, String>> it = ClusterRecord.getMetadata().entrySet().iterator(); it.hasNext();) {
+            Entry<String, String> entry = it.next();
+
+            if (!entry.getValue().startsWith("@") || entry.getValue().equals("@RefID") || entry.getValue().equals("@DupRefID")) {
+                attributes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Writes the metadata of the repository.
+     * @param mods the modifications of the repository in the order they are to
+     * be written.
+     * @param attributes the attribute names by tag.
+     * @throws IOException
+     */
+    public abstract void writeMetadata(Collection<ModificationRecord> mods, Map<String, String> attributes) throws IOException;
+
+    /**
+     * Writes an identity.
+     * @param cr the <code>ClusterRecord</code> of the identity.
+     * @param date the date (yyyy-MM-dd) used as the creation date of a new
+     * identity.
+     * @throws IOException
+     */
+    public abstract void writeIdentity(ClusterRecord cr, String date) throws IOException;
+
+    /**
+     * Completes the repository and closes the writer.
+     * @throws IOException
+     */
+    public abstract void close() throws IOException;
+}
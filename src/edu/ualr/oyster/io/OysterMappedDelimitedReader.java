@@ -0,0 +1,451 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.io;
+
+import edu.ualr.oyster.ErrorFormatter;
+import edu.ualr.oyster.core.ReferenceItem;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class is used to read the Delimited text files through a memory map.
+ * The file is mapped a window at a time and copied out in chunks. Each record
+ * is copied in bulk up to the end of line into a record buffer and split in
+ * place over its bytes for the delimiter and the qualifier. The start and end
+ * of each field are kept in slots by ordinal; only the fields named by a <code>
+ * ReferenceItem</code> are decoded to a String. The buffers are reused from
+ * record to record.
+ *
+ * The records are split the same as <code>OysterDelimitedReader</code>: the
+ * values are trimmed, a delimiter is part of the value while a single qualifier
+ * is open and the qualifiers are dropped. The file is read as UTF-8, so the
+ * delimiter and qualifier must be single byte characters; otherwise the reader
+ * falls back to reading lines.
+ * @author Eric D. Nelson
+ */
+public class OysterMappedDelimitedReader extends OysterDelimitedReader {
+    /** The size of the mapped window */
+    public static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /** The number of bytes copied from the window at a time */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /** The charset of the file */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** true if the file is read through the map, false if by lines */
+    private boolean mapped = false;
+
+    /** The file stream */
+    private FileInputStream stream = null;
+
+    /** The file channel */
+    private FileChannel channel = null;
+
+    /** The mapped window */
+    private MappedByteBuffer window = null;
+
+    /** The file position of the end of the window */
+    private long windowEnd = 0;
+
+    /** The file position where reading stops */
+    private long size = 0;
+
+    /** The file position where reading starts */
+    private long rangeStart = 0;
+
+    /** The file position where reading stops, -1 for the end of the file */
+    private long rangeEnd = -1;
+
+    /** The bytes copied from the window to be scanned */
+    private byte [] chunk = new byte[CHUNK_SIZE];
+
+    /** The position of the next byte in the chunk */
+    private int pos = 0;
+
+    /** The number of bytes in the chunk */
+    private int limit = 0;
+
+    /** The delimiter byte */
+    private byte delim;
+
+    /** The qualifier byte */
+    private byte qual;
+
+    /** true if the file uses a quote qualifier */
+    private boolean qualified = false;
+
+    /** The field bytes of the current record */
+    private byte [] row = new byte[1024];
+
+    /** The number of bytes in the record buffer */
+    private int length = 0;
+
+    /** The start of each field in the record buffer by ordinal */
+    private int [] starts;
+
+    /** The end of each field in the record buffer by ordinal */
+    private int [] ends;
+
+    /** The number of fields in the current record */
+    private int fields = 0;
+
+    /** For each reference item the index of the first item with the same name */
+    private int [] first;
+
+    /** The value of each reference item, reused */
+    private String [] values;
+
+    /**
+     * Creates a new instance of <code>OysterMappedDelimitedReader</code>.
+     * @param file the path to the delimited source file.
+     * @param delimiter the field delimiter used within the file.
+     * @param qualifier the quote qualifier, empty if not used.
+     * @param header true if the file has a header record, otherwise false.
+     * @param ri the ArrayList of <code>ReferenceItems</code> that will be used to
+     * store the parsed data.
+     * @param log the logger.
+     */
+    public OysterMappedDelimitedReader (String file, String delimiter, String qualifier, boolean header, ArrayList<ReferenceItem> ri, Logger log) {
+        super(file, delimiter, qualifier, header, ri, log);
+    }
+
+    /**
+     * Sets the part of the file to be read. The start must be the start of a
+     * line and the end the end of one. This must be set before the file is
+     * opened.
+     * @param start the file position where reading starts.
+     * @param end the file position where reading stops, -1 for the end of the
+     * file.
+     */
+    public void setRange(long start, long end) {
+        rangeStart = start;
+        rangeEnd = end;
+    }
+
+    /**
+     * Returns whether a file with the delimiter and qualifier can be read
+     * through the memory map, i.e. both are single byte characters.
+     * @param delimiter the field delimiter.
+     * @param qualifier the quote qualifier, empty if not used.
+     * @return true if the file can be mapped, otherwise false.
+     */
+    public static boolean isMappable(String delimiter, String qualifier) {
+        return delimiter.length() == 1 && delimiter.charAt(0) < 0x80 &&
+               (qualifier.length() == 0 || (qualifier.length() == 1 && qualifier.charAt(0) < 0x80));
+    }
+
+    /**
+     * Returns whether the file is read through the memory map.
+     * @return true if the file is mapped, false if it is read by lines.
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * getNextReference() is an external method that reads a reference
+     * from the Reference Source, parses the reference into individual items and
+     * store the items in the string array itemList
+     * @return the number of items it found, zero at EOF
+     */
+    @Override
+    public int getNextReference () {
+        if (!mapped) {
+            return super.getNextReference();
+        }
+
+        int count = 0;
+
+        try {
+            // skip blank records and the header
+            boolean found;
+            while ((found = scan()) && (fields == 0 || isHeader())) {
+                if (fields > 0) {
+                    setHeader(false);
+                }
+            }
+
+            if (!found) {
+                return count;
+            }
+
+            for (int i = 0; i < getItemCount(); i++) {
+                ReferenceItem item = referenceItems.get(i);
+                int ordinal = item.getOrdinal();
+                String value = null;
+
+                if (ordinal < fields) {
+                    value = new String(row, starts[ordinal], ends[ordinal] - starts[ordinal], UTF8);
+                }
+
+                // if there are multiple items with the same item name
+                // concatenate if the items are different
+                int j = first[i];
+                if (j == i || values[j] == null) {
+                    values[j] = value;
+                } else if (value != null) {
+                    if (values[j].equalsIgnoreCase(value)) {
+                        values[j] = value;
+                    } else {
+                        values[j] = values[j] + "|" + value;
+                    }
+                }
+            }
+
+            for (int i = 0; i < getItemCount(); i++) {
+                ReferenceItem item = referenceItems.get(i);
+                String value = values[first[i]];
+                item.setData(value != null ? value : "");
+                // TODO: Add flag that is set from XML script to enable/disable this derived input RefID
+                if (item.getAttribute().equals("@RefID")) {
+                    item.setData(getRefID(item.getData()));
+                }
+                count++;
+            }
+
+            loadClusterRecord();
+        } catch (IOException ex) {
+            Logger.getLogger(OysterMappedDelimitedReader.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+
+        return count;
+    }
+
+    /**
+     * Scans the next record into the record buffer. The bytes up to the end of
+     * line are copied in bulk and then split in place. A record that is empty
+     * or only white space has no fields.
+     * @return true if a record was read, false at EOF.
+     * @throws IOException if the next window can not be mapped.
+     */
+    private boolean scan() throws IOException {
+        boolean any = false;
+
+        length = 0;
+        fields = 0;
+
+        while (pos < limit || fill()) {
+            byte [] buf = chunk;
+            int p = pos, lim = limit;
+            any = true;
+
+            while (p < lim && buf[p] != '\n' && buf[p] != '\r') {
+                p++;
+            }
+
+            int n = p - pos;
+            if (length + n > row.length) {
+                byte [] temp = new byte[Math.max(row.length * 2, length + n)];
+                System.arraycopy(row, 0, temp, 0, length);
+                row = temp;
+            }
+            System.arraycopy(buf, pos, row, length, n);
+            length += n;
+            pos = p;
+
+            if (p < lim) {
+                pos++;
+                if (buf[p] == '\r' && (pos < limit || fill()) && chunk[pos] == '\n') {
+                    pos++;
+                }
+                break;
+            }
+        }
+
+        if (any) {
+            split();
+        }
+        return any;
+    }
+
+    /**
+     * Splits the record buffer into fields. The qualifiers are dropped from the
+     * buffer as it is split.
+     */
+    private void split() {
+        int slots = starts.length, quotes = 0, start = 0, w = 0;
+        boolean blank = true;
+
+        for (int i = 0; i < length; i++) {
+            byte b = row[i];
+
+            if ((b & 0xff) > 0x20) {
+                blank = false;
+            }
+
+            if (qualified && b == qual) {
+                quotes++;
+            } else if (b == delim && quotes != 1) {
+                endField(start, w, slots);
+                start = w;
+                quotes = 0;
+            } else {
+                row[w++] = b;
+            }
+        }
+
+        if (blank) {
+            fields = 0;
+        } else {
+            endField(start, w, slots);
+        }
+    }
+
+    /**
+     * Trims the field and places it in the next slot.
+     * @param start the start of the field in the record buffer.
+     * @param end the end of the field in the record buffer.
+     * @param slots the number of slots.
+     */
+    private void endField(int start, int end, int slots) {
+        if (fields < slots) {
+            while (start < end && (row[start] & 0xff) <= 0x20) {
+                start++;
+            }
+            while (end > start && (row[end - 1] & 0xff) <= 0x20) {
+                end--;
+            }
+            starts[fields] = start;
+            ends[fields] = end;
+        }
+        fields++;
+    }
+
+    /**
+     * Copies the next bytes of the mapped window into the chunk, mapping the
+     * next window when this one is used up.
+     * @return true if bytes were copied, false at EOF.
+     * @throws IOException if the window can not be mapped.
+     */
+    private boolean fill() throws IOException {
+        if (!window.hasRemaining() && !remap()) {
+            return false;
+        }
+
+        int n = Math.min(chunk.length, window.remaining());
+        window.get(chunk, 0, n);
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Maps the next window of the file.
+     * @return true if a window was mapped, false at EOF.
+     * @throws IOException if the window can not be mapped.
+     */
+    private boolean remap() throws IOException {
+        if (windowEnd >= size) {
+            return false;
+        }
+
+        long start = windowEnd;
+        long len = Math.min(WINDOW_SIZE, size - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+        windowEnd = start + len;
+        return true;
+    }
+
+    /**
+     * This method maps the file if it exist. The file is read by lines if the
+     * delimiter or qualifier is not a single byte character.
+     */
+    @Override
+    public void open() {
+        String d = getDelimiter(), q = getQualifier();
+
+        mapped = isMappable(d, q);
+
+        if (!mapped) {
+            StringBuilder sb = new StringBuilder(100);
+            sb.append("##Warning: ").append(getFile()).append(" can not be mapped with delimiter ")
+              .append(d).append(", reading by line.");
+            Logger.getLogger(OysterMappedDelimitedReader.class.getName()).log(Level.WARNING, sb.toString());
+            super.open();
+            return;
+        }
+
+        delim = (byte) d.charAt(0);
+        if (q.length() == 1) {
+            qual = (byte) q.charAt(0);
+            qualified = true;
+        }
+
+        // size the slots by the largest ordinal and group the items by name
+        int max = -1;
+        first = new int[getItemCount()];
+        values = new String[getItemCount()];
+        for (int i = 0; i < getItemCount(); i++) {
+            ReferenceItem item = referenceItems.get(i);
+            max = Math.max(max, item.getOrdinal());
+
+            first[i] = i;
+            for (int j = 0; j < i; j++) {
+                if (referenceItems.get(j).getName().equals(item.getName())) {
+                    first[i] = j;
+                    break;
+                }
+            }
+        }
+        starts = new int[max + 1];
+        ends = new int[max + 1];
+
+        try {
+            stream = new FileInputStream(getFile());
+            channel = stream.getChannel();
+            size = rangeEnd < 0 ? channel.size() : Math.min(rangeEnd, channel.size());
+            windowEnd = rangeStart;
+            pos = 0;
+            limit = 0;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, 0, 0);
+        } catch (IOException ex) {
+            Logger.getLogger(OysterMappedDelimitedReader.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+    }
+
+    /**
+     * This method releases the map and closes the file.
+     */
+    @Override
+    public void close() {
+        if (!mapped) {
+            super.close();
+            return;
+        }
+
+        try {
+            window = null;
+            if (stream != null) {
+                stream.close();
+            }
+        }
+        catch (IOException ex) {
+            Logger.getLogger(OysterMappedDelimitedReader.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+    }
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.io;
+
+import edu.ualr.oyster.ErrorFormatter;
+import edu.ualr.oyster.core.ReferenceItem;
+import edu.ualr.oyster.data.OysterIdentityRecord;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class reads a Delimited or Fixed-width text file with several threads
+ * while presenting the references in file order, the same as the single
+ * threaded reader.
+ *
+ * The file is split into blocks of <code>blockSize</code> bytes whose ends are
+ * moved forward to the next line boundary. Each block is parsed on a worker
+ * thread by its own copy of the source reader, which builds the <code>
+ * OysterIdentityRecord</code>s of the block. The blocks are handed back in file
+ * order and at most two blocks per thread are read ahead. A RefID derived from
+ * the record count is assigned as the record is handed out, so it does not
+ * depend on how the file was split.
+ * @author Eric D. Nelson
+ */
+public class OysterParallelSourceReader extends OysterSourceReader {
+    /** The default number of bytes in a block */
+    public static final long DEFAULT_BLOCK_SIZE = 4L * 1024 * 1024;
+
+    /** The reader the worker readers are copied from */
+    private OysterSourceReader template = null;
+
+    /** the filename */
+    private String file = null;
+
+    /** The number of worker threads */
+    private int threads = 1;
+
+    /** The number of bytes in a block */
+    private long blockSize = DEFAULT_BLOCK_SIZE;
+
+    /** The size of the file */
+    private long size = 0;
+
+    /** The number of blocks in the file */
+    private long blocks = 0;
+
+    /** The next block to be handed to a worker */
+    private long nextBlock = 0;
+
+    /** The worker threads */
+    private ExecutorService executor = null;
+
+    /** The blocks being read, in file order */
+    private LinkedList<Future<ArrayList<Reference>>> pending = null;
+
+    /** The block being handed out */
+    private ArrayList<Reference> current = null;
+
+    /** The position of the next reference in the current block */
+    private int position = 0;
+
+    /**
+     * Creates a new instance of <code>OysterParallelSourceReader</code>.
+     * @param reader the unopened <code>OysterDelimitedReader</code> or <code>
+     * OysterFixedWidthReader</code> for the source.
+     * @param threads the number of worker threads.
+     * @param log the logger.
+     */
+    public OysterParallelSourceReader(OysterSourceReader reader, int threads, Logger log) {
+        super(log);
+
+        this.template = reader;
+        this.threads = Math.max(threads, 1);
+        this.recordType = reader.recordType;
+
+        if (reader instanceof OysterDelimitedReader) {
+            file = ((OysterDelimitedReader) reader).getFile();
+        } else if (reader instanceof OysterFixedWidthReader) {
+            file = ((OysterFixedWidthReader) reader).getFile();
+        } else {
+            throw new IllegalArgumentException(reader.getClass().getName() + " can not be read in parallel.");
+        }
+
+        setCountPoint(reader.getCountPoint());
+        setReferenceItems(reader.getReferenceItems());
+    }
+
+    /**
+     * Returns whether the reader can be read in parallel, i.e. it is a
+     * Delimited or Fixed-width text file reader.
+     * @param reader the reader to be checked.
+     * @return true if the reader can be read in parallel, otherwise false.
+     */
+    public static boolean isSupported(OysterSourceReader reader) {
+        return reader instanceof OysterDelimitedReader || reader instanceof OysterFixedWidthReader;
+    }
+
+    /**
+     * Returns the number of bytes in a block.
+     * @return the block size.
+     */
+    public long getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Sets the number of bytes in a block. This must be set before the first
+     * reference is read.
+     * @param blockSize the block size to be set.
+     */
+    public void setBlockSize(long blockSize) {
+        this.blockSize = Math.max(blockSize, 1);
+    }
+
+    /**
+     * Returns the number of worker threads.
+     * @return the threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * getNextReference() is an external method that reads a reference
+     * from the Reference Source, parses the reference into individual items and
+     * store the items in the string array itemList
+     * @return the number of items it found, zero at EOF
+     */
+    @Override
+    public int getNextReference() {
+        // the workers are started here since the source name is set after open
+        if (pending == null) {
+            start();
+        }
+
+        try {
+            while (current == null || position == current.size()) {
+                if (pending.isEmpty()) {
+                    shutdown();
+                    return 0;
+                }
+
+                current = pending.removeFirst().get();
+                position = 0;
+                submit();
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(OysterParallelSourceReader.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            return 0;
+        } catch (ExecutionException ex) {
+            Logger.getLogger(OysterParallelSourceReader.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            return 0;
+        }
+
+        Reference reference = current.get(position);
+        current.set(position++, null);
+
+        OysterIdentityRecord oysterIdentityRecord = reference.record;
+        derivedRefID = reference.derived;
+        if (derivedRefID) {
+            oysterIdentityRecord.add("@RefID", getRefID(null));
+        }
+
+        clusterRecord.clear();
+        clusterRecord.insertRecord(oysterIdentityRecord);
+
+        if (recordCount % getCountPoint() == 0) {
+            System.out.println(recordCount + "...");
+        }
+
+        recordCount++;
+        return reference.count;
+    }
+
+    @Override
+    public String getRecordImage() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * This method sizes the file. The workers are started when the first
+     * reference is read.
+     */
+    @Override
+    public void open() {
+        size = new File(file).length();
+        blocks = (size + blockSize - 1) / blockSize;
+        nextBlock = 0;
+    }
+
+    /**
+     * This method stops the workers.
+     */
+    @Override
+    public void close() {
+        if (pending != null) {
+            for (Iterator<Future<ArrayList<Reference>>> it = pending.iterator(); it.hasNext();) {
+                it.next().cancel(true);
+            }
+            pending.clear();
+        }
+        current = null;
+        shutdown();
+    }
+
+    /**
+     * Starts the worker threads and hands them the first blocks.
+     */
+    private void start() {
+        pending = new LinkedList<Future<ArrayList<Reference>>>();
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "OysterParallelSourceReader-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        submit();
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    private void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Hands the next blocks to the workers until two blocks per thread are
+     * being read. The worker readers are created here since creating a reader
+     * is not thread safe.
+     */
+    private void submit() {
+        while (pending.size() < threads * 2 && nextBlock < blocks) {
+            final long block = nextBlock++;
+            final OysterSourceReader reader = newReader(block == 0);
+
+            pending.add(executor.submit(new Callable<ArrayList<Reference>>() {
+                @Override
+                public ArrayList<Reference> call() throws IOException {
+                    return read(reader, block);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Creates a worker reader of the same kind as the template with its own
+     * copy of the reference items.
+     * @param first true if the reader is for the first block.
+     * @return the worker reader.
+     */
+    private OysterSourceReader newReader(boolean first) {
+        ArrayList<ReferenceItem> items = new ArrayList<ReferenceItem>();
+        for (Iterator<ReferenceItem> it = referenceItems.iterator(); it.hasNext();) {
+            ReferenceItem item = it.next();
+            ReferenceItem copy = new ReferenceItem(item.getName(), item.getAttribute(), item.getStart(), item.getEnd());
+            copy.setOrdinal(item.getOrdinal());
+            copy.setFormat(item.getFormat());
+            copy.setFormatType(item.getFormatType());
+            items.add(copy);
+        }
+
+        OysterSourceReader reader;
+        if (template instanceof OysterDelimitedReader) {
+            OysterDelimitedReader d = (OysterDelimitedReader) template;
+
+            // the line reader can not skip a header that is alone in its block,
+            // so the header is skipped before the block is handed to it
+            if (template instanceof OysterMappedDelimitedReader &&
+                OysterMappedDelimitedReader.isMappable(d.getDelimiter(), d.getQualifier())) {
+                reader = new OysterMappedDelimitedReader(file, d.getDelimiter(), d.getQualifier(), first && d.isHeader(), items, logger);
+            } else {
+                reader = new OysterDelimitedReader(file, d.getDelimiter(), d.getQualifier(), false, items, logger);
+            }
+        } else {
+            reader = new OysterFixedWidthReader(file, items, logger);
+        }
+
+        reader.recordType = recordType;
+        reader.setSource(source);
+        reader.setCountPoint(Long.MAX_VALUE);
+        return reader;
+    }
+
+    /**
+     * Reads the references of a block on a worker thread.
+     * @param reader the worker reader for the block.
+     * @param block the block number.
+     * @return the references of the block in file order.
+     * @throws IOException if the block can not be read.
+     */
+    private ArrayList<Reference> read(OysterSourceReader reader, long block) throws IOException {
+        ArrayList<Reference> result = new ArrayList<Reference>();
+        long start = align(block * blockSize);
+        long end = align((block + 1) * blockSize);
+
+        if (start >= end) {
+            return result;
+        }
+
+        if (reader instanceof OysterMappedDelimitedReader) {
+            ((OysterMappedDelimitedReader) reader).setRange(start, end);
+            reader.open();
+        } else {
+            FileInputStream fis = new FileInputStream(file);
+            fis.getChannel().position(start);
+            BufferedReader in = new BufferedReader(new InputStreamReader(new RangeInputStream(fis, end - start), "UTF8"));
+
+            if (reader instanceof OysterDelimitedReader) {
+                if (block == 0 && ((OysterDelimitedReader) template).isHeader()) {
+                    String read;
+                    while ((read = in.readLine()) != null && read.trim().isEmpty()) {
+                        // skip to the header
+                    }
+                }
+                ((OysterDelimitedReader) reader).setIn(in);
+            } else {
+                ((OysterFixedWidthReader) reader).setIn(in);
+            }
+        }
+
+        try {
+            int count;
+            while ((count = reader.getNextReference()) > 0) {
+                OysterIdentityRecord oysterIdentityRecord = reader.getClusterRecord().getOysterIdentityRecord(0);
+                result.add(new Reference(oysterIdentityRecord, reader.isDerivedRefID(), count));
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the start of the first line at or after the file position.
+     * @param pos the file position.
+     * @return the start of the line, the size of the file if there is none.
+     * @throws IOException if the file can not be read.
+     */
+    private long align(long pos) throws IOException {
+        if (pos <= 0) {
+            return 0;
+        } else if (pos >= size) {
+            return size;
+        }
+
+        long result = size;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte [] buf = new byte[8192];
+            long p = pos - 1;
+            int n;
+
+            raf.seek(p);
+            search:
+            while ((n = raf.read(buf)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    if (buf[i] == '\n') {
+                        result = p + i + 1;
+                        break search;
+                    }
+                }
+                p += n;
+            }
+        } finally {
+            raf.close();
+        }
+        return result;
+    }
+
+    /**
+     * A reference parsed by a worker.
+     */
+    private static class Reference {
+        /** The record built from the reference */
+        private final OysterIdentityRecord record;
+
+        /** true if the RefID is to be derived from the record count */
+        private final boolean derived;
+
+        /** The number of items of the reference */
+        private final int count;
+
+        /**
+         * Creates a new instance of <code>Reference</code>.
+         * @param record the record built from the reference.
+         * @param derived true if the RefID is to be derived from the record count.
+         * @param count the number of items of the reference.
+         */
+        private Reference(OysterIdentityRecord record, boolean derived, int count) {
+            this.record = record;
+            this.derived = derived;
+            this.count = count;
+        }
+    }
+
+    /**
+     * An input stream that ends after a number of bytes.
+     */
+    private static class RangeInputStream extends FilterInputStream {
+        /** The number of bytes left */
+        private long remaining;
+
+        /**
+         * Creates a new instance of <code>RangeInputStream</code>.
+         * @param in the underlying input stream.
+         * @param length the number of bytes to be read.
+         */
+        private RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = -1;
+
+            if (remaining > 0) {
+                b = super.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte [] b, int off, int len) throws IOException {
+            int n = -1;
+
+            if (remaining > 0) {
+                n = super.read(b, off, (int) Math.min(len, remaining));
+                if (n > 0) {
+                    remaining -= n;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
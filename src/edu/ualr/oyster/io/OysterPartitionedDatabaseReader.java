@@ -0,0 +1,467 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.io;
+
+import edu.ualr.oyster.ErrorFormatter;
+import edu.ualr.oyster.core.ReferenceItem;
+import edu.ualr.oyster.data.OysterIdentityRecord;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class reads a Database source in several partitions at the same time,
+ * each over its own connection.
+ *
+ * The rows are split on a numeric key column, either by the remainder of the
+ * key divided by the number of partitions (Modulus) or by equal ranges between
+ * the smallest and largest key (Range). Each partition is read on its own
+ * thread by a copy of the source reader and its references are passed through
+ * a bounded queue of its own. The references are handed out from the queues in
+ * turn, one from each partition in partition order, so the order of the
+ * references and the RefIDs derived from the record count are the same from
+ * run to run, although not the table order of the sequential reader.
+ *
+ * A partition that can not connect or fails while it is read fails the read:
+ * the error is thrown by <code>getNextReference</code> when that partition is
+ * next in turn.
+ * @author Eric D. Nelson
+ */
+public class OysterPartitionedDatabaseReader extends OysterSourceReader {
+    /** Rows are assigned to partitions by the key modulus the partitions */
+    public static final String MODULUS = "Modulus";
+
+    /** Rows are assigned to partitions by key range */
+    public static final String RANGE = "Range";
+
+    /** The default number of references that can wait in the queue */
+    public static final int DEFAULT_QUEUE_SIZE = 4096;
+
+    /** The reader the partition readers are copied from */
+    private OysterDatabaseReader template = null;
+
+    /** The number of partitions */
+    private int partitions = 1;
+
+    /** The numeric column the rows are partitioned on */
+    private String partitionKey = null;
+
+    /** How the rows are assigned to partitions, Modulus or Range */
+    private String partitionMode = MODULUS;
+
+    /** The number of references that can wait in the queues */
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+
+    /** The references read by each partition */
+    private ArrayList<BlockingQueue<Reference>> queues = null;
+
+    /** The partition threads */
+    private ArrayList<Thread> workers = null;
+
+    /** The partitions still being read, in partition order */
+    private ArrayList<Integer> running = null;
+
+    /** The position in running of the partition next in turn */
+    private int turn = 0;
+
+    /** Marks the end of a partition in the queue */
+    private static final Reference END = new Reference(null, false, 0);
+
+    /**
+     * Creates a new instance of <code>OysterPartitionedDatabaseReader</code>.
+     * @param reader the unopened <code>OysterDatabaseReader</code> for the
+     * source.
+     * @param partitions the number of partitions.
+     * @param partitionKey the numeric column the rows are partitioned on.
+     * @param partitionMode Modulus or Range.
+     * @param log the logger.
+     */
+    public OysterPartitionedDatabaseReader(OysterDatabaseReader reader, int partitions, String partitionKey, String partitionMode, Logger log) {
+        super(log);
+
+        this.template = reader;
+        this.partitions = Math.max(partitions, 1);
+        this.partitionKey = partitionKey;
+        this.recordType = reader.recordType;
+
+        if (partitionMode != null && partitionMode.equalsIgnoreCase(RANGE)) {
+            this.partitionMode = RANGE;
+        } else {
+            this.partitionMode = MODULUS;
+        }
+
+        setCountPoint(reader.getCountPoint());
+        setReferenceItems(reader.getReferenceItems());
+    }
+
+    /**
+     * Returns the number of partitions.
+     * @return the partitions.
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Returns how the rows are assigned to partitions.
+     * @return Modulus or Range.
+     */
+    public String getPartitionMode() {
+        return partitionMode;
+    }
+
+    /**
+     * Returns the number of references that can wait in the queues, shared
+     * evenly between the partitions.
+     * @return the queue size.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Sets the number of references that can wait in the queues, shared
+     * evenly between the partitions. This must be set before the first
+     * reference is read.
+     * @param queueSize the queue size to be set.
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = Math.max(queueSize, 1);
+    }
+
+    /**
+     * getNextReference() is an external method that reads a reference
+     * from the Reference Source, parses the reference into individual items and
+     * store the items in the string array itemList
+     * @return the number of items it found, zero at EOF
+     * @throws IllegalStateException if a partition could not be read.
+     */
+    @Override
+    public int getNextReference() {
+        // the partitions are started here since the source name is set after open
+        if (queues == null) {
+            start();
+        }
+
+        Reference reference = END;
+        try {
+            while (!running.isEmpty()) {
+                if (turn >= running.size()) {
+                    turn = 0;
+                }
+
+                int partition = running.get(turn);
+                reference = queues.get(partition).take();
+                if (reference == END) {
+                    // the next partition moves up to this turn
+                    running.remove(turn);
+                } else if (reference.error != null) {
+                    close();
+                    throw new IllegalStateException("Partition " + partition + " of " + source + " could not be read", reference.error);
+                } else {
+                    turn++;
+                    break;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(OysterPartitionedDatabaseReader.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+
+        if (reference == END) {
+            return 0;
+        }
+
+        OysterIdentityRecord oysterIdentityRecord = reference.record;
+        derivedRefID = reference.derived;
+        if (derivedRefID) {
+            oysterIdentityRecord.add("@RefID", getRefID(null));
+        }
+
+        clusterRecord.clear();
+        clusterRecord.insertRecord(oysterIdentityRecord);
+
+        if (recordCount % getCountPoint() == 0) {
+            System.out.println(recordCount + "...");
+        }
+
+        recordCount++;
+        return reference.count;
+    }
+
+    @Override
+    public String getRecordImage() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * The partitions are opened when the first reference is read.
+     */
+    @Override
+    public void open() {
+    }
+
+    /**
+     * This method stops the partition threads.
+     */
+    @Override
+    public void close() {
+        if (workers != null) {
+            for (Iterator<Thread> it = workers.iterator(); it.hasNext();) {
+                it.next().interrupt();
+            }
+            workers = null;
+        }
+        if (queues != null) {
+            for (Iterator<BlockingQueue<Reference>> it = queues.iterator(); it.hasNext();) {
+                it.next().clear();
+            }
+        }
+        if (running != null) {
+            running.clear();
+        }
+    }
+
+    /**
+     * Creates the partition filters and starts a thread for each partition.
+     */
+    private void start() {
+        queues = new ArrayList<BlockingQueue<Reference>>();
+        workers = new ArrayList<Thread>();
+        running = new ArrayList<Integer>();
+        turn = 0;
+
+        String [] filters = filters();
+        for (int i = 0; i < filters.length; i++) {
+            final OysterDatabaseReader reader = newReader(filters[i]);
+            final BlockingQueue<Reference> queue = new ArrayBlockingQueue<Reference>(Math.max(queueSize / filters.length, 1));
+            final int partition = i;
+
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    read(reader, partition, queue);
+                }
+            }, "OysterPartitionedDatabaseReader-" + i);
+            t.setDaemon(true);
+            workers.add(t);
+            queues.add(queue);
+            running.add(i);
+        }
+
+        for (Iterator<Thread> it = workers.iterator(); it.hasNext();) {
+            it.next().start();
+        }
+    }
+
+    /**
+     * Returns the condition that selects the rows of each partition. Rows with
+     * a null key are read by the first partition.
+     * @return the partition filters.
+     */
+    private String [] filters() {
+        String [] result = new String[partitions];
+        String key = partitionKey;
+        String nulls = " or " + key + " is null";
+
+        if (partitionMode.equals(RANGE)) {
+            long [] bounds = bounds();
+            long step = (bounds[1] - bounds[0]) / partitions + 1;
+
+            for (int i = 0; i < partitions; i++) {
+                long low = bounds[0] + step * i;
+                if (i == partitions - 1) {
+                    result[i] = key + " >= " + low;
+                } else {
+                    result[i] = "(" + key + " >= " + low + " and " + key + " < " + (low + step) + ")";
+                }
+            }
+            result[0] = "(" + key + " < " + (bounds[0] + step) + nulls + ")";
+        } else {
+            String ctype = template.getConnectionType();
+            for (int i = 0; i < partitions; i++) {
+                if (ctype != null && ctype.equalsIgnoreCase("sqlserver")) {
+                    result[i] = "abs(" + key + " % " + partitions + ") = " + i;
+                } else if (ctype == null || ctype.equalsIgnoreCase("odbc")) {
+                    result[i] = "abs(" + key + " mod " + partitions + ") = " + i;
+                } else {
+                    result[i] = "abs(mod(" + key + ", " + partitions + ")) = " + i;
+                }
+            }
+            result[0] = "(" + result[0] + nulls + ")";
+        }
+        return result;
+    }
+
+    /**
+     * Reads the smallest and largest key of the source over the connection of
+     * the template reader.
+     * @return the smallest and largest key, both zero if they can not be read.
+     */
+    private long [] bounds() {
+        long [] result = new long[2];
+        String sql = "select min(" + partitionKey + "), max(" + partitionKey + ") from (" + template.getSQL() + ") oyster_source";
+
+        if (template.isConnected()) {
+            try {
+                Statement stmt = template.getConn().createStatement();
+                try {
+                    ResultSet rs = stmt.executeQuery(sql);
+                    if (rs.next()) {
+                        result[0] = rs.getLong(1);
+                        result[1] = Math.max(rs.getLong(2), result[0]);
+                    }
+                } finally {
+                    stmt.close();
+                }
+            } catch (SQLException ex) {
+                System.err.println(sql);
+                Logger.getLogger(OysterPartitionedDatabaseReader.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            }
+            template.close();
+        }
+        return result;
+    }
+
+    /**
+     * Creates a partition reader with the connection settings of the template
+     * and its own copy of the reference items.
+     * @param filter the condition that selects the rows of the partition.
+     * @return the partition reader.
+     */
+    private OysterDatabaseReader newReader(String filter) {
+        ArrayList<ReferenceItem> items = new ArrayList<ReferenceItem>();
+        for (Iterator<ReferenceItem> it = referenceItems.iterator(); it.hasNext();) {
+            ReferenceItem item = it.next();
+            ReferenceItem copy = new ReferenceItem(item.getName(), item.getAttribute(), item.getStart(), item.getEnd());
+            copy.setOrdinal(item.getOrdinal());
+            copy.setFormat(item.getFormat());
+            copy.setFormatType(item.getFormatType());
+            items.add(copy);
+        }
+
+        OysterDatabaseReader reader = new OysterDatabaseReader(template.getTableName(), template.getConnectionType(),
+                template.getServerName(), template.getPortNumber(), template.getDatabase(),
+                template.getUserid(), template.getPassword(), items, logger);
+        reader.setOverRideSQL(template.getOverRideSQL());
+        reader.setFetchSize(template.getFetchSize());
+        reader.setPartitionFilter(filter);
+        reader.recordType = recordType;
+        reader.setSource(source);
+        reader.setCountPoint(Long.MAX_VALUE);
+        return reader;
+    }
+
+    /**
+     * Reads the references of a partition on its own thread and puts them in
+     * the queue of the partition followed by the end marker, or by the error
+     * if the partition can not be read.
+     * @param reader the partition reader.
+     * @param partition the number of the partition.
+     * @param queue the queue of the partition.
+     */
+    private void read(OysterDatabaseReader reader, int partition, BlockingQueue<Reference> queue) {
+        Reference last = END;
+
+        try {
+            if (reader.isConnected()) {
+                reader.open();
+
+                int count;
+                while ((count = reader.getNextReference()) > 0) {
+                    OysterIdentityRecord oysterIdentityRecord = reader.getClusterRecord().getOysterIdentityRecord(0);
+                    queue.put(new Reference(oysterIdentityRecord, reader.isDerivedRefID(), count));
+                }
+
+                if (reader.getReadError() != null) {
+                    last = new Reference(reader.getReadError());
+                }
+            } else {
+                last = new Reference(new SQLException("Unable to connect partition " + partition + " to " + template.getDatabase()));
+            }
+        } catch (InterruptedException ex) {
+            // the reader was closed
+            return;
+        } catch (RuntimeException ex) {
+            Logger.getLogger(OysterPartitionedDatabaseReader.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            last = new Reference(ex);
+        } finally {
+            if (reader.getConn() != null) {
+                reader.close();
+            }
+        }
+
+        try {
+            queue.put(last);
+        } catch (InterruptedException ex) {
+            // the reader was closed
+        }
+    }
+
+    /**
+     * A reference read by a partition.
+     */
+    private static class Reference {
+        /** The record built from the reference */
+        private final OysterIdentityRecord record;
+
+        /** true if the RefID is to be derived from the record count */
+        private final boolean derived;
+
+        /** The number of items of the reference */
+        private final int count;
+
+        /** The error that stopped the partition, null if none */
+        private final Throwable error;
+
+        /**
+         * Creates a new instance of <code>Reference</code>.
+         * @param record the record built from the reference.
+         * @param derived true if the RefID is to be derived from the record count.
+         * @param count the number of items of the reference.
+         */
+        private Reference(OysterIdentityRecord record, boolean derived, int count) {
+            this.record = record;
+            this.derived = derived;
+            this.count = count;
+            this.error = null;
+        }
+
+        /**
+         * Creates a new instance of <code>Reference</code> that marks the
+         * failure of a partition.
+         * @param error the error that stopped the partition.
+         */
+        private Reference(Throwable error) {
+            this.record = null;
+            this.derived = false;
+            this.count = 0;
+            this.error = error;
+        }
+    }
+}
@@ -25,6 +25,7 @@ import edu.ualr.oyster.core.ReferenceItem;
 import edu.ualr.oyster.data.ClusterRecord;
 import edu.ualr.oyster.data.ClusterRecordSet;
 import edu.ualr.oyster.data.CoDoSAOIR;
+import edu.ualr.oyster.data.IndexedCoDoSAOIR;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.data.OysterIdentityRecordMap;
 import edu.ualr.oyster.data.RecordTypes;
@@ -89,6 +90,9 @@ public abstract class OysterSourceReader {
     /** The source name */
     protected String source = "";
     
+    /** true if the RefID of the current reference was derived from the record count */
+    protected boolean derivedRefID = false;
+    
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.1685DB1B-EDB9-2400-57F3-31F6DB894DFE]
     // </editor-fold> 
@@ -152,6 +156,9 @@ public abstract class OysterSourceReader {
             case RecordTypes.CODOSA:
                 oysterIdentityRecord = new CoDoSAOIR();
                 break;
+            case RecordTypes.INDEXED_CODOSA:
+                oysterIdentityRecord = new IndexedCoDoSAOIR();
+                break;
             case RecordTypes.MAP:
                 oysterIdentityRecord = new OysterIdentityRecordMap();
                 break;
@@ -309,7 +316,32 @@ public abstract class OysterSourceReader {
     public void setSource(String source) {
         this.source = source;
     }
-    
+
+    /**
+     * Returns whether the RefID of the current reference was derived from the
+     * record count because the reference has none.
+     * @return true if the RefID was derived, otherwise false.
+     */
+    public boolean isDerivedRefID() {
+        return derivedRefID;
+    }
+
+    /**
+     * Returns the RefID of the current reference qualified by the source name.
+     * A reference without a RefID is given one derived from the record count.
+     * @param data the RefID data of the reference.
+     * @return the RefID.
+     */
+    protected String getRefID(String data) {
+        derivedRefID = data == null || data.equals("");
+
+        if (derivedRefID) {
+            return source + ".D" + recordCount;
+        } else {
+            return source + "." + data;
+        }
+    }
+
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.530E6593-46BA-50B4-0B17-683B2E978E28]
     // </editor-fold> 
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ * 
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+
+
+package edu.ualr.oyster.io;
+
+import edu.ualr.oyster.data.ClusterRecord;
+import edu.ualr.oyster.kb.ModificationRecord;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * This class writes an identity repository in the XML form read by the
+ * <code>IdentityParser</code>.
+ * @author Eric D. Nelson
+ */
+public class OysterXMLIdentityWriter extends OysterIdentityWriter {
+    /** The writer the XML is written to */
+    private PrintWriter out = null;
+
+    /**
+     * Creates a new instance of <code>OysterXMLIdentityWriter</code>.
+     * @param out the writer the XML is written to.
+     */
+    public OysterXMLIdentityWriter(PrintWriter out) {
+        this.out = out;
+    }
+
+    /**
+     * Returns the writer the XML is written to.
+     * @return the PrintWriter.
+     */
+    public PrintWriter getWriter() {
+        return out;
+    }
+
+    @Override
+    public void writeMetadata(Collection<ModificationRecord> mods, Map<String, String> attributes) throws IOException {
+        // TODO: Change String Operation to an XML Encoding Operation http://www.odi.ch/prog/design/newbies.php#6
+        out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        out.println("<root>");
+        // output metadata
+        out.println("\t<Metadata>");
+        out.println("\t\t<Modifications>");
+        for (Iterator<ModificationRecord> it = mods.iterator(); it.hasNext();) {
+            ModificationRecord mr = it.next();
+            out.println("\t\t\t<Modification ID=\"" + mr.getId() + "\" OysterVersion=\"" + mr.getOysterVersion() + 
+                    "\" Date=\"" + mr.getDate() + "\" RunScript=\"" +  mr.getRunScriptName() +"\" />");
+        }
+        out.println("\t\t</Modifications>");
+
+        // output attributes
+        out.println("\t\t<Attributes>");
+        for (Iterator<Entry<String, String>> it = attributes.entrySet().iterator(); it.hasNext();) {
+            Entry<String, String> entry = it.next();
+            out.println("\t\t\t<Attribute Name=\"" + entry.getValue() + "\" Tag=\"" + entry.getKey() + "\"/>");
+        }
+        out.println("\t\t</Attributes>");
+        out.println("\t</Metadata>");
+
+        out.println("\t<Identities>");
+    }
+
+    @Override
+    public void writeIdentity(ClusterRecord cr, String date) throws IOException {
+        out.println(cr.convertToXML(date));
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.println("\t</Identities>");
+        out.println("</root>");
+        out.close();
+    }
+}
@@ -177,6 +177,16 @@ public class RunScriptParser extends OysterXMLParser {
             parent = eName;
         } else if (eName.equalsIgnoreCase("SlidingWindow")) {
             parent = eName;
+        } else if (eName.equalsIgnoreCase("Parallel")) {
+            parent = eName;
+        } else if (eName.equalsIgnoreCase("CandidateList")) {
+            parent = eName;
+        } else if (eName.equalsIgnoreCase("StopKeys")) {
+            parent = eName;
+        } else if (eName.equalsIgnoreCase("TermOrder")) {
+            parent = eName;
+        } else if (eName.equalsIgnoreCase("RecordType")) {
+            parent = eName;
         }
 
         // get XML attributes
@@ -226,6 +236,8 @@ public class RunScriptParser extends OysterXMLParser {
                         runScript.setEngineType(token);
                     } else if (parent.equalsIgnoreCase("EntityMap")) {
                         runScript.setEntityMapType(token);
+                    } else if (parent.equalsIgnoreCase("RecordType")) {
+                        runScript.setRecordType(token);
                     }
                 } else if (aName.equalsIgnoreCase("Server")) {
                     if (parent.equalsIgnoreCase("IdentityInput")) {
@@ -309,6 +321,54 @@ public class RunScriptParser extends OysterXMLParser {
                     if (parent.equalsIgnoreCase("SlidingWindow")) {
                         runScript.setSlidingWindow(Integer.parseInt(token));
                     }
+                } else if (parent.equalsIgnoreCase("Parallel") && aName.equalsIgnoreCase("Threads")) {
+                    runScript.setThreads(Integer.parseInt(token));
+                } else if (parent.equalsIgnoreCase("EntityMap") && aName.equalsIgnoreCase("BatchSize")) {
+                    runScript.setEntityMapBatchSize(Integer.parseInt(token));
+                } else if (parent.equalsIgnoreCase("EntityMap") && aName.equalsIgnoreCase("CacheSize")) {
+                    runScript.setEntityMapCacheSize(Integer.parseInt(token));
+                } else if (parent.equalsIgnoreCase("EntityMap") && aName.equalsIgnoreCase("Path")) {
+                    runScript.setEntityMapPath(token);
+                } else if (parent.equalsIgnoreCase("EntityMap") && aName.equalsIgnoreCase("SegmentSize")) {
+                    int segmentSize = Integer.parseInt(token);
+                    if (segmentSize < 1 || segmentSize > OysterRunScript.MAX_ENTITY_MAP_SEGMENT_SIZE) {
+                        Logger.getLogger(RunScriptParser.class.getName()).log(Level.WARNING, "EntityMap SegmentSize {0} is outside 1 to {1} MB and is limited to that range", new Object[]{token, String.valueOf(OysterRunScript.MAX_ENTITY_MAP_SEGMENT_SIZE)});
+                    }
+                    runScript.setEntityMapSegmentSize(segmentSize);
+                } else if (parent.equalsIgnoreCase("Parallel") && aName.equalsIgnoreCase("BatchSize")) {
+                    runScript.setBatchSize(Integer.parseInt(token));
+                } else if (parent.equalsIgnoreCase("Parallel") && aName.equalsIgnoreCase("ReadThreads")) {
+                    runScript.setReadThreads(Integer.parseInt(token));
+                } else if (parent.equalsIgnoreCase("Parallel") && aName.equalsIgnoreCase("LoadThreads")) {
+                    runScript.setLoadThreads(Integer.parseInt(token));
+                } else if (parent.equalsIgnoreCase("CandidateList") && aName.equalsIgnoreCase("Threshold")) {
+                    runScript.setCandidateThreshold(Integer.parseInt(token));
+                } else if (parent.equalsIgnoreCase("CandidateList") && aName.equalsIgnoreCase("Cap")) {
+                    runScript.setCandidateCap(Integer.parseInt(token));
+                } else if (parent.equalsIgnoreCase("CandidateList") && aName.equalsIgnoreCase("Ratio")) {
+                    runScript.setCandidateRatio(Double.parseDouble(token));
+                } else if (parent.equalsIgnoreCase("CandidateList") && aName.equalsIgnoreCase("Exact")) {
+                    if (token.equalsIgnoreCase("Yes")) {
+                        runScript.setCandidateExact(true);
+                    } else {
+                        runScript.setCandidateExact(false);
+                    }
+                } else if (parent.equalsIgnoreCase("StopKeys") && aName.equalsIgnoreCase("Ceiling")) {
+                    runScript.setStopKeyCeiling(Integer.parseInt(token));
+                } else if (parent.equalsIgnoreCase("TermOrder") && aName.equalsIgnoreCase("Interval")) {
+                    runScript.setTermOrderInterval(Integer.parseInt(token));
+                } else if (parent.equalsIgnoreCase("IdentityInput") && aName.equalsIgnoreCase("IndexSnapshot")) {
+                    if (token.equalsIgnoreCase("Yes")) {
+                        runScript.setIdentityInputIndexSnapshot(true);
+                    } else {
+                        runScript.setIdentityInputIndexSnapshot(false);
+                    }
+                } else if (parent.equalsIgnoreCase("IdentityOutput") && aName.equalsIgnoreCase("IndexSnapshot")) {
+                    if (token.equalsIgnoreCase("Yes")) {
+                        runScript.setIdentityOutputIndexSnapshot(true);
+                    } else {
+                        runScript.setIdentityOutputIndexSnapshot(false);
+                    }
                 } else if (aName.equalsIgnoreCase("Trace")) {
                     if (token.equalsIgnoreCase("On")) {
                         runScript.setIdentityOutputTrace(true);
@@ -379,6 +439,16 @@ public class RunScriptParser extends OysterXMLParser {
             runScript.setAssertionInputLocation(data.trim());
         } else if (eName.equalsIgnoreCase("SlidingWindow")){
             parent = "";
+        } else if (eName.equalsIgnoreCase("Parallel")){
+            parent = "";
+        } else if (eName.equalsIgnoreCase("CandidateList")){
+            parent = "";
+        } else if (eName.equalsIgnoreCase("StopKeys")){
+            parent = "";
+        } else if (eName.equalsIgnoreCase("TermOrder")){
+            parent = "";
+        } else if (eName.equalsIgnoreCase("RecordType")){
+            parent = "";
         }
     }
     
@@ -179,6 +179,16 @@ public class SourceDescriptorParser extends OysterXMLParser {
                     sourceDescriptor.setPasswd(token);
                 } else if (aName.equalsIgnoreCase("CType")) {
                     sourceDescriptor.setConnectionType(token);
+                } else if (aName.equalsIgnoreCase("Mode")) {
+                    sourceDescriptor.setReadMode(token);
+                } else if (aName.equalsIgnoreCase("FetchSize")) {
+                    sourceDescriptor.setFetchSize(Integer.parseInt(token));
+                } else if (aName.equalsIgnoreCase("Partitions")) {
+                    sourceDescriptor.setPartitions(Integer.parseInt(token));
+                } else if (aName.equalsIgnoreCase("PartitionKey")) {
+                    sourceDescriptor.setPartitionKey(token);
+                } else if (aName.equalsIgnoreCase("PartitionMode")) {
+                    sourceDescriptor.setPartitionMode(token);
                 } else if (aName.equalsIgnoreCase("Attribute")) {
                     referenceItem.setAttribute(token);
                 } else if (aName.equalsIgnoreCase("Format")) {
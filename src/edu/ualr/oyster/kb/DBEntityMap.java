@@ -23,6 +23,7 @@ import edu.ualr.oyster.ErrorFormatter;
 import edu.ualr.oyster.data.ClusterRecord;
 import edu.ualr.oyster.data.ClusterRecordSet;
 import edu.ualr.oyster.data.CoDoSAOIR;
+import edu.ualr.oyster.data.IndexedCoDoSAOIR;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.data.OysterIdentityRecordMap;
 import edu.ualr.oyster.data.RecordTypes;
@@ -36,6 +37,8 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -68,6 +71,8 @@ public class DBEntityMap extends EntityMap {
     /** */
     private PreparedStatement spstmtRecord = null;
     /** */
+    private PreparedStatement scpstmtRecord = null;
+    /** */
     private PreparedStatement upstmtCluster = null;
     /** */
     private PreparedStatement upstmtRecord = null;
@@ -87,6 +92,34 @@ public class DBEntityMap extends EntityMap {
     /** */
     private SimpleDateFormat sdf = null;
 
+    /** The default number of cluster changes queued before they are written */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    /** A queued change that inserts a new cluster */
+    private static final int INSERT = 0;
+    /** A queued change that rewrites an existing cluster */
+    private static final int UPDATE = 1;
+    /** A queued change that deletes a cluster */
+    private static final int DELETE = 2;
+    /** The number of cluster changes queued before they are written, 1 or less
+        writes each change as it is made */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    /** The queued cluster changes by OysterID, only the latest is kept */
+    private LinkedHashMap<String, Change> pending = new LinkedHashMap<String, Change>();
+    /** The cid of the clusters in the Cluster table by OysterID */
+    private HashMap<String, Integer> cids = new HashMap<String, Integer>();
+    /** true if the driver returns the generated cid of a batch of inserts */
+    private boolean generatedKeys = true;
+    /** The number of clusters kept in memory, 0 or less keeps every cluster */
+    private int cacheSize = 0;
+    /** The pin count of the clusters that can not be evicted */
+    private HashMap<String, Integer> pins = new HashMap<String, Integer>();
+    /** The number of clusters evicted from memory */
+    private long evictions = 0, ievictions = 0;
+
+    private int queued = 0,  coalesced = 0,  flushes = 0,  batches = 0,  rows = 0;
+    private int iqueued = 0, icoalesced = 0, iflushes = 0, ibatches = 0, irows = 0;
+    private long flushTime = 0, iflushTime = 0;
+
     private int hit = 0,   miss = 0,  nullMiss = 0,   nonNullMiss = 0,  total = 0,  select = 0,  inserts = 0,  insertCluster = 0,  insertRecord = 0,  updates = 0,  updateRecord = 0,  selectCluster = 0,  updateCluster = 0,  selectRecord = 0,  deleteCluster = 0,  deleteRecord = 0;
     private int ihit = 0, imiss = 0, inullMiss = 0,  inonNullMiss = 0, itotal = 0, iselect = 0, iinserts = 0, iinsertCluster = 0, iinsertRecord = 0, iupdates = 0, iupdateRecord = 0, iselectCluster = 0, iupdateCluster = 0, iselectRecord = 0, ideleteCluster = 0, ideleteRecord = 0;
     
@@ -230,12 +263,93 @@ public class DBEntityMap extends EntityMap {
         this.password = password;
     }
 
+    /**
+     * Returns the number of cluster changes queued before they are written.
+     * @return the batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of cluster changes queued before they are written. A
+     * batch size of 1 or less writes each change as it is made.
+     * @param batchSize the batch size to be set.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the number of clusters kept in memory.
+     * @return the cache size, 0 or less if every cluster is kept.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Sets the number of clusters kept in memory. When the cache is full the
+     * least recently used cluster that is not pinned is evicted. A cluster
+     * with queued changes is written before it is evicted, so it can be
+     * selected again from the database.
+     * @param cacheSize the cache size to be set, 0 or less to keep every
+     * cluster.
+     */
+    public synchronized void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        
+        if (cacheSize > 0 && !(data instanceof ClusterCache)) {
+            ClusterCache cache = new ClusterCache();
+            cache.putAll(data);
+            data = cache;
+        }
+    }
+
+    /**
+     * Keeps a cluster in memory until it is unpinned. Pins are counted, so a
+     * cluster pinned twice has to be unpinned twice.
+     * @param oysterID the OysterID of the cluster.
+     */
+    @Override
+    public synchronized void pin(String oysterID) {
+        Integer count = pins.get(oysterID);
+        pins.put(oysterID, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Releases a pin of a cluster.
+     * @param oysterID the OysterID of the cluster.
+     */
+    @Override
+    public synchronized void unpin(String oysterID) {
+        Integer count = pins.get(oysterID);
+        
+        if (count != null) {
+            if (count > 1) {
+                pins.put(oysterID, count - 1);
+            } else {
+                pins.remove(oysterID);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of clusters evicted from memory.
+     * @return the number of evictions.
+     */
+    @Override
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
     public String getDatabaseCallInfo() {
         String result = "Total: " + itotal + "\t" +
                         "Hits: " + ihit + "\t" +
                         "Misses: " + imiss + "\t" +
                         "NonNullMiss: " + inonNullMiss + "\t" +
                         "NullMiss: " + inullMiss + "\t" + 
+                        "Evictions: " + ievictions + "\t" +
                         "Selects: " + iselect + "\t" +
                         "DB Selects: " + this.iselect + "\t" +
                         "DB Select Clusters: " + this.iselectCluster + "\t" +
@@ -247,7 +361,14 @@ public class DBEntityMap extends EntityMap {
                         "DB Updates Clusters: " + this.iupdateCluster + "\t" +
                         "DB Updates Records: " + this.iupdateRecord + "\t" +
                         "DB Delete Clusters: " + this.ideleteCluster + "\t" +
-                        "DB Delete Records: " + this.ideleteRecord;
+                        "DB Delete Records: " + this.ideleteRecord + "\t" +
+                        "Queued: " + this.iqueued + "\t" +
+                        "Coalesced: " + this.icoalesced + "\t" +
+                        "Flushes: " + this.iflushes + "\t" +
+                        "DB Batches: " + this.ibatches + "\t" +
+                        "DB Rows: " + this.irows + "\t" +
+                        "Flush ms: " + (this.iflushTime / 1000000) + "\t" +
+                        "Rows/s: " + rate(this.irows, this.iflushTime);
         return result;
     }
     
@@ -255,7 +376,22 @@ public class DBEntityMap extends EntityMap {
         ihit = imiss = inullMiss = inonNullMiss = iselect = itotal = 0;
         iselect = iselectCluster = iselectRecord = iinserts = iinsertCluster = 0;
         iinsertRecord = iupdates = iupdateCluster = iupdateRecord = ideleteCluster = ideleteRecord = 0;
-
+        iqueued = icoalesced = iflushes = ibatches = irows = 0;
+        iflushTime = ievictions = 0;
+    }
+    
+    /**
+     * Returns the number of rows written per second of flushing.
+     * @param count the number of rows written.
+     * @param nanos the time spent flushing in nanoseconds.
+     * @return the rows per second, 0 if nothing was flushed.
+     */
+    private static long rate(int count, long nanos) {
+        long result = 0;
+        if (nanos > 0) {
+            result = (long) (count * 1000000000.0 / nanos);
+        }
+        return result;
     }
     
     /**
@@ -265,13 +401,21 @@ public class DBEntityMap extends EntityMap {
      * @return the ClusterRecord if it exist, otherwise null
      */
     @Override
-    public ClusterRecord getCluster(String oysterID) {
+    public synchronized ClusterRecord getCluster(String oysterID) {
         ClusterRecord cr;
 
         if (data.containsKey(oysterID)) {
             cr = data.get(oysterID);
             hit++;
             ihit++;
+        } else if (pending.containsKey(oysterID)) {
+            // the latest change has not been written yet
+            cr = pending.get(oysterID).cr;
+            if (cr != null) {
+                data.put(oysterID, cr);
+            }
+            hit++;
+            ihit++;
         } else {
             // get the data from the DB and add it to the Map
             cr = selectCluster(oysterID);
@@ -304,7 +448,7 @@ public class DBEntityMap extends EntityMap {
         data.remove(oysterID);
 
         // remove from the DB tables
-        delete(oysterID);
+        queue(oysterID, DELETE, null);
     }
 
     /**
@@ -313,6 +457,7 @@ public class DBEntityMap extends EntityMap {
      */
     @Override
     public int getSize() {
+        flush();
         int i = -1;
         String sql = "select count(distinct oysterID) from " + database + ".Cluster";
 
@@ -337,7 +482,7 @@ public class DBEntityMap extends EntityMap {
     public void add(ClusterRecord cr) {
         data.put(cr.getOysterID(), cr);
 
-        insert(cr);
+        queue(cr.getOysterID(), INSERT, cr);
     }
 
     /**
@@ -349,8 +494,25 @@ public class DBEntityMap extends EntityMap {
      */
     @Override
     public void addIdentity(String oysterID, OysterIdentityRecord oir, String runID, Set<String> rules, boolean traceOn) {
-        ClusterRecord cr = getCluster(oysterID);
+        // the cluster can not be evicted while it is changed
+        pin(oysterID);
+        try {
+            addIdentity(oysterID, oir, runID, rules, traceOn, getCluster(oysterID));
+        } finally {
+            unpin(oysterID);
+        }
+    }
 
+    /**
+     * This method adds a new identity to a cluster of the <code>DBEntityMap
+     * </code>.
+     * @param oysterID system generated OysterID.
+     * @param oir <code>OysterIdentityRecord</code> to be added.
+     * @param runID the id for the current resolution run.
+     * @param rules the rules that fired for the current oysterID.
+     * @param cr the cluster, null if it is a new cluster.
+     */
+    private void addIdentity(String oysterID, OysterIdentityRecord oir, String runID, Set<String> rules, boolean traceOn, ClusterRecord cr) {
         if (cr == null) {
             cr = new ClusterRecordSet(recordType);
         }
@@ -446,9 +608,24 @@ public class DBEntityMap extends EntityMap {
      */
     @Override
     public void updateIdentity(String oysterID, ClusterRecord cr, String runID, Set<String> rules, boolean trace) {
-        // get the identity for this index
-        ClusterRecord old = getCluster(oysterID);
+        // the cluster can not be evicted while it is merged
+        pin(oysterID);
+        try {
+            updateIdentity(oysterID, cr, runID, rules, trace, getCluster(oysterID));
+        } finally {
+            unpin(oysterID);
+        }
+    }
 
+    /**
+     * Merges the new <code>ClusterRecord</code> with the old one.
+     * @param oysterID the index into the DBEntityMap.
+     * @param cr <code>ClusterRecord</code> to be updated.
+     * @param runID the id for the current resolution run.
+     * @param rules the rules that fired for the current oysterID.
+     * @param old the old <code>ClusterRecord</code>, null if there is none.
+     */
+    private void updateIdentity(String oysterID, ClusterRecord cr, String runID, Set<String> rules, boolean trace, ClusterRecord old) {
         if (old != null) {
             // set the merged flag
 /*
@@ -480,7 +657,8 @@ public class DBEntityMap extends EntityMap {
             cr.merge(old, runID, rules, trace);
             old = null;
             cr.setOysterID(oysterID);
-            update(cr);
+            data.put(oysterID, cr);
+            queue(oysterID, UPDATE, cr);
         } else {
             cr.setOysterID(oysterID);
             add(cr);
@@ -489,6 +667,7 @@ public class DBEntityMap extends EntityMap {
 
     @Override
     public List<String> getKeys(String[] entities) {
+        flush();
         List<String> list = new ArrayList<String>(entities.length);
         String sql = "select distinct oysterID from " + database + ".Cluster";
 
@@ -587,6 +766,8 @@ public class DBEntityMap extends EntityMap {
 
     @Override
     public void close(){
+        flush();
+        
         try {
             conn.close();
         } catch (SQLException ex) {
@@ -598,6 +779,7 @@ public class DBEntityMap extends EntityMap {
         System.out.format("Cache Misses           : %1$,12d  %2$,8.5f%n", this.miss, (float)this.miss / (float)this.total * 100);
         System.out.format("Cache Non-Null Misses  : %1$,12d  %2$,8.5f%n", this.nonNullMiss, (float)this.nonNullMiss / (float)this.total * 100);
         System.out.format("Cache Null Misses      : %1$,12d  %2$,8.5f%n", this.nullMiss, (float)this.nullMiss / (float)this.total * 100);
+        System.out.format("Cache Evictions        : %1$,12d%n", this.evictions);
         System.out.format("DB Selects             : %1$,12d%n", this.select);
         System.out.format("DB Select Clusters     : %1$,12d%n", this.selectCluster);
         System.out.format("DB Select Records      : %1$,12d%n", this.selectRecord);
@@ -609,6 +791,11 @@ public class DBEntityMap extends EntityMap {
         System.out.format("   Records             : %1$,12d%n", this.updateRecord);
         System.out.format("DB Delete Clusters     : %1$,12d%n", this.deleteCluster);
         System.out.format("DB Delete Records      : %1$,12d%n", this.deleteRecord);
+        System.out.format("Queued Changes         : %1$,12d%n", this.queued);
+        System.out.format("   Coalesced           : %1$,12d%n", this.coalesced);
+        System.out.format("Flushes                : %1$,12d%n", this.flushes);
+        System.out.format("DB Batches             : %1$,12d%n", this.batches);
+        System.out.format("DB Rows Written        : %1$,12d  %2$,12d/s%n", this.rows, rate(this.rows, this.flushTime));
         System.out.println();
     }
     
@@ -623,12 +810,17 @@ public class DBEntityMap extends EntityMap {
             dpstmtRecord = conn.prepareStatement(sql);
 
             sql = "insert into " + database + ".Cluster(`oysterID`,`creationDate`,`clusterType`,`size`,`persistant`) values (?,?,?,?,?)";
-            ipstmtCluster = conn.prepareStatement(sql);
+            try {
+                ipstmtCluster = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            } catch (SQLException ex) {
+                generatedKeys = false;
+                ipstmtCluster = conn.prepareStatement(sql);
+            }
 
             sql = "insert into " + database + ".Record(`refID`,`cid`,`data`) values (?,?,?)";
             ipstmtRecord = conn.prepareStatement(sql);
 
-            sql = "update " + database + ".Cluster set `oysterID` = ? where `cid` = ?";
+            sql = "update " + database + ".Cluster set `size` = ?, `persistant` = ? where `cid` = ?";
             upstmtCluster = conn.prepareStatement(sql);
 
             sql = "update " + database + ".Record set `cid` = ? where `refID` = ?";
@@ -639,6 +831,9 @@ public class DBEntityMap extends EntityMap {
 
             sql = "select * from " + database + ".Record where `refID` = ?";
             spstmtRecord = conn.prepareStatement(sql);
+
+            sql = "select * from " + database + ".Record where `cid` = ?";
+            scpstmtRecord = conn.prepareStatement(sql);
         } catch (Exception ex) {
             Logger.getLogger(DBEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
         }
@@ -755,10 +950,183 @@ public class DBEntityMap extends EntityMap {
         }
     }
 
-    private void insert(ClusterRecord cr) {
-        int rc;
+    /**
+     * Queues a change to a cluster. Only the latest change to an OysterID is
+     * kept, so repeated updates of the same cluster are written once. The
+     * queue is written when it holds <code>batchSize</code> clusters.
+     * @param oysterID the OysterID of the cluster.
+     * @param type INSERT, UPDATE or DELETE.
+     * @param cr the cluster to be written, null for a delete.
+     */
+    private synchronized void queue(String oysterID, int type, ClusterRecord cr) {
+        Change change = pending.get(oysterID);
+        
+        if (change == null) {
+            // the cluster is already in the table
+            if (type == INSERT && cids.containsKey(oysterID)) {
+                type = UPDATE;
+            }
+            pending.put(oysterID, new Change(type, cr));
+        } else {
+            if (type == DELETE) {
+                change.type = DELETE;
+                change.purge = false;
+            } else if (change.type == DELETE) {
+                // the old rows are deleted before the cluster is written again
+                change.type = INSERT;
+                change.purge = true;
+            }
+            change.cr = cr;
+            coalesced++;
+            icoalesced++;
+        }
+        queued++;
+        iqueued++;
+        
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the queued cluster changes in a single transaction using JDBC
+     * batches. The deletes are written first, then the new clusters whose cid
+     * is taken from the generated keys, then the changed clusters and finally
+     * the records of the written clusters.
+     * 
+     * If the transaction fails it is rolled back, the known cids of the queued
+     * clusters are put back as they were and the changes stay queued so that
+     * the next flush writes them again.
+     * @throws IllegalStateException if the changes could not be written.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty() || conn == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean autoCommit = true;
+        boolean written = false;
+
+        // the cids changed by the batch are those of the queued clusters
+        HashMap<String, Integer> saved = new HashMap<String, Integer>(pending.size() * 2);
+        for (Iterator<String> it = pending.keySet().iterator(); it.hasNext();) {
+            String oysterID = it.next();
+            saved.put(oysterID, cids.get(oysterID));
+        }
+
         try {
-            // insert into the Cluster table first
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            ArrayList<String> deletes = new ArrayList<String>();
+            ArrayList<String> inserts = new ArrayList<String>();
+            ArrayList<String> updates = new ArrayList<String>();
+            for (Iterator<Map.Entry<String, Change>> it = pending.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, Change> entry = it.next();
+                Change change = entry.getValue();
+
+                if (change.type == DELETE || change.purge) {
+                    deletes.add(entry.getKey());
+                }
+                if (change.type == INSERT) {
+                    inserts.add(entry.getKey());
+                } else if (change.type == UPDATE) {
+                    updates.add(entry.getKey());
+                }
+            }
+
+            deleteClusters(deletes);
+            insertClusters(inserts);
+            updateClusters(updates);
+            
+            ArrayList<String> clusters = new ArrayList<String>(inserts);
+            clusters.addAll(updates);
+            writeRecords(clusters);
+
+            conn.commit();
+            written = true;
+        } catch (SQLException ex) {
+            Logger.getLogger(DBEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            try {
+                conn.rollback();
+            } catch (SQLException ex1) {
+                Logger.getLogger(DBEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex1), ex1);
+            }
+            
+            // the rolled back rows are not in the tables
+            for (Iterator<Map.Entry<String, Integer>> it = saved.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, Integer> entry = it.next();
+                if (entry.getValue() == null) {
+                    cids.remove(entry.getKey());
+                } else {
+                    cids.put(entry.getKey(), entry.getValue());
+                }
+            }
+            throw new IllegalStateException("Unable to write " + pending.size() + " queued clusters to " + database, ex);
+        } finally {
+            if (written) {
+                pending.clear();
+            }
+            try {
+                conn.setAutoCommit(autoCommit);
+            } catch (SQLException ex) {
+                Logger.getLogger(DBEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            }
+
+            long elapsed = System.nanoTime() - start;
+            flushTime += elapsed;
+            iflushTime += elapsed;
+            flushes++;
+            iflushes++;
+        }
+    }
+
+    /**
+     * Deletes the clusters and their records.
+     * @param oysterIDs the OysterIDs of the clusters to be deleted.
+     * @throws SQLException if the delete fails.
+     */
+    private void deleteClusters(List<String> oysterIDs) throws SQLException {
+        if (oysterIDs.isEmpty()) {
+            return;
+        }
+
+        for (Iterator<String> it = oysterIDs.iterator(); it.hasNext();) {
+            String oysterID = it.next();
+            int cid = getCid(oysterID);
+
+            if (cid != -1) {
+                dpstmtRecord.setInt(1, cid);
+                dpstmtRecord.addBatch();
+            }
+            dpstmtCluster.setString(1, oysterID);
+            dpstmtCluster.addBatch();
+            cids.remove(oysterID);
+        }
+
+        int rc = count(dpstmtRecord.executeBatch());
+        deleteRecord += rc;
+        ideleteRecord += rc;
+
+        rc = count(dpstmtCluster.executeBatch());
+        deleteCluster += rc;
+        ideleteCluster += rc;
+    }
+
+    /**
+     * Inserts the new clusters and remembers their generated cid.
+     * @param oysterIDs the OysterIDs of the clusters to be inserted.
+     * @throws SQLException if the insert fails.
+     */
+    private void insertClusters(List<String> oysterIDs) throws SQLException {
+        if (oysterIDs.isEmpty()) {
+            return;
+        }
+
+        for (Iterator<String> it = oysterIDs.iterator(); it.hasNext();) {
+            ClusterRecord cr = pending.get(it.next()).cr;
+            
             // oysterID,creationDate,clusterType,size,persistant
             ipstmtCluster.setString(1, cr.getOysterID());
 
@@ -767,119 +1135,193 @@ public class DBEntityMap extends EntityMap {
             } else {
                 ipstmtCluster.setNull(2, Types.VARCHAR);
             }
-//            ipstmtCluster.setString(3, cr.getClusterType());
+            ipstmtCluster.setNull(3, Types.CHAR);
             ipstmtCluster.setInt(4, cr.getSize());
             if (cr.isPersistant()) {
                 ipstmtCluster.setString(5, "Y");
             } else {
                 ipstmtCluster.setString(5, "N");
             }
-            rc = ipstmtCluster.executeUpdate();
+            ipstmtCluster.addBatch();
+        }
 
-            inserts += rc;
-            iinserts+= rc;
-            insertCluster += rc;
-            iinsertCluster += rc;
+        int rc = count(ipstmtCluster.executeBatch());
+        inserts += rc;
+        iinserts += rc;
+        insertCluster += rc;
+        iinsertCluster += rc;
+
+        // then get the cid
+        int i = 0;
+        if (generatedKeys) {
+            try {
+                ResultSet rs = ipstmtCluster.getGeneratedKeys();
+                while (rs.next() && i < oysterIDs.size()) {
+                    cids.put(oysterIDs.get(i++), rs.getInt(1));
+                }
+                rs.close();
+            } catch (SQLException ex) {
+                generatedKeys = false;
+            }
+        }
+        
+        // the driver did not return the keys, so select them
+        for (; i < oysterIDs.size(); i++) {
+            cids.remove(oysterIDs.get(i));
+            getCid(oysterIDs.get(i));
+        }
+    }
+
+    /**
+     * Updates the size and persistant flag of the changed clusters.
+     * @param oysterIDs the OysterIDs of the clusters to be updated.
+     * @throws SQLException if the update fails.
+     */
+    private void updateClusters(List<String> oysterIDs) throws SQLException {
+        boolean batch = false;
+        
+        for (Iterator<String> it = oysterIDs.iterator(); it.hasNext();) {
+            String oysterID = it.next();
+            ClusterRecord cr = pending.get(oysterID).cr;
+            int cid = getCid(oysterID);
             
-            // then get the cid
-            int cid = -1;
-            spstmtCluster.setString(1, cr.getOysterID());
-            ResultSet rs = spstmtCluster.executeQuery();
-            if (rs.next()) {
-                cid = rs.getInt("cid");
+            if (cid == -1) {
+                // the cluster was never written
+                ArrayList<String> list = new ArrayList<String>(1);
+                list.add(oysterID);
+                insertClusters(list);
+            } else {
+                upstmtCluster.setInt(1, cr.getSize());
+                if (cr.isPersistant()) {
+                    upstmtCluster.setString(2, "Y");
+                } else {
+                    upstmtCluster.setString(2, "N");
+                }
+                upstmtCluster.setInt(3, cid);
+                upstmtCluster.addBatch();
+                batch = true;
             }
+        }
 
-            // then insert in to the Record table
+        if (batch) {
+            int rc = count(upstmtCluster.executeBatch());
+            updates += rc;
+            iupdates += rc;
+            updateCluster += rc;
+            iupdateCluster += rc;
+        }
+    }
+
+    /**
+     * Points the records of the written clusters to their cid. Records that
+     * are not in the Record table yet are inserted.
+     * @param oysterIDs the OysterIDs of the written clusters.
+     * @throws SQLException if the write fails.
+     */
+    private void writeRecords(List<String> oysterIDs) throws SQLException {
+        ArrayList<OysterIdentityRecord> records = new ArrayList<OysterIdentityRecord>();
+        ArrayList<Integer> recordCids = new ArrayList<Integer>();
+        
+        for (Iterator<String> it = oysterIDs.iterator(); it.hasNext();) {
+            String oysterID = it.next();
+            ClusterRecord cr = pending.get(oysterID).cr;
+            int cid = getCid(oysterID);
+            
             for (int i = 0; i < cr.getSize(); i++) {
                 OysterIdentityRecord oir = cr.getOysterIdentityRecord(i);
                 
-                // does the record already exist?
-                if (selectRecord(oir.get("@RefID")) != -1){
-                    upstmtRecord.setInt(1, cid);
-                    upstmtRecord.setString(2, oir.get("@RefID"));
-                    
-                    rc = upstmtRecord.executeUpdate();
-                    
-                    updates += rc;
-                    iupdates += rc;
-                    updateRecord += rc;
-                    iupdateRecord += rc;
-                }
-                else {
-                    // refID,cid,data
-                    ipstmtRecord.setString(1, oir.get("@RefID"));
-                    ipstmtRecord.setInt(2, cid);
-                    if (this.recordType == RecordTypes.MAP){
-                        Map m = (Map) oir.getData();
-                        ipstmtRecord.setString(3, m.toString());
-                    }
-                    else ipstmtRecord.setString(3, (String) oir.getData());
-
-                    rc = ipstmtRecord.executeUpdate();
-
-                    inserts += rc;
-                    iinserts += rc;
-                    insertRecord += rc;
-                    iinsertRecord += rc;
-                }
+                upstmtRecord.setInt(1, cid);
+                upstmtRecord.setString(2, oir.get("@RefID"));
+                upstmtRecord.addBatch();
+                records.add(oir);
+                recordCids.add(cid);
             }
-        } catch (Exception ex) {
-            Logger.getLogger(DBEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
         }
-    }
+        
+        if (records.isEmpty()) {
+            return;
+        }
 
-    private void update(ClusterRecord cr) {
-        int rc;
-        try {
-            // get the cid
-            int cid = -1;
-            spstmtCluster.setString(1, cr.getOysterID());
-            ResultSet rs = spstmtCluster.executeQuery();
-            if (rs.next()) {
-                cid = rs.getInt("cid");
-                selectCluster++;
-                iselectCluster++;
+        int [] counts = upstmtRecord.executeBatch();
+        int rc = count(counts);
+        updates += rc;
+        iupdates += rc;
+        updateRecord += rc;
+        iupdateRecord += rc;
+
+        // insert the records that were not updated
+        boolean batch = false;
+        for (int i = 0; i < records.size(); i++) {
+            OysterIdentityRecord oir = records.get(i);
+            
+            if (counts[i] == 0 || (counts[i] == Statement.SUCCESS_NO_INFO && selectRecord(oir.get("@RefID")) == -1)) {
+                // refID,cid,data
+                ipstmtRecord.setString(1, oir.get("@RefID"));
+                ipstmtRecord.setInt(2, recordCids.get(i));
+                if (this.recordType == RecordTypes.MAP){
+                    Map m = (Map) oir.getData();
+                    ipstmtRecord.setString(3, m.toString());
+                }
+                else ipstmtRecord.setString(3, (String) oir.getData());
+                ipstmtRecord.addBatch();
+                batch = true;
             }
+        }
 
-            // then update in to the Record table
-            upstmtCluster.setString(1, cr.getOysterID());
-            upstmtCluster.setInt(2, cid);
-
-            rc = upstmtCluster.executeUpdate();
-            
-            updateCluster++;
-            iupdateCluster++;
-        } catch (Exception ex) {
-            Logger.getLogger(DBEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        if (batch) {
+            rc = count(ipstmtRecord.executeBatch());
+            inserts += rc;
+            iinserts += rc;
+            insertRecord += rc;
+            iinsertRecord += rc;
         }
     }
 
-    private void updateRecords(ClusterRecord cr) {
-        try {
-            // get the cid
-            int cid = -1;
-            spstmtCluster.setString(1, cr.getOysterID());
+    /**
+     * Returns the cid of a cluster, selecting it if it is not known.
+     * @param oysterID the OysterID of the cluster.
+     * @return the cid, -1 if the cluster is not in the Cluster table.
+     * @throws SQLException if the select fails.
+     */
+    private int getCid(String oysterID) throws SQLException {
+        Integer cid = cids.get(oysterID);
+        
+        if (cid == null) {
+            cid = -1;
+            spstmtCluster.setString(1, oysterID);
             ResultSet rs = spstmtCluster.executeQuery();
             if (rs.next()) {
                 cid = rs.getInt("cid");
+                cids.put(oysterID, cid);
                 selectCluster++;
                 iselectCluster++;
             }
+            rs.close();
+        }
+        return cid;
+    }
 
-            // then update in to the Record table
-            for (int i = 0; i < cr.getSize(); i++) {
-                OysterIdentityRecord oir = cr.getOysterIdentityRecord(i);
-                upstmtRecord.setInt(1, cid);
-                upstmtRecord.setString(2, oir.get("@RefID"));
-
-                upstmtRecord.executeUpdate();
-                
-                updateRecord++;
-                iupdateRecord++;
+    /**
+     * Returns the number of rows changed by a batch and counts the batch.
+     * @param counts the update counts of the batch.
+     * @return the number of rows changed, each statement that does not report
+     * its count is counted as one row.
+     */
+    private int count(int [] counts) {
+        int result = 0;
+        
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                result += counts[i];
+            } else if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                result++;
             }
-        } catch (Exception ex) {
-            Logger.getLogger(DBEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
         }
+        batches++;
+        ibatches++;
+        rows += result;
+        irows += result;
+        return result;
     }
 
     private ClusterRecord selectCluster(String oysterID) {
@@ -895,6 +1337,7 @@ public class DBEntityMap extends EntityMap {
                 cr.setOysterID(oysterID);
                 
                 cid = Integer.parseInt(rs.getString("cid"));
+                cids.put(oysterID, cid);
 
 //                cr.setClusterType(rs.getString("clusterType"));
                 size = Integer.parseInt(rs.getString("size"));
@@ -913,8 +1356,8 @@ public class DBEntityMap extends EntityMap {
 
                 select++;
                 iselect++;
-                spstmtRecord.setInt(1, cid);
-                rs = spstmtRecord.executeQuery();
+                scpstmtRecord.setInt(1, cid);
+                rs = scpstmtRecord.executeQuery();
                 while (rs.next()) {
                     OysterIdentityRecord oir;
                     
@@ -922,6 +1365,9 @@ public class DBEntityMap extends EntityMap {
                         case RecordTypes.CODOSA:
                             oir = new CoDoSAOIR();
                             break;
+                        case RecordTypes.INDEXED_CODOSA:
+                            oir = new IndexedCoDoSAOIR();
+                            break;
                         case RecordTypes.MAP:
                             oir = new OysterIdentityRecordMap();
                             break;
@@ -969,37 +1415,11 @@ public class DBEntityMap extends EntityMap {
         return cid;
     }
     
-    private void delete(String oysterID) {
-        int rc;
-        try {
-            // get the cid
-            int cid = -1;
-            spstmtCluster.setString(1, oysterID);
-            ResultSet rs = spstmtCluster.executeQuery();
-            if (rs.next()) {
-                cid = rs.getInt("cid");
-                selectCluster++;
-                iselectCluster++;
-            }
-            
-            dpstmtCluster.setString(1, oysterID);
-            rc = dpstmtCluster.executeUpdate();
-            deleteCluster += rc;
-            ideleteCluster += rc;
-            
-            dpstmtRecord.setString(1, oysterID);
-            rc = dpstmtRecord.executeUpdate();
-            deleteRecord += rc;
-            ideleteRecord += rc;
-        } catch (Exception ex) {
-            Logger.getLogger(DBEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
-        }
-    }
-    
     //==========================================================================
     //  ... Repository Methods
     //==========================================================================
     public void outputDB(PrintWriter out, String date){
+        flush();
         int count = 0, groups = 0;
         String sql = "SELECT c.cid, c.oysterID, c.creationDate, c.clusterType, c.size, c.persistant, r.data, r.refID " +
                      "FROM Cluster c INNER JOIN Record r ON r.cid = c.cid " +
@@ -1039,6 +1459,9 @@ public class DBEntityMap extends EntityMap {
                     case RecordTypes.CODOSA:
                         oir = new CoDoSAOIR();
                         break;
+                    case RecordTypes.INDEXED_CODOSA:
+                        oir = new IndexedCoDoSAOIR();
+                        break;
                     case RecordTypes.MAP:
                         oir = new OysterIdentityRecordMap();
                         break;
@@ -1066,6 +1489,7 @@ public class DBEntityMap extends EntityMap {
     }
     
     public int getCounts(String clusterType){
+        flush();
         int count = 0;
         String sql = "SELECT count(*) " +
                      "FROM Cluster c  " +
@@ -1083,4 +1507,76 @@ public class DBEntityMap extends EntityMap {
         }
         return count;
     }
+
+    /**
+     * Evicts a cluster from memory. Its queued changes are written first.
+     * @param oysterID the OysterID of the cluster.
+     */
+    private void evict(String oysterID) {
+        if (pending.containsKey(oysterID)) {
+            flush();
+        }
+        evictions++;
+        ievictions++;
+    }
+
+    /**
+     * The clusters kept in memory in least recently used order.
+     */
+    private class ClusterCache extends LinkedHashMap<String, ClusterRecord> {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new instance of <code>ClusterCache</code>.
+         */
+        private ClusterCache() {
+            super(16, 0.75f, true);
+        }
+
+        /**
+         * Evicts the least recently used clusters that are not pinned until
+         * the cache is within its size. The clusters are removed here, so
+         * false is always returned.
+         * @param eldest the least recently used cluster.
+         * @return false.
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ClusterRecord> eldest) {
+            if (cacheSize > 0 && size() > cacheSize) {
+                for (Iterator<String> it = keySet().iterator(); it.hasNext() && size() > cacheSize;) {
+                    String oysterID = it.next();
+                    
+                    if (!pins.containsKey(oysterID)) {
+                        evict(oysterID);
+                        it.remove();
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A queued change to a cluster.
+     */
+    private static class Change {
+        /** INSERT, UPDATE or DELETE */
+        private int type;
+        
+        /** The cluster to be written, null for a delete */
+        private ClusterRecord cr;
+        
+        /** true if the rows of the cluster are deleted before it is written */
+        private boolean purge = false;
+        
+        /**
+         * Creates a new instance of <code>Change</code>.
+         * @param type INSERT, UPDATE or DELETE.
+         * @param cr the cluster to be written, null for a delete.
+         */
+        private Change(int type, ClusterRecord cr) {
+            this.type = type;
+            this.cr = cr;
+        }
+    }
 }
@@ -201,6 +201,31 @@ public class EntityMap {
     public void close(){
     }
 
+    /**
+     * Keeps a cluster in memory until it is unpinned. Pins are counted, so a
+     * cluster pinned twice has to be unpinned twice. This map holds every
+     * cluster in memory, so there is nothing to do.
+     * @param oysterID the OysterID of the cluster.
+     */
+    public void pin(String oysterID) {
+    }
+
+    /**
+     * Releases a pin of a cluster.
+     * @param oysterID the OysterID of the cluster.
+     */
+    public void unpin(String oysterID) {
+    }
+
+    /**
+     * Returns the number of clusters dropped from memory to keep the map
+     * within its bounds.
+     * @return the number of evictions, always 0 for this map.
+     */
+    public long getEvictions() {
+        return 0;
+    }
+
     public List<String> getKeys(String[] entities) {
         return Arrays.asList(data.keySet().toArray(entities));
     }
@@ -0,0 +1,957 @@
+/*
+ * Copyright 2012 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.kb;
+
+import edu.ualr.oyster.ErrorFormatter;
+import edu.ualr.oyster.data.ClusterRecord;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An <code>EntityMap</code> kept on disk in an append-only log, for runs whose
+ * clusters do not fit in memory and where a database server is not available.
+ *
+ * Every change to a cluster is appended to the end of the log as an entry
+ * holding the serialized <code>ClusterRecord</code>, and removing a cluster
+ * appends a delete entry. The log is split into segment files of a fixed size;
+ * only the last segment is written, the others are sealed and read through a
+ * memory map. The position of the latest entry of every cluster is kept in an
+ * in-memory index by OysterID, so a cluster is read with a single lookup, and
+ * the most recently used clusters are kept in memory as well.
+ *
+ * Entries that have been replaced or deleted are garbage. A background thread
+ * rewrites the live entries of sealed segments that are mostly garbage to the
+ * end of the log and deletes the segment files. Each entry carries a CRC so
+ * the index can be rebuilt by replaying the segments when the map is opened
+ * again, stopping at an entry torn by a crash.
+ *
+ * An entry is laid out as the entry length, the CRC of the rest of the entry,
+ * the operation, the OysterID and, for a put, the serialized cluster.
+ * @author Eric D. Nelson
+ */
+public class LogEntityMap extends EntityMap {
+    /** The default size of a segment file in bytes */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    /** The default number of clusters kept in memory */
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+    /** The default share of garbage that makes a segment worth compacting */
+    public static final double DEFAULT_COMPACT_RATIO = 0.5;
+    /** An entry that puts a cluster */
+    private static final byte PUT = 1;
+    /** An entry that deletes a cluster */
+    private static final byte DELETE = 2;
+    /** The length and CRC in front of every entry */
+    private static final int HEADER = 8;
+    /** The size of the buffer the active segment is written through */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** How long the compaction thread waits between checks in milliseconds */
+    private static final long COMPACT_INTERVAL = 1000;
+
+    /** The directory that holds the segment files */
+    private File directory = null;
+    /** The size a segment file is sealed at */
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    /** The number of clusters kept in memory, 0 or less keeps every cluster */
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    /** The share of garbage that makes a sealed segment worth compacting */
+    private double compactRatio = DEFAULT_COMPACT_RATIO;
+    /** The position of the latest entry of every cluster by OysterID */
+    private HashMap<String, Location> index = new HashMap<String, Location>();
+    /** The most recently used clusters */
+    private ClusterCache cache = new ClusterCache();
+    /** The pin count of the clusters that can not be evicted */
+    private HashMap<String, Integer> pins = new HashMap<String, Integer>();
+    /** The segments by number */
+    private TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+    /** The segment being written */
+    private Segment active = null;
+    /** The entries not yet written to the active segment */
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    /** The thread that compacts the sealed segments */
+    private Thread compactor = null;
+    /** true once the map has been closed */
+    private volatile boolean closed = false;
+
+    private long hit = 0, miss = 0, evictions = 0, appends = 0, appendBytes = 0, compactions = 0, copied = 0, reclaimed = 0;
+
+    /**
+     * Creates a new instance of <code>LogEntityMap</code>. The map has to be
+     * opened before it is used.
+     * @param directory the directory that holds the segment files.
+     * @param recordType the type of the <code>ClusterRecord</code>s.
+     */
+    public LogEntityMap(String directory, int recordType) {
+        super(recordType);
+        this.directory = new File(directory == null ? "." : directory);
+        this.data = new ClusterView();
+    }
+
+    /**
+     * Returns the size a segment file is sealed at.
+     * @return the segment size in bytes.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Sets the size a segment file is sealed at. This must be set before the
+     * map is opened.
+     * @param segmentSize the segment size in bytes.
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = Math.max(segmentSize, BUFFER_SIZE);
+    }
+
+    /**
+     * Returns the number of clusters kept in memory.
+     * @return the cache size, 0 or less if every cluster is kept.
+     */
+    public synchronized int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Sets the number of clusters kept in memory.
+     * @param cacheSize the cache size, 0 or less to keep every cluster.
+     */
+    public synchronized void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Returns the share of garbage that makes a sealed segment worth
+     * compacting.
+     * @return the compaction ratio.
+     */
+    public synchronized double getCompactRatio() {
+        return compactRatio;
+    }
+
+    /**
+     * Sets the share of garbage that makes a sealed segment worth compacting.
+     * @param compactRatio the compaction ratio, between 0 and 1.
+     */
+    public synchronized void setCompactRatio(double compactRatio) {
+        this.compactRatio = compactRatio;
+    }
+
+    /**
+     * Opens the segment files and starts the compaction thread. If the
+     * previous map is kept the index is rebuilt from its segments, otherwise
+     * the segments are deleted.
+     * @param keepPrevious true if the clusters of the previous run are kept.
+     * @return true if the map was opened, otherwise false.
+     */
+    public synchronized boolean open(boolean keepPrevious) {
+        boolean flag = false;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Can not create directory " + directory.getAbsolutePath());
+            }
+
+            File [] files = directory.listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.matches("segment-\\d{8}\\.log");
+                }
+            });
+            Arrays.sort(files);
+
+            int next = 0;
+            for (int i = 0; i < files.length; i++) {
+                int id = Integer.parseInt(files[i].getName().substring(8, 16));
+
+                if (keepPrevious) {
+                    Segment segment = new Segment(id, files[i]);
+                    segments.put(id, segment);
+                    replay(segment);
+                    if (segment.size > 0) {
+                        seal(segment);
+                    } else {
+                        segments.remove(id);
+                        segment.close();
+                        files[i].delete();
+                    }
+                } else if (!files[i].delete()) {
+                    throw new IOException("Can not delete " + files[i].getAbsolutePath());
+                }
+                next = id + 1;
+            }
+
+            active = new Segment(next, segmentFile(next));
+            segments.put(next, active);
+
+            compactor = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    compact();
+                }
+            }, "LogEntityMap-Compactor");
+            compactor.setDaemon(true);
+            compactor.start();
+
+            flag = true;
+        } catch (IOException ex) {
+            Logger.getLogger(LogEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+        return flag;
+    }
+
+    /**
+     * Keeps a cluster in memory until it is unpinned. Pins are counted, so a
+     * cluster pinned twice has to be unpinned twice.
+     * @param oysterID the OysterID of the cluster.
+     */
+    @Override
+    public synchronized void pin(String oysterID) {
+        Integer count = pins.get(oysterID);
+        pins.put(oysterID, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Releases a pin of a cluster.
+     * @param oysterID the OysterID of the cluster.
+     */
+    @Override
+    public synchronized void unpin(String oysterID) {
+        Integer count = pins.get(oysterID);
+
+        if (count != null) {
+            if (count > 1) {
+                pins.put(oysterID, count - 1);
+            } else {
+                pins.remove(oysterID);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of clusters dropped from memory.
+     * @return the number of evictions.
+     */
+    @Override
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Drops every cluster from memory. The clusters stay in the log.
+     */
+    @Override
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Writes the buffered entries, stops the compaction thread and closes the
+     * segment files. The compaction thread is woken rather than interrupted,
+     * since an interrupt during FileChannel I/O closes the channel, and it
+     * stops after the entry it is copying.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        if (compactor != null) {
+            try {
+                compactor.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            try {
+                if (active != null) {
+                    flushBuffer();
+                }
+                for (Iterator<Segment> it = segments.values().iterator(); it.hasNext();) {
+                    it.next().close();
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(LogEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            }
+
+            long total = hit + miss;
+            long size = 0;
+            for (Iterator<Segment> it = segments.values().iterator(); it.hasNext();) {
+                size += it.next().size;
+            }
+
+            System.out.format("Total Cluster Requests : %1$,12d%n", total);
+            System.out.format("Cache Hits             : %1$,12d  %2$,8.5f%n", hit, (float) hit / (float) total * 100);
+            System.out.format("Cache Misses           : %1$,12d  %2$,8.5f%n", miss, (float) miss / (float) total * 100);
+            System.out.format("Cache Evictions        : %1$,12d%n", evictions);
+            System.out.format("Log Appends            : %1$,12d  %2$,12d bytes%n", appends, appendBytes);
+            System.out.format("Log Segments           : %1$,12d  %2$,12d bytes%n", segments.size(), size);
+            System.out.format("Compactions            : %1$,12d%n", compactions);
+            System.out.format("   Entries Copied      : %1$,12d%n", copied);
+            System.out.format("   Bytes Reclaimed     : %1$,12d%n", reclaimed);
+            System.out.println();
+        }
+    }
+
+    /**
+     * Returns the cluster of an OysterID, from memory if it is there otherwise
+     * from the log.
+     * @param oysterID the OysterID.
+     * @return the cluster, null if the OysterID is not in the map.
+     */
+    private synchronized ClusterRecord read(String oysterID) {
+        ClusterRecord cr = cache.get(oysterID);
+
+        if (cr != null) {
+            hit++;
+        } else {
+            miss++;
+            Location location = index.get(oysterID);
+
+            if (location != null) {
+                try {
+                    cr = deserialize(readEntry(location));
+                    cache.put(oysterID, cr);
+                } catch (IOException ex) {
+                    Logger.getLogger(LogEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+                } catch (ClassNotFoundException ex) {
+                    Logger.getLogger(LogEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+                }
+            }
+        }
+        return cr;
+    }
+
+    /**
+     * Appends a cluster to the log and keeps it in memory.
+     * @param oysterID the OysterID.
+     * @param cr the cluster.
+     */
+    private synchronized void write(String oysterID, ClusterRecord cr) {
+        try {
+            Location location = append(entry(PUT, oysterID, serialize(cr)));
+            segments.get(location.segment).live += location.length;
+            release(index.put(oysterID, location));
+            cache.put(oysterID, cr);
+        } catch (IOException ex) {
+            Logger.getLogger(LogEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+        }
+    }
+
+    /**
+     * Appends a delete entry for a cluster to the log.
+     * @param oysterID the OysterID.
+     */
+    private synchronized void delete(String oysterID) {
+        cache.remove(oysterID);
+        if (index.containsKey(oysterID)) {
+            try {
+                append(entry(DELETE, oysterID, null));
+                release(index.remove(oysterID));
+            } catch (IOException ex) {
+                Logger.getLogger(LogEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            }
+        }
+    }
+
+    /**
+     * Marks the entry at a location as garbage.
+     * @param location the location, may be null.
+     */
+    private void release(Location location) {
+        if (location != null) {
+            Segment segment = segments.get(location.segment);
+            if (segment != null) {
+                segment.live -= location.length;
+            }
+        }
+    }
+
+    /**
+     * Builds a log entry.
+     * @param op PUT or DELETE.
+     * @param oysterID the OysterID.
+     * @param payload the serialized cluster, null for a delete.
+     * @return the entry.
+     * @throws IOException
+     */
+    private byte [] entry(byte op, String oysterID, byte [] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER + 64 + (payload == null ? 0 : payload.length));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeByte(op);
+        out.writeUTF(oysterID);
+        if (payload != null) {
+            out.write(payload);
+        }
+        out.flush();
+
+        byte [] entry = bytes.toByteArray();
+        ByteBuffer header = ByteBuffer.wrap(entry);
+        header.putInt(0, entry.length);
+        header.putInt(4, crc(entry, 0, entry.length));
+        return entry;
+    }
+
+    /**
+     * Returns the CRC of an entry, without its length and CRC.
+     * @param entry the buffer that holds the entry.
+     * @param offset the offset of the entry in the buffer.
+     * @param length the length of the entry.
+     * @return the CRC.
+     */
+    private static int crc(byte [] entry, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(entry, offset + HEADER, length - HEADER);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends an entry to the active segment, sealing it first if the entry
+     * does not fit.
+     * @param entry the entry.
+     * @return the location of the entry.
+     * @throws IOException
+     */
+    private Location append(byte [] entry) throws IOException {
+        if (active.size > 0 && active.size + entry.length > segmentSize) {
+            roll();
+        }
+
+        if (buffer.remaining() < entry.length) {
+            flushBuffer();
+        }
+
+        if (entry.length > buffer.capacity()) {
+            ByteBuffer b = ByteBuffer.wrap(entry);
+            while (b.hasRemaining()) {
+                active.written += active.channel.write(b, active.written);
+            }
+        } else {
+            buffer.put(entry);
+        }
+
+        Location location = new Location(active.id, active.size, entry.length);
+        active.size += entry.length;
+        appends++;
+        appendBytes += entry.length;
+        return location;
+    }
+
+    /**
+     * Writes the buffered entries to the active segment. If a write fails the
+     * entries not yet written are kept in the buffer.
+     * @throws IOException
+     */
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                active.written += active.channel.write(buffer, active.written);
+            }
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    /**
+     * Seals the active segment and starts a new one.
+     * @throws IOException
+     */
+    private void roll() throws IOException {
+        flushBuffer();
+        seal(active);
+
+        int next = active.id + 1;
+        active = new Segment(next, segmentFile(next));
+        segments.put(next, active);
+        notifyAll();
+    }
+
+    /**
+     * Maps a segment that is no longer written.
+     * @param segment the segment.
+     * @throws IOException
+     */
+    private void seal(Segment segment) throws IOException {
+        segment.map = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+    }
+
+    /**
+     * Reads the entry at a location and checks its CRC.
+     * @param location the location.
+     * @return the payload of the entry.
+     * @throws IOException if the entry can not be read or is damaged.
+     */
+    private byte [] readEntry(Location location) throws IOException {
+        Segment segment = segments.get(location.segment);
+        byte [] entry = new byte[location.length];
+
+        if (segment.map != null) {
+            ByteBuffer b = segment.map.duplicate();
+            b.position((int) location.offset);
+            b.get(entry);
+        } else {
+            if (location.offset + location.length > segment.written) {
+                flushBuffer();
+            }
+            ByteBuffer b = ByteBuffer.wrap(entry);
+            while (b.hasRemaining()) {
+                if (segment.channel.read(b, location.offset + b.position()) < 0) {
+                    throw new IOException("Unexpected end of " + segment.file.getName());
+                }
+            }
+        }
+
+        if (ByteBuffer.wrap(entry).getInt(4) != crc(entry, 0, entry.length)) {
+            throw new IOException("Damaged entry at " + location.offset + " in " + segment.file.getName());
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry, HEADER, entry.length - HEADER));
+        in.readByte();
+        in.readUTF();
+        byte [] payload = new byte[in.available()];
+        in.readFully(payload);
+        return payload;
+    }
+
+    /**
+     * Rebuilds the index from the entries of a segment. The segment is cut at
+     * the first entry that is torn or damaged.
+     * @param segment the segment.
+     * @throws IOException
+     */
+    private void replay(Segment segment) throws IOException {
+        long length = segment.channel.size();
+        ByteBuffer b = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        int pos = 0;
+
+        while (pos + HEADER < length) {
+            int len = b.getInt(pos);
+            if (len <= HEADER + 3 || pos + len > length) {
+                break;
+            }
+
+            byte [] entry = new byte[len];
+            b.position(pos);
+            b.get(entry);
+            if (b.getInt(pos + 4) != crc(entry, 0, len)) {
+                break;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry, HEADER, len - HEADER));
+            byte op = in.readByte();
+            String oysterID = in.readUTF();
+
+            if (op == PUT) {
+                segment.live += len;
+                release(index.put(oysterID, new Location(segment.id, pos, len)));
+            } else {
+                release(index.remove(oysterID));
+            }
+            pos += len;
+        }
+
+        if (pos < length) {
+            Logger.getLogger(LogEntityMap.class.getName()).log(Level.WARNING,
+                    "Truncating {0} at {1}, the entries after it are incomplete", new Object[]{segment.file.getName(), pos});
+            b = null;
+            segment.channel.truncate(pos);
+        }
+        segment.size = pos;
+        segment.written = pos;
+    }
+
+    /**
+     * Compacts sealed segments until the map is closed.
+     */
+    private void compact() {
+        while (!closed) {
+            Segment segment;
+            synchronized (this) {
+                segment = candidate();
+                if (segment == null) {
+                    try {
+                        wait(COMPACT_INTERVAL);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+
+            try {
+                compact(segment);
+            } catch (IOException ex) {
+                Logger.getLogger(LogEntityMap.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the sealed segment with the most garbage if its garbage reaches
+     * the compaction ratio.
+     * @return the segment, null if there is none.
+     */
+    private Segment candidate() {
+        Segment result = null;
+        long garbage = 0;
+
+        for (Iterator<Segment> it = segments.values().iterator(); it.hasNext();) {
+            Segment segment = it.next();
+            long g = segment.size - segment.live;
+
+            if (segment != active && segment.map != null && g > garbage && g >= compactRatio * segment.size) {
+                result = segment;
+                garbage = g;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies the live entries of a sealed segment to the end of the log and
+     * deletes the segment. A delete entry is copied as long as an older
+     * segment might still hold a put for the same cluster.
+     * @param segment the segment.
+     * @throws IOException
+     */
+    private void compact(Segment segment) throws IOException {
+        ByteBuffer b = segment.map.duplicate();
+        int pos = 0;
+
+        while (pos < segment.size && !closed) {
+            int len = b.getInt(pos);
+            byte [] entry = new byte[len];
+            b.position(pos);
+            b.get(entry);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry, HEADER, len - HEADER));
+            byte op = in.readByte();
+            String oysterID = in.readUTF();
+
+            synchronized (this) {
+                Location location = index.get(oysterID);
+                if (op == PUT) {
+                    if (location != null && location.segment == segment.id && location.offset == pos) {
+                        Location moved = append(entry);
+                        active.live += len;
+                        segment.live -= len;
+                        index.put(oysterID, moved);
+                        copied++;
+                    }
+                } else if (location == null && segments.firstKey() < segment.id) {
+                    append(entry);
+                    copied++;
+                }
+            }
+            pos += len;
+        }
+
+        synchronized (this) {
+            if (!closed) {
+                flushBuffer();
+                active.channel.force(false);
+                segments.remove(segment.id);
+                segment.close();
+                if (!segment.file.delete()) {
+                    throw new IOException("Can not delete " + segment.file.getAbsolutePath());
+                }
+                compactions++;
+                reclaimed += segment.size - segment.live;
+            }
+        }
+    }
+
+    /**
+     * Returns the file of a segment.
+     * @param id the segment number.
+     * @return the file.
+     */
+    private File segmentFile(int id) {
+        return new File(directory, String.format("segment-%08d.log", id));
+    }
+
+    /**
+     * Serializes a cluster.
+     * @param cr the cluster.
+     * @return the serialized cluster.
+     * @throws IOException
+     */
+    private static byte [] serialize(ClusterRecord cr) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(cr);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a cluster.
+     * @param payload the serialized cluster.
+     * @return the cluster.
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private static ClusterRecord deserialize(byte [] payload) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload));
+        try {
+            return (ClusterRecord) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The view of the log the <code>EntityMap</code> methods work on.
+     */
+    private class ClusterView extends AbstractMap<String, ClusterRecord> {
+        /**
+         * Returns the cluster of an OysterID.
+         * @param key the OysterID.
+         * @return the cluster, null if the OysterID is not in the map.
+         */
+        @Override
+        public ClusterRecord get(Object key) {
+            return read((String) key);
+        }
+
+        /**
+         * Appends a cluster to the log. The previous cluster is not read back,
+         * so null is always returned.
+         * @param key the OysterID.
+         * @param value the cluster.
+         * @return null.
+         */
+        @Override
+        public ClusterRecord put(String key, ClusterRecord value) {
+            write(key, value);
+            return null;
+        }
+
+        /**
+         * Appends a delete entry for a cluster to the log. The cluster is not
+         * read back, so null is always returned.
+         * @param key the OysterID.
+         * @return null.
+         */
+        @Override
+        public ClusterRecord remove(Object key) {
+            delete((String) key);
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            synchronized (LogEntityMap.this) {
+                return index.containsKey(key);
+            }
+        }
+
+        @Override
+        public int size() {
+            synchronized (LogEntityMap.this) {
+                return index.size();
+            }
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return Collections.unmodifiableSet(index.keySet());
+        }
+
+        /**
+         * Returns the clusters of the map, each read from the log as the
+         * iterator reaches it.
+         * @return the entries.
+         */
+        @Override
+        public Set<Map.Entry<String, ClusterRecord>> entrySet() {
+            return new AbstractSet<Map.Entry<String, ClusterRecord>>() {
+                @Override
+                public Iterator<Map.Entry<String, ClusterRecord>> iterator() {
+                    final Iterator<String> keys = index.keySet().iterator();
+                    return new Iterator<Map.Entry<String, ClusterRecord>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return keys.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, ClusterRecord> next() {
+                            String oysterID = keys.next();
+                            return new AbstractMap.SimpleImmutableEntry<String, ClusterRecord>(oysterID, read(oysterID));
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("Not supported.");
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ClusterView.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * The clusters kept in memory in least recently used order.
+     */
+    private class ClusterCache extends LinkedHashMap<String, ClusterRecord> {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new instance of <code>ClusterCache</code>.
+         */
+        private ClusterCache() {
+            super(16, 0.75f, true);
+        }
+
+        /**
+         * Drops the least recently used clusters that are not pinned until
+         * the cache is within its size. The clusters are already in the log,
+         * so nothing has to be written. The clusters are removed here, so
+         * false is always returned.
+         * @param eldest the least recently used cluster.
+         * @return false.
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ClusterRecord> eldest) {
+            if (cacheSize > 0 && size() > cacheSize) {
+                for (Iterator<String> it = keySet().iterator(); it.hasNext() && size() > cacheSize;) {
+                    if (!pins.containsKey(it.next())) {
+                        it.remove();
+                        evictions++;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The position of an entry in the log.
+     */
+    private static class Location {
+        /** The segment number */
+        private final int segment;
+
+        /** The offset of the entry in the segment */
+        private final long offset;
+
+        /** The length of the entry */
+        private final int length;
+
+        /**
+         * Creates a new instance of <code>Location</code>.
+         * @param segment the segment number.
+         * @param offset the offset of the entry in the segment.
+         * @param length the length of the entry.
+         */
+        private Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A segment file of the log.
+     */
+    private static class Segment {
+        /** The segment number */
+        private final int id;
+
+        /** The segment file */
+        private final File file;
+
+        /** The open segment file */
+        private final RandomAccessFile raf;
+
+        /** The channel of the segment file */
+        private final FileChannel channel;
+
+        /** The memory map of a sealed segment, null while it is written */
+        private MappedByteBuffer map = null;
+
+        /** The size of the segment including the buffered entries */
+        private long size = 0;
+
+        /** The number of bytes written to the file */
+        private long written = 0;
+
+        /** The number of bytes of the entries that are still current */
+        private long live = 0;
+
+        /**
+         * Creates a new instance of <code>Segment</code> and opens its file.
+         * @param id the segment number.
+         * @param file the segment file.
+         * @throws IOException
+         */
+        private Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+        }
+
+        /**
+         * Closes the segment file.
+         * @throws IOException
+         */
+        private void close() throws IOException {
+            map = null;
+            raf.close();
+        }
+    }
+}
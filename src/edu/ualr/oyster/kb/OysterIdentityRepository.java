@@ -29,8 +29,16 @@ import edu.ualr.oyster.data.ClusterRecordSet;
 import edu.ualr.oyster.data.OysterIdentityRecord;
 import edu.ualr.oyster.data.OysterIdentityRecordMap;
 import edu.ualr.oyster.index.Index;
+import edu.ualr.oyster.index.IndexDelta;
+import edu.ualr.oyster.index.IndexSnapshot;
+import edu.ualr.oyster.index.IntPostingList;
+import edu.ualr.oyster.index.InvertedIndex;
+import edu.ualr.oyster.io.BinaryIdentityParser;
 import edu.ualr.oyster.io.IdentityParser;
 import edu.ualr.oyster.io.OysterDatabaseWriter;
+import edu.ualr.oyster.io.OysterIdentityWriter;
+import edu.ualr.oyster.io.OysterXMLIdentityWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.sql.SQLException;
@@ -121,6 +129,9 @@ public class OysterIdentityRepository {
     /** Repository PrintWriter */
     private PrintWriter repositoryWriter = null;
     
+    /** The writer the repository is output through */
+    private OysterIdentityWriter identityWriter = null;
+    
     /** ValueIndex PrintWriter */
     private PrintWriter indexWriter = null;
     
@@ -179,6 +190,14 @@ public class OysterIdentityRepository {
     private TreeMap<Integer, Integer> candidateList = new TreeMap<Integer, Integer>();
     private TreeMap<Integer, Integer> filteredCandidateList = new TreeMap<Integer, Integer>();
     
+    /** The candidate RefID ordinals pulled from the valueIndex, one buffer per thread */
+    private final ThreadLocal<IntPostingList> candidateBuffer = new ThreadLocal<IntPostingList>() {
+        @Override
+        protected IntPostingList initialValue() {
+            return new IntPostingList(256);
+        }
+    };
+    
     private int newIdentities = 0;
     private int updatedIdentities = 0;
     private int mergedIdentities = 0;
@@ -190,6 +209,21 @@ public class OysterIdentityRepository {
     
     private boolean traceOn = false;
     
+    /** The number of threads used to build the value index on load */
+    private int loadThreads = 1;
+    
+    /** Load the value index from the snapshot of the repository being loaded */
+    private boolean indexSnapshotInput = false;
+    
+    /** The snapshot the value index was loaded from or is saved to */
+    private IndexSnapshot indexSnapshot = null;
+    
+    /** Save the value index with the repository being written */
+    private boolean indexSnapshotOutput = false;
+    
+    /** The fingerprint of the repository written */
+    private long fingerprint = 0;
+    
     // <editor-fold defaultstate="collapsed" desc=" UML Marker "> 
     // #[regen=yes,id=DCE.6BAA0170-1645-AE25-6DBB-57D2CB430AE2]
     // </editor-fold> 
@@ -418,6 +452,25 @@ public class OysterIdentityRepository {
      */
     public void setRepositoryWriter(PrintWriter repositoryWriter) {
         this.repositoryWriter = repositoryWriter;
+        this.identityWriter = repositoryWriter == null ? null : new OysterXMLIdentityWriter(repositoryWriter);
+    }
+
+    /**
+     * Returns the writer the repository is output through.
+     * @return the <code>OysterIdentityWriter</code>
+     */
+    public OysterIdentityWriter getIdentityWriter() {
+        return identityWriter;
+    }
+
+    /**
+     * Sets the writer the repository is output through, in place of the XML
+     * <code>PrintWriter</code>.
+     * @param identityWriter the <code>OysterIdentityWriter</code> to be set.
+     */
+    public void setIdentityWriter(OysterIdentityWriter identityWriter) {
+        this.identityWriter = identityWriter;
+        this.repositoryWriter = null;
     }
 
     /**
@@ -664,6 +717,62 @@ public class OysterIdentityRepository {
         this.traceOn = traceOn;
     }
 
+    /**
+     * Returns the number of threads used to build the value index when a
+     * repository is loaded.
+     * @return the load threads.
+     */
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    /**
+     * Sets the number of threads used to build the value index when a
+     * repository is loaded.
+     * @param loadThreads the load threads to be set.
+     */
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads;
+    }
+
+    /**
+     * Returns whether the value index is loaded from the snapshot of the
+     * repository being loaded.
+     * @return true if the index snapshot is used.
+     */
+    public boolean isIndexSnapshotInput() {
+        return indexSnapshotInput;
+    }
+
+    /**
+     * Sets whether the value index is loaded from the snapshot of the
+     * repository being loaded, when it matches, instead of being built.
+     * @param indexSnapshotInput the index snapshot input to be set.
+     */
+    public void setIndexSnapshotInput(boolean indexSnapshotInput) {
+        this.indexSnapshotInput = indexSnapshotInput;
+    }
+
+    /**
+     * Saves a snapshot of the value index with the repository being written.
+     * If the index was loaded from the snapshot of the same file only the
+     * postings written during the run are saved, to the delta log of the
+     * snapshot.
+     * @param location the repository being written.
+     */
+    public void setIndexSnapshotOutput(String location) {
+        if (!(valueIndex instanceof InvertedIndex)) {
+            return;
+        }
+        
+        indexSnapshotOutput = true;
+        if (indexSnapshot != null && indexSnapshot.isLoaded() && sameFile(indexSnapshot.getRepository(), location)) {
+            ((InvertedIndex) valueIndex).setDelta(new IndexDelta());
+        } else {
+            indexSnapshot = new IndexSnapshot(location);
+        }
+    }
+
     public int getNewIdentities() {
         return newIdentities;
     }
@@ -1029,13 +1138,14 @@ public class OysterIdentityRepository {
     public Map<String, ClusterRecord> getCandidateList(ClusterRecord clusterRecord, boolean sort, Map<Integer, ArrayList<String>> lcrd, int lcrdMinSize, boolean bypassFilter, boolean mergedList) {
         Map<String, ClusterRecord> result = new LinkedHashMap<String, ClusterRecord>();
         Map<String, ClusterRecord> candidates = new LinkedHashMap<String, ClusterRecord>();
-        OysterIdentityRecord oysterIdentityRecord = clusterRecord.getMergedRecord();
+        OysterIdentityRecord oysterIdentityRecord = clusterRecord.getMergedRecordView();
         int list, flist;
 
-        Set<String> s = valueIndex.getCandidateList(clusterRecord, lcrd);
+        IntPostingList s = candidateBuffer.get();
+        valueIndex.getCandidateList(clusterRecord, lcrd, s);
 
-        for (Iterator<String> it = s.iterator(); it.hasNext();) {
-            String refID = it.next();
+        for (int j = 0; j < s.size(); j++) {
+            String refID = valueIndex.getRefID(s.get(j));
             String oysterID = linkMap.get(refID);
             if (oysterID == null) {
                 oysterID = getRefIDLookup().get(refID);
@@ -1043,15 +1153,12 @@ public class OysterIdentityRepository {
             ClusterRecord cr = entityMap.getCluster(oysterID);
 
             if (cr != null) {
-                for (int i = 0; i < cr.getSize(); i++) {
-                    OysterIdentityRecord oir = cr.getOysterIdentityRecord(i);
+                OysterIdentityRecord oir = cr.getOysterIdentityRecord(refID);
 
-                    if (oir.get("@RefID").equals(refID)) {
-                        ClusterRecord c = new ClusterRecordSet(cr.getRecordType());
-                        c.insertRecord(oir);
-                        candidates.put(refID, c);
-                        break;
-                    }
+                if (oir != null) {
+                    ClusterRecord c = new ClusterRecordSet(cr.getRecordType());
+                    c.insertRecord(oir);
+                    candidates.put(refID, c);
                 }
             } else {
 //                    System.out.println("Null CR for refID: " + refID + " oysterID: " + oysterID);
@@ -1109,18 +1216,22 @@ public class OysterIdentityRepository {
          }
          */
         int value = 0;
-        if (filteredCandidateList.containsKey(flist)) {
-            value = filteredCandidateList.get(flist);
+        synchronized (filteredCandidateList) {
+            if (filteredCandidateList.containsKey(flist)) {
+                value = filteredCandidateList.get(flist);
+            }
+            value++;
+            filteredCandidateList.put(flist, value);
         }
-        value++;
-        filteredCandidateList.put(flist, value);
 
         value = 0;
-        if (candidateList.containsKey(list)) {
-            value = candidateList.get(list);
+        synchronized (candidateList) {
+            if (candidateList.containsKey(list)) {
+                value = candidateList.get(list);
+            }
+            value++;
+            candidateList.put(list, value);
         }
-        value++;
-        candidateList.put(list, value);
 
         return result;
     }
@@ -1151,10 +1262,10 @@ public class OysterIdentityRepository {
     public Map<String, ClusterRecord> getAssertionList(ClusterRecord clusterRecord, String assertionType) {
         Map<String, ClusterRecord> result = new LinkedHashMap<String, ClusterRecord>();
         
-        LinkedHashSet<String> s = assertMap.get(clusterRecord.getMergedRecord().get(assertionType));
+        LinkedHashSet<String> s = assertMap.get(clusterRecord.getMergedRecordView().get(assertionType));
 /*
         if (s == null)
-            s = assertMap.get(clusterRecord.getMergedRecord().get("@AbsAssert"));
+            s = assertMap.get(clusterRecord.getMergedRecordView().get("@AbsAssert"));
 */
         if (s != null){
             for (Iterator<String> it = s.iterator(); it.hasNext();){
@@ -1220,7 +1331,7 @@ public class OysterIdentityRepository {
             linkDatabaseWriter.loadLink(linkMap, ruleMap);
         }
         
-        if(repositoryWriter != null) {
+        if(identityWriter != null) {
             outputRepository(false);
         } else if (identityDatabaseWriter != null) {
             ;
@@ -1248,8 +1359,16 @@ public class OysterIdentityRepository {
             linkMapWriter.close();
         }
         
-        if(repositoryWriter != null) {
-            repositoryWriter.close();
+        if(identityWriter != null) {
+            try {
+                identityWriter.close();
+                
+                if (indexSnapshotOutput) {
+                    outputIndexSnapshot();
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(OysterIdentityRepository.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            }
         }
         
         if(indexWriter != null) {
@@ -1283,6 +1402,17 @@ public class OysterIdentityRepository {
      * @param keepPreviousDBTable true to keep the previously loaded DB tables.
      */
     public void load(String file, boolean keepPreviousDBTable, boolean trace){
+        load(file, keepPreviousDBTable, trace, false);
+    }
+    
+    /**
+     * This method loads a previously run identity repository into memory.
+     * @param file the identity repository to be loaded.
+     * @param keepPreviousDBTable true to keep the previously loaded DB tables.
+     * @param binary true if the repository was written by the
+     * <code>OysterBinaryIdentityWriter</code>, false for the XML form.
+     */
+    public void load(String file, boolean keepPreviousDBTable, boolean trace, boolean binary){
         System.out.println();
         
         StringBuilder sb = new StringBuilder(100);
@@ -1290,8 +1420,19 @@ public class OysterIdentityRepository {
         System.out.println(sb.toString());
         logger.severe(sb.toString());
         
-        IdentityParser iParser = new IdentityParser(identity.getRecordType());
+        IdentityParser iParser;
+        if (binary) {
+            iParser = new BinaryIdentityParser(identity.getRecordType());
+        } else {
+            iParser = new IdentityParser(identity.getRecordType());
+        }
         iParser.setTraceOn(trace);
+        iParser.setLoadThreads(loadThreads);
+        
+        if (indexSnapshotInput && valueIndex instanceof InvertedIndex) {
+            indexSnapshot = new IndexSnapshot(file);
+            iParser.setIndexSnapshot(indexSnapshot);
+        }
         
         if (keepPreviousDBTable && entityMap.getClass().getSimpleName().equalsIgnoreCase("DBEntityMap")) {
             iParser.setDontLoad(true);
@@ -1459,44 +1600,33 @@ public class OysterIdentityRepository {
     }
 
     /**
-     * This method writes out the Repository in XML format to a file. The file 
-     * name is contained in the RunScript.xml file (and in the <code>RunScript
-     * </code>Object).
+     * This method writes out the Repository through the identity writer, in 
+     * XML or binary format, to a file. The file name is contained in the 
+     * RunScript.xml file (and in the <code>RunScript</code>Object).
      */
     public synchronized void outputRepository(boolean skipCurrentMod) {
         Map<String, Integer> m = new LinkedHashMap<String, Integer>();
-        // TODO: Change String Operation to an XML Encoding Operation http://www.odi.ch/prog/design/newbies.php#6
-        repositoryWriter.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-        repositoryWriter.println("<root>");
+        
         // output metadata
-        repositoryWriter.println("\t<Metadata>");
-        repositoryWriter.println("\t\t<Modifications>");
-
+        List<ModificationRecord> modifications = new ArrayList<ModificationRecord>();
+        fingerprint = 0;
         if (!skipCurrentMod) {
-            for (Iterator<Entry<String, ModificationRecord>> it = mods.entrySet().iterator(); it.hasNext();) {
-                Entry<String, ModificationRecord> entry = it.next();
-                ModificationRecord mr = entry.getValue();
-                repositoryWriter.println("\t\t\t<Modification ID=\"" + mr.getId() + "\" OysterVersion=\"" + mr.getOysterVersion() + 
-                        "\" Date=\"" + mr.getDate() + "\" RunScript=\"" +  mr.getRunScriptName() +"\" />");
-            }
+            modifications.addAll(mods.values());
         }
-        repositoryWriter.println("\t\t\t<Modification ID=\"" + mid + "\" OysterVersion=\"" + oysterVersion + 
-                "\" Date=\"" + date + "\" RunScript=\"" + runScriptName + "\" />");
-        repositoryWriter.println("\t\t</Modifications>");
-
-        // output attributes
-        repositoryWriter.println("\t\t<Attributes>");
-        for (Iterator<Entry<String, String>> it = ClusterRecord.getMetadata().entrySet().iterator(); it.hasNext();) {
-            Entry<String, String> entry = it.next();
+        ModificationRecord current = new ModificationRecord();
+        current.setId(mid);
+        current.setOysterVersion(oysterVersion);
+        current.setDate(date);
+        current.setRunScriptName(runScriptName);
+        modifications.add(current);
 
-            if (!entry.getValue().startsWith("@") || entry.getValue().equals("@RefID") || entry.getValue().equals("@DupRefID")) {
-                repositoryWriter.println("\t\t\t<Attribute Name=\"" + entry.getValue() + "\" Tag=\"" + entry.getKey() + "\"/>");
-            }
+        try {
+            // output attributes
+            identityWriter.writeMetadata(modifications, OysterIdentityWriter.getRepositoryAttributes());
+        } catch (IOException ex) {
+            Logger.getLogger(OysterIdentityRepository.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+            return;
         }
-        repositoryWriter.println("\t\t</Attributes>");
-        repositoryWriter.println("\t</Metadata>");
-
-        repositoryWriter.println("\t<Identities>");
 
         String[] entities = new String[entityMap.getSize()];
         List<String> keys = entityMap.getKeys(entities);
@@ -1504,7 +1634,13 @@ public class OysterIdentityRepository {
         for (Iterator<String> it = keys.iterator(); it.hasNext();) {
             String key = it.next();
             ClusterRecord cr = entityMap.getCluster(key);
-            repositoryWriter.println(cr.convertToXML(date.substring(0, 10)));
+            try {
+                identityWriter.writeIdentity(cr, date.substring(0, 10));
+                fingerprint += IndexSnapshot.fingerprint(cr);
+            } catch (IOException ex) {
+                Logger.getLogger(OysterIdentityRepository.class.getName()).log(Level.SEVERE, ErrorFormatter.format(ex), ex);
+                return;
+            }
 
             // check to see if trace is set if not this doesn't matter
             if (this.traceOn) {
@@ -1546,9 +1682,38 @@ public class OysterIdentityRepository {
                 }
             }
         }
+    }
 
-        repositoryWriter.println("\t</Identities>");
-        repositoryWriter.println("</root>");
+    /**
+     * Saves the value index with the repository written, appending the
+     * postings written during the run to the delta log if the index was
+     * loaded from the snapshot of the same file.
+     * @throws IOException if the snapshot can not be written.
+     */
+    private void outputIndexSnapshot() throws IOException {
+        InvertedIndex index = (InvertedIndex) valueIndex;
+        
+        System.out.println("Saving Index Snapshot: " + indexSnapshot.getSnapshotFile());
+        if (index.getDelta() != null) {
+            indexSnapshot.append(index.getDelta(), index, fingerprint);
+            index.setDelta(null);
+        } else {
+            indexSnapshot.save(index, fingerprint);
+        }
+    }
+
+    /**
+     * Returns whether two paths name the same file.
+     * @param a the first path.
+     * @param b the second path.
+     * @return true if they name the same file.
+     */
+    private static boolean sameFile(String a, String b) {
+        try {
+            return new File(a).getCanonicalFile().equals(new File(b).getCanonicalFile());
+        } catch (IOException ex) {
+            return new File(a).getAbsoluteFile().equals(new File(b).getAbsoluteFile());
+        }
     }
 
     /**
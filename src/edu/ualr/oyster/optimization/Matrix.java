@@ -38,11 +38,21 @@ import java.util.Map;
  * matrix.  From this base matrix a rule matrix is cloned, one for each rule. 
  * For each mask a true value is set for the cell corresponding to the element 
  * and operations within that rule.
+ * 
+ * The cells are held as a bitset in row major order, so a working matrix 
+ * satisfies a rule mask when <code>(matrix &amp; mask) == mask</code> for each 
+ * word, see <code>containsAll</code>.
  * @author Eric D. Nelson
  */
 public class Matrix implements Cloneable{
-    /** The data matrix */
-    private boolean [][] matrix;
+    /** The data matrix, one bit per cell in row major order */
+    private long [] bits = new long[0];
+
+    /** The number of rows in the data matrix */
+    private int rowCount = 0;
+
+    /** The number of columns in the data matrix */
+    private int columnCount = 0;
 
     /** The matrix rows (attribute) */
     private Map<String, Integer> rows = new LinkedHashMap<String, Integer>();
@@ -62,16 +72,22 @@ public class Matrix implements Cloneable{
      * @param columns the number of columns in the matrix
      */
     public Matrix(int rows, int columns){
-        matrix = new boolean[rows][columns];
-        this.fill(false);
+        setSize(rows, columns);
     }
     
     /**
-     * Returns the data matrix for this <code>Matrix</code>.
+     * Returns a copy of the data matrix for this <code>Matrix</code>. Changes
+     * to the copy are not seen by the <code>Matrix</code>, use <code>set</code>.
      * @return the data matrix
      */
     public boolean[][] getMatrix() {
-        return matrix.clone();
+        boolean [][] m = new boolean[rowCount][columnCount];
+        for (int i = 0; i < rowCount; i++){
+            for (int j = 0; j < columnCount; j++){
+                m[i][j] = get(i, j);
+            }
+        }
+        return m;
     }
 
     /**
@@ -79,10 +95,63 @@ public class Matrix implements Cloneable{
      * @param matrix the matrix to be set
      */
     public void setMatrix(boolean[][] matrix) {
-        if (this.matrix == null) {
-            this.matrix = new boolean[matrix.length][matrix[0].length];
+        setSize(matrix.length, matrix.length > 0 ? matrix[0].length : 0);
+        for (int i = 0; i < rowCount; i++){
+            for (int j = 0; j < columnCount; j++){
+                set(i, j, matrix[i][j]);
+            }
         }
-        System.arraycopy(matrix, 0, this.matrix, 0, matrix.length);
+    }
+
+    /**
+     * Sizes the data matrix, all cells are false.
+     * @param rows the number of rows in the matrix
+     * @param columns the number of columns in the matrix
+     */
+    private void setSize(int rows, int columns) {
+        rowCount = rows;
+        columnCount = columns;
+        bits = new long[(rows * columns + 63) >>> 6];
+    }
+
+    /**
+     * Returns the value of a cell.
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @return the value of the cell
+     */
+    public boolean get(int row, int column) {
+        int i = row * columnCount + column;
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Sets the value of a cell.
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @param b the value to be set
+     */
+    public void set(int row, int column, boolean b) {
+        int i = row * columnCount + column;
+        if (b) {
+            bits[i >>> 6] |= 1L << i;
+        } else {
+            bits[i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    /**
+     * Returns whether every cell set in the mask is also set in this <code>
+     * Matrix</code>. Both have to be the same size.
+     * @param mask the rule mask
+     * @return true if the mask is satisfied, otherwise false
+     */
+    public boolean containsAll(Matrix mask) {
+        boolean flag = true;
+        for (int i = 0; i < bits.length && flag; i++) {
+            flag = (bits[i] & mask.bits[i]) == mask.bits[i];
+        }
+        return flag;
     }
 
     /**
@@ -122,8 +191,14 @@ public class Matrix implements Cloneable{
      * @param b the boolean value to set the matrix.
      */
     public final void fill(boolean b) {
-        for (int i = 0; i < rows.size(); i++){
-            Arrays.fill(matrix[i], b);
+        if (b) {
+            for (int i = 0; i < rowCount; i++){
+                for (int j = 0; j < columnCount; j++){
+                    set(i, j, true);
+                }
+            }
+        } else {
+            Arrays.fill(bits, 0L);
         }
     }
     
@@ -140,11 +215,9 @@ public class Matrix implements Cloneable{
         Matrix m = new Matrix();
         m.setColumns(this.columns);
         m.setRows(this.rows);
-        m.setMatrix(new boolean[this.rows.size()][this.columns.size()]);
-        
-        for (int i = 0; i < this.rows.size(); i++){
-            System.arraycopy(this.matrix[i], 0, m.matrix[i], 0, this.columns.size());
-        }
+        m.rowCount = this.rowCount;
+        m.columnCount = this.columnCount;
+        m.bits = this.bits.clone();
         return m;
     }
     
@@ -157,7 +230,7 @@ public class Matrix implements Cloneable{
     @Override
     public int hashCode() {
         int hash = 3;
-        hash = 53 * hash + (this.matrix != null ? java.util.Arrays.hashCode(this.matrix) : 0);
+        hash = 53 * hash + Arrays.hashCode(this.bits);
         hash = 53 * hash + (this.rows != null ? this.rows.hashCode() : 0);
         hash = 53 * hash + (this.columns != null ? this.columns.hashCode() : 0);
         return hash;
@@ -180,9 +253,6 @@ public class Matrix implements Cloneable{
         }
         
         final Matrix other = (Matrix) obj;
-        if (this == null && other != null) {
-            return false;
-        }
         
         if ((this.rows == null || !this.rows.equals(other.rows)) && this.rows != other.rows) {
             return false;
@@ -192,15 +262,7 @@ public class Matrix implements Cloneable{
             return false;
         }
         
-        for (int i = 0; i < rows.size(); i++) {
-            for (int j = 0; j < columns.size(); j++) {
-                if (this.matrix[i][j] != other.matrix[i][j]) {
-                    return false;
-                }
-            }
-        }
-        
-        return true;
+        return Arrays.equals(this.bits, other.bits);
     }
     
     /**
@@ -221,7 +283,7 @@ public class Matrix implements Cloneable{
         for (int i = 0; i < rs.length; i++){
             sb.append(rs[i]).append("\t");
             for (int j = 0; j < cols.length; j++){
-                sb.append(matrix[i][j]).append("\t");
+                sb.append(get(i, j)).append("\t");
             }
             sb.append(System.getProperty("line.separator"));
         }
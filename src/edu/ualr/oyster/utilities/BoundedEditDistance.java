@@ -0,0 +1,318 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.utilities;
+
+import java.util.Locale;
+
+/**
+ * This class computes the Levenshtein Edit Distance the same way as <code>
+ * OysterEditDistance</code>, ignoring case, but holds no state between calls.
+ *
+ * A LED(threshold) match only needs to know whether the normalized score
+ * reaches the threshold, which is the same as the distance being at most
+ * some k worked out from the threshold and the longer length. Only the cells
+ * within k of the diagonal are computed and the computation stops as soon as
+ * a whole row is over k, so a clear mismatch costs a few rows instead of the
+ * whole table.
+ *
+ * The rows and the upper-cased characters are held in buffers kept per thread
+ * and reused between calls, so nothing is allocated for ASCII strings.
+ * @author Eric D. Nelson
+ */
+public final class BoundedEditDistance {
+    /** The buffers of each thread */
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    /**
+     * Not instantiated, all methods are static.
+     */
+    private BoundedEditDistance() {
+    }
+
+    /**
+     * Returns the Levenshtein Distance between two strings, ignoring case. A
+     * null string is taken as empty.
+     * @param s source String.
+     * @param t target String.
+     * @return the number of edits to change String s to String t.
+     */
+    public static int distance(String s, String t) {
+        return distance(s, t, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the Levenshtein Distance between two strings, ignoring case, if
+     * it is at most <code>max</code>. A null string is taken as empty.
+     * @param s source String.
+     * @param t target String.
+     * @param max the largest distance of interest.
+     * @return the distance, or <code>max + 1</code> if the distance is more
+     * than <code>max</code>.
+     */
+    public static int distance(String s, String t, int max) {
+        Scratch scratch = SCRATCH.get();
+        int m = scratch.loadSource(s);
+        int n = scratch.loadTarget(t);
+        return distance(scratch, m, n, max);
+    }
+
+    /**
+     * Returns the normalized score, one less the ratio of the distance to the
+     * length of the longer string, as <code>OysterEditDistance.
+     * computeNormalizedScore</code> does.
+     * @param s source String.
+     * @param t target String.
+     * @return the normalized score, NaN if both strings are empty.
+     */
+    public static float normalizedScore(String s, String t) {
+        Scratch scratch = SCRATCH.get();
+        int m = scratch.loadSource(s);
+        int n = scratch.loadTarget(t);
+        int longer = Math.max(m, n);
+        return score(distance(scratch, m, n, longer), longer);
+    }
+
+    /**
+     * Returns whether the normalized score of two strings is at least the
+     * threshold, e.g. the LED(0.8) match. The same as <code>normalizedScore(s,
+     * t) &gt;= threshold</code>, but only the distances that can reach the
+     * threshold are computed.
+     * @param s source String.
+     * @param t target String.
+     * @param threshold the least normalized score that matches.
+     * @return true if the score reaches the threshold, otherwise false.
+     */
+    public static boolean matches(String s, String t, double threshold) {
+        Scratch scratch = SCRATCH.get();
+        int m = scratch.loadSource(s);
+        int n = scratch.loadTarget(t);
+        int longer = Math.max(m, n);
+        int max = maxDistance(longer, threshold);
+
+        if (max < 0) {
+            return false;
+        }
+        return distance(scratch, m, n, max) <= max;
+    }
+
+    /**
+     * Returns the largest distance whose normalized score still reaches the
+     * threshold. The score is computed in <code>float</code> exactly as <code>
+     * OysterEditDistance</code> does, so the match comes out the same.
+     * @param longer the length of the longer string.
+     * @param threshold the least normalized score that matches.
+     * @return the largest distance, -1 if no distance reaches the threshold.
+     */
+    static int maxDistance(int longer, double threshold) {
+        if (longer == 0) {
+            // 0/0, no score reaches any threshold
+            return -1;
+        }
+
+        int k = (int) Math.floor((1D - threshold) * longer);
+        k = Math.max(Math.min(k, longer), 0);
+
+        while (k < longer && score(k + 1, longer) >= threshold) {
+            k++;
+        }
+        while (k >= 0 && !(score(k, longer) >= threshold)) {
+            k--;
+        }
+        return k;
+    }
+
+    /**
+     * Returns the normalized score of a distance.
+     * @param distance the distance.
+     * @param longer the length of the longer string.
+     * @return the normalized score.
+     */
+    private static float score(int distance, int longer) {
+        float maxLen = longer;
+        return 1f - ((float) distance / maxLen);
+    }
+
+    /**
+     * Computes the distance between the strings held in the scratch buffers
+     * over the band of cells within <code>max</code> of the diagonal.
+     * @param scratch the buffers.
+     * @param m the length of the source.
+     * @param n the length of the target.
+     * @param max the largest distance of interest.
+     * @return the distance, or <code>max + 1</code> if it is more.
+     */
+    private static int distance(Scratch scratch, int m, int n, int max) {
+        char [] a = scratch.source, b = scratch.target;
+
+        // make the source the shorter string, the distance is symmetric
+        if (m > n) {
+            char [] c = a; a = b; b = c;
+            int l = m; m = n; n = l;
+        }
+
+        int k = Math.min(max, n);
+        if (n - m > k) {
+            return k + 1;
+        }
+        if (m == 0) {
+            return n;
+        }
+
+        int over = k + 1;
+        int [] prev = scratch.row(0, n + 1);
+        int [] curr = scratch.row(1, n + 1);
+
+        for (int j = 0; j <= n; j++) {
+            prev[j] = j <= k ? j : over;
+        }
+
+        for (int i = 1; i <= m; i++) {
+            int lo = Math.max(1, i - k);
+            int hi = Math.min(n, i + k);
+            char ca = a[i - 1];
+
+            curr[lo - 1] = lo == 1 && i <= k ? i : over;
+            int rowMin = curr[lo - 1];
+
+            for (int j = lo; j <= hi; j++) {
+                int v = prev[j - 1] + (ca == b[j - 1] ? 0 : 1);
+                int ins = prev[j] + 1;
+                int del = curr[j - 1] + 1;
+
+                if (ins < v) {
+                    v = ins;
+                }
+                if (del < v) {
+                    v = del;
+                }
+                if (v > over) {
+                    v = over;
+                }
+                curr[j] = v;
+
+                if (v < rowMin) {
+                    rowMin = v;
+                }
+            }
+
+            if (hi < n) {
+                curr[hi + 1] = over;
+            }
+            if (rowMin > k) {
+                return over;
+            }
+
+            int [] swap = prev; prev = curr; curr = swap;
+        }
+        return prev[n] <= k ? prev[n] : over;
+    }
+
+    /**
+     * The buffers of a thread.
+     */
+    private static class Scratch {
+        /** The upper-cased source */
+        private char [] source = new char[32];
+
+        /** The upper-cased target */
+        private char [] target = new char[32];
+
+        /** The two rows of the table */
+        private int [][] rows = {new int[33], new int[33]};
+
+        /** The length of the last string upper-cased */
+        private int length = 0;
+
+        /**
+         * Upper-cases the source into its buffer.
+         * @param s the source, null is taken as empty.
+         * @return the length of the upper-cased source.
+         */
+        private int loadSource(String s) {
+            source = upperCase(s, source);
+            return length;
+        }
+
+        /**
+         * Upper-cases the target into its buffer.
+         * @param t the target, null is taken as empty.
+         * @return the length of the upper-cased target.
+         */
+        private int loadTarget(String t) {
+            target = upperCase(t, target);
+            return length;
+        }
+
+        /**
+         * Upper-cases a string into a buffer. ASCII is upper-cased in place,
+         * any other string goes through <code>String.toUpperCase</code> since
+         * its length can change (e.g. the German sharp s).
+         * @param s the string.
+         * @param buffer the buffer.
+         * @return the buffer, grown if needed.
+         */
+        private char [] upperCase(String s, char [] buffer) {
+            if (s == null) {
+                length = 0;
+                return buffer;
+            }
+
+            int len = s.length();
+            if (buffer.length < len) {
+                buffer = new char[Math.max(len, buffer.length * 2)];
+            }
+
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    String upper = s.toUpperCase(Locale.US);
+                    len = upper.length();
+                    if (buffer.length < len) {
+                        buffer = new char[len];
+                    }
+                    upper.getChars(0, len, buffer, 0);
+                    break;
+                }
+                buffer[i] = c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+            }
+            length = len;
+            return buffer;
+        }
+
+        /**
+         * Returns a row of the table with room for <code>size</code> cells.
+         * @param index the row, 0 or 1.
+         * @param size the cells needed.
+         * @return the row.
+         */
+        private int [] row(int index, int size) {
+            if (rows[index].length < size) {
+                rows[index] = new int[Math.max(size, rows[index].length * 2)];
+            }
+            return rows[index];
+        }
+    }
+}
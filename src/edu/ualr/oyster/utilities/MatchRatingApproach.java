@@ -182,11 +182,20 @@ public class MatchRatingApproach {
      * false.
      */
     public boolean compareMatchRatingCodes(String s, String t){
+        return compareCodes(getMatchRatingApproachCode(s), getMatchRatingApproachCode(t));
+    }
+    
+    /**
+     * This method compares two Western Airlines Match Rating encodings, as
+     * returned by <code>getMatchRatingApproachCode</code>, the same way as
+     * <code>compareMatchRatingCodes</code> compares the Strings.
+     * @param sCode source encoding
+     * @param tCode target encoding
+     * @return true if the encodings are considered a match, otherwise false.
+     */
+    public boolean compareCodes(String sCode, String tCode){
         boolean match = false;
         
-        String sCode =  getMatchRatingApproachCode(s);
-        String tCode = getMatchRatingApproachCode(t);
-        
         if (sCode != null && tCode != null &&
                 Math.abs(sCode.length() - tCode.length()) < 3){
             int mRating = minimumRating(sCode, tCode);
@@ -28,6 +28,10 @@ import java.util.Locale;
  * of edits needed to transform one string into the other, with the allowable 
  * edit operations being insertion, deletion, or substitution of a single 
  * character.
+ *
+ * <code>computeDistance</code> keeps the last distance for <code>
+ * computeNormalizedScore()</code>, so an instance used that way belongs to one
+ * thread. <code>computeNormalizedScore(s, t)</code> returns the score directly.
  * @author Eric D. Nelson
  */
 
@@ -65,7 +69,7 @@ public class OysterEditDistance {
      * transpostions to change String s to String t
      */
     public int computeDistance(String s, String t) {
-        int result = 0, cost;
+        int result = 0;
         if (s == null && t != null){
             lengthOfLong = t.length();
             result = t.length();
@@ -77,33 +81,7 @@ public class OysterEditDistance {
             String tTemp = t.toUpperCase(Locale.US);
             
             lengthOfLong = Math.max(sTemp.length(), tTemp.length());
-            int m = sTemp.length()+1;
-            int n = tTemp.length()+1;
-            
-            // d is a table with m+1 rows and n+1 columns
-            int [][] d = new int[m][n];
-            
-            for (int i = 0; i < m; i++) {
-                d[i][0] = i;
-            }
-            for (int j = 0; j < n; j++) {
-                d[0][j] = j;
-            }
-            
-            for (int j = 1; j < n; j++){
-                for (int i = 1; i < m; i++) {
-                    if (sTemp.charAt(i-1) == tTemp.charAt(j-1)) {
-                        cost = 0;
-                    } else {
-                        cost = 1;
-                    }
-                    d[i][j] = Math.min(Math.min(d[i-1][j] + 1,     // insertion
-                                                d[i][j-1] + 1),    // deletion
-                                                d[i-1][j-1] + cost // substitution
-                              );
-                }
-            }
-            result = d[m-1][n-1];
+            result = BoundedEditDistance.distance(sTemp, tTemp);
         }
         distance = result;
         return result;
@@ -125,6 +103,35 @@ public class OysterEditDistance {
         return norm;
     }
     
+    /**
+     * Returns the normalized score of two strings, the same as <code>
+     * computeDistance</code> followed by <code>computeNormalizedScore()</code>,
+     * by value. No field is changed, so one instance can be used by several
+     * threads.
+     * @param s source String
+     * @param t target String
+     * @return float as the normalized distance of the two strings being compared
+     */
+    public float computeNormalizedScore (String s, String t) {
+        int result = 0, longer = 0;
+        if (s == null && t != null){
+            longer = t.length();
+            result = t.length();
+        } else if (s != null && t == null){
+            longer = s.length();
+            result = s.length();
+        } else if (s != null && t != null){
+            String sTemp = s.toUpperCase(Locale.US);
+            String tTemp = t.toUpperCase(Locale.US);
+            
+            longer = Math.max(sTemp.length(), tTemp.length());
+            result = BoundedEditDistance.distance(sTemp, tTemp);
+        }
+        
+        float maxLen = longer;
+        return 1f - ((float) result / maxLen);
+    }
+    
     /**
      * @param args the command line arguments
      */
@@ -28,9 +28,27 @@ import java.util.Locale;
  * 
  * For more information see http://www.gregholland.com/greg/academics.asp
  * ALAR Preceeding 2010
+ *
+ * Q is the sum of the lengths of the substrings of s1, counted at each
+ * position, that occur in s2 ignoring case. The substrings starting at a
+ * position that occur in s2 are exactly the prefixes of the longest one, so Q
+ * only needs the longest match at each position. These are found in one pass
+ * over s1 through a <code>SuffixAutomaton</code> of s2, instead of searching
+ * s2 for every substring. The buffers are kept per thread and reused.
  * @author Eric D. Nelson
  */
 public class QGramTetrahedralRatio {
+    /** Below this Q every partial sum is exact in a float */
+    private static final long EXACT_FLOAT_SUM = 1L << 24;
+
+    /** The buffers of each thread */
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
     /**
      * Creates a new instance of <code>QGramTetrahedralRatio</code>
      */
@@ -45,73 +63,175 @@ public class QGramTetrahedralRatio {
      */
     public float qTR(String s1, String s2){
         float result = -1;
-        int i = 0, j;
-        float Q = 0;
-        boolean quit = false;
         
         if (s1 != null && s2 != null && s1.length() > 0 && s2.length() > 0) {
-            while (i <= s1.length()){
-                j = i;
-                while (j < s1.length() +1){
-                    if ((s2.toLowerCase(Locale.US).indexOf(s1.toLowerCase(Locale.US).substring(i, j))) > -1 &&
-                         !s1.toLowerCase(Locale.US).substring(i, j).equals("")){
-//                        System.out.println(s1.toLowerCase(Locale.US).substring(i, j));
-                        Q += j - i;
-                    }
-/*                    
-                    else {
-                        j = s1.length() + 1;
-                        quit = true;
-                    }
-*/
-                    j++;
-                }
-                i++;
-            }
-            
-            if (!quit){
-                float n1 = s1.length();
-                float n2 = s2.length();
-                float Tn1 = (n1) * (n1 + 1) * (n1 + 2)/ 6f;
-                float Tn2 = (n2) * (n2 + 1) * (n2 + 2) / 6f;
-                result = (n1 * Q / Tn1 + n2 * Q / Tn2) / (n1 + n2);
-//                System.out.println(Q);
-            }
+            float Q = computeQ(s1, s2, 1, s1.length() + 1);
             
+            float n1 = s1.length();
+            float n2 = s2.length();
+            float Tn1 = (n1) * (n1 + 1) * (n1 + 2)/ 6f;
+            float Tn2 = (n2) * (n2 + 1) * (n2 + 2) / 6f;
+            result = (n1 * Q / Tn1 + n2 * Q / Tn2) / (n1 + n2);
         }
         return result;
     }
     
     public float qTRCyclic(String s1, String s2){
         float result = -1;
-        int i = 0, j;
-        float Q = 0;
         
         if (s1 != null && s2 != null && s1.length() > 0 && s2.length() > 0) {
-            s1 = s1 + s1;
-            s2 = s2 + s2;
-            while (i <= s1.length()/2){
-                j = i;
-                while (j < s1.length() +1){
-                    if ((s2.toLowerCase(Locale.US).indexOf(s1.toLowerCase(Locale.US).substring(i, j))) > -1 &&
-                         !s1.toLowerCase(Locale.US).substring(i, j).equals("")){
-//                        System.out.println(s1.toLowerCase(Locale.US).substring(i, j));
-                        Q += j - i;
-                    }
-                    j++;
-                }
-                i++;
-            }
-            float n1 = s1.length()-1;
-            float n2 = s2.length()-1;
+            // the substrings of s1 + s1 starting in the first copy, and at 
+            // the start of the second, matched against s2 + s2
+            float Q = computeQ(s1, s2, 2, s1.length() + 1);
+            
+            float n1 = s1.length() * 2 - 1;
+            float n2 = s2.length() * 2 - 1;
             float Tn1 = (n1) * (n1 + 1) * (n1 + 2)/ 6f;
             float Tn2 = (n2) * (n2 + 1) * (n2 + 2) / 6f;
             result = (n1 * Q / Tn1 + n2 * Q / Tn2) / (n1 + n2);
-//            System.out.println(Q);
         }
         return result;
     }
     
+    /**
+     * Computes Q over the strings repeated <code>copies</code> times, for the
+     * substrings starting before <code>starts</code>. The lengths are added in
+     * the same order as by searching each substring, so the float sum is the
+     * same.
+     * @param s1 String one
+     * @param s2 String two
+     * @param copies the number of times each string is repeated.
+     * @param starts the number of starting positions in s1.
+     * @return Q
+     */
+    private static float computeQ(String s1, String s2, int copies, int starts) {
+        Scratch scratch = SCRATCH.get();
+        int n1 = scratch.lowerCase(s1, copies, 0);
+        int n2 = scratch.lowerCase(s2, copies, 1);
+        
+        if (n1 < 0 || n2 < 0) {
+            // lower-casing changed the length
+            return computeQBySearch(repeat(s1, copies), repeat(s2, copies), starts);
+        }
+        
+        int [] longest = scratch.matches(n1);
+        scratch.automaton.buildReversed(scratch.text[1], n2);
+        scratch.automaton.longestMatches(scratch.text[0], n1, longest);
+        
+        int end = Math.min(starts, n1);
+        long sum = 0;
+        for (int i = 0; i < end; i++) {
+            long l = longest[i];
+            sum += l * (l + 1) / 2;
+        }
+        
+        if (sum < EXACT_FLOAT_SUM) {
+            return sum;
+        }
+        
+        float Q = 0;
+        for (int i = 0; i < end; i++) {
+            for (int l = 1; l <= longest[i]; l++) {
+                Q += l;
+            }
+        }
+        return Q;
+    }
+    
+    /**
+     * Computes Q by searching s2 for each substring of s1. This is only used
+     * when lower-casing changes the length of a string.
+     * @param s1 String one
+     * @param s2 String two
+     * @param starts the number of starting positions in s1.
+     * @return Q
+     */
+    private static float computeQBySearch(String s1, String s2, int starts) {
+        String lower1 = s1.toLowerCase(Locale.US);
+        String lower2 = s2.toLowerCase(Locale.US);
+        float Q = 0;
+        
+        for (int i = 0; i < starts; i++) {
+            for (int j = i + 1; j < s1.length() + 1; j++) {
+                if (lower2.indexOf(lower1.substring(i, j)) > -1) {
+                    Q += j - i;
+                }
+            }
+        }
+        return Q;
+    }
+    
+    /**
+     * Returns a string repeated.
+     * @param s the string.
+     * @param copies the number of copies.
+     * @return the repeated string.
+     */
+    private static String repeat(String s, int copies) {
+        return copies == 1 ? s : s + s;
+    }
+    
+    /**
+     * The buffers of a thread.
+     */
+    private static class Scratch {
+        /** The lower-cased strings */
+        private char [][] text = {new char[64], new char[64]};
+        
+        /** The longest match at each position of s1 */
+        private int [] longest = new int[64];
+        
+        /** The automaton of s2 */
+        private SuffixAutomaton automaton = new SuffixAutomaton();
+        
+        /**
+         * Lower-cases a string, repeated, into a buffer. ASCII is lower-cased
+         * in place, any other string goes through <code>String.toLowerCase
+         * </code>.
+         * @param s the string.
+         * @param copies the number of copies.
+         * @param index the buffer.
+         * @return the length, -1 if lower-casing changed the length.
+         */
+        private int lowerCase(String s, int copies, int index) {
+            int len = s.length();
+            int total = len * copies;
+            if (text[index].length < total) {
+                text[index] = new char[Math.max(total, text[index].length * 2)];
+            }
+            char [] buffer = text[index];
+            
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    String lower = repeat(s, copies).toLowerCase(Locale.US);
+                    if (lower.length() != total) {
+                        return -1;
+                    }
+                    lower.getChars(0, total, buffer, 0);
+                    return total;
+                }
+                buffer[i] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            }
+            for (int k = 1; k < copies; k++) {
+                System.arraycopy(buffer, 0, buffer, k * len, len);
+            }
+            return total;
+        }
+        
+        /**
+         * Returns the buffer for the longest matches.
+         * @param size the positions needed.
+         * @return the buffer.
+         */
+        private int [] matches(int size) {
+            if (longest.length < size) {
+                longest = new int[Math.max(size, longest.length * 2)];
+            }
+            return longest;
+        }
+    }
+    
     /**
      * @param args the command line arguments
      */
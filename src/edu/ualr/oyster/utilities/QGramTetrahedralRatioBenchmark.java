@@ -0,0 +1,274 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.utilities;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * This class checks that <code>QGramTetrahedralRatio</code> gives the same
+ * qTR and qTRCyclic as the original substring search, and compares the time
+ * taken by each. The original search is kept here as the reference.
+ * <ul>
+ * <li>-check [pairs] compares both ratios of random pairs bit for bit,
+ * including upper case, non-ASCII, null and long strings</li>
+ * <li>-benchmark [pairs] reports the time per pair of each qTR at several
+ * string lengths</li>
+ * </ul>
+ * @author Eric D. Nelson
+ */
+public class QGramTetrahedralRatioBenchmark {
+    /** The alphabets of the random strings */
+    private static final String [] ALPHABETS = {
+        "ab", "abcAB", "abcdefghijklmnopqrstuvwxyz ", "aA\u00e9\u00c9\u03a3\u03c3\u03c2 ", "a\u0130i"
+    };
+
+    /** The alphabet of the benchmark strings */
+    private static final String NAME_ALPHABET = "ABCDEFGHIJKLMNOPRSTUVWY   ";
+
+    /** The lengths of the benchmark strings */
+    private static final int [] LENGTHS = {8, 16, 32, 48};
+
+    /** The ratio under test */
+    private QGramTetrahedralRatio ratio = new QGramTetrahedralRatio();
+
+    /** The random number generator of the strings */
+    private Random random;
+
+    /**
+     * Creates a new instance of <code>QGramTetrahedralRatioBenchmark</code>.
+     * @param seed the seed of the random strings.
+     */
+    public QGramTetrahedralRatioBenchmark(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Compares qTR and qTRCyclic with the original search for random pairs
+     * and reports the number of differences.
+     * @param pairs the number of random pairs.
+     * @return true if every ratio is the same.
+     */
+    public boolean check(int pairs) {
+        long checks = 0, differences = 0;
+
+        for (int i = 0; i < pairs; i++) {
+            String alphabet = ALPHABETS[random.nextInt(ALPHABETS.length)];
+            String s = random(alphabet, random.nextInt(14));
+            String t = random.nextInt(3) == 0 ? s.toUpperCase(Locale.US) : random(alphabet, random.nextInt(14));
+            if (random.nextInt(10) == 0) {
+                s = null;
+            }
+            differences += check(s, t);
+            checks += 2;
+        }
+
+        // past the range in which Q is summed exactly in a float
+        String big = random("ab", 480);
+        differences += check(big, big);
+        differences += check(big, big.substring(100));
+        differences += check(big + "x", random("ab", 300));
+        checks += 6;
+
+        System.out.println();
+        System.out.format("Ratios Compared        : %1$,12d%n", checks);
+        System.out.format("Different Ratios       : %1$,12d%n", differences);
+        System.out.println("Identical Ratios       : " + (differences == 0));
+        return differences == 0;
+    }
+
+    /**
+     * Compares qTR and qTRCyclic of a pair with the original search. An
+     * exception must be thrown by both or neither.
+     * @param s the first string.
+     * @param t the second string.
+     * @return the number of ratios that differ.
+     */
+    private int check(String s, String t) {
+        int result = 0;
+
+        for (int cyclic = 0; cyclic < 2; cyclic++) {
+            String expected, actual;
+            try {
+                expected = Integer.toHexString(Float.floatToIntBits(cyclic == 0 ? searchQTR(s, t) : searchQTRCyclic(s, t)));
+            } catch (RuntimeException ex) {
+                expected = ex.getClass().getName();
+            }
+            try {
+                actual = Integer.toHexString(Float.floatToIntBits(cyclic == 0 ? ratio.qTR(s, t) : ratio.qTRCyclic(s, t)));
+            } catch (RuntimeException ex) {
+                actual = ex.getClass().getName();
+            }
+
+            if (!expected.equals(actual)) {
+                System.out.println((cyclic == 0 ? "qTR" : "qTRCyclic") + " [" + s + "] [" + t + "] " + expected + " " + actual);
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports the best time per pair of the original search and of qTR for
+     * strings of several lengths.
+     * @param pairs the number of pairs at each length.
+     * @param runs the number of times each length is run.
+     * @return true if both give the same ratios.
+     */
+    public boolean benchmark(int pairs, int runs) {
+        boolean same = true;
+
+        System.out.println();
+        System.out.println("Length       Search us/pair       qTR us/pair");
+        for (int k = 0; k < LENGTHS.length; k++) {
+            String [] s = new String[pairs], t = new String[pairs];
+            for (int i = 0; i < pairs; i++) {
+                s[i] = random(NAME_ALPHABET, LENGTHS[k]);
+                t[i] = random(NAME_ALPHABET, LENGTHS[k]);
+            }
+
+            long bestSearch = Long.MAX_VALUE, bestRatio = Long.MAX_VALUE;
+            for (int r = 0; r < runs; r++) {
+                float sum1 = 0, sum2 = 0;
+
+                long start = System.nanoTime();
+                for (int i = 0; i < pairs; i++) {
+                    sum1 += searchQTR(s[i], t[i]);
+                }
+                bestSearch = Math.min(bestSearch, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                for (int i = 0; i < pairs; i++) {
+                    sum2 += ratio.qTR(s[i], t[i]);
+                }
+                bestRatio = Math.min(bestRatio, System.nanoTime() - start);
+                same &= sum1 == sum2;
+            }
+            System.out.format("%1$6d %2$18.2f %3$17.2f%n", LENGTHS[k], bestSearch / 1000.0 / pairs, bestRatio / 1000.0 / pairs);
+        }
+        System.out.println("Identical Ratios       : " + same);
+        return same;
+    }
+
+    /**
+     * Returns a random string.
+     * @param alphabet the characters of the string.
+     * @param length the length of the string.
+     * @return the string.
+     */
+    private String random(String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The original qTR, which searches s2 for every substring of s1.
+     * @param s1 String one
+     * @param s2 String two
+     * @return result
+     */
+    static float searchQTR(String s1, String s2){
+        float result = -1;
+        int i = 0, j;
+        float Q = 0;
+
+        if (s1 != null && s2 != null && s1.length() > 0 && s2.length() > 0) {
+            while (i <= s1.length()){
+                j = i;
+                while (j < s1.length() +1){
+                    if ((s2.toLowerCase(Locale.US).indexOf(s1.toLowerCase(Locale.US).substring(i, j))) > -1 &&
+                         !s1.toLowerCase(Locale.US).substring(i, j).equals("")){
+                        Q += j - i;
+                    }
+                    j++;
+                }
+                i++;
+            }
+
+            float n1 = s1.length();
+            float n2 = s2.length();
+            float Tn1 = (n1) * (n1 + 1) * (n1 + 2)/ 6f;
+            float Tn2 = (n2) * (n2 + 1) * (n2 + 2) / 6f;
+            result = (n1 * Q / Tn1 + n2 * Q / Tn2) / (n1 + n2);
+        }
+        return result;
+    }
+
+    /**
+     * The original qTRCyclic, which searches s2 + s2 for every substring of
+     * s1 + s1 starting in the first copy.
+     * @param s1 String one
+     * @param s2 String two
+     * @return result
+     */
+    static float searchQTRCyclic(String s1, String s2){
+        float result = -1;
+        int i = 0, j;
+        float Q = 0;
+
+        if (s1 != null && s2 != null && s1.length() > 0 && s2.length() > 0) {
+            s1 = s1 + s1;
+            s2 = s2 + s2;
+            while (i <= s1.length()/2){
+                j = i;
+                while (j < s1.length() +1){
+                    if ((s2.toLowerCase(Locale.US).indexOf(s1.toLowerCase(Locale.US).substring(i, j))) > -1 &&
+                         !s1.toLowerCase(Locale.US).substring(i, j).equals("")){
+                        Q += j - i;
+                    }
+                    j++;
+                }
+                i++;
+            }
+            float n1 = s1.length()-1;
+            float n2 = s2.length()-1;
+            float Tn1 = (n1) * (n1 + 1) * (n1 + 2)/ 6f;
+            float Tn2 = (n2) * (n2 + 1) * (n2 + 2) / 6f;
+            result = (n1 * Q / Tn1 + n2 * Q / Tn2) / (n1 + n2);
+        }
+        return result;
+    }
+
+    /**
+     * The main entry point of the benchmark.
+     * @param args -check [pairs] or -benchmark [pairs].
+     */
+    public static void main(String[] args) {
+        QGramTetrahedralRatioBenchmark benchmark = new QGramTetrahedralRatioBenchmark(7);
+        boolean same = true;
+
+        if ((args.length == 1 || args.length == 2) && args[0].equalsIgnoreCase("-check")) {
+            same = benchmark.check(args.length == 2 ? Integer.parseInt(args[1]) : 200000);
+        } else if ((args.length == 1 || args.length == 2) && args[0].equalsIgnoreCase("-benchmark")) {
+            same = benchmark.benchmark(args.length == 2 ? Integer.parseInt(args[1]) : 40000, 3);
+        } else {
+            System.out.println("Usage: QGramTetrahedralRatioBenchmark -check [pairs]");
+            System.out.println("       QGramTetrahedralRatioBenchmark -benchmark [pairs]");
+        }
+
+        if (!same) {
+            System.exit(1);
+        }
+    }
+}
@@ -32,6 +32,11 @@ import java.util.Locale;
  * 
  * (Excerpt taken from Wikipedia)
  * 
+ * The matrix, alignment and score of <code>computeSmithWaterman</code> are
+ * kept in fields for the other methods to read, so such an instance must not
+ * be shared; the comparators use <code>computeNormalizedScore(s, t, ...)</code>
+ * which changes nothing.
+ * 
  * References:
  * <ul>
  * <li>Smith TF, Waterman MS. Identification of common molecular subsequences. 
@@ -58,6 +63,14 @@ public class SmithWaterman {
     /** Resulting Alignments */
     private String sequence1 = "", sequence2 = "";
     
+    /** The rows of <code>computeNormalizedScore(s, t, ...)</code> for each thread */
+    private static final ThreadLocal<float [][]> ROWS = new ThreadLocal<float [][]>() {
+        @Override
+        protected float [][] initialValue() {
+            return new float[][] {new float[33], new float[33]};
+        }
+    };
+    
     /**
      * Creates a new instance of SmithWaterman
      */
@@ -187,6 +200,78 @@ public class SmithWaterman {
         return norm;
     }
     
+    /**
+     * Returns the normalized score of two strings, the same as <code>
+     * computeSmithWaterman</code> followed by <code>computeNormalizedScore()
+     * </code>, by value. No field is changed and the rows of the matrix are 
+     * kept per thread, so one instance can be used by several threads. The 
+     * alignment is not worked out.
+     * @param s source String
+     * @param t target String
+     * @param match the score of matching characters
+     * @param mismatch the score of mismatched characters
+     * @param gap the score of a gap
+     * @return the normalized score
+     */
+    public float computeNormalizedScore(String s, String t, float match, float mismatch, float gap) {
+        float result = 0;
+        int longer = 0;
+        
+        if (s == null && t != null){
+            longer = t.length();
+        }
+        else if (s != null && t == null){
+            longer = s.length();
+        }
+        else if (s != null && t != null){
+            String sTemp = s.toUpperCase(Locale.US);
+            String tTemp = t.toUpperCase(Locale.US);
+            int n = sTemp.length();
+            
+            longer = Math.max(tTemp.length(), n);
+            
+            float [][] rows = ROWS.get();
+            if (rows[0].length < n + 1) {
+                rows[0] = new float[Math.max(n + 1, rows[0].length * 2)];
+                rows[1] = new float[rows[0].length];
+            }
+            float [] prev = rows[0], curr = rows[1];
+            Arrays.fill(prev, 0, n + 1, 0.0f);
+            curr[0] = 0.0f;
+            
+            // the same cells as computeSmithWaterman, a row at a time
+            float check = 0;
+            for (int i = 1; i <= tTemp.length(); i++) {
+                char c = tTemp.charAt(i-1);
+                for (int j = 1; j <= n; j++) {
+                    if (c == sTemp.charAt(j-1)){
+                        curr[j] = prev[j-1] + match;
+                    }
+                    else {
+                        float diag = prev[j-1] + mismatch;
+                        float top = prev[j] + gap;
+                        float left = curr[j-1] + gap;
+                        
+                        float max = Math.max(diag, top);
+                        max = Math.max(max, left);
+                        max = Math.max(max, 0);
+                        
+                        curr[j] = max;
+                    }
+                    
+                    if (curr[j] > check){
+                        check = curr[j];
+                    }
+                }
+                float [] swap = prev; prev = curr; curr = swap;
+            }
+            result = check;
+        }
+        
+        float maxLen = longer;
+        return 1f - (result / (maxLen * result));
+    }
+    
     public float computeNormalizedScore2 () {
         float norm;
         
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2010 John Talburt, Eric Nelson
+ *
+ * This file is part of Oyster created in the ERIQ Research Center at University of Arkansas at Little Rock.
+ *
+ * Oyster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Oyster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Oyster.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package edu.ualr.oyster.utilities;
+
+/**
+ * A suffix automaton over the reverse of a string, used to find for every
+ * position of another string the longest substring starting there that occurs
+ * in the first. The automaton of a string of length n has at most 2n states
+ * and 3n transitions and is built in linear time; the transitions of a state
+ * are held in a short list since the strings compared are names, addresses
+ * and dates.
+ *
+ * An instance keeps its arrays between builds and only grows them, so it can
+ * be reused without allocating. An instance is not thread-safe.
+ * @author Eric D. Nelson
+ */
+final class SuffixAutomaton {
+    /** The length of the longest string of each state */
+    private int [] len = new int[64];
+
+    /** The suffix link of each state */
+    private int [] link = new int[64];
+
+    /** The first transition of each state, -1 if none */
+    private int [] head = new int[64];
+
+    /** The character of each transition */
+    private char [] edgeChar = new char[96];
+
+    /** The target state of each transition */
+    private int [] edgeTo = new int[96];
+
+    /** The next transition of the same state, -1 if none */
+    private int [] edgeNext = new int[96];
+
+    /** The number of states */
+    private int states = 0;
+
+    /** The number of transitions */
+    private int edges = 0;
+
+    /** The state of the whole string */
+    private int last = 0;
+
+    /**
+     * Creates a new instance of <code>SuffixAutomaton</code>.
+     */
+    SuffixAutomaton() {
+    }
+
+    /**
+     * Builds the automaton of the reverse of a string.
+     * @param text the characters of the string.
+     * @param length the length of the string.
+     */
+    void buildReversed(char [] text, int length) {
+        ensure(2 * length + 1, 3 * length + 3);
+
+        states = 1;
+        edges = 0;
+        last = 0;
+        len[0] = 0;
+        link[0] = -1;
+        head[0] = -1;
+
+        for (int i = length - 1; i >= 0; i--) {
+            extend(text[i]);
+        }
+    }
+
+    /**
+     * Finds for each position of a string the length of the longest substring
+     * starting there that occurs in the string the automaton was built for.
+     * @param text the characters of the string.
+     * @param length the length of the string.
+     * @param result receives the length for each position.
+     */
+    void longestMatches(char [] text, int length, int [] result) {
+        int v = 0, l = 0;
+
+        // reading the string backwards through the automaton of the reversed
+        // string matches the substrings that start at each position
+        for (int i = length - 1; i >= 0; i--) {
+            char c = text[i];
+            int next = transition(v, c);
+
+            while (v != 0 && next < 0) {
+                v = link[v];
+                l = len[v];
+                next = transition(v, c);
+            }
+
+            if (next >= 0) {
+                v = next;
+                l++;
+            } else {
+                l = 0;
+            }
+            result[i] = l;
+        }
+    }
+
+    /**
+     * Adds a character to the automaton.
+     * @param c the character.
+     */
+    private void extend(char c) {
+        int cur = states++;
+        len[cur] = len[last] + 1;
+        head[cur] = -1;
+
+        int p = last;
+        while (p != -1 && transition(p, c) < 0) {
+            addTransition(p, c, cur);
+            p = link[p];
+        }
+
+        if (p == -1) {
+            link[cur] = 0;
+        } else {
+            int q = transition(p, c);
+            if (len[p] + 1 == len[q]) {
+                link[cur] = q;
+            } else {
+                int clone = states++;
+                len[clone] = len[p] + 1;
+                link[clone] = link[q];
+                head[clone] = -1;
+                for (int e = head[q]; e >= 0; e = edgeNext[e]) {
+                    addTransition(clone, edgeChar[e], edgeTo[e]);
+                }
+
+                while (p != -1 && transition(p, c) == q) {
+                    setTransition(p, c, clone);
+                    p = link[p];
+                }
+                link[q] = clone;
+                link[cur] = clone;
+            }
+        }
+        last = cur;
+    }
+
+    /**
+     * Returns the target of the transition of a state on a character.
+     * @param state the state.
+     * @param c the character.
+     * @return the target state, -1 if there is none.
+     */
+    private int transition(int state, char c) {
+        for (int e = head[state]; e >= 0; e = edgeNext[e]) {
+            if (edgeChar[e] == c) {
+                return edgeTo[e];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a transition to a state.
+     * @param state the state.
+     * @param c the character.
+     * @param to the target state.
+     */
+    private void addTransition(int state, char c, int to) {
+        if (edges == edgeTo.length) {
+            growEdges(edges * 2);
+        }
+        edgeChar[edges] = c;
+        edgeTo[edges] = to;
+        edgeNext[edges] = head[state];
+        head[state] = edges++;
+    }
+
+    /**
+     * Redirects the transition of a state on a character.
+     * @param state the state.
+     * @param c the character.
+     * @param to the new target state.
+     */
+    private void setTransition(int state, char c, int to) {
+        for (int e = head[state]; e >= 0; e = edgeNext[e]) {
+            if (edgeChar[e] == c) {
+                edgeTo[e] = to;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Grows the arrays to hold the states and transitions of a build.
+     * @param stateCount the states needed.
+     * @param edgeCount the transitions needed.
+     */
+    private void ensure(int stateCount, int edgeCount) {
+        if (len.length < stateCount) {
+            int size = Math.max(stateCount, len.length * 2);
+            len = new int[size];
+            link = new int[size];
+            head = new int[size];
+        }
+        if (edgeTo.length < edgeCount) {
+            growEdges(Math.max(edgeCount, edgeTo.length * 2));
+        }
+    }
+
+    /**
+     * Grows the transition arrays, keeping the transitions added.
+     * @param size the new size.
+     */
+    private void growEdges(int size) {
+        char [] c = new char[size];
+        int [] to = new int[size];
+        int [] next = new int[size];
+        System.arraycopy(edgeChar, 0, c, 0, edges);
+        System.arraycopy(edgeTo, 0, to, 0, edges);
+        System.arraycopy(edgeNext, 0, next, 0, edges);
+        edgeChar = c;
+        edgeTo = to;
+        edgeNext = next;
+    }
+}
@@ -60,6 +60,20 @@ public class TverskyIndex {
     }
 
     public float computeDistance(String s, String t) {
+        return computeDistance(s, t, alpha, beta);
+    }
+
+    /**
+     * Returns the Tversky Index of two strings for the given weights, without
+     * changing the weights of this instance, so one instance can be used by
+     * several threads.
+     * @param s source String
+     * @param t target String
+     * @param alpha the weight of the characters only in the source
+     * @param beta the weight of the characters only in the target
+     * @return the Tversky Index
+     */
+    public float computeDistance(String s, String t, float alpha, float beta) {
         float distance;
         Set<Character> sSet = new LinkedHashSet<Character>();
         Set<Character> tSet = new LinkedHashSet<Character>();